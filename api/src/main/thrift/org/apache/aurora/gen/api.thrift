@@ -527,6 +527,11 @@ struct ScheduledTask {
 
 struct ScheduleStatusResult {
   1: list<ScheduledTask> tasks
+  /**
+   * Set when the query had a limit that was reached.  Passing this token in a subsequent query
+   * fetches the tasks following those in this result.  The token is opaque to clients.
+   */
+  2: optional string continuationToken
 }
 
 struct GetJobsResult {
@@ -546,8 +551,18 @@ struct TaskQuery {
   7: set<i32> instanceIds
   10: set<string> slaveHosts
   11: set<JobKey> jobKeys
+  /**
+   * Number of matching tasks to skip.  Paginated queries (those with an offset, limit or
+   * continuation token) return tasks in a stable order.
+   */
   12: i32 offset
+  /** Maximum number of tasks to return. */
   13: i32 limit
+  /**
+   * Continuation token from a previous ScheduleStatusResult.  Only tasks following those in the
+   * previous result are returned.
+   */
+  15: optional string continuationToken
 }
 
 struct HostStatus {
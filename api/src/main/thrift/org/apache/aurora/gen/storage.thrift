@@ -152,6 +152,8 @@ struct Snapshot {
   11: list<string> dbScript
   // Indicates if experimental DB store for tasks and cron jobs was enabled when snapshot was cut.
   12: bool experimentalTaskStore
+  // Indicates if the in-memory job update store was enabled when snapshot was cut.
+  13: bool inMemoryJobUpdateStore
 }
 
 // A message header that calls out the number of expected FrameChunks to follow to form a complete
@@ -210,6 +212,21 @@ struct DeduplicatedSnapshot {
    3: list<api.TaskConfig> taskConfigs
 }
 
+// Codecs that a serialized LogEntry may be compressed with.
+enum CompressionCodec {
+  // The "deflate" compression format, wrapped in the zlib format.
+  DEFLATE = 1
+  // A sequence of blocks in the LZ4 block format. Each block is preceded by its uncompressed and
+  // compressed lengths, as big-endian 32 bit integers.
+  LZ4 = 2
+}
+
+// A LogEntry that is first serialized in the thrift binary format, then compressed with a codec.
+struct CompressedEntry {
+  1: CompressionCodec codec
+  2: binary data
+}
+
 // A scheduler storage write-ahead log entry consisting of no-ops to skip over or else snapshots or
 // transactions to apply.  Any entry type can also be chopped up into frames if the entry is too big
 // for whatever reason.
@@ -236,5 +253,9 @@ union LogEntry {
   // The full state of the scheduler at some point-in-time, in a compact layout. Transactions
   // appearing before this entry in the log can be ignored.
   6: DeduplicatedSnapshot deduplicatedSnapshot
+
+  // A LogEntry that is first serialized in the thrift binary format, then compressed with the
+  // codec recorded alongside it. Like deflatedEntry, the contents should not be a Frame.
+  7: CompressedEntry compressedEntry
 }
 
@@ -63,6 +63,30 @@ final class JobUpdates {
    * @return update keys.
    */
   static Set<IJobUpdateKey> saveUpdates(Storage storage, Iterable<IJobUpdateDetails> updates) {
+    return saveUpdates(storage, updates, true);
+  }
+
+  /**
+   * Saves completed job updates into provided storage.  Unlike
+   * {@link #saveUpdates(Storage, Iterable)}, no locks are held for the updates, so several updates
+   * may be saved for the same job.
+   *
+   * @param storage {@link Storage} instance.
+   * @param updates updates to save.
+   * @return update keys.
+   */
+  static Set<IJobUpdateKey> saveCompletedUpdates(
+      Storage storage,
+      Iterable<IJobUpdateDetails> updates) {
+
+    return saveUpdates(storage, updates, false);
+  }
+
+  private static Set<IJobUpdateKey> saveUpdates(
+      Storage storage,
+      Iterable<IJobUpdateDetails> updates,
+      boolean lock) {
+
     ImmutableSet.Builder<IJobUpdateKey> keyBuilder = ImmutableSet.builder();
     storage.write((Storage.MutateWork.NoResult.Quiet) store -> {
       JobUpdateStore.Mutable updateStore = store.getJobUpdateStore();
@@ -70,14 +94,17 @@ final class JobUpdates {
       for (IJobUpdateDetails details : updates) {
         IJobUpdateKey key = details.getUpdate().getSummary().getKey();
         keyBuilder.add(key);
-        String lockToken = UUID.randomUUID().toString();
-        store.getLockStore().saveLock(ILock.build(new Lock()
-            .setKey(LockKey.job(key.getJob().newBuilder()))
-            .setToken(lockToken)
-            .setUser(Builder.USER)
-            .setTimestampMs(0L)));
+        Optional<String> lockToken = Optional.absent();
+        if (lock) {
+          lockToken = Optional.of(UUID.randomUUID().toString());
+          store.getLockStore().saveLock(ILock.build(new Lock()
+              .setKey(LockKey.job(key.getJob().newBuilder()))
+              .setToken(lockToken.get())
+              .setUser(Builder.USER)
+              .setTimestampMs(0L)));
+        }
 
-        updateStore.saveJobUpdate(details.getUpdate(), Optional.of(lockToken));
+        updateStore.saveJobUpdate(details.getUpdate(), lockToken);
 
         for (IJobUpdateEvent updateEvent : details.getUpdateEvents()) {
           updateStore.saveJobUpdateEvent(key, updateEvent);
@@ -96,6 +123,9 @@ final class JobUpdates {
     private int numEvents = 1;
     private int numInstanceEvents = 5000;
     private int numInstanceOverrides = 1;
+    private int numJobs = 0;
+    private int numRoles = 1;
+    private boolean completed = false;
 
     Builder setNumEvents(int newCount) {
       numEvents = newCount;
@@ -112,10 +142,42 @@ final class JobUpdates {
       return this;
     }
 
+    /**
+     * Spreads the updates round-robin over a fixed number of jobs, rather than creating a new job
+     * for every update.
+     */
+    Builder setNumJobs(int newCount) {
+      numJobs = newCount;
+      return this;
+    }
+
+    /**
+     * Spreads the jobs round-robin over a number of roles.  Only applies with a fixed number of
+     * jobs.
+     */
+    Builder setNumRoles(int newCount) {
+      numRoles = newCount;
+      return this;
+    }
+
+    /**
+     * Makes the last event of every update a terminal one.
+     */
+    Builder setCompleted(boolean newCompleted) {
+      completed = newCompleted;
+      return this;
+    }
+
     Set<IJobUpdateDetails> build(int count) {
       ImmutableSet.Builder<IJobUpdateDetails> result = ImmutableSet.builder();
       for (int i = 0; i < count; i++) {
-        JobKey job = new JobKey("role", "env", UUID.randomUUID().toString());
+        JobKey job;
+        if (numJobs == 0) {
+          job = new JobKey("role", "env", UUID.randomUUID().toString());
+        } else {
+          int jobId = i % numJobs;
+          job = new JobKey("role" + jobId % numRoles, "env", "job" + jobId);
+        }
         JobUpdateKey key = new JobUpdateKey().setJob(job).setId(UUID.randomUUID().toString());
 
         TaskConfig task = TaskTestUtil.makeConfig(IJobKey.build(job)).newBuilder();
@@ -141,7 +203,11 @@ final class JobUpdates {
 
         ImmutableList.Builder<JobUpdateEvent> events = ImmutableList.builder();
         for (int j = 0; j < numEvents; j++) {
-          events.add(new JobUpdateEvent(JobUpdateStatus.ROLLING_FORWARD, j)
+          JobUpdateStatus status = completed && j == numEvents - 1
+              ? JobUpdateStatus.ROLLED_FORWARD
+              : JobUpdateStatus.ROLLING_FORWARD;
+          // Later updates have later events, so that updates are ordered by creation.
+          events.add(new JobUpdateEvent(status, (long) i * numEvents + j)
               .setUser(USER)
               .setMessage("message"));
         }
@@ -65,6 +65,7 @@ final class Offers {
     private Amount<Long, Data> ram = Amount.of(16L, Data.GB);
     private Amount<Long, Data> disk = Amount.of(256L, Data.GB);
     private int ports = 1024;
+    private int idStart = 0;
 
     Builder setCpu(double newCpu) {
       cpu = newCpu;
@@ -86,6 +87,11 @@ final class Offers {
       return this;
     }
 
+    Builder setIdStart(int newIdStart) {
+      idStart = newIdStart;
+      return this;
+    }
+
     /**
      * Builds a set of {@link HostOffer} for the current configuration.
      *
@@ -94,7 +100,7 @@ final class Offers {
      */
     Set<HostOffer> build(Set<IHostAttributes> hostAttributes) {
       ImmutableSet.Builder<HostOffer> offers = ImmutableSet.builder();
-      int id = 0;
+      int id = idStart;
       for (IHostAttributes attributes : hostAttributes) {
         Protos.Offer offer = Protos.Offer.newBuilder()
             .addAllResources(ImmutableSet.of(
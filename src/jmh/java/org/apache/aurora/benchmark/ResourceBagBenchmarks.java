@@ -0,0 +1,125 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+
+import org.apache.aurora.scheduler.resources.ResourceBag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.apache.aurora.scheduler.resources.ResourceBag.LARGE;
+import static org.apache.aurora.scheduler.resources.ResourceBag.MEDIUM;
+import static org.apache.aurora.scheduler.resources.ResourceBag.SMALL;
+import static org.apache.aurora.scheduler.resources.ResourceType.RAM_MB;
+
+/**
+ * Performance benchmarks for {@link ResourceBag} arithmetic, as used by the scheduling filter,
+ * preemptor and quota checks.
+ */
+public class ResourceBagBenchmarks {
+
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @State(Scope.Thread)
+  public static class ArithmeticBenchmark {
+    @Benchmark
+    public ResourceBag add() {
+      return MEDIUM.add(SMALL);
+    }
+
+    @Benchmark
+    public ResourceBag subtract() {
+      return LARGE.subtract(MEDIUM);
+    }
+
+    @Benchmark
+    public ResourceBag scale() {
+      return SMALL.scale(4);
+    }
+
+    @Benchmark
+    public ResourceBag max() {
+      return MEDIUM.max(SMALL);
+    }
+
+    @Benchmark
+    public boolean covers() {
+      return LARGE.covers(MEDIUM);
+    }
+
+    @Benchmark
+    public double getValue() {
+      return LARGE.getValue(RAM_MB);
+    }
+  }
+
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @State(Scope.Thread)
+  public static class SumBenchmark {
+    @Param({"100", "10000"})
+    public int numBags;
+
+    private List<ResourceBag> bags;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      ImmutableList.Builder<ResourceBag> builder = ImmutableList.builder();
+      for (int i = 0; i < numBags; i++) {
+        builder.add(i % 2 == 0 ? SMALL : MEDIUM);
+      }
+      bags = builder.build();
+    }
+
+    /**
+     * Sums up bags by creating a new bag for every addition.
+     *
+     * @return Sum of all bags.
+     */
+    @Benchmark
+    public ResourceBag reduce() {
+      return bags.stream().reduce(ResourceBag::add).get();
+    }
+
+    /**
+     * Sums up bags in place.
+     *
+     * @return Sum of all bags.
+     */
+    @Benchmark
+    public ResourceBag accumulate() {
+      return ResourceBag.sum(bags);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+
+import com.google.common.collect.ImmutableList;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.profile.ProfilerResult;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+
+/**
+ * Reports the heap retained at the end of each iteration, relative to the heap in use before the
+ * first iteration of the benchmark ran.  Benchmarks measured with this profiler should keep the
+ * state they want measured reachable until the next iteration's setup replaces it.  If the
+ * benchmark has a {@code numTasks} parameter, the retained heap per task is reported as well.
+ *
+ * <p>Enable with {@code -prof org.apache.aurora.benchmark.RetainedHeapProfiler}.
+ */
+public class RetainedHeapProfiler implements InternalProfiler {
+  private static final String NUM_TASKS_PARAM = "numTasks";
+  private static final int GC_ROUNDS = 3;
+
+  private long baselineHeapBytes = -1;
+
+  @Override
+  public String getDescription() {
+    return "Heap retained by the benchmark state";
+  }
+
+  @Override
+  public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+    if (baselineHeapBytes < 0) {
+      baselineHeapBytes = usedHeapBytes();
+    }
+  }
+
+  @Override
+  public Collection<? extends Result> afterIteration(
+      BenchmarkParams benchmarkParams,
+      IterationParams iterationParams,
+      IterationResult result) {
+
+    long retainedBytes = usedHeapBytes() - baselineHeapBytes;
+    ImmutableList.Builder<Result> results = ImmutableList.builder();
+    results.add(new ProfilerResult(
+        "\u00b7heap.retained",
+        retainedBytes / (1024.0 * 1024.0),
+        "MB",
+        AggregationPolicy.AVG));
+    if (benchmarkParams.getParamsKeys().contains(NUM_TASKS_PARAM)) {
+      int numTasks = Integer.parseInt(benchmarkParams.getParam(NUM_TASKS_PARAM));
+      results.add(new ProfilerResult(
+          "\u00b7heap.retained.norm",
+          (double) retainedBytes / numTasks,
+          "B/task",
+          AggregationPolicy.AVG));
+    }
+    return results.build();
+  }
+
+  private static long usedHeapBytes() {
+    for (int i = 0; i < GC_ROUNDS; i++) {
+      System.gc();
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+}
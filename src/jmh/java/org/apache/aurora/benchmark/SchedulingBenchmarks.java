@@ -18,6 +18,7 @@ import java.util.concurrent.TimeUnit;
 
 import javax.inject.Singleton;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.eventbus.EventBus;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
@@ -29,6 +30,7 @@ import org.apache.aurora.benchmark.fakes.FakeDriver;
 import org.apache.aurora.benchmark.fakes.FakeRescheduleCalculator;
 import org.apache.aurora.benchmark.fakes.FakeStatsProvider;
 import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Data;
 import org.apache.aurora.common.quantity.Time;
 import org.apache.aurora.common.stats.StatsProvider;
 import org.apache.aurora.common.util.Clock;
@@ -42,6 +44,7 @@ import org.apache.aurora.scheduler.async.DelayExecutor;
 import org.apache.aurora.scheduler.base.TaskTestUtil;
 import org.apache.aurora.scheduler.configuration.executor.ExecutorSettings;
 import org.apache.aurora.scheduler.events.EventSink;
+import org.apache.aurora.scheduler.filter.AttributeAggregateCache;
 import org.apache.aurora.scheduler.filter.SchedulingFilter;
 import org.apache.aurora.scheduler.filter.SchedulingFilterImpl;
 import org.apache.aurora.scheduler.mesos.Driver;
@@ -112,14 +115,14 @@ public class SchedulingBenchmarks {
       // TODO(maxim): Find a way to DRY it and reuse existing modules instead.
       Injector injector = Guice.createInjector(
           new StateModule(),
-          new PreemptorModule(true, NO_DELAY, NO_DELAY),
+          new PreemptorModule(true, NO_DELAY, NO_DELAY, getSlotSearchThreads()),
           new TierModule(TaskTestUtil.TIER_CONFIG),
           new PrivateModule() {
             @Override
             protected void configure() {
               // We use a no-op executor for async work, as this benchmark is focused on the
               // synchronous scheduling operations.
-              bind(DelayExecutor.class).annotatedWith(AsyncModule.AsyncExecutor.class)
+              bind(DelayExecutor.class).annotatedWith(AsyncModule.OfferExecutor.class)
                   .toInstance(new DelayExecutor() {
                     @Override
                     public void execute(Runnable work, Amount<Long, Time> minDelay) {
@@ -151,6 +154,10 @@ public class SchedulingBenchmarks {
                   .toInstance(DELAY_FOREVER);
               bind(TaskIdGenerator.class).to(TaskIdGenerator.TaskIdGeneratorImpl.class);
               bind(SchedulingFilter.class).to(SchedulingFilterImpl.class);
+              bind(Integer.class)
+                  .annotatedWith(AttributeAggregateCache.MaxCachedJobs.class)
+                  .toInstance(1000);
+              bind(AttributeAggregateCache.class).in(Singleton.class);
               bind(SchedulingFilterImpl.class).in(Singleton.class);
               bind(ExecutorSettings.class).toInstance(TestExecutorSettings.THERMOS_EXECUTOR);
               bind(Storage.class).toInstance(storage);
@@ -168,11 +175,12 @@ public class SchedulingBenchmarks {
       offerManager = injector.getInstance(OfferManager.class);
       pendingTaskProcessor = injector.getInstance(PendingTaskProcessor.class);
       eventBus.register(injector.getInstance(ClusterStateImpl.class));
+      eventBus.register(injector.getInstance(AttributeAggregateCache.class));
 
       settings = getSettings();
       saveHostAttributes(settings.getHostAttributes());
 
-      Set<HostOffer> offers = new Offers.Builder().build(settings.getHostAttributes());
+      Set<HostOffer> offers = buildOffers(settings.getHostAttributes());
       Offers.addOffers(offerManager, offers);
       fillUpCluster(offers.size());
 
@@ -191,7 +199,7 @@ public class SchedulingBenchmarks {
       Set<IScheduledTask> tasksToAssign = buildClusterTasks(numOffers);
       saveTasks(tasksToAssign);
       for (IScheduledTask scheduledTask : tasksToAssign) {
-        taskScheduler.schedule(scheduledTask.getAssignedTask().getTaskId());
+        taskScheduler.schedule(ImmutableSet.of(scheduledTask.getAssignedTask().getTaskId()));
       }
     }
 
@@ -210,6 +218,14 @@ public class SchedulingBenchmarks {
 
     protected abstract BenchmarkSettings getSettings();
 
+    protected int getSlotSearchThreads() {
+      return 1;
+    }
+
+    protected Set<HostOffer> buildOffers(Set<IHostAttributes> hostAttributes) {
+      return new Offers.Builder().build(hostAttributes);
+    }
+
     /**
      * Benchmark entry point. All settings (e.g. iterations, benchmarkMode and etc.) are defined
      * in build.gradle.
@@ -221,7 +237,8 @@ public class SchedulingBenchmarks {
     public boolean runBenchmark() {
       boolean result = false;
       for (IScheduledTask task : settings.getTasks()) {
-        result = taskScheduler.schedule(task.getAssignedTask().getTaskId());
+        result = !taskScheduler.schedule(ImmutableSet.of(task.getAssignedTask().getTaskId()))
+            .isEmpty();
       }
       return result;
     }
@@ -242,6 +259,46 @@ public class SchedulingBenchmarks {
     }
   }
 
+  /**
+   * Tests scheduling performance in a cluster with fragmented offers, where most offers do not
+   * have enough RAM for the task and can be skipped without running the scheduling filter.
+   */
+  public static class FragmentedOffersSchedulingBenchmark extends AbstractBase {
+    @Override
+    protected BenchmarkSettings getSettings() {
+      return new BenchmarkSettings.Builder()
+          .setHostAttributes(new Hosts.Builder().setNumHostsPerRack(2).build(10000))
+          .setTasks(new Tasks.Builder()
+              .setProduction(true)
+              .setRam(Amount.of(8L, Data.GB))
+              .addLimitConstraint("host", 0)
+              .build(1)).build();
+    }
+
+    @Override
+    protected Set<HostOffer> buildOffers(Set<IHostAttributes> hostAttributes) {
+      // Only every tenth host offers enough RAM for the task.
+      ImmutableSet.Builder<IHostAttributes> smallHosts = ImmutableSet.builder();
+      ImmutableSet.Builder<IHostAttributes> largeHosts = ImmutableSet.builder();
+      int i = 0;
+      for (IHostAttributes attributes : hostAttributes) {
+        if (i++ % 10 == 0) {
+          largeHosts.add(attributes);
+        } else {
+          smallHosts.add(attributes);
+        }
+      }
+      return ImmutableSet.<HostOffer>builder()
+          .addAll(new Offers.Builder()
+              .setRam(Amount.of(1L, Data.GB))
+              .build(smallHosts.build()))
+          .addAll(new Offers.Builder()
+              .setIdStart(hostAttributes.size())
+              .build(largeHosts.build()))
+          .build();
+    }
+  }
+
   /**
    * Tests scheduling performance with a task vetoed due to value constraint mismatch.
    */
@@ -315,4 +372,37 @@ public class SchedulingBenchmarks {
       return System.currentTimeMillis() % 5 == 0;
     }
   }
+
+  /**
+   * Tests preemptor searching for a preemption slot across a large, completely filled up cluster,
+   * where every agent has preemptible tasks but none can host the pending tasks.
+   */
+  public static class ParallelPreemptorSlotSearchBenchmark extends AbstractBase {
+    @Param({"1", "2", "4", "8"})
+    public int numSlotSearchThreads;
+
+    @Override
+    protected BenchmarkSettings getSettings() {
+      return new BenchmarkSettings.Builder()
+          .setClusterUtilization(1.0)
+          .setVictimPreemptionEligibilty(true)
+          .setHostAttributes(new Hosts.Builder().setNumHostsPerRack(2).build(10000))
+          .setTasks(new Tasks.Builder()
+              .setProduction(true)
+              .addValueConstraint("host", "denied")
+              .build(10)).build();
+    }
+
+    @Override
+    protected int getSlotSearchThreads() {
+      return numSlotSearchThreads;
+    }
+
+    @Override
+    public boolean runBenchmark() {
+      pendingTaskProcessor.run();
+      // Return non-guessable result to satisfy "blackhole" requirement.
+      return System.currentTimeMillis() % 5 == 0;
+    }
+  }
 }
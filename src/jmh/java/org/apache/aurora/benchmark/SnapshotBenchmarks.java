@@ -13,11 +13,15 @@
  */
 package org.apache.aurora.benchmark;
 
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Singleton;
 
 import com.google.common.base.Optional;
+import com.google.common.primitives.Bytes;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -25,14 +29,23 @@ import com.google.inject.Key;
 import com.google.inject.TypeLiteral;
 
 import org.apache.aurora.benchmark.fakes.FakeStatsProvider;
+import org.apache.aurora.codec.ThriftBinaryCodec;
+import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
 import org.apache.aurora.common.inject.Bindings;
+import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Data;
 import org.apache.aurora.common.stats.StatsProvider;
 import org.apache.aurora.common.util.Clock;
+import org.apache.aurora.gen.storage.CompressionCodec;
+import org.apache.aurora.gen.storage.LogEntry;
 import org.apache.aurora.gen.storage.Snapshot;
 import org.apache.aurora.scheduler.storage.Storage;
 import org.apache.aurora.scheduler.storage.db.DbModule;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.log.SnapshotDeduplicator.SnapshotDeduplicatorImpl;
 import org.apache.aurora.scheduler.storage.log.SnapshotStoreImpl;
 import org.apache.aurora.scheduler.storage.log.SnapshotStoreImpl.ExperimentalTaskStore;
+import org.apache.aurora.scheduler.storage.log.SnapshotStoreImpl.InMemoryJobUpdateStore;
 import org.apache.thrift.TException;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -45,6 +58,7 @@ import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 
@@ -95,6 +109,8 @@ public class SnapshotBenchmarks {
               bind(SnapshotStoreImpl.class).in(Singleton.class);
               bind(new TypeLiteral<Boolean>() { }).annotatedWith(ExperimentalTaskStore.class)
                   .toInstance(true);
+              bind(new TypeLiteral<Boolean>() { }).annotatedWith(InMemoryJobUpdateStore.class)
+                  .toInstance(false);
             }
           },
           DbModule.testModuleWithWorkQueue(
@@ -115,4 +131,105 @@ public class SnapshotBenchmarks {
       return snapshotStore.createSnapshot();
     }
   }
+
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @Threads(1)
+  @State(Scope.Thread)
+  public static class DeflateSnapshotBenchmark {
+    private LogEntry entry;
+    private ExecutorService executor;
+
+    @Param({"1", "4"})
+    private int threads;
+
+    @Param({"10000", "100000"})
+    private int taskCount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      executor = Executors.newFixedThreadPool(threads);
+      Snapshot snapshot = new Snapshot().setTasks(IScheduledTask.toBuildersSet(
+          new Tasks.Builder().build(taskCount)));
+      entry = LogEntry.deduplicatedSnapshot(new SnapshotDeduplicatorImpl().deduplicate(snapshot));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      executor.shutdownNow();
+    }
+
+    @Benchmark
+    public byte[] runSingleStream() throws CodingException {
+      return ThriftBinaryCodec.deflateNonNull(entry);
+    }
+
+    @Benchmark
+    public List<byte[]> runParallel() throws CodingException {
+      return ThriftBinaryCodec.deflateNonNull(entry, executor, Amount.of(1, Data.MB), 2 * threads);
+    }
+  }
+
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @Threads(1)
+  @State(Scope.Thread)
+  public static class CompressSnapshotBenchmark {
+    private static final Amount<Integer, Data> BLOCK_SIZE = Amount.of(1, Data.MB);
+
+    private LogEntry entry;
+    private byte[] compressed;
+    private ExecutorService executor;
+
+    @Param({"DEFLATE", "LZ4"})
+    private CompressionCodec codec;
+
+    @Param({"10000", "100000"})
+    private int taskCount;
+
+    @Setup(Level.Trial)
+    public void setUp() throws CodingException {
+      executor = Executors.newFixedThreadPool(4);
+      Snapshot snapshot = new Snapshot().setTasks(IScheduledTask.toBuildersSet(
+          new Tasks.Builder().build(taskCount)));
+      entry = LogEntry.deduplicatedSnapshot(new SnapshotDeduplicatorImpl().deduplicate(snapshot));
+      List<byte[]> blocks = compress();
+      compressed = Bytes.concat(blocks.toArray(new byte[blocks.size()][]));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      executor.shutdownNow();
+    }
+
+    @Benchmark
+    public List<byte[]> compress() throws CodingException {
+      switch (codec) {
+        case DEFLATE:
+          return ThriftBinaryCodec.deflateNonNull(entry, executor, BLOCK_SIZE, 8);
+        case LZ4:
+          return ThriftBinaryCodec.lz4CompressNonNull(entry, executor, BLOCK_SIZE, 8);
+        default:
+          throw new IllegalArgumentException("Unsupported codec " + codec);
+      }
+    }
+
+    @Benchmark
+    public LogEntry decompress() throws CodingException {
+      switch (codec) {
+        case DEFLATE:
+          return ThriftBinaryCodec.inflateNonNull(LogEntry.class, compressed);
+        case LZ4:
+          return ThriftBinaryCodec.lz4DecompressNonNull(LogEntry.class, compressed);
+        default:
+          throw new IllegalArgumentException("Unsupported codec " + codec);
+      }
+    }
+  }
 }
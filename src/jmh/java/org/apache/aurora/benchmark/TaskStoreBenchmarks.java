@@ -17,11 +17,17 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.util.Modules;
 
 import org.apache.aurora.common.stats.StatsProvider;
+import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.TaskEvent;
 import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.storage.Storage;
 import org.apache.aurora.scheduler.storage.TaskStore;
@@ -36,6 +42,7 @@ import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
@@ -132,4 +139,127 @@ public class TaskStoreBenchmarks {
       return storage.read(store -> store.getTaskStore().fetchTasks(Query.unscoped()));
     }
   }
+
+  /**
+   * Measures the rate at which the DB task store saves tasks, in rows (tasks) per second.  Every
+   * invocation saves a batch of tasks with events and assigned ports into an empty store.
+   */
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @State(Scope.Thread)
+  public static class DBSaveTasksBenchmark {
+    private static final int BATCH_SIZE = 10000;
+
+    private Storage storage;
+    private Set<IScheduledTask> tasks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      storage = DbUtil.createStorage();
+      tasks = FluentIterable.from(new Tasks.Builder().build(BATCH_SIZE))
+          .transform(task -> {
+            ScheduledTask builder = task.newBuilder();
+            builder.getAssignedTask().setAssignedPorts(ImmutableMap.of("http", 31000));
+            return IScheduledTask.build(builder);
+          })
+          .toSet();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() {
+      storage.write((Storage.MutateWork.NoResult.Quiet)
+          storeProvider -> storeProvider.getUnsafeTaskStore().deleteAllTasks());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void run() {
+      storage.write((Storage.MutateWork.NoResult.Quiet)
+          storeProvider -> storeProvider.getUnsafeTaskStore().saveTasks(tasks));
+    }
+  }
+
+  /**
+   * Compares the heap retained by the in-memory task store for terminal tasks stored in their
+   * full and compact forms.  The measured time is that of saving the tasks.  Run with
+   * {@link RetainedHeapProfiler} to report the heap retained by the store, which is kept reachable
+   * until the next iteration replaces it.
+   */
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 3)
+  @Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+  @State(Scope.Thread)
+  public static class MemTaskStoreFootprintBenchmark {
+    private static final int BATCH_SIZE = 10000;
+    private static final int NUM_HOSTS = 5000;
+
+    @Param({"100000", "500000", "1000000"})
+    private int numTasks;
+
+    @Param({"false", "true"})
+    private boolean compactTerminalTasks;
+
+    private Storage storage;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+      storage = Guice.createInjector(
+          Modules.combine(
+              DbModule.testModuleWithWorkQueue(
+                  PLAIN,
+                  Optional.of(new InMemStoresModule(PLAIN, compactTerminalTasks))),
+              new AbstractModule() {
+                @Override
+                protected void configure() {
+                  bind(StatsProvider.class).toInstance(new FakeStatsProvider());
+                }
+              }))
+          .getInstance(Storage.class);
+    }
+
+    @Benchmark
+    public void run() {
+      // Tasks are built and saved in batches, so that only the store retains them.
+      for (int start = 0; start < numTasks; start += BATCH_SIZE) {
+        Set<IScheduledTask> batch = terminalTasks(start, Math.min(BATCH_SIZE, numTasks - start));
+        storage.write((Storage.MutateWork.NoResult.Quiet)
+            storeProvider -> storeProvider.getUnsafeTaskStore().saveTasks(batch));
+      }
+    }
+
+    private static Set<IScheduledTask> terminalTasks(int start, int count) {
+      return FluentIterable.from(new Tasks.Builder()
+          .setScheduleStatus(ScheduleStatus.FINISHED)
+          .setUuidStart(start)
+          .build(count))
+          .transform(task -> {
+            // Strings are built per task, as they would be when deserialized from the log.
+            ScheduledTask builder = task.newBuilder();
+            String host = "slave-host-" + (builder.getAssignedTask().getInstanceId() % NUM_HOSTS);
+            builder.getAssignedTask()
+                .setSlaveHost(host)
+                .setSlaveId(host + "-S0")
+                .setAssignedPorts(ImmutableMap.of("http", 31000, "admin", 31001));
+            builder.setTaskEvents(ImmutableList.of(
+                event(0, ScheduleStatus.PENDING, null),
+                event(1, ScheduleStatus.ASSIGNED, null),
+                event(2, ScheduleStatus.STARTING, "Initializing sandbox."),
+                event(3, ScheduleStatus.RUNNING, null),
+                event(4, ScheduleStatus.FINISHED, "Task finished successfully.")));
+            return IScheduledTask.build(builder);
+          })
+          .toSet();
+    }
+
+    private static TaskEvent event(long timestamp, ScheduleStatus status, String message) {
+      return new TaskEvent(timestamp, status)
+          .setScheduler(new StringBuilder("scheduler-host").toString())
+          .setMessage(message == null ? null : new StringBuilder(message).toString());
+    }
+  }
 }
@@ -42,6 +42,8 @@ import org.apache.aurora.scheduler.storage.db.DbModule;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.thrift.ThriftModule;
 import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TJSONProtocol;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
@@ -128,6 +130,70 @@ public class ThriftApiBenchmarks {
     }
   }
 
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @State(Scope.Thread)
+  public static class GetTasksWithoutConfigsBenchmark {
+    private ReadOnlyScheduler.Iface api;
+
+    @Param({
+        "{\"jobs\": 1}",
+        "{\"jobs\": 100}",
+        "{\"instances\": 100}",
+        "{\"instances\": 1000}",
+        "{\"instances\": 10000}"})
+    private String testConfiguration;
+
+    @Setup
+    public void setUp() {
+      api = createPopulatedApi(testConfiguration);
+    }
+
+    @Benchmark
+    public Response run() throws TException {
+      return api.getTasksWithoutConfigs(new TaskQuery());
+    }
+  }
+
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @State(Scope.Thread)
+  public static class SerializeTasksStatusBenchmark {
+    private ReadOnlyScheduler.Iface api;
+
+    @Param({
+        "{\"instances\": 100}",
+        "{\"instances\": 1000}",
+        "{\"instances\": 10000}"})
+    private String testConfiguration;
+
+    @Param({"true", "false"})
+    private boolean withConfigs;
+
+    @Setup
+    public void setUp() {
+      api = createPopulatedApi(testConfiguration);
+    }
+
+    /**
+     * Measures building a response together with serializing it, as is done when serving the
+     * thrift API over HTTP.
+     */
+    @Benchmark
+    public byte[] run() throws TException {
+      Response response = withConfigs
+          ? api.getTasksStatus(new TaskQuery())
+          : api.getTasksWithoutConfigs(new TaskQuery());
+      return new TSerializer(new TJSONProtocol.Factory()).serialize(response);
+    }
+  }
+
   private static ReadOnlyScheduler.Iface createPopulatedApi(String testConfiguration) {
     TestConfiguration config = new Gson().fromJson(testConfiguration, TestConfiguration.class);
 
@@ -13,16 +13,23 @@
  */
 package org.apache.aurora.benchmark;
 
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Iterables;
 
+import org.apache.aurora.gen.JobKey;
+import org.apache.aurora.gen.JobUpdateQuery;
 import org.apache.aurora.scheduler.storage.Storage;
 import org.apache.aurora.scheduler.storage.Storage.MutateWork.NoResult;
+import org.apache.aurora.scheduler.storage.db.DbModule;
 import org.apache.aurora.scheduler.storage.db.DbUtil;
 import org.apache.aurora.scheduler.storage.entities.IJobUpdateDetails;
 import org.apache.aurora.scheduler.storage.entities.IJobUpdateKey;
+import org.apache.aurora.scheduler.storage.entities.IJobUpdateQuery;
+import org.apache.aurora.scheduler.storage.entities.IJobUpdateSummary;
+import org.apache.aurora.scheduler.updater.Updates;
 import org.apache.thrift.TException;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -39,6 +46,13 @@ import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Warmup;
 
 public class UpdateStoreBenchmarks {
+  private static Storage createStorage(boolean memStore) {
+    return DbUtil.createStorageInjector(memStore
+        ? DbModule.testModuleWithMemJobUpdateStore()
+        : DbModule.testModuleWithWorkQueue())
+        .getInstance(Storage.class);
+  }
+
   @BenchmarkMode(Mode.Throughput)
   @OutputTimeUnit(TimeUnit.SECONDS)
   @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
@@ -52,9 +66,12 @@ public class UpdateStoreBenchmarks {
     @Param({"1000", "5000", "10000"})
     private int instances;
 
+    @Param({"false", "true"})
+    private boolean memStore;
+
     @Setup(Level.Trial)
     public void setUp() {
-      storage = DbUtil.createStorage();
+      storage = createStorage(memStore);
     }
 
     @Setup(Level.Iteration)
@@ -92,9 +109,12 @@ public class UpdateStoreBenchmarks {
     @Param({"1", "10", "100", "1000"})
     private int instanceOverrides;
 
+    @Param({"false", "true"})
+    private boolean memStore;
+
     @Setup(Level.Trial)
     public void setUp() {
-      storage = DbUtil.createStorage();
+      storage = createStorage(memStore);
     }
 
     @Setup(Level.Iteration)
@@ -118,4 +138,70 @@ public class UpdateStoreBenchmarks {
           Iterables.getOnlyElement(keys)).get());
     }
   }
+
+  /**
+   * Queries a history of completed updates, as served to the UI and used by the quota checks.
+   */
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+  @Fork(1)
+  @State(Scope.Thread)
+  public static class JobUpdateHistoryBenchmark {
+    private static final int UPDATES_PER_JOB = 10;
+    private static final int ROLES = 50;
+    private static final IJobUpdateQuery ROLE_QUERY =
+        IJobUpdateQuery.build(new JobUpdateQuery().setRole("role0"));
+    private static final IJobUpdateQuery ACTIVE_QUERY = IJobUpdateQuery.build(new JobUpdateQuery()
+        .setRole("role0")
+        .setUpdateStatuses(Updates.ACTIVE_JOB_UPDATE_STATES));
+    private static final IJobUpdateQuery JOB_QUERY = IJobUpdateQuery.build(new JobUpdateQuery()
+        .setJobKey(new JobKey("role0", "env", "job0")));
+    private static final IJobUpdateQuery PAGE_QUERY =
+        IJobUpdateQuery.build(new JobUpdateQuery().setOffset(0).setLimit(25));
+
+    private Storage storage;
+
+    @Param({"1000", "10000", "50000"})
+    private int updates;
+
+    @Param({"false", "true"})
+    private boolean memStore;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      storage = createStorage(memStore);
+      JobUpdates.saveCompletedUpdates(
+          storage,
+          new JobUpdates.Builder()
+              .setNumJobs(updates / UPDATES_PER_JOB)
+              .setNumRoles(ROLES)
+              .setNumEvents(3)
+              .setNumInstanceEvents(20)
+              .setCompleted(true)
+              .build(updates));
+    }
+
+    @Benchmark
+    public List<IJobUpdateSummary> roleSummaries() {
+      return storage.read(store -> store.getJobUpdateStore().fetchJobUpdateSummaries(ROLE_QUERY));
+    }
+
+    @Benchmark
+    public List<IJobUpdateSummary> activeRoleSummaries() {
+      return storage.read(
+          store -> store.getJobUpdateStore().fetchJobUpdateSummaries(ACTIVE_QUERY));
+    }
+
+    @Benchmark
+    public List<IJobUpdateSummary> latestSummaries() {
+      return storage.read(store -> store.getJobUpdateStore().fetchJobUpdateSummaries(PAGE_QUERY));
+    }
+
+    @Benchmark
+    public List<IJobUpdateDetails> jobDetails() {
+      return storage.read(store -> store.getJobUpdateStore().fetchJobUpdateDetails(JOB_QUERY));
+    }
+  }
 }
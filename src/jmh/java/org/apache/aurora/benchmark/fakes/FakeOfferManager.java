@@ -19,6 +19,7 @@ import org.apache.aurora.scheduler.HostOffer;
 import org.apache.aurora.scheduler.base.TaskGroupKey;
 import org.apache.aurora.scheduler.events.PubsubEvent;
 import org.apache.aurora.scheduler.offers.OfferManager;
+import org.apache.aurora.scheduler.resources.ResourceBag;
 import org.apache.mesos.Protos;
 
 public class FakeOfferManager implements OfferManager {
@@ -43,7 +44,7 @@ public class FakeOfferManager implements OfferManager {
   }
 
   @Override
-  public Iterable<HostOffer> getOffers(TaskGroupKey groupKey) {
+  public Iterable<HostOffer> getOffers(TaskGroupKey groupKey, ResourceBag minimum) {
     return null;
   }
 
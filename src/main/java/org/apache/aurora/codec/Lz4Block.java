@@ -0,0 +1,233 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.codec;
+
+import java.io.IOException;
+
+/**
+ * A pure-Java implementation of the LZ4 block format.
+ * <p>
+ * See https://github.com/lz4/lz4/blob/master/doc/lz4_Block_format.md.  Compression uses a single
+ * pass with a hash table of recent 4 byte sequences, trading compression ratio for speed.
+ */
+final class Lz4Block {
+
+  private static final int MIN_MATCH = 4;
+  // The last 5 bytes of a block are always literals, and the last match must start at least 12
+  // bytes before the end of the block.
+  private static final int LAST_LITERALS = 5;
+  private static final int MATCH_FIND_LIMIT = 12;
+  private static final int MAX_DISTANCE = 0xFFFF;
+  private static final int HASH_BITS = 16;
+  private static final int RUN_MASK = 0xF;
+
+  private Lz4Block() {
+    // Utility class.
+  }
+
+  /**
+   * Gets the maximum length of the compressed form of {@code length} bytes.
+   *
+   * @param length Uncompressed length.
+   * @return Maximum compressed length.
+   */
+  static int maxCompressedLength(int length) {
+    return length + length / 255 + 16;
+  }
+
+  private static int readInt(byte[] b, int i) {
+    return (b[i] & 0xFF)
+        | (b[i + 1] & 0xFF) << 8
+        | (b[i + 2] & 0xFF) << 16
+        | (b[i + 3] & 0xFF) << 24;
+  }
+
+  private static int hash(int sequence) {
+    return (sequence * -1640531535) >>> (32 - HASH_BITS);
+  }
+
+  private static int writeLength(int length, byte[] dest, int destOffset) {
+    int offset = destOffset;
+    int remaining = length;
+    while (remaining >= 0xFF) {
+      dest[offset++] = (byte) 0xFF;
+      remaining -= 0xFF;
+    }
+    dest[offset++] = (byte) remaining;
+    return offset;
+  }
+
+  private static int writeLiterals(
+      byte[] src,
+      int srcOffset,
+      int length,
+      int matchLength,
+      byte[] dest,
+      int destOffset) {
+
+    int token = destOffset;
+    int offset = destOffset + 1;
+    int literalToken;
+    if (length >= RUN_MASK) {
+      literalToken = RUN_MASK << 4;
+      offset = writeLength(length - RUN_MASK, dest, offset);
+    } else {
+      literalToken = length << 4;
+    }
+    int matchToken = Math.min(matchLength, RUN_MASK);
+    dest[token] = (byte) (literalToken | matchToken);
+    System.arraycopy(src, srcOffset, dest, offset, length);
+    return offset + length;
+  }
+
+  /**
+   * Compresses a block of data.
+   *
+   * @param src Data to compress.
+   * @param srcOffset Offset of the data.
+   * @param length Length of the data.
+   * @param dest Buffer to write the compressed block to, which must have room for at least
+   *             {@link #maxCompressedLength(int)} bytes.
+   * @param destOffset Offset to write the compressed block at.
+   * @return The length of the compressed block.
+   */
+  static int compress(byte[] src, int srcOffset, int length, byte[] dest, int destOffset) {
+    int srcEnd = srcOffset + length;
+    int matchLimit = srcEnd - LAST_LITERALS;
+    int findLimit = srcEnd - MATCH_FIND_LIMIT;
+    // Positions are stored relative to srcOffset, plus one so that zero marks an empty slot.
+    int[] table = new int[1 << HASH_BITS];
+
+    int anchor = srcOffset;
+    int in = srcOffset;
+    int out = destOffset;
+    while (in < findLimit) {
+      int sequence = readInt(src, in);
+      int slot = hash(sequence);
+      int ref = table[slot] - 1 + srcOffset;
+      table[slot] = in - srcOffset + 1;
+      if (ref < srcOffset || in - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+        in++;
+        continue;
+      }
+
+      // Extend the match backwards into pending literals, then forwards.
+      while (in > anchor && ref > srcOffset && src[in - 1] == src[ref - 1]) {
+        in--;
+        ref--;
+      }
+      int matchLength = MIN_MATCH;
+      while (in + matchLength < matchLimit && src[ref + matchLength] == src[in + matchLength]) {
+        matchLength++;
+      }
+
+      int extraMatchLength = matchLength - MIN_MATCH;
+      out = writeLiterals(src, anchor, in - anchor, extraMatchLength, dest, out);
+      int distance = in - ref;
+      dest[out++] = (byte) distance;
+      dest[out++] = (byte) (distance >>> 8);
+      if (extraMatchLength >= RUN_MASK) {
+        out = writeLength(extraMatchLength - RUN_MASK, dest, out);
+      }
+
+      in += matchLength;
+      anchor = in;
+    }
+
+    out = writeLiterals(src, anchor, srcEnd - anchor, 0, dest, out);
+    return out - destOffset;
+  }
+
+  /**
+   * Decompresses a block of data.
+   *
+   * @param src Compressed block.
+   * @param srcOffset Offset of the compressed block.
+   * @param length Length of the compressed block.
+   * @param dest Buffer to write the decompressed data to.
+   * @param destOffset Offset to write the decompressed data at.
+   * @param decompressedLength Expected length of the decompressed data.
+   * @throws IOException If the block is malformed or does not decompress to the expected length.
+   */
+  static void decompress(
+      byte[] src,
+      int srcOffset,
+      int length,
+      byte[] dest,
+      int destOffset,
+      int decompressedLength) throws IOException {
+
+    int srcEnd = srcOffset + length;
+    int destEnd = destOffset + decompressedLength;
+    int in = srcOffset;
+    int out = destOffset;
+    try {
+      while (true) {
+        if (in >= srcEnd) {
+          throw new IOException("Truncated LZ4 block.");
+        }
+        int token = src[in++] & 0xFF;
+
+        int literalLength = token >>> 4;
+        if (literalLength == RUN_MASK) {
+          int b;
+          do {
+            b = src[in++] & 0xFF;
+            literalLength += b;
+          } while (b == 0xFF);
+        }
+        if (literalLength > srcEnd - in || literalLength > destEnd - out) {
+          throw new IOException("Malformed LZ4 block, literals overrun the block.");
+        }
+        System.arraycopy(src, in, dest, out, literalLength);
+        in += literalLength;
+        out += literalLength;
+        if (in == srcEnd) {
+          break;
+        }
+
+        int distance = (src[in] & 0xFF) | (src[in + 1] & 0xFF) << 8;
+        in += 2;
+        int matchLength = token & RUN_MASK;
+        if (matchLength == RUN_MASK) {
+          int b;
+          do {
+            b = src[in++] & 0xFF;
+            matchLength += b;
+          } while (b == 0xFF);
+        }
+        matchLength += MIN_MATCH;
+        int ref = out - distance;
+        if (distance == 0 || ref < destOffset || matchLength > destEnd - out) {
+          throw new IOException("Malformed LZ4 block, invalid match.");
+        }
+        if (distance >= matchLength) {
+          System.arraycopy(dest, ref, dest, out, matchLength);
+          out += matchLength;
+        } else {
+          // Overlapping matches repeat the preceding bytes.
+          for (int i = 0; i < matchLength; i++) {
+            dest[out++] = dest[ref++];
+          }
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Truncated LZ4 block.", e);
+    }
+
+    if (out != destEnd) {
+      throw new IOException("LZ4 block decompressed to an unexpected length.");
+    }
+  }
+}
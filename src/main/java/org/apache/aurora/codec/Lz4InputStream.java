@@ -0,0 +1,89 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.google.common.primitives.Ints;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An input stream that decompresses the blocks written by a {@link ParallelLz4OutputStream}.
+ */
+final class Lz4InputStream extends InputStream {
+
+  private final byte[] data;
+  private int offset;
+  private byte[] block = new byte[0];
+  private int position;
+  private int limit;
+
+  /**
+   * Creates a stream that decompresses blocks from a buffer.
+   *
+   * @param data Concatenated compressed blocks.
+   */
+  Lz4InputStream(byte[] data) {
+    this.data = requireNonNull(data);
+  }
+
+  private boolean fill() throws IOException {
+    while (position == limit) {
+      if (offset == data.length) {
+        return false;
+      }
+      if (data.length - offset < ParallelLz4OutputStream.BLOCK_HEADER_LENGTH) {
+        throw new IOException("Truncated LZ4 block header.");
+      }
+      int length = Ints.fromBytes(
+          data[offset], data[offset + 1], data[offset + 2], data[offset + 3]);
+      int compressedLength = Ints.fromBytes(
+          data[offset + 4], data[offset + 5], data[offset + 6], data[offset + 7]);
+      offset += ParallelLz4OutputStream.BLOCK_HEADER_LENGTH;
+      if (length < 0 || compressedLength < 0 || compressedLength > data.length - offset) {
+        throw new IOException("Malformed LZ4 block header.");
+      }
+
+      if (block.length < length) {
+        block = new byte[length];
+      }
+      Lz4Block.decompress(data, offset, compressedLength, block, 0, length);
+      offset += compressedLength;
+      position = 0;
+      limit = length;
+    }
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    return fill() ? block[position++] & 0xFF : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!fill()) {
+      return -1;
+    }
+    int read = Math.min(len, limit - position);
+    System.arraycopy(block, position, b, off, read);
+    position += read;
+    return read;
+  }
+}
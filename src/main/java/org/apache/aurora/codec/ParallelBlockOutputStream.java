@@ -0,0 +1,197 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import static java.util.Objects.requireNonNull;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * An output stream that compresses data in fixed size blocks, compressing blocks concurrently.
+ * <p>
+ * The number of blocks awaiting compression is bounded, so that a fast writer does not buffer an
+ * unbounded amount of uncompressed data.  Compressed blocks are retained until the stream is
+ * {@link #finish() finished}.  This class is not thread-safe.
+ */
+abstract class ParallelBlockOutputStream extends OutputStream {
+
+  private final Executor executor;
+  private final int blockSize;
+  private final int maxPendingBlocks;
+  private final List<FutureTask<byte[]>> blocks = Lists.newArrayList();
+
+  private byte[] buffer;
+  private int count;
+  @Nullable
+  private byte[] previousBlock;
+  private int completedBlocks;
+  private List<byte[]> output;
+
+  /**
+   * Creates a stream that compresses blocks on the given executor.
+   *
+   * @param executor Executor to compress blocks on.
+   * @param blockSize Size of uncompressed blocks, in bytes.
+   * @param maxPendingBlocks Maximum number of blocks to queue for compression before blocking
+   *                         writes.
+   */
+  ParallelBlockOutputStream(Executor executor, int blockSize, int maxPendingBlocks) {
+    checkArgument(blockSize > 0);
+    checkArgument(maxPendingBlocks > 0);
+    this.executor = requireNonNull(executor);
+    this.blockSize = blockSize;
+    this.maxPendingBlocks = maxPendingBlocks;
+    this.buffer = new byte[blockSize];
+  }
+
+  /**
+   * Compresses a single block.  Called concurrently from the executor.
+   *
+   * @param block Buffer holding the block.
+   * @param length Length of the block within the buffer.
+   * @param previousBlock The full preceding block, or {@code null} if this is the first block.
+   * @param last Whether this is the last block of the stream.
+   * @return The compressed block.
+   */
+  abstract byte[] compressBlock(
+      byte[] block,
+      int length,
+      @Nullable byte[] previousBlock,
+      boolean last);
+
+  /**
+   * Observes data written to the stream, on the writing thread.
+   *
+   * @param b Data written.
+   * @param off Offset of the data.
+   * @param len Length of the data.
+   */
+  void update(byte[] b, int off, int len) {
+    // No-op by default.
+  }
+
+  /**
+   * Gets the data to write before the first compressed block.
+   *
+   * @return The stream header, possibly empty.
+   */
+  List<byte[]> header() {
+    return ImmutableList.of();
+  }
+
+  /**
+   * Gets the data to write after the last compressed block, once all data has been written.
+   *
+   * @return The stream trailer, possibly empty.
+   */
+  List<byte[]> trailer() {
+    return ImmutableList.of();
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    checkState(output == null, "Stream is already finished.");
+    update(b, off, len);
+    while (len > 0) {
+      int copied = Math.min(len, blockSize - count);
+      System.arraycopy(b, off, buffer, count, copied);
+      count += copied;
+      off += copied;
+      len -= copied;
+      if (count == blockSize) {
+        submitBlock(false);
+      }
+    }
+  }
+
+  private void submitBlock(boolean last) throws IOException {
+    // Bound the amount of uncompressed data held by queued blocks.
+    while (blocks.size() - completedBlocks >= maxPendingBlocks) {
+      await(blocks.get(completedBlocks));
+      completedBlocks++;
+    }
+
+    byte[] block = buffer;
+    int length = count;
+    byte[] previous = previousBlock;
+    FutureTask<byte[]> task =
+        new FutureTask<>(() -> compressBlock(block, length, previous, last));
+    blocks.add(task);
+    executor.execute(task);
+
+    previousBlock = block;
+    buffer = last ? null : new byte[blockSize];
+    count = 0;
+  }
+
+  private static byte[] await(FutureTask<byte[]> block) throws IOException {
+    try {
+      return block.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while compressing.", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to compress block.", e.getCause());
+    }
+  }
+
+  /**
+   * Compresses any remaining data and waits for all blocks to be compressed.
+   *
+   * @return The header, compressed blocks and trailer, which form the compressed stream when
+   *         concatenated.
+   * @throws IOException If a block could not be compressed.
+   */
+  List<byte[]> finish() throws IOException {
+    if (output == null) {
+      if (buffer != null) {
+        submitBlock(true);
+      }
+
+      ImmutableList.Builder<byte[]> compressed = ImmutableList.builder();
+      compressed.addAll(header());
+      for (FutureTask<byte[]> block : blocks) {
+        compressed.add(await(block));
+      }
+      compressed.addAll(trailer());
+      output = compressed.build();
+      blocks.clear();
+      previousBlock = null;
+    }
+    return output;
+  }
+
+  @Override
+  public void close() throws IOException {
+    finish();
+  }
+}
@@ -0,0 +1,122 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An output stream that DEFLATE-compresses data in fixed size blocks, compressing blocks
+ * concurrently.
+ * <p>
+ * Each block is compressed independently, primed with the trailing 32 KiB of the preceding block
+ * as a preset dictionary, and terminated with a sync flush so that it ends on a byte boundary.
+ * The compressed blocks form a single zlib stream when concatenated, which can be read with an
+ * {@link java.util.zip.InflaterInputStream}.  The compression ratio is close to that of compressing
+ * the data in one go.
+ */
+final class ParallelDeflaterOutputStream extends ParallelBlockOutputStream {
+
+  // The maximum distance of a DEFLATE back-reference.
+  private static final int DICTIONARY_SIZE = 32 * 1024;
+
+  private final int level;
+  private final Adler32 checksum = new Adler32();
+
+  /**
+   * Creates a stream that compresses blocks on the given executor.
+   *
+   * @param executor Executor to compress blocks on.
+   * @param level Compression level.
+   * @param blockSize Size of uncompressed blocks, in bytes.
+   * @param maxPendingBlocks Maximum number of blocks to queue for compression before blocking
+   *                         writes.
+   */
+  ParallelDeflaterOutputStream(Executor executor, int level, int blockSize, int maxPendingBlocks) {
+    super(executor, blockSize, maxPendingBlocks);
+    checkArgument(blockSize >= DICTIONARY_SIZE);
+    this.level = level;
+  }
+
+  @Override
+  void update(byte[] b, int off, int len) {
+    checksum.update(b, off, len);
+  }
+
+  // See https://tools.ietf.org/html/rfc1950, the header is identical to the one written by zlib.
+  @Override
+  List<byte[]> header() {
+    int effectiveLevel = level == Deflater.DEFAULT_COMPRESSION ? 6 : level;
+    int levelFlags;
+    if (effectiveLevel < 2) {
+      levelFlags = 0;
+    } else if (effectiveLevel < 6) {
+      levelFlags = 1;
+    } else if (effectiveLevel == 6) {
+      levelFlags = 2;
+    } else {
+      levelFlags = 3;
+    }
+
+    // CMF: deflate with a 32 KiB window, FLG: compression level and no preset dictionary.
+    int header = (0x78 << 8) | (levelFlags << 6);
+    header += 31 - header % 31;
+    return ImmutableList.of(new byte[] {(byte) (header >> 8), (byte) header});
+  }
+
+  @Override
+  List<byte[]> trailer() {
+    return ImmutableList.of(Ints.toByteArray((int) checksum.getValue()));
+  }
+
+  @Override
+  byte[] compressBlock(byte[] block, int length, @Nullable byte[] dictionary, boolean last) {
+    Deflater deflater = new Deflater(level, true);
+    try {
+      if (dictionary != null) {
+        deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+      }
+      deflater.setInput(block, 0, length);
+
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4);
+      byte[] chunk = new byte[DICTIONARY_SIZE];
+      if (last) {
+        deflater.finish();
+        while (!deflater.finished()) {
+          compressed.write(chunk, 0, deflater.deflate(chunk));
+        }
+      } else {
+        // A sync flush is complete once it leaves space in the output buffer.
+        int written;
+        do {
+          written = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+          compressed.write(chunk, 0, written);
+        } while (written == chunk.length);
+      }
+      return compressed.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.codec;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nullable;
+
+import com.google.common.primitives.Ints;
+
+/**
+ * An output stream that LZ4-compresses data in fixed size blocks, compressing blocks concurrently.
+ * <p>
+ * Each block is compressed independently and prefixed with its uncompressed and compressed
+ * lengths, as big-endian 32 bit integers.  The concatenated blocks can be read with an
+ * {@link Lz4InputStream}.
+ */
+final class ParallelLz4OutputStream extends ParallelBlockOutputStream {
+
+  static final int BLOCK_HEADER_LENGTH = 2 * Integer.BYTES;
+
+  /**
+   * Creates a stream that compresses blocks on the given executor.
+   *
+   * @param executor Executor to compress blocks on.
+   * @param blockSize Size of uncompressed blocks, in bytes.
+   * @param maxPendingBlocks Maximum number of blocks to queue for compression before blocking
+   *                         writes.
+   */
+  ParallelLz4OutputStream(Executor executor, int blockSize, int maxPendingBlocks) {
+    super(executor, blockSize, maxPendingBlocks);
+  }
+
+  @Override
+  byte[] compressBlock(byte[] block, int length, @Nullable byte[] previousBlock, boolean last) {
+    byte[] compressed = new byte[BLOCK_HEADER_LENGTH + Lz4Block.maxCompressedLength(length)];
+    int compressedLength = Lz4Block.compress(block, 0, length, compressed, BLOCK_HEADER_LENGTH);
+    System.arraycopy(Ints.toByteArray(length), 0, compressed, 0, Integer.BYTES);
+    System.arraycopy(
+        Ints.toByteArray(compressedLength),
+        0,
+        compressed,
+        Integer.BYTES,
+        Integer.BYTES);
+    return Arrays.copyOf(compressed, BLOCK_HEADER_LENGTH + compressedLength);
+  }
+}
@@ -16,7 +16,11 @@ package org.apache.aurora.codec;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
@@ -168,6 +172,87 @@ public final class ThriftBinaryCodec {
     }
   }
 
+  /**
+   * Encodes a thrift object into DEFLATE-compressed blocks, compressing blocks concurrently while
+   * the object is being encoded.
+   * <p>
+   * The concatenated blocks are in the same format as the output of {@link #deflateNonNull(TBase)},
+   * and can be decoded with {@link #inflateNonNull(Class, byte[])}.  Keeping the blocks separate
+   * avoids copying the entire compressed object.
+   *
+   * @param tBase Object to encode.
+   * @param executor Executor to compress blocks on.
+   * @param blockSize Size of the blocks of encoded data to compress independently.
+   * @param maxPendingBlocks Maximum number of blocks awaiting compression, which bounds the amount
+   *                         of encoded data buffered in memory.
+   * @return Deflated, encoded object, as a sequence of blocks.
+   * @throws CodingException If the object could not be encoded.
+   */
+  public static List<byte[]> deflateNonNull(
+      TBase<?, ?> tBase,
+      Executor executor,
+      Amount<Integer, Data> blockSize,
+      int maxPendingBlocks) throws CodingException {
+
+    requireNonNull(tBase);
+
+    return compress(
+        tBase,
+        new ParallelDeflaterOutputStream(
+            executor,
+            DEFLATE_LEVEL,
+            blockSize.as(Data.BYTES),
+            maxPendingBlocks));
+  }
+
+  /**
+   * Encodes a thrift object into LZ4-compressed blocks, compressing blocks concurrently while the
+   * object is being encoded.
+   * <p>
+   * LZ4 compresses and decompresses several times faster than DEFLATE, at the cost of a lower
+   * compression ratio.  The concatenated blocks can be decoded with
+   * {@link #lz4DecompressNonNull(Class, byte[])}.
+   *
+   * @param tBase Object to encode.
+   * @param executor Executor to compress blocks on.
+   * @param blockSize Size of the blocks of encoded data to compress independently.
+   * @param maxPendingBlocks Maximum number of blocks awaiting compression, which bounds the amount
+   *                         of encoded data buffered in memory.
+   * @return Compressed, encoded object, as a sequence of blocks.
+   * @throws CodingException If the object could not be encoded.
+   */
+  public static List<byte[]> lz4CompressNonNull(
+      TBase<?, ?> tBase,
+      Executor executor,
+      Amount<Integer, Data> blockSize,
+      int maxPendingBlocks) throws CodingException {
+
+    requireNonNull(tBase);
+
+    return compress(
+        tBase,
+        new ParallelLz4OutputStream(executor, blockSize.as(Data.BYTES), maxPendingBlocks));
+  }
+
+  private static List<byte[]> compress(TBase<?, ?> tBase, ParallelBlockOutputStream compressor)
+      throws CodingException {
+
+    // Buffering prevents thrift from copying every encoded primitive into the block separately.
+    TTransport transport =
+        new TIOStreamTransport(new BufferedOutputStream(compressor, DEFLATER_BUFFER_SIZE));
+    try {
+      TProtocol protocol = PROTOCOL_FACTORY.getProtocol(transport);
+      tBase.write(protocol);
+      transport.flush();
+      return compressor.finish();
+    } catch (TException | IOException e) {
+      // The object is likely too large to be included in the message.
+      throw new CodingException("Failed to serialize " + tBase.getClass().getName(), e);
+    } finally {
+      transport.close();
+    }
+  }
+
   /**
    * Decodes a thrift object from a DEFLATE-compressed byte array into a target type.
    *
@@ -182,9 +267,32 @@ public final class ThriftBinaryCodec {
     requireNonNull(clazz);
     requireNonNull(buffer);
 
+    return decompress(clazz, new InflaterInputStream(new ByteArrayInputStream(buffer)));
+  }
+
+  /**
+   * Decodes a thrift object from LZ4-compressed blocks into a target type.
+   *
+   * @param clazz Class to instantiate and deserialize to.
+   * @param buffer Concatenated compressed blocks, as produced by
+   *               {@link #lz4CompressNonNull(TBase, Executor, Amount, int)}.
+   * @return A populated message.
+   * @throws CodingException If the message could not be decoded.
+   */
+  public static <T extends TBase<T, ?>> T lz4DecompressNonNull(Class<T> clazz, byte[] buffer)
+      throws CodingException {
+
+    requireNonNull(clazz);
+    requireNonNull(buffer);
+
+    return decompress(clazz, new Lz4InputStream(buffer));
+  }
+
+  private static <T extends TBase<T, ?>> T decompress(Class<T> clazz, InputStream decompressor)
+      throws CodingException {
+
     T tBase = newInstance(clazz);
-    TTransport transport = new TIOStreamTransport(
-          new InflaterInputStream(new ByteArrayInputStream(buffer)));
+    TTransport transport = new TIOStreamTransport(decompressor);
     try {
       TProtocol protocol = PROTOCOL_FACTORY.getProtocol(transport);
       tBase.read(protocol);
@@ -52,6 +52,7 @@ import org.apache.aurora.scheduler.sla.SlaModule;
 import org.apache.aurora.scheduler.state.StateModule;
 import org.apache.aurora.scheduler.stats.AsyncStatsModule;
 import org.apache.aurora.scheduler.thrift.Thresholds;
+import org.apache.aurora.scheduler.thrift.ThriftModule;
 import org.apache.aurora.scheduler.updater.UpdaterModule;
 import org.apache.mesos.Scheduler;
 
@@ -152,6 +153,7 @@ public class AppModule extends AbstractModule {
     install(new StateModule());
     install(new SlaModule());
     install(new UpdaterModule());
+    install(new ThriftModule.SummaryCacheModule());
     bind(StatsProvider.class).toInstance(Stats.STATS_PROVIDER);
   }
 }
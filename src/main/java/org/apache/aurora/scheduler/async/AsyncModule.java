@@ -15,8 +15,8 @@ package org.apache.aurora.scheduler.async;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
+import java.util.List;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 import javax.inject.Inject;
@@ -24,15 +24,18 @@ import javax.inject.Qualifier;
 import javax.inject.Singleton;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.inject.AbstractModule;
 import com.google.inject.PrivateModule;
+import com.google.inject.TypeLiteral;
 
 import org.apache.aurora.common.args.Arg;
 import org.apache.aurora.common.args.CmdLine;
+import org.apache.aurora.common.args.constraints.Positive;
 import org.apache.aurora.common.stats.StatsProvider;
 import org.apache.aurora.scheduler.SchedulerServicesModule;
-import org.apache.aurora.scheduler.base.AsyncUtil;
+import org.apache.aurora.scheduler.async.GatedWorkQueue.GatedOperation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +47,11 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * Binding module for async task management.
+ * <p>
+ * Async work is split into lanes, each with its own threads, so that a backlog of one kind of work
+ * (such as offer returns) does not delay another (such as task scheduling).  The gates of all
+ * lanes are closed together by the {@link GatedWorkQueue}, so work submitted to any lane during a
+ * storage transaction does not run until the transaction completes.
  */
 public class AsyncModule extends AbstractModule {
   private static final Logger LOG = LoggerFactory.getLogger(AsyncModule.class);
@@ -51,21 +59,100 @@ public class AsyncModule extends AbstractModule {
   @CmdLine(name = "async_worker_threads",
       help = "The number of worker threads to process async task operations with.")
   private static final Arg<Integer> ASYNC_WORKER_THREADS = Arg.create(8);
-  private final ScheduledThreadPoolExecutor afterTransaction;
 
+  @Positive
+  @CmdLine(name = "async_offer_threads",
+      help = "The number of threads to process async offer operations, such as returning offers, "
+          + "with.")
+  private static final Arg<Integer> ASYNC_OFFER_THREADS = Arg.create(2);
+
+  @Positive
+  @CmdLine(name = "async_scheduling_threads",
+      help = "The number of threads to process async task scheduling operations with.")
+  private static final Arg<Integer> ASYNC_SCHEDULING_THREADS = Arg.create(2);
+
+  @Positive
+  @CmdLine(name = "async_reconciliation_threads",
+      help = "The number of threads to process async task kill retries and timeouts with.")
+  private static final Arg<Integer> ASYNC_RECONCILIATION_THREADS = Arg.create(2);
+
+  @VisibleForTesting
+  static final String GENERAL_LANE = "general";
+
+  @VisibleForTesting
+  static final String OFFER_LANE = "offers";
+
+  @VisibleForTesting
+  static final String SCHEDULING_LANE = "scheduling";
+
+  @VisibleForTesting
+  static final String RECONCILIATION_LANE = "reconciliation";
+
+  private final ImmutableList<ExecutorLane> lanes;
+
+  /**
+   * Binding annotation for the lane of general async work, such as event delivery.
+   */
   @Qualifier
   @Target({ FIELD, PARAMETER, METHOD }) @Retention(RUNTIME)
   public @interface AsyncExecutor { }
 
+  /**
+   * Binding annotation for the lane of async offer operations.
+   */
+  @Qualifier
+  @Target({ FIELD, PARAMETER, METHOD }) @Retention(RUNTIME)
+  public @interface OfferExecutor { }
+
+  /**
+   * Binding annotation for the lane of async task scheduling operations.
+   */
+  @Qualifier
+  @Target({ FIELD, PARAMETER, METHOD }) @Retention(RUNTIME)
+  public @interface SchedulingExecutor { }
+
+  /**
+   * Binding annotation for the lane of async task reconciliation operations, such as kill retries
+   * and timeouts.
+   */
+  @Qualifier
+  @Target({ FIELD, PARAMETER, METHOD }) @Retention(RUNTIME)
+  public @interface ReconciliationExecutor { }
+
   public AsyncModule() {
     // Don't worry about clean shutdown, these can be daemon and cleanup-free.
     // TODO(wfarner): Should we use a bounded caching thread pool executor instead?
-    this(AsyncUtil.loggingScheduledExecutor(ASYNC_WORKER_THREADS.get(), "AsyncProcessor-%d", LOG));
+    this(ImmutableList.of(
+        ExecutorLane.create(GENERAL_LANE, AsyncExecutor.class, ASYNC_WORKER_THREADS.get(), LOG),
+        ExecutorLane.create(OFFER_LANE, OfferExecutor.class, ASYNC_OFFER_THREADS.get(), LOG),
+        ExecutorLane.create(
+            SCHEDULING_LANE,
+            SchedulingExecutor.class,
+            ASYNC_SCHEDULING_THREADS.get(),
+            LOG),
+        ExecutorLane.create(
+            RECONCILIATION_LANE,
+            ReconciliationExecutor.class,
+            ASYNC_RECONCILIATION_THREADS.get(),
+            LOG)));
   }
 
+  /**
+   * Creates a module where all lanes share a single executor.
+   *
+   * @param executor Executor for all async work.
+   */
   @VisibleForTesting
   public AsyncModule(ScheduledThreadPoolExecutor executor) {
-    this.afterTransaction = requireNonNull(executor);
+    this(ImmutableList.of(
+        new ExecutorLane(GENERAL_LANE, AsyncExecutor.class, executor),
+        new ExecutorLane(OFFER_LANE, OfferExecutor.class, executor),
+        new ExecutorLane(SCHEDULING_LANE, SchedulingExecutor.class, executor),
+        new ExecutorLane(RECONCILIATION_LANE, ReconciliationExecutor.class, executor)));
+  }
+
+  private AsyncModule(ImmutableList<ExecutorLane> lanes) {
+    this.lanes = requireNonNull(lanes);
   }
 
   @Override
@@ -73,11 +160,7 @@ public class AsyncModule extends AbstractModule {
     install(new PrivateModule() {
       @Override
       protected void configure() {
-        bind(ScheduledThreadPoolExecutor.class).toInstance(afterTransaction);
-        bind(ScheduledExecutorService.class).toInstance(afterTransaction);
-
-        bind(GatingDelayExecutor.class).in(Singleton.class);
-        expose(GatingDelayExecutor.class);
+        bind(new TypeLiteral<List<ExecutorLane>>() { }).toInstance(lanes);
 
         bind(RegisterGauges.class).in(Singleton.class);
         expose(RegisterGauges.class);
@@ -85,9 +168,27 @@ public class AsyncModule extends AbstractModule {
     });
     SchedulerServicesModule.addAppStartupServiceBinding(binder()).to(RegisterGauges.class);
 
-    bind(Executor.class).annotatedWith(AsyncExecutor.class).to(GatingDelayExecutor.class);
-    bind(DelayExecutor.class).annotatedWith(AsyncExecutor.class).to(GatingDelayExecutor.class);
-    bind(GatedWorkQueue.class).annotatedWith(AsyncExecutor.class).to(GatingDelayExecutor.class);
+    for (ExecutorLane lane : lanes) {
+      bind(Executor.class).annotatedWith(lane.getBindingAnnotation())
+          .toInstance(lane.getGatingExecutor());
+      bind(DelayExecutor.class).annotatedWith(lane.getBindingAnnotation())
+          .toInstance(lane.getGatingExecutor());
+    }
+    bind(GatedWorkQueue.class).annotatedWith(AsyncExecutor.class).toInstance(new GatedWorkQueue() {
+      @Override
+      public <T, E extends Exception> T closeDuring(GatedOperation<T, E> operation) throws E {
+        return closeLanes(0, operation);
+      }
+    });
+  }
+
+  private <T, E extends Exception> T closeLanes(int lane, GatedOperation<T, E> operation)
+      throws E {
+
+    if (lane == lanes.size()) {
+      return operation.doWithGateClosed();
+    }
+    return lanes.get(lane).getGatingExecutor().closeDuring(() -> closeLanes(lane + 1, operation));
   }
 
   static class RegisterGauges extends AbstractIdleService {
@@ -100,28 +201,61 @@ public class AsyncModule extends AbstractModule {
     @VisibleForTesting
     static final String DELAY_QUEUE_GAUGE = "delay_executor_queue_size";
 
+    @VisibleForTesting
+    static final String QUEUE_SIZE = "queue_size";
+
+    @VisibleForTesting
+    static final String GATED_QUEUE_SIZE = "gated_queue_size";
+
+    @VisibleForTesting
+    static final String TASKS_COMPLETED = "tasks_completed";
+
+    @VisibleForTesting
+    static final String ACTIVE_THREADS = "active_threads";
+
+    @VisibleForTesting
+    static final String SATURATION_PERCENT = "saturation_percent";
+
     private final StatsProvider statsProvider;
-    private final ScheduledThreadPoolExecutor executor;
-    private final GatingDelayExecutor delayExecutor;
+    private final List<ExecutorLane> lanes;
 
     @Inject
-    RegisterGauges(
-        StatsProvider statsProvider,
-        ScheduledThreadPoolExecutor executor,
-        GatingDelayExecutor delayExecutor) {
-
+    RegisterGauges(StatsProvider statsProvider, List<ExecutorLane> lanes) {
       this.statsProvider = requireNonNull(statsProvider);
-      this.executor = requireNonNull(executor);
-      this.delayExecutor = requireNonNull(delayExecutor);
+      this.lanes = requireNonNull(lanes);
     }
 
     @Override
     protected void startUp() {
-      statsProvider.makeGauge(TIMEOUT_QUEUE_GAUGE, () -> executor.getQueue().size());
-      statsProvider.makeGauge(ASYNC_TASKS_GAUGE, executor::getCompletedTaskCount);
-      // Using a lambda rather than method ref to sidestep a bug in PMD that makes it think
-      // delayExecutor is unused.
-      statsProvider.makeGauge(DELAY_QUEUE_GAUGE, delayExecutor::getQueueSize);
+      for (ExecutorLane lane : lanes) {
+        ScheduledThreadPoolExecutor executor = lane.getExecutor();
+        GatingDelayExecutor delayExecutor = lane.getGatingExecutor();
+        if (lane.getName().equals(GENERAL_LANE)) {
+          // Retained from before async work was split into lanes.
+          statsProvider.makeGauge(TIMEOUT_QUEUE_GAUGE, () -> executor.getQueue().size());
+          statsProvider.makeGauge(ASYNC_TASKS_GAUGE, executor::getCompletedTaskCount);
+          // Using a lambda rather than method ref to sidestep a bug in PMD that makes it think
+          // delayExecutor is unused.
+          statsProvider.makeGauge(DELAY_QUEUE_GAUGE, delayExecutor::getQueueSize);
+        }
+
+        String name = lane.getName();
+        statsProvider.makeGauge(
+            ExecutorLane.statName(name, QUEUE_SIZE),
+            () -> executor.getQueue().size());
+        statsProvider.makeGauge(
+            ExecutorLane.statName(name, GATED_QUEUE_SIZE),
+            delayExecutor::getQueueSize);
+        statsProvider.makeGauge(
+            ExecutorLane.statName(name, TASKS_COMPLETED),
+            executor::getCompletedTaskCount);
+        statsProvider.makeGauge(
+            ExecutorLane.statName(name, ACTIVE_THREADS),
+            executor::getActiveCount);
+        statsProvider.makeGauge(
+            ExecutorLane.statName(name, SATURATION_PERCENT),
+            () -> executor.getActiveCount() * 100 / Math.max(1, executor.getCorePoolSize()));
+      }
     }
 
     @Override
@@ -0,0 +1,92 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.async;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import org.apache.aurora.common.stats.SlidingStats;
+import org.apache.aurora.scheduler.base.AsyncUtil;
+import org.slf4j.Logger;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A lane of async work, with its own threads and gate.  Work in one lane is not delayed by a
+ * backlog of work in another lane.
+ */
+class ExecutorLane {
+  private final String name;
+  private final Class<? extends Annotation> bindingAnnotation;
+  private final ScheduledThreadPoolExecutor executor;
+  private final GatingDelayExecutor gatingExecutor;
+
+  ExecutorLane(
+      String name,
+      Class<? extends Annotation> bindingAnnotation,
+      ScheduledThreadPoolExecutor executor) {
+
+    this.name = requireNonNull(name);
+    this.bindingAnnotation = requireNonNull(bindingAnnotation);
+    this.executor = requireNonNull(executor);
+    this.gatingExecutor = new GatingDelayExecutor(executor);
+  }
+
+  /**
+   * Creates a lane with a new thread pool, which records how long work waits for a thread in the
+   * {@code async_<name>_task_start_delay} stats.
+   *
+   * @param name Name of the lane.
+   * @param bindingAnnotation Annotation that the lane's executors are bound with.
+   * @param threads Number of threads in the lane.
+   * @param logger Logger for unhandled errors.
+   * @return A new lane.
+   */
+  static ExecutorLane create(
+      String name,
+      Class<? extends Annotation> bindingAnnotation,
+      int threads,
+      Logger logger) {
+
+    SlidingStats startDelay = new SlidingStats(statName(name, "task_start_delay"), "nanos");
+    return new ExecutorLane(
+        name,
+        bindingAnnotation,
+        AsyncUtil.loggingScheduledExecutor(
+            threads,
+            "Async-" + name + "-%d",
+            logger,
+            startDelay::accumulate));
+  }
+
+  static String statName(String lane, String stat) {
+    return "async_" + lane + "_" + stat;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  Class<? extends Annotation> getBindingAnnotation() {
+    return bindingAnnotation;
+  }
+
+  ScheduledThreadPoolExecutor getExecutor() {
+    return executor;
+  }
+
+  GatingDelayExecutor getGatingExecutor() {
+    return gatingExecutor;
+  }
+}
@@ -14,12 +14,14 @@
 package org.apache.aurora.scheduler.base;
 
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
@@ -54,11 +56,41 @@ public final class AsyncUtil {
       String nameFormat,
       final Logger logger) {
 
+    return loggingScheduledExecutor(poolSize, nameFormat, logger, startDelayNanos -> { });
+  }
+
+  /**
+   * Creates a {@link ScheduledThreadPoolExecutor} that logs unhandled errors, and reports how long
+   * work waits for a thread once it is due.
+   *
+   * @param poolSize Thread pool size.
+   * @param nameFormat Thread naming format.
+   * @param logger Logger instance.
+   * @param startDelay Receives the time in nanoseconds from when work was due until it started.
+   * @return instance of {@link ScheduledThreadPoolExecutor} enabled to log unhandled exceptions.
+   */
+  public static ScheduledThreadPoolExecutor loggingScheduledExecutor(
+      int poolSize,
+      String nameFormat,
+      final Logger logger,
+      final LongConsumer startDelay) {
+
     requireNonNull(nameFormat);
+    requireNonNull(startDelay);
 
     return new ScheduledThreadPoolExecutor(
         poolSize,
         new ThreadFactoryBuilder().setDaemon(true).setNameFormat(nameFormat).build()) {
+          @Override
+          protected void beforeExecute(Thread thread, Runnable runnable) {
+            super.beforeExecute(thread, runnable);
+            // Work is wrapped in a Delayed task, whose delay is negative once it is overdue.
+            if (runnable instanceof Delayed) {
+              startDelay.accept(
+                  Math.max(0L, -((Delayed) runnable).getDelay(TimeUnit.NANOSECONDS)));
+            }
+          }
+
           @Override
           protected void afterExecute(Runnable runnable, Throwable throwable) {
             super.afterExecute(runnable, throwable);
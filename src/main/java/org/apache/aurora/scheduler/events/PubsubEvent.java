@@ -21,11 +21,13 @@ import com.google.common.base.Optional;
 import com.google.gson.Gson;
 
 import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.scheduler.HostOffer;
 import org.apache.aurora.scheduler.base.TaskGroupKey;
 import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.filter.SchedulingFilter.Veto;
 import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
 import org.apache.mesos.Protos;
 import org.apache.mesos.Protos.TaskStatus;
 
@@ -202,6 +204,96 @@ public interface PubsubEvent {
     }
   }
 
+  /**
+   * Event sent when the configuration of a task is rewritten in place.
+   */
+  class TaskConfigRewritten implements PubsubEvent {
+    private final String taskId;
+    private final ITaskConfig previousConfig;
+    private final ITaskConfig config;
+
+    public TaskConfigRewritten(String taskId, ITaskConfig previousConfig, ITaskConfig config) {
+      this.taskId = requireNonNull(taskId);
+      this.previousConfig = requireNonNull(previousConfig);
+      this.config = requireNonNull(config);
+    }
+
+    public String getTaskId() {
+      return taskId;
+    }
+
+    public ITaskConfig getPreviousConfig() {
+      return previousConfig;
+    }
+
+    public ITaskConfig getConfig() {
+      return config;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(taskId, previousConfig, config);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof TaskConfigRewritten)) {
+        return false;
+      }
+
+      TaskConfigRewritten other = (TaskConfigRewritten) o;
+      return Objects.equals(taskId, other.taskId)
+          && Objects.equals(previousConfig, other.previousConfig)
+          && Objects.equals(config, other.config);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("taskId", taskId)
+          .add("previousConfig", previousConfig)
+          .add("config", config)
+          .toString();
+    }
+  }
+
+  /**
+   * Event sent when a resource offer is added to the offers available for scheduling.
+   */
+  class OfferAdded implements PubsubEvent {
+    private final HostOffer offer;
+
+    public OfferAdded(HostOffer offer) {
+      this.offer = requireNonNull(offer);
+    }
+
+    public HostOffer getOffer() {
+      return offer;
+    }
+
+    @Override
+    public int hashCode() {
+      return offer.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof OfferAdded)) {
+        return false;
+      }
+
+      OfferAdded other = (OfferAdded) o;
+      return Objects.equals(offer, other.getOffer());
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("offer", getOffer())
+          .toString();
+    }
+  }
+
   /**
    * Event sent when a scheduling assignment was vetoed.
    */
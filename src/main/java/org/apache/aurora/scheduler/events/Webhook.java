@@ -13,43 +13,161 @@
  */
 package org.apache.aurora.scheduler.events;
 
-import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.eventbus.Subscribe;
-
+import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.inject.Inject;
 
+import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Time;
+import org.apache.aurora.common.stats.SlidingStats;
+import org.apache.aurora.common.stats.Stats;
+import org.apache.aurora.common.util.BackoffStrategy;
+import org.apache.aurora.common.util.Clock;
+import org.apache.aurora.scheduler.base.AsyncUtil;
+import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.events.PubsubEvent.EventSubscriber;
 import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * Watches TaskStateChanges and send events to configured endpoint.
+ * <p>
+ * Events are handed off to a bounded queue and delivered by dedicated threads, so a slow or
+ * unavailable endpoint never blocks the event bus.  When batching is enabled, multiple events are
+ * sent as a single JSON array.
  */
-public class Webhook implements EventSubscriber {
+public class Webhook extends AbstractIdleService implements EventSubscriber {
 
   private static final Logger LOG = LoggerFactory.getLogger(Webhook.class);
 
   private static final String CALL_METHOD = "POST";
+
+  /**
+   * Action to take when a task state change arrives while the delivery queue is full.
+   */
+  public enum QueueFullPolicy {
+    /**
+     * Discard the newly-arrived event.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Discard the oldest queued event to make room for the newly-arrived event.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Replace a queued event for the same task with the newly-arrived event, discarding the
+     * newly-arrived event if no such event is queued.
+     */
+    COALESCE
+  }
+
+  /**
+   * Settings for the webhook delivery pipeline.
+   */
+  public static class WebhookSettings {
+    private final int queueCapacity;
+    private final int deliveryThreads;
+    private final int maxBatchSize;
+    private final Amount<Long, Time> batchWindow;
+    private final int maxRetries;
+    private final BackoffStrategy retryBackoff;
+    private final QueueFullPolicy queueFullPolicy;
+
+    public WebhookSettings(
+        int queueCapacity,
+        int deliveryThreads,
+        int maxBatchSize,
+        Amount<Long, Time> batchWindow,
+        int maxRetries,
+        BackoffStrategy retryBackoff,
+        QueueFullPolicy queueFullPolicy) {
+
+      Preconditions.checkArgument(queueCapacity > 0);
+      Preconditions.checkArgument(deliveryThreads > 0);
+      Preconditions.checkArgument(maxBatchSize > 0);
+      Preconditions.checkArgument(maxRetries >= 0);
+      this.queueCapacity = queueCapacity;
+      this.deliveryThreads = deliveryThreads;
+      this.maxBatchSize = maxBatchSize;
+      this.batchWindow = requireNonNull(batchWindow);
+      this.maxRetries = maxRetries;
+      this.retryBackoff = requireNonNull(retryBackoff);
+      this.queueFullPolicy = requireNonNull(queueFullPolicy);
+    }
+  }
+
   private final WebhookInfo webhookInfo;
+  private final WebhookSettings settings;
+  private final Clock clock;
+  private final BlockingDeque<TaskStateChange> pendingEvents;
+
+  private final AtomicLong eventsDelivered = Stats.exportLong("webhook_events_delivered");
+  private final AtomicLong eventsDropped = Stats.exportLong("webhook_events_dropped");
+  private final AtomicLong eventsCoalesced = Stats.exportLong("webhook_events_coalesced");
+  private final AtomicLong deliveryErrors = Stats.exportLong("webhook_delivery_errors");
+  private final SlidingStats deliveryLatency = new SlidingStats("webhook_delivery", "ms");
+
+  private ExecutorService deliveryExecutor;
 
   @Inject
-  Webhook(WebhookInfo webhookInfo) {
-    this.webhookInfo = webhookInfo;
+  Webhook(WebhookInfo webhookInfo, WebhookSettings settings, Clock clock) {
+    this.webhookInfo = requireNonNull(webhookInfo);
+    this.settings = requireNonNull(settings);
+    this.clock = requireNonNull(clock);
+    this.pendingEvents = new LinkedBlockingDeque<>(settings.queueCapacity);
+    Stats.exportSize("webhook_queue_size", pendingEvents);
     LOG.debug("Webhook enabled with info" + this.webhookInfo);
   }
 
+  @Override
+  protected void startUp() {
+    deliveryExecutor = AsyncUtil.loggingExecutor(
+        settings.deliveryThreads,
+        settings.deliveryThreads,
+        new LinkedBlockingDeque<>(),
+        "Webhook-%d",
+        LOG);
+    for (int i = 0; i < settings.deliveryThreads; i++) {
+      deliveryExecutor.execute(this::deliverEvents);
+    }
+  }
+
+  @Override
+  protected void shutDown() {
+    // Delivery threads block waiting for events, so they must be interrupted to exit.
+    deliveryExecutor.shutdownNow();
+  }
+
   private HttpURLConnection initializeConnection() {
     try {
       final HttpURLConnection connection = (HttpURLConnection) new URL(
           this.webhookInfo.getTargetURL()).openConnection();
       connection.setRequestMethod(CALL_METHOD);
       connection.setConnectTimeout(this.webhookInfo.getConnectonTimeout());
+      connection.setReadTimeout(this.webhookInfo.getConnectonTimeout());
 
       webhookInfo.getHeaders().entrySet().forEach(
           e -> connection.setRequestProperty(e.getKey(), e.getValue()));
@@ -64,39 +182,60 @@ public class Webhook implements EventSubscriber {
   }
 
   /**
-   * Calls a specified endpoint with the provided string representing an internal event.
+   * Calls a specified endpoint with the provided string representing internal events.
+   * <p>
+   * The response is always consumed in full and the connection is never explicitly disconnected,
+   * which allows the underlying socket to be kept alive and reused for subsequent calls.
    *
-   * @param eventJson String represenation of task state change.
+   * @param eventJson String represenation of one or more task state changes.
+   * @return {@code true} if the endpoint acknowledged the call with a successful response code.
    */
-  public void callEndpoint(String eventJson) {
+  public boolean callEndpoint(String eventJson) {
     HttpURLConnection connection = this.initializeConnection();
     if (connection == null) {
       LOG.error("Received a null object when trying to initialize an HTTP connection");
-    } else {
-      try {
-        try (DataOutputStream wr = new DataOutputStream(connection.getOutputStream())) {
-          wr.writeBytes(eventJson);
-          LOG.debug("Sending message " + eventJson
-              + " with connection info " + connection.toString()
-              + " with WebhookInfo " + this.webhookInfo.toString());
-        } catch (Exception e) {
-          InputStream errorStream = connection.getErrorStream();
-          if (errorStream != null) {
-            errorStream.close();
-          }
-          LOG.error("Exception writing via HTTP connection", e);
+      return false;
+    }
+
+    byte[] payload = eventJson.getBytes(StandardCharsets.UTF_8);
+    connection.setFixedLengthStreamingMode(payload.length);
+    try {
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(payload);
+        LOG.debug("Sending message " + eventJson
+            + " with connection info " + connection.toString()
+            + " with WebhookInfo " + this.webhookInfo.toString());
+      }
+
+      int responseCode = connection.getResponseCode();
+      drain(responseCode < HttpURLConnection.HTTP_BAD_REQUEST
+          ? connection.getInputStream()
+          : connection.getErrorStream());
+      LOG.debug("Done with Webhook call");
+      return responseCode >= HttpURLConnection.HTTP_OK
+          && responseCode < HttpURLConnection.HTTP_MULT_CHOICE;
+    } catch (Exception e) {
+      // Do nothing since we are just doing best-effort here.
+      LOG.error("Exception when sending a task change event", e);
+      return false;
+    }
+  }
+
+  private static void drain(InputStream response) throws IOException {
+    if (response != null) {
+      try (InputStream in = response) {
+        byte[] buffer = new byte[1024];
+        while (in.read(buffer) != -1) {
+          // Discard, we only read the response to allow connection reuse.
         }
-        // Don't care about reading input so just performing basic close() operation.
-        connection.getInputStream().close();
-      } catch (Exception e) {
-        LOG.error("Exception when sending a task change event", e);
       }
     }
-    LOG.debug("Done with Webhook call");
   }
 
   /**
-   * Watches all TaskStateChanges and send them best effort to a configured endpoint.
+   * Watches all TaskStateChanges and queues them for best effort delivery to a configured
+   * endpoint.  This never blocks; if the delivery queue is full the configured
+   * {@link QueueFullPolicy} is applied.
    * <p>
    * This is used to expose an external event bus.
    *
@@ -104,7 +243,149 @@ public class Webhook implements EventSubscriber {
    */
   @Subscribe
   public void taskChangedState(TaskStateChange stateChange) {
-    String eventJson = stateChange.toJson();
-    callEndpoint(eventJson);
+    if (pendingEvents.offerLast(stateChange)) {
+      return;
+    }
+
+    synchronized (pendingEvents) {
+      switch (settings.queueFullPolicy) {
+        case DROP_OLDEST:
+          if (pendingEvents.pollFirst() != null) {
+            eventsDropped.incrementAndGet();
+          }
+          if (!pendingEvents.offerLast(stateChange)) {
+            eventsDropped.incrementAndGet();
+          }
+          break;
+
+        case COALESCE:
+          String taskId = Tasks.id(stateChange.getTask());
+          TaskStateChange queued = Iterables.find(
+              pendingEvents,
+              event -> Tasks.id(event.getTask()).equals(taskId),
+              null);
+          if (queued != null
+              && pendingEvents.removeFirstOccurrence(queued)
+              && pendingEvents.offerLast(stateChange)) {
+
+            eventsCoalesced.incrementAndGet();
+          } else {
+            eventsDropped.incrementAndGet();
+          }
+          break;
+
+        default:
+          eventsDropped.incrementAndGet();
+          break;
+      }
+    }
+  }
+
+  private void deliverEvents() {
+    while (!Thread.currentThread().isInterrupted()) {
+      List<TaskStateChange> batch;
+      try {
+        batch = nextBatch();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+
+      try {
+        deliver(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (RuntimeException e) {
+        // Keep the delivery thread alive, otherwise events would silently pile up in the queue.
+        LOG.error("Failed to deliver " + batch.size() + " events", e);
+        deliveryErrors.incrementAndGet();
+        eventsDropped.addAndGet(batch.size());
+      }
+    }
+  }
+
+  /**
+   * Waits for a queued event, and collects up to the maximum batch size of events that arrive
+   * within the batch window.
+   *
+   * @return A non-empty batch of events.
+   * @throws InterruptedException If interrupted while waiting for the first event.
+   */
+  @VisibleForTesting
+  List<TaskStateChange> nextBatch() throws InterruptedException {
+    List<TaskStateChange> batch = Lists.newArrayList(pendingEvents.takeFirst());
+    long deadlineNanos = clock.nowNanos() + settings.batchWindow.as(Time.NANOSECONDS);
+    while (batch.size() < settings.maxBatchSize) {
+      pendingEvents.drainTo(batch, settings.maxBatchSize - batch.size());
+      long remainingNanos = deadlineNanos - clock.nowNanos();
+      if (batch.size() >= settings.maxBatchSize || remainingNanos <= 0) {
+        break;
+      }
+
+      TaskStateChange next;
+      try {
+        next = pendingEvents.pollFirst(remainingNanos, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        // Deliver what we already have before exiting.
+        Thread.currentThread().interrupt();
+        break;
+      }
+      if (next == null) {
+        break;
+      }
+      batch.add(next);
+    }
+    return batch;
+  }
+
+  /**
+   * Delivers a batch of events, retrying with backoff on failure.
+   *
+   * @param batch Events to deliver.
+   * @return {@code true} if the events were delivered.
+   * @throws InterruptedException If interrupted while backing off between attempts.
+   */
+  @VisibleForTesting
+  boolean deliver(List<TaskStateChange> batch) throws InterruptedException {
+    String payload = settings.maxBatchSize == 1
+        ? Iterables.getOnlyElement(batch).toJson()
+        : toJsonArray(batch);
+
+    long startMs = clock.nowMillis();
+    long backoffMs = 0;
+    for (int attempt = 0; attempt <= settings.maxRetries; attempt++) {
+      if (attempt > 0) {
+        backoffMs = settings.retryBackoff.calculateBackoffMs(backoffMs);
+        clock.waitFor(backoffMs);
+      }
+
+      if (callEndpoint(payload)) {
+        deliveryLatency.accumulate(clock.nowMillis() - startMs);
+        eventsDelivered.addAndGet(batch.size());
+        return true;
+      }
+    }
+
+    LOG.warn("Giving up delivery of " + batch.size() + " events after "
+        + (settings.maxRetries + 1) + " attempts.");
+    deliveryErrors.incrementAndGet();
+    eventsDropped.addAndGet(batch.size());
+    return false;
+  }
+
+  private static String toJsonArray(List<TaskStateChange> batch) {
+    StringBuilder json = new StringBuilder("[");
+    for (TaskStateChange event : batch) {
+      if (json.length() > 1) {
+        json.append(',');
+      }
+      json.append(event.toJson());
+    }
+    return json.append(']').toString();
+  }
+
+  @VisibleForTesting
+  int getQueueSize() {
+    return pendingEvents.size();
   }
 }
@@ -30,6 +30,14 @@ import org.apache.aurora.common.args.Arg;
 import org.apache.aurora.common.args.CmdLine;
 import org.apache.aurora.common.args.constraints.CanRead;
 import org.apache.aurora.common.args.constraints.Exists;
+import org.apache.aurora.common.args.constraints.NotNegative;
+import org.apache.aurora.common.args.constraints.Positive;
+import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Time;
+import org.apache.aurora.common.util.TruncatedBinaryBackoff;
+import org.apache.aurora.scheduler.SchedulerServicesModule;
+import org.apache.aurora.scheduler.events.Webhook.QueueFullPolicy;
+import org.apache.aurora.scheduler.events.Webhook.WebhookSettings;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,6 +59,49 @@ public class WebhookModule extends AbstractModule {
   @CanRead
   private static final Arg<File> WEBHOOK_CONFIG_FILE = Arg.create();
 
+  @Positive
+  @CmdLine(name = "webhook_queue_capacity",
+      help = "Maximum number of task state changes queued for delivery to the webhook.")
+  private static final Arg<Integer> QUEUE_CAPACITY = Arg.create(10000);
+
+  @CmdLine(name = "webhook_queue_full_policy",
+      help = "Action taken on a new task state change when the webhook queue is full.")
+  private static final Arg<QueueFullPolicy> QUEUE_FULL_POLICY =
+      Arg.create(QueueFullPolicy.DROP_NEWEST);
+
+  @Positive
+  @CmdLine(name = "webhook_delivery_threads",
+      help = "Number of threads delivering task state changes to the webhook. Events are only "
+          + "guaranteed to be delivered in order with a single thread.")
+  private static final Arg<Integer> DELIVERY_THREADS = Arg.create(1);
+
+  @Positive
+  @CmdLine(name = "webhook_max_batch_size",
+      help = "Maximum number of task state changes sent in a single webhook call. When greater "
+          + "than 1, events are sent as a JSON array.")
+  private static final Arg<Integer> MAX_BATCH_SIZE = Arg.create(1);
+
+  @CmdLine(name = "webhook_batch_window",
+      help = "Maximum amount of time to wait for more task state changes to fill a webhook batch.")
+  private static final Arg<Amount<Long, Time>> BATCH_WINDOW =
+      Arg.create(Amount.of(100L, Time.MILLISECONDS));
+
+  @NotNegative
+  @CmdLine(name = "webhook_max_retries",
+      help = "Maximum number of times a failed webhook call is retried before its events are "
+          + "dropped.")
+  private static final Arg<Integer> MAX_RETRIES = Arg.create(3);
+
+  @CmdLine(name = "webhook_initial_retry_backoff",
+      help = "Initial amount of time to wait before retrying a failed webhook call.")
+  private static final Arg<Amount<Long, Time>> INITIAL_RETRY_BACKOFF =
+      Arg.create(Amount.of(100L, Time.MILLISECONDS));
+
+  @CmdLine(name = "webhook_max_retry_backoff",
+      help = "Maximum amount of time to wait before retrying a failed webhook call.")
+  private static final Arg<Amount<Long, Time>> MAX_RETRY_BACKOFF =
+      Arg.create(Amount.of(5L, Time.SECONDS));
+
   private final boolean enableWebhook;
 
   public WebhookModule() {
@@ -66,8 +117,17 @@ public class WebhookModule extends AbstractModule {
   protected void configure() {
     if (enableWebhook) {
       bind(WebhookInfo.class).toInstance(parseWebhookConfig(readWebhookFile()));
+      bind(WebhookSettings.class).toInstance(new WebhookSettings(
+          QUEUE_CAPACITY.get(),
+          DELIVERY_THREADS.get(),
+          MAX_BATCH_SIZE.get(),
+          BATCH_WINDOW.get(),
+          MAX_RETRIES.get(),
+          new TruncatedBinaryBackoff(INITIAL_RETRY_BACKOFF.get(), MAX_RETRY_BACKOFF.get()),
+          QUEUE_FULL_POLICY.get()));
       PubsubEventModule.bindSubscriber(binder(), Webhook.class);
       bind(Webhook.class).in(Singleton.class);
+      SchedulerServicesModule.addSchedulerActiveServiceBinding(binder()).to(Webhook.class);
     }
   }
 
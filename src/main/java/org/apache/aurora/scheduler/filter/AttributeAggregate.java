@@ -18,6 +18,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.FluentIterable;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableMultiset;
 import com.google.common.collect.Multiset;
 
@@ -27,11 +28,14 @@ import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.storage.AttributeStore;
 import org.apache.aurora.scheduler.storage.Storage.StoreProvider;
 import org.apache.aurora.scheduler.storage.entities.IAttribute;
+import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
 import org.apache.aurora.scheduler.storage.entities.IJobKey;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 
 import static java.util.Objects.requireNonNull;
 
+import static com.google.common.base.Preconditions.checkState;
+
 /**
  * A temporary view of a job's state. Once constructed, instances of this class should be discarded
  * once the job state may change (e.g. after exiting a write transaction). This is intended to
@@ -48,6 +52,12 @@ public final class AttributeAggregate {
    */
   private final Supplier<Multiset<Pair<String, String>>> aggregate;
 
+  /**
+   * Attribute name/value combinations of hosts where tasks were placed after this aggregate was
+   * created.  Kept separately to avoid materializing (or copying) the wrapped aggregate.
+   */
+  private final Multiset<Pair<String, String>> additions = HashMultiset.create();
+
   private AttributeAggregate(Supplier<Multiset<Pair<String, String>>> aggregate) {
     this.aggregate = Suppliers.memoize(aggregate);
   }
@@ -108,6 +118,16 @@ public final class AttributeAggregate {
     return new AttributeAggregate(aggregator);
   }
 
+  /**
+   * Creates an {@link AttributeAggregate} backed by the given attribute counts.
+   *
+   * @param aggregate Counts of attribute name/value combinations.
+   * @return An {@link AttributeAggregate} instance.
+   */
+  static AttributeAggregate create(Multiset<Pair<String, String>> aggregate) {
+    return new AttributeAggregate(Suppliers.ofInstance(aggregate));
+  }
+
   @VisibleForTesting
   public static final AttributeAggregate EMPTY =
       new AttributeAggregate(Suppliers.ofInstance(ImmutableMultiset.of()));
@@ -130,12 +150,40 @@ public final class AttributeAggregate {
    * @return Number of tasks in the job whose hosts have the provided attribute name and value.
    */
   public long getNumTasksWithAttribute(String name, String value) {
-    return aggregate.get().count(Pair.of(name, value));
+    Pair<String, String> attribute = Pair.of(name, value);
+    return aggregate.get().count(attribute) + additions.count(attribute);
+  }
+
+  /**
+   * Accounts for a task of the job being placed on a host with the given attributes.  This allows
+   * a batch of tasks to be matched against the same aggregate within a single transaction, without
+   * re-reading the job state between assignments.
+   * <p>
+   * Note: this is not thread-safe, and is intended to be called only by the thread that owns the
+   * transaction in which this aggregate was created.
+   *
+   * @param attributes Attributes of the host where a task was placed.
+   */
+  public void updateAttributeAggregate(IHostAttributes attributes) {
+    checkState(this != EMPTY, "The empty aggregate may not be modified.");
+
+    for (IAttribute attribute : attributes.getAttributes()) {
+      for (String value : attribute.getValues()) {
+        additions.add(Pair.of(attribute.getName(), value));
+      }
+    }
   }
 
   @VisibleForTesting
   Multiset<Pair<String, String>> getAggregates() {
-    return aggregate.get();
+    if (additions.isEmpty()) {
+      return aggregate.get();
+    }
+
+    return ImmutableMultiset.<Pair<String, String>>builder()
+        .addAll(aggregate.get())
+        .addAll(additions)
+        .build();
   }
 
   @Override
@@ -0,0 +1,331 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.filter;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Qualifier;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import com.google.common.eventbus.Subscribe;
+
+import org.apache.aurora.common.collections.Pair;
+import org.apache.aurora.common.stats.Stats;
+import org.apache.aurora.scheduler.base.Query;
+import org.apache.aurora.scheduler.base.Tasks;
+import org.apache.aurora.scheduler.events.PubsubEvent.EventSubscriber;
+import org.apache.aurora.scheduler.events.PubsubEvent.HostAttributesChanged;
+import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
+import org.apache.aurora.scheduler.events.PubsubEvent.TasksDeleted;
+import org.apache.aurora.scheduler.storage.AttributeStore;
+import org.apache.aurora.scheduler.storage.Storage;
+import org.apache.aurora.scheduler.storage.Storage.StoreProvider;
+import org.apache.aurora.scheduler.storage.entities.IAttribute;
+import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static java.util.Objects.requireNonNull;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Maintains the {@link AttributeAggregate} of jobs, kept up to date by pubsub notifications, to
+ * avoid fetching all active tasks of a job on every scheduling attempt.
+ * <p>
+ * A job's aggregate is loaded from storage when first requested, and updated incrementally from
+ * then on.  Only the active tasks of cached jobs are tracked, and the least recently used jobs
+ * are evicted once more than a configured number of jobs are cached.
+ * <p>
+ * Notifications are delivered asynchronously and possibly out of order, so the current state of
+ * a task is read from storage when a notification for it arrives, and a task update is only
+ * applied if the task has more events than the last update seen for it.
+ * <p>
+ * Since notifications lag behind storage, callers placing tasks must also call
+ * {@link #update(StoreProvider, Set)} within the transaction that placed them, so that later
+ * scheduling attempts account for the placements right away.
+ */
+public class AttributeAggregateCache implements EventSubscriber {
+
+  /**
+   * Binding annotation for the maximum number of jobs to cache aggregates for.
+   */
+  @VisibleForTesting
+  @Qualifier
+  @Target({ FIELD, PARAMETER, METHOD }) @Retention(RUNTIME)
+  public @interface MaxCachedJobs { }
+
+  /**
+   * The last seen state of an active task of a cached job.
+   */
+  private static final class TaskEntry {
+    private final IJobKey job;
+    private final int version;
+    private final String host;
+    private final ImmutableList<Pair<String, String>> attributes;
+
+    TaskEntry(
+        IJobKey job,
+        int version,
+        String host,
+        ImmutableList<Pair<String, String>> attributes) {
+
+      this.job = job;
+      this.version = version;
+      this.host = host;
+      this.attributes = attributes;
+    }
+
+    TaskEntry withAttributes(ImmutableList<Pair<String, String>> newAttributes) {
+      return new TaskEntry(job, version, host, newAttributes);
+    }
+  }
+
+  private final Storage storage;
+  private final int maxCachedJobs;
+  private final boolean verifyConsistency;
+
+  // Guarded by 'this'.  Jobs are kept in access order, to evict the least recently used.
+  private final Map<IJobKey, Multiset<Pair<String, String>>> aggregates =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, TaskEntry> tasks = Maps.newHashMap();
+  private final SetMultimap<IJobKey, String> tasksByJob = HashMultimap.create();
+  private final SetMultimap<String, String> activeTasksByHost = HashMultimap.create();
+
+  private final AtomicLong loads = Stats.exportLong("attribute_aggregate_cache_loads");
+  private final AtomicLong evictions = Stats.exportLong("attribute_aggregate_cache_evictions");
+
+  @Inject
+  public AttributeAggregateCache(Storage storage, @MaxCachedJobs int maxCachedJobs) {
+    this(storage, maxCachedJobs, false);
+  }
+
+  /**
+   * Creates a cache that optionally verifies cached aggregates against storage every time they
+   * are requested.  This is expensive and assumes notifications are delivered synchronously, so it
+   * is only suitable for tests.
+   *
+   * @param storage Storage to resolve task placements with.
+   * @param maxCachedJobs Maximum number of jobs to cache aggregates for.
+   * @param verifyConsistency Whether to verify aggregates against storage.
+   */
+  @VisibleForTesting
+  public AttributeAggregateCache(Storage storage, int maxCachedJobs, boolean verifyConsistency) {
+    checkArgument(maxCachedJobs > 0);
+    this.storage = requireNonNull(storage);
+    this.maxCachedJobs = maxCachedJobs;
+    this.verifyConsistency = verifyConsistency;
+  }
+
+  private static ImmutableList<Pair<String, String>> toPairs(IHostAttributes attributes) {
+    ImmutableList.Builder<Pair<String, String>> pairs = ImmutableList.builder();
+    for (IAttribute attribute : attributes.getAttributes()) {
+      for (String value : attribute.getValues()) {
+        pairs.add(Pair.of(attribute.getName(), value));
+      }
+    }
+    return pairs.build();
+  }
+
+  /**
+   * Gets the aggregate of a job, loading it from storage if the job is not yet cached.
+   * <p>
+   * The returned aggregate is a snapshot, and does not reflect task placements observed after it
+   * was returned.
+   *
+   * @param storeProvider Store provider to load the job from.
+   * @param jobKey Job key.
+   * @return The aggregate of the job's active tasks.
+   */
+  public synchronized AttributeAggregate getAggregate(StoreProvider storeProvider, IJobKey jobKey) {
+    Multiset<Pair<String, String>> aggregate = aggregates.get(jobKey);
+    if (aggregate == null) {
+      loads.incrementAndGet();
+      aggregate = HashMultiset.create();
+      aggregates.put(jobKey, aggregate);
+      Query.Builder query = Query.jobScoped(jobKey).byStatus(Tasks.SLAVE_ASSIGNED_STATES);
+      for (IScheduledTask task : storeProvider.getTaskStore().fetchTasks(query)) {
+        apply(storeProvider.getAttributeStore(), task);
+      }
+      evictLeastRecentlyUsed();
+    } else if (verifyConsistency) {
+      Multiset<Pair<String, String>> expected =
+          AttributeAggregate.getJobActiveState(storeProvider, jobKey).getAggregates();
+      checkState(
+          expected.equals(ImmutableMultiset.copyOf(aggregate)),
+          "Cached aggregate for %s is %s, expected %s",
+          jobKey,
+          aggregate,
+          expected);
+    }
+
+    return AttributeAggregate.create(ImmutableMultiset.copyOf(aggregate));
+  }
+
+  private void evictLeastRecentlyUsed() {
+    Iterator<IJobKey> jobs = aggregates.keySet().iterator();
+    while (aggregates.size() > maxCachedJobs) {
+      IJobKey jobKey = jobs.next();
+      jobs.remove();
+      for (String taskId : ImmutableSet.copyOf(tasksByJob.get(jobKey))) {
+        remove(taskId, tasks.get(taskId));
+      }
+      evictions.incrementAndGet();
+    }
+  }
+
+  /**
+   * Updates cached aggregates with the current state of tasks in storage.  Should be called
+   * within the transaction that changed the tasks.
+   *
+   * @param storeProvider Store provider to read the tasks from.
+   * @param taskIds IDs of the tasks to update.
+   */
+  public synchronized void update(StoreProvider storeProvider, Set<String> taskIds) {
+    for (IScheduledTask task : storeProvider.getTaskStore().fetchTasks(Query.taskScoped(taskIds))) {
+      if (aggregates.containsKey(Tasks.getJob(task))) {
+        apply(storeProvider.getAttributeStore(), task);
+      }
+    }
+  }
+
+  private void apply(AttributeStore attributeStore, IScheduledTask task) {
+    String taskId = Tasks.id(task);
+    int version = task.getTaskEvents().size();
+    TaskEntry existing = tasks.get(taskId);
+    if (existing != null) {
+      if (existing.version >= version) {
+        // A newer (or the same) state of this task was applied already.
+        return;
+      }
+      remove(taskId, existing);
+    }
+
+    if (Tasks.SLAVE_ASSIGNED_STATES.contains(task.getStatus())) {
+      IJobKey jobKey = Tasks.getJob(task);
+      String host = requireNonNull(task.getAssignedTask().getSlaveHost());
+      ImmutableList<Pair<String, String>> attributes = attributeStore.getHostAttributes(host)
+          .transform(AttributeAggregateCache::toPairs)
+          .or(ImmutableList.of());
+      aggregates.get(jobKey).addAll(attributes);
+      tasks.put(taskId, new TaskEntry(jobKey, version, host, attributes));
+      tasksByJob.put(jobKey, taskId);
+      activeTasksByHost.put(host, taskId);
+    }
+  }
+
+  private void remove(String taskId, TaskEntry entry) {
+    Multiset<Pair<String, String>> aggregate = aggregates.get(entry.job);
+    if (aggregate != null) {
+      for (Pair<String, String> attribute : entry.attributes) {
+        aggregate.remove(attribute);
+      }
+    }
+    activeTasksByHost.remove(entry.host, taskId);
+    tasks.remove(taskId);
+    tasksByJob.remove(entry.job, taskId);
+  }
+
+  private synchronized boolean isCached(IJobKey jobKey) {
+    return aggregates.containsKey(jobKey);
+  }
+
+  @Subscribe
+  public void taskChangedState(TaskStateChange change) {
+    IJobKey jobKey = Tasks.getJob(change.getTask());
+    if (!isCached(jobKey)) {
+      // The job will be loaded from storage if it is ever requested.
+      return;
+    }
+
+    // The task and host attributes are read from storage while holding the lock, so that the
+    // task states applied to the cache never go back in time.  Locks are always acquired in the
+    // same order (storage, then this cache) as in the scheduling path to avoid deadlocks.
+    String taskId = Tasks.id(change.getTask());
+    storage.read(storeProvider -> {
+      synchronized (this) {
+        if (aggregates.containsKey(jobKey)) {
+          Optional<IScheduledTask> task = storeProvider.getTaskStore().fetchTask(taskId);
+          if (task.isPresent()) {
+            apply(storeProvider.getAttributeStore(), task.get());
+          } else {
+            removeIfPresent(taskId);
+          }
+        }
+      }
+      return null;
+    });
+  }
+
+  private void removeIfPresent(String taskId) {
+    TaskEntry entry = tasks.get(taskId);
+    if (entry != null) {
+      remove(taskId, entry);
+    }
+  }
+
+  @Subscribe
+  public synchronized void tasksDeleted(TasksDeleted deleted) {
+    Set<IJobKey> jobs = Sets.newHashSet();
+    for (IScheduledTask task : deleted.getTasks()) {
+      removeIfPresent(Tasks.id(task));
+      jobs.add(Tasks.getJob(task));
+    }
+
+    // Evict jobs without remaining active tasks, they will be loaded again if requested.
+    for (IJobKey jobKey : jobs) {
+      if (!tasksByJob.containsKey(jobKey)) {
+        aggregates.remove(jobKey);
+      }
+    }
+  }
+
+  @Subscribe
+  public synchronized void hostAttributesChanged(HostAttributesChanged change) {
+    ImmutableList<Pair<String, String>> attributes = toPairs(change.getAttributes());
+    for (String taskId : activeTasksByHost.get(change.getAttributes().getHost())) {
+      TaskEntry entry = tasks.get(taskId);
+      if (!entry.attributes.equals(attributes)) {
+        Multiset<Pair<String, String>> aggregate = aggregates.get(entry.job);
+        for (Pair<String, String> attribute : entry.attributes) {
+          aggregate.remove(attribute);
+        }
+        aggregate.addAll(attributes);
+        tasks.put(taskId, entry.withAttributes(attributes));
+      }
+    }
+  }
+}
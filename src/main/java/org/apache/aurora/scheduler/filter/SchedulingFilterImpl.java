@@ -66,9 +66,13 @@ public class SchedulingFilterImpl implements SchedulingFilter {
   }
 
   private static Set<Veto> getResourceVetoes(ResourceBag available, ResourceBag required) {
+    if (available.covers(required)) {
+      return ImmutableSet.of();
+    }
+
     ImmutableSet.Builder<Veto> vetoes = ImmutableSet.builder();
-    required.streamResourceVectors().forEach(
-        e -> maybeAddVeto(vetoes, e.getKey(), available.valueOf(e.getKey()), e.getValue()));
+    required.forEachVector(
+        (type, requested) -> maybeAddVeto(vetoes, type, available.getValue(type), requested));
     return vetoes.build();
   }
 
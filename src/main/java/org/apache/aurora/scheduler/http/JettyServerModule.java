@@ -232,6 +232,7 @@ public class JettyServerModule extends AbstractModule {
           .put(QuitHandler.class, "quitquitquit")
           .put(Quotas.class, "quotas")
           .put(Services.class, "services")
+          .put(StorageQueries.class, "storage/queries")
           .put(StructDump.class, "structdump")
           .put(ThreadStackPrinter.class, "threads")
           .put(Tiers.class, "tiers")
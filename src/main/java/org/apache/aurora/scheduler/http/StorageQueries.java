@@ -0,0 +1,50 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.http;
+
+import java.util.Objects;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.aurora.scheduler.storage.TaskQueryStats;
+
+/**
+ * Servlet that exposes the latency and selectivity of task store queries, grouped by query shape.
+ */
+@Path("/storage/queries")
+public class StorageQueries {
+
+  private final TaskQueryStats queryStats;
+
+  @Inject
+  StorageQueries(TaskQueryStats queryStats) {
+    this.queryStats = Objects.requireNonNull(queryStats);
+  }
+
+  /**
+   * Dumps the task query stats of this scheduler.
+   *
+   * @return HTTP response.
+   */
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getQueries() {
+    return Response.ok(queryStats.snapshot()).build();
+  }
+}
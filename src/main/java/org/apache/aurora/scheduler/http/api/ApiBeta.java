@@ -21,6 +21,7 @@ import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.ws.rs.GET;
@@ -34,7 +35,9 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.StreamingOutput;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -42,6 +45,7 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
 
 import org.apache.aurora.gen.AuroraAdmin.Iface;
+import org.apache.aurora.gen.TaskQuery;
 import org.apache.aurora.scheduler.storage.entities.AuroraAdminMetadata;
 import org.apache.aurora.scheduler.thrift.Responses;
 import org.apache.aurora.scheduler.thrift.aop.AnnotatedAuroraAdmin;
@@ -58,6 +62,15 @@ import static org.apache.aurora.scheduler.http.api.GsonMessageBodyHandler.GSON;
 public class ApiBeta {
   static final String PATH = "/apibeta";
 
+  /**
+   * Number of tasks to fetch at a time when streaming the result of a task query.
+   */
+  @VisibleForTesting
+  static final int TASK_PAGE_SIZE = 1000;
+
+  private static final Set<String> STREAMED_TASK_METHODS =
+      ImmutableSet.of("getTasksStatus", "getTasksWithoutConfigs");
+
   private static final Logger LOG = LoggerFactory.getLogger(ApiBeta.class);
 
   private final Iface api;
@@ -145,17 +158,35 @@ public class ApiBeta {
     final Method method = getApiMethod(methodName, methodParameterTypes);
     final Object[] params = readParams(parameters, method);
     return Response.ok((StreamingOutput) output -> {
-      try {
-        Object response = method.invoke(api, params);
-        try (OutputStreamWriter out = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
-          GSON.toJson(response, out);
+      try (OutputStreamWriter out = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
+        if (isStreamedTaskQuery(method, params)) {
+          PagedTaskWriter.write(
+              (TaskQuery) params[0],
+              TASK_PAGE_SIZE,
+              pageQuery -> invoke(method, pageQuery),
+              out);
+        } else {
+          GSON.toJson(invoke(method, params), out);
         }
-      } catch (IllegalAccessException | InvocationTargetException e) {
-        throw Throwables.propagate(e);
       }
     }).build();
   }
 
+  private Object invoke(Method method, Object... params) {
+    try {
+      return method.invoke(api, params);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static boolean isStreamedTaskQuery(Method method, Object... params) {
+    // Queries that already request a page of tasks are served as they are.
+    return STREAMED_TASK_METHODS.contains(method.getName())
+        && params[0] != null
+        && ((TaskQuery) params[0]).getLimit() <= 0;
+  }
+
   @GET
   @Produces(MediaType.TEXT_HTML)
   public Response getIndex() {
@@ -0,0 +1,107 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.http.api;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map.Entry;
+import java.util.function.Function;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+import org.apache.aurora.gen.Response;
+import org.apache.aurora.gen.ResponseCode;
+import org.apache.aurora.gen.ScheduleStatusResult;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.TaskQuery;
+
+import static org.apache.aurora.scheduler.http.api.GsonMessageBodyHandler.GSON;
+
+/**
+ * Writes the JSON response of a task query by fetching and writing tasks a page at a time, rather
+ * than building the whole response in memory.
+ * <p>
+ * The written response takes the same form as that of the unpaginated query.  However, as pages
+ * are fetched separately, it is not a consistent snapshot of the task store.
+ */
+final class PagedTaskWriter {
+
+  private PagedTaskWriter() {
+    // Utility class.
+  }
+
+  /**
+   * Writes the response of a task query.
+   *
+   * @param query Unpaginated query for tasks.
+   * @param pageSize Number of tasks to fetch at a time.
+   * @param fetch Function that invokes the task query API method, returning its response.
+   * @param out Writer to write the response to.
+   * @throws IOException If the response could not be written, or fetching a page failed after
+   *                     the response was partially written.
+   */
+  static void write(
+      TaskQuery query,
+      int pageSize,
+      Function<TaskQuery, Object> fetch,
+      Writer out) throws IOException {
+
+    TaskQuery pageQuery = query.deepCopy().setLimit(pageSize);
+    Response response = (Response) fetch.apply(pageQuery);
+    if (response.getResponseCode() != ResponseCode.OK
+        || !response.getResult().getScheduleStatusResult().isSetContinuationToken()) {
+
+      GSON.toJson(response, out);
+      return;
+    }
+
+    // Write the first response without its result, and then the tasks of every page as its
+    // result.
+    ScheduleStatusResult page = response.getResult().getScheduleStatusResult();
+    JsonObject envelope = GSON.toJsonTree(response.deepCopy().setResult(null)).getAsJsonObject();
+    JsonWriter writer = new JsonWriter(out);
+    writer.beginObject();
+    for (Entry<String, JsonElement> field : envelope.entrySet()) {
+      writer.name(field.getKey());
+      GSON.toJson(field.getValue(), writer);
+    }
+    writer.name("result").beginObject().name("scheduleStatusResult").beginObject();
+    writer.name("tasks").beginArray();
+    while (true) {
+      for (ScheduledTask task : page.getTasks()) {
+        GSON.toJson(task, ScheduledTask.class, writer);
+      }
+      writer.flush();
+      if (!page.isSetContinuationToken()) {
+        break;
+      }
+
+      // Offsets are applied after the continuation token, so only apply to the first page.
+      pageQuery.setOffset(0).setContinuationToken(page.getContinuationToken());
+      response = (Response) fetch.apply(pageQuery);
+      if (response.getResponseCode() != ResponseCode.OK) {
+        // The response status has already been sent, so all that can be done is to abort it.
+        throw new IOException("Failed to fetch tasks after " + page.getContinuationToken()
+            + ": " + response.getDetails());
+      }
+      page = response.getResult().getScheduleStatusResult();
+    }
+    writer.endArray();
+    writer.endObject().endObject();
+    writer.endObject();
+    writer.flush();
+  }
+}
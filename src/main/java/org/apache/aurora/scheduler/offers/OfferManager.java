@@ -14,6 +14,7 @@
 package org.apache.aurora.scheduler.offers;
 
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListSet;
@@ -25,12 +26,12 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.FluentIterable;
-import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
 import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
 import com.google.common.eventbus.Subscribe;
 
 import org.apache.aurora.common.inject.TimedInterceptor.Timed;
@@ -38,12 +39,15 @@ import org.apache.aurora.common.quantity.Time;
 import org.apache.aurora.common.stats.Stats;
 import org.apache.aurora.gen.MaintenanceMode;
 import org.apache.aurora.scheduler.HostOffer;
-import org.apache.aurora.scheduler.async.AsyncModule.AsyncExecutor;
+import org.apache.aurora.scheduler.async.AsyncModule.OfferExecutor;
 import org.apache.aurora.scheduler.async.DelayExecutor;
 import org.apache.aurora.scheduler.base.TaskGroupKey;
+import org.apache.aurora.scheduler.events.EventSink;
 import org.apache.aurora.scheduler.events.PubsubEvent.DriverDisconnected;
 import org.apache.aurora.scheduler.events.PubsubEvent.EventSubscriber;
+import org.apache.aurora.scheduler.events.PubsubEvent.OfferAdded;
 import org.apache.aurora.scheduler.mesos.Driver;
+import org.apache.aurora.scheduler.resources.ResourceBag;
 import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
 import org.apache.mesos.Protos;
 import org.apache.mesos.Protos.OfferID;
@@ -58,6 +62,9 @@ import static org.apache.aurora.gen.MaintenanceMode.DRAINING;
 import static org.apache.aurora.gen.MaintenanceMode.NONE;
 import static org.apache.aurora.gen.MaintenanceMode.SCHEDULED;
 import static org.apache.aurora.scheduler.events.PubsubEvent.HostAttributesChanged;
+import static org.apache.aurora.scheduler.resources.ResourceManager.bagFromMesosResources;
+import static org.apache.aurora.scheduler.resources.ResourceManager.getNonRevocableOfferResources;
+import static org.apache.aurora.scheduler.resources.ResourceType.RAM_MB;
 
 /**
  * Tracks the Offers currently known by the scheduler.
@@ -112,12 +119,17 @@ public interface OfferManager extends EventSubscriber {
   Iterable<HostOffer> getOffers();
 
   /**
-   * Gets all offers that are not statically banned for the given {@code groupKey}.
+   * Gets offers that are not statically banned for the given {@code groupKey} and may be large
+   * enough to satisfy the {@code minimum} resources.
+   * <p>
+   * Offers that are known to be too small are skipped without being returned, but the result is
+   * not guaranteed to contain only offers that fit; callers must still verify resources.
    *
    * @param groupKey Task group key to check offers for.
+   * @param minimum Minimum resources requested by the task group.
    * @return A snapshot of all offers eligible for the given {@code groupKey}.
    */
-  Iterable<HostOffer> getOffers(TaskGroupKey groupKey);
+  Iterable<HostOffer> getOffers(TaskGroupKey groupKey, ResourceBag minimum);
 
   /**
    * Gets an offer for the given slave ID.
@@ -151,17 +163,20 @@ public interface OfferManager extends EventSubscriber {
     private final Driver driver;
     private final OfferSettings offerSettings;
     private final DelayExecutor executor;
+    private final EventSink eventSink;
 
     @Inject
     @VisibleForTesting
     public OfferManagerImpl(
         Driver driver,
         OfferSettings offerSettings,
-        @AsyncExecutor DelayExecutor executor) {
+        @OfferExecutor DelayExecutor executor,
+        EventSink eventSink) {
 
       this.driver = requireNonNull(driver);
       this.offerSettings = requireNonNull(offerSettings);
       this.executor = requireNonNull(executor);
+      this.eventSink = requireNonNull(eventSink);
     }
 
     @Override
@@ -184,6 +199,7 @@ public interface OfferManager extends EventSubscriber {
         executor.execute(
             () -> removeAndDecline(offer.getOffer().getId()),
             offerSettings.getOfferReturnDelay());
+        eventSink.post(new OfferAdded(offer));
       }
     }
 
@@ -223,8 +239,8 @@ public interface OfferManager extends EventSubscriber {
     }
 
     @Override
-    public Iterable<HostOffer> getOffers(TaskGroupKey groupKey) {
-      return hostOffers.getWeaklyConsistentOffers(groupKey);
+    public Iterable<HostOffer> getOffers(TaskGroupKey groupKey, ResourceBag minimum) {
+      return hostOffers.getWeaklyConsistentOffers(groupKey, minimum);
     }
 
     @Override
@@ -259,6 +275,9 @@ public interface OfferManager extends EventSubscriber {
     /**
      * A container for the data structures used by this class, to make it easier to reason about
      * the different indices used and their consistency.
+     * <p>
+     * Reads are lock-free and weakly consistent, since they happen on every scheduling attempt.
+     * Mutations are serialized to keep the indices consistent with each other.
      */
     private static class HostOffers {
       private static final Comparator<HostOffer> PREFERENCE_COMPARATOR =
@@ -273,26 +292,51 @@ public interface OfferManager extends EventSubscriber {
               .compound(Ordering.arbitrary());
 
       private final Set<HostOffer> offers = new ConcurrentSkipListSet<>(PREFERENCE_COMPARATOR);
-      private final Map<OfferID, HostOffer> offersById = Maps.newHashMap();
-      private final Map<SlaveID, HostOffer> offersBySlave = Maps.newHashMap();
-      private final Map<String, HostOffer> offersByHost = Maps.newHashMap();
+      // Offers bucketed by the power of two of their offered RAM, allowing requests to skip
+      // offers that are too small without evaluating them.  RAM is never Mesos-revocable, so the
+      // offered amount does not depend on the tier of the requesting task.
+      private final List<Set<HostOffer>> offersByRam;
+      private final Map<OfferID, HostOffer> offersById = Maps.newConcurrentMap();
+      private final Map<SlaveID, HostOffer> offersBySlave = Maps.newConcurrentMap();
+      private final Map<String, HostOffer> offersByHost = Maps.newConcurrentMap();
       // TODO(maxim): Expose via a debug endpoint. AURORA-1136.
       // Keep track of offer->groupKey mappings that will never be matched to avoid redundant
-      // scheduling attempts. See VetoGroup for more details on static ban.
-      private final Multimap<OfferID, TaskGroupKey> staticallyBannedOffers = HashMultimap.create();
+      // scheduling attempts. See VetoGroup for more details on static ban.  The reverse index
+      // allows the bans of a group to be looked up once per scheduling attempt, rather than once
+      // per offer.
+      private final Map<TaskGroupKey, Set<OfferID>> staticallyBannedOffers =
+          Maps.newConcurrentMap();
+      private final Map<OfferID, Set<TaskGroupKey>> staticBansByOffer = Maps.newConcurrentMap();
 
       HostOffers() {
+        ImmutableList.Builder<Set<HostOffer>> ramBuckets = ImmutableList.builder();
+        for (int i = 0; i < Long.SIZE; i++) {
+          ramBuckets.add(new ConcurrentSkipListSet<>(PREFERENCE_COMPARATOR));
+        }
+        offersByRam = ramBuckets.build();
+
         // Potential gotcha - since this is a ConcurrentSkipListSet, size() is more expensive.
         // Could track this separately if it turns out to pose problems.
         Stats.exportSize("outstanding_offers", offers);
       }
 
-      synchronized Optional<HostOffer> get(SlaveID slaveId) {
+      Optional<HostOffer> get(SlaveID slaveId) {
         return Optional.fromNullable(offersBySlave.get(slaveId));
       }
 
+      private static int ramBucket(double ramMb) {
+        return ramMb < 1 ? 0 : Long.SIZE - Long.numberOfLeadingZeros((long) ramMb);
+      }
+
+      private Set<HostOffer> ramBucketOf(HostOffer offer) {
+        double ramMb = bagFromMesosResources(getNonRevocableOfferResources(offer.getOffer()))
+            .getValue(RAM_MB);
+        return offersByRam.get(ramBucket(ramMb));
+      }
+
       synchronized void add(HostOffer offer) {
         offers.add(offer);
+        ramBucketOf(offer).add(offer);
         offersById.put(offer.getOffer().getId(), offer);
         offersBySlave.put(offer.getOffer().getSlaveId(), offer);
         offersByHost.put(offer.getOffer().getHostname(), offer);
@@ -302,13 +346,29 @@ public interface OfferManager extends EventSubscriber {
         HostOffer removed = offersById.remove(id);
         if (removed != null) {
           offers.remove(removed);
+          ramBucketOf(removed).remove(removed);
           offersBySlave.remove(removed.getOffer().getSlaveId());
           offersByHost.remove(removed.getOffer().getHostname());
-          staticallyBannedOffers.removeAll(id);
+          removeStaticBans(id);
         }
         return removed != null;
       }
 
+      private void removeStaticBans(OfferID id) {
+        Set<TaskGroupKey> bannedGroups = staticBansByOffer.remove(id);
+        if (bannedGroups != null) {
+          for (TaskGroupKey groupKey : bannedGroups) {
+            Set<OfferID> groupBans = staticallyBannedOffers.get(groupKey);
+            if (groupBans != null) {
+              groupBans.remove(id);
+              if (groupBans.isEmpty()) {
+                staticallyBannedOffers.remove(groupKey);
+              }
+            }
+          }
+        }
+      }
+
       synchronized void updateHostAttributes(IHostAttributes attributes) {
         HostOffer offer = offersByHost.remove(attributes.getHost());
         if (offer != null) {
@@ -318,27 +378,50 @@ public interface OfferManager extends EventSubscriber {
         }
       }
 
-      synchronized Iterable<HostOffer> getOffers() {
+      Iterable<HostOffer> getOffers() {
         return ImmutableSet.copyOf(offers);
       }
 
-      synchronized Iterable<HostOffer> getWeaklyConsistentOffers(TaskGroupKey groupKey) {
-        return Iterables.unmodifiableIterable(FluentIterable.from(offers).filter(
-            e -> !staticallyBannedOffers.containsEntry(e.getOffer().getId(), groupKey)));
+      Iterable<HostOffer> getWeaklyConsistentOffers(TaskGroupKey groupKey, ResourceBag minimum) {
+        Iterable<HostOffer> candidates = offers;
+        int minimumBucket = ramBucket(minimum.getValue(RAM_MB));
+        if (minimumBucket > 0) {
+          // Every offer with enough RAM falls into the minimum bucket or above.  Merging the
+          // buckets preserves the preference order of the offers.
+          candidates = Iterables.mergeSorted(
+              FluentIterable.from(offersByRam.subList(minimumBucket, offersByRam.size()))
+                  .filter(bucket -> !bucket.isEmpty()),
+              PREFERENCE_COMPARATOR);
+        }
+
+        Set<OfferID> bannedOffers = staticallyBannedOffers.get(groupKey);
+        if (bannedOffers == null) {
+          return Iterables.unmodifiableIterable(candidates);
+        }
+
+        return Iterables.unmodifiableIterable(FluentIterable.from(candidates).filter(
+            e -> !bannedOffers.contains(e.getOffer().getId())));
       }
 
       synchronized void addStaticGroupBan(OfferID offerId, TaskGroupKey groupKey) {
         if (offersById.containsKey(offerId)) {
-          staticallyBannedOffers.put(offerId, groupKey);
+          staticallyBannedOffers
+              .computeIfAbsent(groupKey, key -> Sets.newConcurrentHashSet())
+              .add(offerId);
+          staticBansByOffer
+              .computeIfAbsent(offerId, key -> Sets.newConcurrentHashSet())
+              .add(groupKey);
         }
       }
 
       synchronized void clear() {
         offers.clear();
+        offersByRam.forEach(Set::clear);
         offersById.clear();
         offersBySlave.clear();
         offersByHost.clear();
         staticallyBannedOffers.clear();
+        staticBansByOffer.clear();
       }
     }
 
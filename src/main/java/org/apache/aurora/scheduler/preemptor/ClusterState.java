@@ -13,9 +13,14 @@
  */
 package org.apache.aurora.scheduler.preemptor;
 
+import java.util.Map;
+
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Multimap;
 
+import org.apache.aurora.scheduler.resources.ResourceBag;
+import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
+
 /**
  * A facade for the preemptor to gain access to the state of scheduled tasks in the cluster.
  */
@@ -31,4 +36,15 @@ public interface ClusterState {
    * @return Active tasks and their associated slave IDs.
    */
   Multimap<String, PreemptionVictim> getSlavesToActiveTasks();
+
+  /**
+   * Gets an upper bound of the resources that preempting tasks could free for a pending task on
+   * each slave, counting only the tasks that the pending task may preempt along with their
+   * executor overhead.
+   *
+   * @param pendingTask Task to find preemption slots for.
+   * @return Preemptible resources, indexed by slave ID.  Slaves without any tasks that the pending
+   *     task may preempt are omitted.
+   */
+  Map<String, ResourceBag> getPreemptibleResources(ITaskConfig pendingTask);
 }
@@ -13,21 +13,54 @@
  */
 package org.apache.aurora.scheduler.preemptor;
 
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 import com.google.common.eventbus.Subscribe;
 
+import org.apache.aurora.scheduler.TierManager;
 import org.apache.aurora.scheduler.base.Tasks;
+import org.apache.aurora.scheduler.configuration.executor.ExecutorSettings;
 import org.apache.aurora.scheduler.events.PubsubEvent;
 import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
+import org.apache.aurora.scheduler.resources.ResourceBag;
+import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * A cached view of cluster state, kept up to date by pubsub notifications.
+ * <p>
+ * Along with the active tasks, this keeps an index of the resources on each slave that may be
+ * preempted, grouped by what may preempt them.  The index entry of a slave is rebuilt when it is
+ * next read after the tasks on the slave changed.
  */
 public class ClusterStateImpl implements ClusterState, PubsubEvent.EventSubscriber {
 
+  private final TierManager tierManager;
+  private final ExecutorSettings executorSettings;
+
+  // All fields below are guarded by victims.
   private final Multimap<String, PreemptionVictim> victims = HashMultimap.create();
+  private final Map<String, SlaveResources> resourcesBySlave = Maps.newHashMap();
+  private final Set<String> changedSlaves = Sets.newHashSet();
+
+  @Inject
+  ClusterStateImpl(TierManager tierManager, ExecutorSettings executorSettings) {
+    this.tierManager = requireNonNull(tierManager);
+    this.executorSettings = requireNonNull(executorSettings);
+  }
 
   @Override
   public Multimap<String, PreemptionVictim> getSlavesToActiveTasks() {
@@ -36,6 +69,34 @@ public class ClusterStateImpl implements ClusterState, PubsubEvent.EventSubscrib
     }
   }
 
+  @Override
+  public Map<String, ResourceBag> getPreemptibleResources(ITaskConfig pendingTask) {
+    boolean pendingIsPreemptible = tierManager.getTier(pendingTask).isPreemptible();
+    String role = pendingTask.getJob().getRole();
+    int priority = pendingTask.getPriority();
+
+    synchronized (victims) {
+      for (String slaveId : changedSlaves) {
+        if (victims.containsKey(slaveId)) {
+          resourcesBySlave.put(slaveId, new SlaveResources(victims.get(slaveId)));
+        } else {
+          resourcesBySlave.remove(slaveId);
+        }
+      }
+      changedSlaves.clear();
+
+      ImmutableMap.Builder<String, ResourceBag> preemptible = ImmutableMap.builder();
+      for (Map.Entry<String, SlaveResources> entry : resourcesBySlave.entrySet()) {
+        ResourceBag resources =
+            entry.getValue().getPreemptibleBy(pendingIsPreemptible, role, priority);
+        if (resources != null) {
+          preemptible.put(entry.getKey(), resources);
+        }
+      }
+      return preemptible.build();
+    }
+  }
+
   @Subscribe
   public void taskChangedState(TaskStateChange stateChange) {
     synchronized (victims) {
@@ -46,6 +107,65 @@ public class ClusterStateImpl implements ClusterState, PubsubEvent.EventSubscrib
       } else {
         victims.remove(slaveId, victim);
       }
+      changedSlaves.add(slaveId);
+    }
+  }
+
+  /**
+   * Totals of the resources of the tasks on a slave, including their executor overhead, grouped
+   * by the pending tasks that may preempt them.  See
+   * {@link PreemptionVictimFilter.PreemptionVictimFilterImpl} for the preemption rules.
+   */
+  private final class SlaveResources {
+    // Resources of tasks in preemptible tiers, which any task in a non-preemptible tier may
+    // preempt.
+    @Nullable
+    private ResourceBag preemptibleTiers;
+
+    // Resources of tasks by role and priority, where each priority maps to the total of the tasks
+    // of that role with the same or lower priority.  Tasks may be preempted by tasks of the same
+    // role and tier preemptibility with a higher priority.
+    private final Map<String, NavigableMap<Integer, ResourceBag>> preemptibleByRole =
+        Maps.newHashMap();
+    private final Map<String, NavigableMap<Integer, ResourceBag>> nonPreemptibleByRole =
+        Maps.newHashMap();
+
+    SlaveResources(Iterable<PreemptionVictim> slaveVictims) {
+      for (PreemptionVictim victim : slaveVictims) {
+        ResourceBag resources =
+            victim.getResourceBag().add(executorSettings.getExecutorOverhead());
+        boolean isPreemptible = tierManager.getTier(victim.getConfig()).isPreemptible();
+        if (isPreemptible) {
+          preemptibleTiers = preemptibleTiers == null ? resources : preemptibleTiers.add(resources);
+        }
+        (isPreemptible ? preemptibleByRole : nonPreemptibleByRole)
+            .computeIfAbsent(victim.getRole(), role -> Maps.newTreeMap())
+            .merge(victim.getPriority(), resources, ResourceBag::add);
+      }
+
+      for (NavigableMap<Integer, ResourceBag> byPriority
+          : Iterables.concat(preemptibleByRole.values(), nonPreemptibleByRole.values())) {
+
+        ResourceBag total = null;
+        for (Map.Entry<Integer, ResourceBag> entry : byPriority.entrySet()) {
+          total = total == null ? entry.getValue() : total.add(entry.getValue());
+          entry.setValue(total);
+        }
+      }
+    }
+
+    @Nullable
+    ResourceBag getPreemptibleBy(boolean pendingIsPreemptible, String role, int priority) {
+      ResourceBag total = pendingIsPreemptible ? null : preemptibleTiers;
+      NavigableMap<Integer, ResourceBag> sameTier =
+          (pendingIsPreemptible ? preemptibleByRole : nonPreemptibleByRole).get(role);
+      if (sameTier != null) {
+        Map.Entry<Integer, ResourceBag> lowerPriority = sameTier.lowerEntry(priority);
+        if (lowerPriority != null) {
+          total = total == null ? lowerPriority.getValue() : total.add(lowerPriority.getValue());
+        }
+      }
+      return total;
     }
   }
 }
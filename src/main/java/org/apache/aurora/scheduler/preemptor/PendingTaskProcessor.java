@@ -15,10 +15,16 @@ package org.apache.aurora.scheduler.preemptor;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
+import java.util.ArrayDeque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 import javax.inject.Qualifier;
@@ -29,11 +35,10 @@ import com.google.common.base.Functions;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
@@ -42,6 +47,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
 
 import org.apache.aurora.common.quantity.Amount;
 import org.apache.aurora.common.quantity.Time;
@@ -50,12 +56,16 @@ import org.apache.aurora.scheduler.HostOffer;
 import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.TaskGroupKey;
 import org.apache.aurora.scheduler.base.Tasks;
+import org.apache.aurora.scheduler.configuration.executor.ExecutorSettings;
 import org.apache.aurora.scheduler.filter.AttributeAggregate;
+import org.apache.aurora.scheduler.filter.AttributeAggregateCache;
 import org.apache.aurora.scheduler.offers.OfferManager;
+import org.apache.aurora.scheduler.resources.ResourceBag;
+import org.apache.aurora.scheduler.resources.ResourceManager;
 import org.apache.aurora.scheduler.storage.Storage;
 import org.apache.aurora.scheduler.storage.Storage.StoreProvider;
 import org.apache.aurora.scheduler.storage.entities.IAssignedTask;
-import org.apache.aurora.scheduler.storage.entities.IJobKey;
+import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
 
@@ -66,6 +76,8 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 import static java.util.Objects.requireNonNull;
 
 import static org.apache.aurora.gen.ScheduleStatus.PENDING;
+import static org.apache.aurora.scheduler.resources.ResourceManager.bagFromMesosResources;
+import static org.apache.aurora.scheduler.resources.ResourceManager.getNonRevocableOfferResources;
 
 /**
  * Attempts to find preemption slots for all PENDING tasks eligible for preemption.
@@ -79,7 +91,10 @@ public class PendingTaskProcessor implements Runnable {
   private final Amount<Long, Time> preemptionCandidacyDelay;
   private final BiCache<PreemptionProposal, TaskGroupKey> slotCache;
   private final ClusterState clusterState;
+  private final AttributeAggregateCache aggregateCache;
   private final Clock clock;
+  private final ExecutorSettings executorSettings;
+  private final ForkJoinPool slotSearchPool;
 
   /**
    * Binding annotation for the time interval after which a pending task becomes eligible to
@@ -92,6 +107,15 @@ public class PendingTaskProcessor implements Runnable {
   @Target({ FIELD, PARAMETER, METHOD }) @Retention(RUNTIME)
   public @interface PreemptionDelay { }
 
+  /**
+   * Binding annotation for the pool that preemption slots are searched on.  The parallelism of
+   * the pool bounds the number of slaves that are evaluated concurrently for a task group.
+   */
+  @VisibleForTesting
+  @Qualifier
+  @Target({ FIELD, PARAMETER, METHOD }) @Retention(RUNTIME)
+  public @interface SlotSearchPool { }
+
   @Inject
   PendingTaskProcessor(
       Storage storage,
@@ -101,7 +125,10 @@ public class PendingTaskProcessor implements Runnable {
       @PreemptionDelay Amount<Long, Time> preemptionCandidacyDelay,
       BiCache<PreemptionProposal, TaskGroupKey> slotCache,
       ClusterState clusterState,
-      Clock clock) {
+      AttributeAggregateCache aggregateCache,
+      Clock clock,
+      ExecutorSettings executorSettings,
+      @SlotSearchPool ForkJoinPool slotSearchPool) {
 
     this.storage = requireNonNull(storage);
     this.offerManager = requireNonNull(offerManager);
@@ -110,7 +137,10 @@ public class PendingTaskProcessor implements Runnable {
     this.preemptionCandidacyDelay = requireNonNull(preemptionCandidacyDelay);
     this.slotCache = requireNonNull(slotCache);
     this.clusterState = requireNonNull(clusterState);
+    this.aggregateCache = requireNonNull(aggregateCache);
     this.clock = requireNonNull(clock);
+    this.executorSettings = requireNonNull(executorSettings);
+    this.slotSearchPool = requireNonNull(slotSearchPool);
   }
 
   @Override
@@ -129,47 +159,38 @@ public class PendingTaskProcessor implements Runnable {
       Map<String, HostOffer> slavesToOffers =
           Maps.uniqueIndex(offerManager.getOffers(), OFFER_TO_SLAVE_ID);
 
-      Set<String> allSlaves = Sets.newHashSet(Iterables.concat(
-          slavesToOffers.keySet(),
-          slavesToActiveTasks.keySet()));
+      Set<String> availableSlaves = Sets.newHashSet(slavesToActiveTasks.keySet());
+      Map<String, ResourceBag> slavesToSlack =
+          ImmutableMap.copyOf(Maps.transformValues(slavesToOffers, OFFER_TO_SLACK));
+      Map<TaskGroupKey, SlotSearch> slotSearches = Maps.newHashMap();
 
       // The algorithm below attempts to find a reservation for every task group by matching
-      // it against all available slaves until a preemption slot is found. Groups are evaluated
+      // it against all candidate slaves until a preemption slot is found. Groups are evaluated
       // in a round-robin fashion to ensure fairness (e.g.: G1, G2, G3, G1, G2).
       // A slave is removed from further matching once a reservation is made. Similarly, all
       // identical task group instances are removed from further iteration if none of the
       // available slaves could yield a preemption proposal. A consuming iterator is used for
       // task groups to ensure iteration order is preserved after a task group is removed.
-      LoadingCache<IJobKey, AttributeAggregate> jobStates = attributeCache(store);
       List<TaskGroupKey> pendingGroups = fetchIdlePendingGroups(store);
       Iterator<TaskGroupKey> groups = Iterators.consumingIterator(pendingGroups.iterator());
       while (!pendingGroups.isEmpty()) {
-        boolean matched = false;
         TaskGroupKey group = groups.next();
-        ITaskConfig task = group.getTask();
-
-        metrics.recordPreemptionAttemptFor(task);
-        Iterator<String> slaveIterator = allSlaves.iterator();
-        while (slaveIterator.hasNext()) {
-          String slaveId = slaveIterator.next();
-          Optional<ImmutableSet<PreemptionVictim>> candidates =
-              preemptionVictimFilter.filterPreemptionVictims(
-                  task,
-                  slavesToActiveTasks.get(slaveId),
-                  jobStates.getUnchecked(task.getJob()),
-                  Optional.fromNullable(slavesToOffers.get(slaveId)),
-                  store);
-
-          metrics.recordSlotSearchResult(candidates, task);
-          if (candidates.isPresent()) {
-            // Slot found -> remove slave to avoid multiple task reservations.
-            slaveIterator.remove();
-            slotCache.put(new PreemptionProposal(candidates.get(), slaveId), group);
-            matched = true;
-            break;
-          }
-        }
-        if (!matched) {
+        metrics.recordPreemptionAttemptFor(group.getTask());
+
+        SlotSearch search = slotSearches.computeIfAbsent(
+            group,
+            key -> new SlotSearch(
+                key.getTask(),
+                findCandidateSlaves(key.getTask(), slavesToSlack),
+                slavesToActiveTasks,
+                slavesToOffers,
+                store));
+        Optional<PreemptionProposal> proposal = search.next(availableSlaves);
+        if (proposal.isPresent()) {
+          // Slot found -> remove slave to avoid multiple task reservations.
+          availableSlaves.remove(proposal.get().getSlaveId());
+          slotCache.put(proposal.get(), group);
+        } else {
           // No slot found for the group -> remove group and reset group iterator.
           pendingGroups.removeAll(ImmutableSet.of(group));
           groups = Iterators.consumingIterator(pendingGroups.iterator());
@@ -179,6 +200,154 @@ public class PendingTaskProcessor implements Runnable {
     });
   }
 
+  /**
+   * Finds the slaves where a task could fit if all of the tasks it may preempt were preempted.
+   * Other slaves can not yield a preemption slot for the task, and are not searched.
+   *
+   * @param task Task to find candidate slaves for.
+   * @param slavesToSlack Offered resources, indexed by slave ID.
+   * @return IDs of the candidate slaves.
+   */
+  private List<String> findCandidateSlaves(
+      ITaskConfig task,
+      Map<String, ResourceBag> slavesToSlack) {
+
+    ResourceBag required = ResourceManager.bagFromResources(task.getResources())
+        .add(executorSettings.getExecutorOverhead());
+    List<String> candidates = Lists.newArrayList();
+    for (Map.Entry<String, ResourceBag> entry
+        : clusterState.getPreemptibleResources(task).entrySet()) {
+
+      ResourceBag slack = slavesToSlack.get(entry.getKey());
+      ResourceBag available = slack == null ? entry.getValue() : entry.getValue().add(slack);
+      if (available.covers(required)) {
+        candidates.add(entry.getKey());
+      }
+    }
+    metrics.recordSlotSearchCandidates(candidates.size());
+    return candidates;
+  }
+
+  /**
+   * A search for preemption slots for one task group, which yields proposals on the candidate
+   * slaves in order.
+   * <p>
+   * Since the victim filter does not modify the store, slaves can be evaluated concurrently.
+   * All storage reads happen on the calling thread, which owns the storage transaction, and the
+   * pool threads only evaluate the victims, offer and host attributes read for each slave.
+   * Slaves are evaluated in batches of up to the slot search pool parallelism, and the results of
+   * a batch are consumed by this and later attempts for the same task group, skipping any slave
+   * that was reserved in the meantime.  With a parallelism of 1, slaves are evaluated one at a
+   * time on the calling thread, exactly like a sequential search.
+   */
+  private final class SlotSearch {
+    private final ITaskConfig task;
+    private final Iterator<String> candidates;
+    private final Multimap<String, PreemptionVictim> slavesToActiveTasks;
+    private final Map<String, HostOffer> slavesToOffers;
+    private final StoreProvider store;
+    private final AttributeAggregate jobState;
+    private final Queue<Map.Entry<String, Optional<ImmutableSet<PreemptionVictim>>>> results =
+        new ArrayDeque<>();
+
+    SlotSearch(
+        ITaskConfig task,
+        List<String> candidates,
+        Multimap<String, PreemptionVictim> slavesToActiveTasks,
+        Map<String, HostOffer> slavesToOffers,
+        StoreProvider store) {
+
+      this.task = task;
+      this.candidates = candidates.iterator();
+      this.slavesToActiveTasks = slavesToActiveTasks;
+      this.slavesToOffers = slavesToOffers;
+      this.store = store;
+      this.jobState = aggregateCache.getAggregate(store, task.getJob());
+    }
+
+    /**
+     * Finds the next preemption slot on a slave that is still available.
+     *
+     * @param availableSlaves Slaves that do not have a reservation yet.
+     * @return A preemption proposal, or absent if no remaining candidate slave has a slot.
+     */
+    Optional<PreemptionProposal> next(Set<String> availableSlaves) {
+      while (true) {
+        if (results.isEmpty()) {
+          List<String> batch = Lists.newArrayList();
+          while (batch.size() < slotSearchPool.getParallelism() && candidates.hasNext()) {
+            String slaveId = candidates.next();
+            if (availableSlaves.contains(slaveId)) {
+              batch.add(slaveId);
+            }
+          }
+          if (batch.isEmpty()) {
+            return Optional.absent();
+          }
+          results.addAll(search(batch));
+        }
+
+        Map.Entry<String, Optional<ImmutableSet<PreemptionVictim>>> result = results.remove();
+        if (availableSlaves.contains(result.getKey())) {
+          metrics.recordSlotSearchResult(result.getValue(), task);
+          if (result.getValue().isPresent()) {
+            return Optional.of(new PreemptionProposal(result.getValue().get(), result.getKey()));
+          }
+        }
+      }
+    }
+
+    private List<Map.Entry<String, Optional<ImmutableSet<PreemptionVictim>>>> search(
+        List<String> slaveIds) {
+
+      // Read everything the filter needs on this thread, before handing off to the pool.
+      List<Supplier<Optional<ImmutableSet<PreemptionVictim>>>> searches = Lists.newArrayList();
+      for (String slaveId : slaveIds) {
+        searches.add(prepareSearch(slaveId));
+      }
+
+      if (searches.size() == 1) {
+        return ImmutableList.of(Maps.immutableEntry(
+            Iterables.getOnlyElement(slaveIds),
+            Iterables.getOnlyElement(searches).get()));
+      }
+
+      List<Callable<Optional<ImmutableSet<PreemptionVictim>>>> tasks = Lists.newArrayList();
+      for (Supplier<Optional<ImmutableSet<PreemptionVictim>>> search : searches) {
+        tasks.add(search::get);
+      }
+      List<Future<Optional<ImmutableSet<PreemptionVictim>>>> futures =
+          slotSearchPool.invokeAll(tasks);
+      ImmutableList.Builder<Map.Entry<String, Optional<ImmutableSet<PreemptionVictim>>>> slots =
+          ImmutableList.builder();
+      for (int i = 0; i < slaveIds.size(); i++) {
+        slots.add(Maps.immutableEntry(slaveIds.get(i), Futures.getUnchecked(futures.get(i))));
+      }
+      return slots.build();
+    }
+
+    private Supplier<Optional<ImmutableSet<PreemptionVictim>>> prepareSearch(String slaveId) {
+      ImmutableList<PreemptionVictim> victims =
+          ImmutableList.copyOf(slavesToActiveTasks.get(slaveId));
+      Optional<HostOffer> offer = Optional.fromNullable(slavesToOffers.get(slaveId));
+      Optional<IHostAttributes> attributes = Optional.absent();
+      if (!victims.isEmpty()) {
+        attributes = store.getAttributeStore().getHostAttributes(victims.get(0).getSlaveHost());
+      } else if (offer.isPresent()) {
+        attributes = store.getAttributeStore().getHostAttributes(
+            offer.get().getOffer().getHostname());
+      }
+
+      Optional<IHostAttributes> hostAttributes = attributes;
+      return () -> preemptionVictimFilter.filterPreemptionVictims(
+          task,
+          victims,
+          jobState,
+          offer,
+          hostAttributes);
+    }
+  }
+
   private List<TaskGroupKey> fetchIdlePendingGroups(StoreProvider store) {
     Multiset<TaskGroupKey> taskGroupCounts = HashMultiset.create(
         FluentIterable.from(store.getTaskStore().fetchTasks(Query.statusScoped(PENDING)))
@@ -211,16 +380,6 @@ public class PendingTaskProcessor implements Runnable {
     return instructions;
   }
 
-  private LoadingCache<IJobKey, AttributeAggregate> attributeCache(final StoreProvider store) {
-    return CacheBuilder.newBuilder().build(CacheLoader.from(
-        new Function<IJobKey, AttributeAggregate>() {
-          @Override
-          public AttributeAggregate apply(IJobKey job) {
-            return AttributeAggregate.getJobActiveState(store, job);
-          }
-        }));
-  }
-
   private static final Function<IAssignedTask, TaskGroupKey> ASSIGNED_TO_GROUP_KEY =
       task -> TaskGroupKey.from(task.getTask());
 
@@ -241,4 +400,7 @@ public class PendingTaskProcessor implements Runnable {
 
   private static final Function<HostOffer, String> OFFER_TO_SLAVE_ID =
       offer -> offer.getOffer().getSlaveId().getValue();
+
+  private static final Function<HostOffer, ResourceBag> OFFER_TO_SLACK =
+      offer -> bagFromMesosResources(getNonRevocableOfferResources(offer.getOffer()));
 }
@@ -23,7 +23,6 @@ import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.FluentIterable;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Ordering;
@@ -83,6 +82,27 @@ public interface PreemptionVictimFilter {
       Optional<HostOffer> offer,
       StoreProvider storeProvider);
 
+  /**
+   * Returns a set of {@link PreemptionVictim} that can accommodate a given task if preempted,
+   * using host attributes that were already fetched.  Unlike
+   * {@link #filterPreemptionVictims(ITaskConfig, Iterable, AttributeAggregate, Optional,
+   * StoreProvider)}, this does not access storage, and may be called outside of the transaction
+   * the other arguments were read in.
+   *
+   * @param pendingTask Task to search preemption slot for.
+   * @param victims Active tasks on a slave.
+   * @param attributeAggregate An {@link AttributeAggregate} instance for the task's job.
+   * @param offer A resource offer for a slave.
+   * @param hostAttributes Attributes of the slave's host, if known.
+   * @return A set of {@code PreemptionVictim} instances to preempt for a given task.
+   */
+  Optional<ImmutableSet<PreemptionVictim>> filterPreemptionVictims(
+      ITaskConfig pendingTask,
+      Iterable<PreemptionVictim> victims,
+      AttributeAggregate attributeAggregate,
+      Optional<HostOffer> offer,
+      Optional<IHostAttributes> hostAttributes);
+
   class PreemptionVictimFilterImpl implements PreemptionVictimFilter {
     private final SchedulingFilter schedulingFilter;
     private final ExecutorSettings executorSettings;
@@ -122,8 +142,6 @@ public interface PreemptionVictimFilter {
           }
         };
 
-    private static final java.util.function.Predicate<Integer> IS_ZERO = e -> e == 0;
-
     /**
      * A Resources object is greater than another iff _all_ of its resource components are greater.
      * A Resources object compares as equal if some but not all components are greater
@@ -133,21 +151,22 @@ public interface PreemptionVictimFilter {
     static final Ordering<ResourceBag> ORDER = new Ordering<ResourceBag>() {
       @Override
       public int compare(ResourceBag left, ResourceBag right) {
-        ImmutableList.Builder<Integer> builder = ImmutableList.builder();
-        left.streamResourceVectors().forEach(
-            entry -> builder.add(entry.getValue().compareTo(right.valueOf(entry.getKey()))));
-
-        List<Integer> results = builder.build();
-
-        if (results.stream().allMatch(IS_ZERO))  {
-          return 0;
-        }
+        // Number of resource components that are greater and smaller than the other side.
+        int[] counts = new int[2];
+        left.forEachVector((type, value) -> {
+          int result = Double.compare(value, right.getValue(type));
+          if (result > 0) {
+            counts[0]++;
+          } else if (result < 0) {
+            counts[1]++;
+          }
+        });
 
-        if (results.stream().filter(IS_ZERO.negate()).allMatch(e -> e > 0)) {
+        if (counts[0] > 0 && counts[1] == 0) {
           return 1;
         }
 
-        if (results.stream().filter(IS_ZERO.negate()).allMatch(e -> e < 0)) {
+        if (counts[1] > 0 && counts[0] == 0) {
           return -1;
         }
 
@@ -168,6 +187,32 @@ public interface PreemptionVictimFilter {
         Optional<HostOffer> offer,
         StoreProvider storeProvider) {
 
+      return filter(
+          pendingTask,
+          possibleVictims,
+          jobState,
+          offer,
+          storeProvider.getAttributeStore()::getHostAttributes);
+    }
+
+    @Override
+    public Optional<ImmutableSet<PreemptionVictim>> filterPreemptionVictims(
+        ITaskConfig pendingTask,
+        Iterable<PreemptionVictim> possibleVictims,
+        AttributeAggregate jobState,
+        Optional<HostOffer> offer,
+        Optional<IHostAttributes> hostAttributes) {
+
+      return filter(pendingTask, possibleVictims, jobState, offer, host -> hostAttributes);
+    }
+
+    private Optional<ImmutableSet<PreemptionVictim>> filter(
+        ITaskConfig pendingTask,
+        Iterable<PreemptionVictim> possibleVictims,
+        AttributeAggregate jobState,
+        Optional<HostOffer> offer,
+        Function<String, Optional<IHostAttributes>> hostAttributes) {
+
       // This enforces the precondition that all of the resources are from the same host. We need to
       // get the host for the schedulingFilter.
       Set<String> hosts = ImmutableSet.<String>builder()
@@ -189,8 +234,7 @@ public interface PreemptionVictimFilter {
 
       Set<PreemptionVictim> toPreemptTasks = Sets.newHashSet();
 
-      Optional<IHostAttributes> attributes =
-          storeProvider.getAttributeStore().getHostAttributes(Iterables.getOnlyElement(hosts));
+      Optional<IHostAttributes> attributes = hostAttributes.apply(Iterables.getOnlyElement(hosts));
 
       if (!attributes.isPresent()) {
         metrics.recordMissingAttributes();
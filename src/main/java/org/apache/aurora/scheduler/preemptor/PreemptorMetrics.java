@@ -37,6 +37,9 @@ public class PreemptorMetrics {
   @VisibleForTesting
   static final String TASK_PROCESSOR_RUN_NAME = "preemptor_task_processor_runs";
 
+  @VisibleForTesting
+  static final String SLOT_SEARCH_CANDIDATES_NAME = "preemptor_slot_search_candidate_slaves";
+
   private volatile boolean exported = false;
   private final CachedCounters counters;
 
@@ -72,7 +75,8 @@ public class PreemptorMetrics {
         slotValidationStatName(true),
         slotValidationStatName(false),
         MISSING_ATTRIBUTES_NAME,
-        TASK_PROCESSOR_RUN_NAME);
+        TASK_PROCESSOR_RUN_NAME,
+        SLOT_SEARCH_CANDIDATES_NAME);
     for (String stat : allStats) {
       counters.get(stat);
     }
@@ -128,4 +132,9 @@ public class PreemptorMetrics {
   void recordTaskProcessorRun() {
     increment(TASK_PROCESSOR_RUN_NAME);
   }
+
+  void recordSlotSearchCandidates(int candidates) {
+    assertFullyExported();
+    counters.get(SLOT_SEARCH_CANDIDATES_NAME).addAndGet(candidates);
+  }
 }
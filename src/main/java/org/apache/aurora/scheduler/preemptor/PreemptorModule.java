@@ -13,6 +13,8 @@
  */
 package org.apache.aurora.scheduler.preemptor;
 
+import java.util.concurrent.ForkJoinPool;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -25,6 +27,7 @@ import com.google.inject.TypeLiteral;
 
 import org.apache.aurora.common.args.Arg;
 import org.apache.aurora.common.args.CmdLine;
+import org.apache.aurora.common.args.constraints.Positive;
 import org.apache.aurora.common.quantity.Amount;
 import org.apache.aurora.common.quantity.Time;
 import org.apache.aurora.scheduler.SchedulerServicesModule;
@@ -59,23 +62,44 @@ public class PreemptorModule extends AbstractModule {
   private static final Arg<Amount<Long, Time>> PREEMPTION_SLOT_SEARCH_INTERVAL =
       Arg.create(Amount.of(1L, Time.MINUTES));
 
+  @Positive
+  @CmdLine(name = "preemption_slot_search_threads",
+      help = "The number of threads used to search agents for preemption slots concurrently.")
+  private static final Arg<Integer> PREEMPTION_SLOT_SEARCH_THREADS = Arg.create(4);
+
   private final boolean enablePreemptor;
   private final Amount<Long, Time> preemptionDelay;
   private final Amount<Long, Time> slotSearchInterval;
+  private final int slotSearchThreads;
 
   @VisibleForTesting
   public PreemptorModule(
       boolean enablePreemptor,
       Amount<Long, Time> preemptionDelay,
-      Amount<Long, Time> slotSearchInterval) {
+      Amount<Long, Time> slotSearchInterval,
+      int slotSearchThreads) {
 
     this.enablePreemptor = enablePreemptor;
     this.preemptionDelay = requireNonNull(preemptionDelay);
     this.slotSearchInterval = requireNonNull(slotSearchInterval);
+    this.slotSearchThreads = slotSearchThreads;
+  }
+
+  @VisibleForTesting
+  public PreemptorModule(
+      boolean enablePreemptor,
+      Amount<Long, Time> preemptionDelay,
+      Amount<Long, Time> slotSearchInterval) {
+
+    this(enablePreemptor, preemptionDelay, slotSearchInterval, 1);
   }
 
   public PreemptorModule() {
-    this(ENABLE_PREEMPTOR.get(), PREEMPTION_DELAY.get(), PREEMPTION_SLOT_SEARCH_INTERVAL.get());
+    this(
+        ENABLE_PREEMPTOR.get(),
+        PREEMPTION_DELAY.get(),
+        PREEMPTION_SLOT_SEARCH_INTERVAL.get(),
+        PREEMPTION_SLOT_SEARCH_THREADS.get());
   }
 
   @Override
@@ -98,6 +122,10 @@ public class PreemptorModule extends AbstractModule {
               new BiCacheSettings(PREEMPTION_SLOT_HOLD_TIME.get(), "preemption_slot_cache_size"));
           bind(new TypeLiteral<BiCache<PreemptionProposal, TaskGroupKey>>() { })
               .in(Singleton.class);
+          // Pool threads are daemon threads, so the pool does not need to be shut down.
+          bind(ForkJoinPool.class)
+              .annotatedWith(PendingTaskProcessor.SlotSearchPool.class)
+              .toInstance(new ForkJoinPool(slotSearchThreads));
           bind(PendingTaskProcessor.class).in(Singleton.class);
           bind(ClusterState.class).to(ClusterStateImpl.class);
           bind(ClusterStateImpl.class).in(Singleton.class);
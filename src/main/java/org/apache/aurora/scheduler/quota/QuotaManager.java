@@ -16,7 +16,6 @@ package org.apache.aurora.scheduler.quota;
 import java.util.EnumSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.StreamSupport;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
@@ -457,9 +456,7 @@ public interface QuotaManager {
     }
 
     private static ResourceBag addAll(Iterable<ResourceBag> aggregates) {
-      return StreamSupport.stream(aggregates.spliterator(), false)
-          .reduce((l, r) -> l.add(r))
-          .orElse(EMPTY);
+      return ResourceBag.sum(aggregates);
     }
 
     private static ResourceBag scale(ITaskConfig taskConfig, int instanceCount) {
@@ -13,18 +13,21 @@
  */
 package org.apache.aurora.scheduler.resources;
 
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
-import java.util.function.BinaryOperator;
+import java.util.function.ObjDoubleConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Maps;
 
-import static java.util.stream.Collectors.toMap;
+import static java.util.Objects.requireNonNull;
+
+import static com.google.common.base.Preconditions.checkState;
 
 import static org.apache.aurora.scheduler.resources.ResourceType.CPUS;
 import static org.apache.aurora.scheduler.resources.ResourceType.DISK_MB;
@@ -32,8 +35,17 @@ import static org.apache.aurora.scheduler.resources.ResourceType.RAM_MB;
 
 /**
  * A bag of unique resource values aggregated by {@link ResourceType}.
+ * <p>
+ * Values are kept in a primitive array indexed by resource type, so arithmetic does not box
+ * values or build intermediate maps.  The map-based accessors are views materialized on demand.
  */
 public class ResourceBag {
+  private static final ResourceType[] TYPES = ResourceType.values();
+
+  static {
+    checkState(TYPES.length <= Integer.SIZE, "Too many resource types for a bit mask.");
+  }
+
   public static final ResourceBag EMPTY = new ResourceBag(ImmutableMap.of(
       CPUS, 0.0,
       RAM_MB, 0.0,
@@ -73,7 +85,20 @@ public class ResourceBag {
   public static final Predicate<Map.Entry<ResourceType, Double>> IS_MESOS_REVOCABLE =
       entry -> entry.getKey().isMesosRevocable();
 
-  private final Map<ResourceType, Double> resourceVectors;
+  /**
+   * Resource values indexed by {@link ResourceType#ordinal()}, 0.0 for absent types.
+   */
+  private final double[] values;
+
+  /**
+   * Bit mask of the resource types present in the bag, by {@link ResourceType#ordinal()}.
+   */
+  private final int types;
+
+  /**
+   * Lazily materialized map view of the bag, only built for callers of the map-based API.
+   */
+  private Map<ResourceType, Double> resourceVectors;
 
   /**
    * Creates an instance of ResourceBag with given resource vectors (type -> value).
@@ -81,7 +106,24 @@ public class ResourceBag {
    * @param resourceVectors Map of resource vectors.
    */
   ResourceBag(Map<ResourceType, Double> resourceVectors) {
-    this.resourceVectors = ImmutableMap.copyOf(resourceVectors);
+    double[] newValues = new double[TYPES.length];
+    int newTypes = 0;
+    for (Map.Entry<ResourceType, Double> entry : resourceVectors.entrySet()) {
+      int ordinal = entry.getKey().ordinal();
+      newValues[ordinal] = requireNonNull(entry.getValue());
+      newTypes |= 1 << ordinal;
+    }
+    this.values = newValues;
+    this.types = newTypes;
+  }
+
+  private ResourceBag(double[] values, int types) {
+    this.values = values;
+    this.types = types;
+  }
+
+  private static boolean isPresent(int types, int ordinal) {
+    return (types & (1 << ordinal)) != 0;
   }
 
   /**
@@ -90,6 +132,11 @@ public class ResourceBag {
    * @return Map of resource vectors.
    */
   public Map<ResourceType, Double> getResourceVectors() {
+    if (resourceVectors == null) {
+      Map<ResourceType, Double> vectors = new EnumMap<>(ResourceType.class);
+      forEachVector(vectors::put);
+      resourceVectors = Maps.immutableEnumMap(vectors);
+    }
     return resourceVectors;
   }
 
@@ -99,7 +146,21 @@ public class ResourceBag {
    * @return A stream of resource vectors.
    */
   public Stream<Map.Entry<ResourceType, Double>> streamResourceVectors() {
-    return resourceVectors.entrySet().stream();
+    return getResourceVectors().entrySet().stream();
+  }
+
+  /**
+   * Applies {@code action} to every resource vector in the bag, in {@link ResourceType} order.
+   * Unlike {@link #streamResourceVectors()}, values are not boxed.
+   *
+   * @param action Action to apply to each resource type and its value.
+   */
+  public void forEachVector(ObjDoubleConsumer<ResourceType> action) {
+    for (int i = 0; i < TYPES.length; i++) {
+      if (isPresent(types, i)) {
+        action.accept(TYPES[i], values[i]);
+      }
+    }
   }
 
   /**
@@ -109,7 +170,32 @@ public class ResourceBag {
    * @return Resource value or 0.0 if no mapping for {@code type} is found.
    */
   public Double valueOf(ResourceType type) {
-    return resourceVectors.getOrDefault(type, 0.0);
+    return getValue(type);
+  }
+
+  /**
+   * Same as {@link #valueOf(ResourceType)}, without boxing the result.
+   *
+   * @param type Resource type to get value for.
+   * @return Resource value or 0.0 if no mapping for {@code type} is found.
+   */
+  public double getValue(ResourceType type) {
+    return values[type.ordinal()];
+  }
+
+  /**
+   * Checks whether this bag holds at least the amount of every resource in {@code other}.
+   *
+   * @param other Bag with the required resources.
+   * @return {@code true} if no resource in {@code other} exceeds the value in this bag.
+   */
+  public boolean covers(ResourceBag other) {
+    for (int i = 0; i < TYPES.length; i++) {
+      if (isPresent(other.types, i) && other.values[i] - values[i] > 0) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -119,7 +205,7 @@ public class ResourceBag {
    * @return Result of addition.
    */
   public ResourceBag add(ResourceBag other) {
-    return binaryOp(other, (l, r) -> l + r);
+    return new Accumulator(this).add(other).build();
   }
 
   /**
@@ -129,7 +215,7 @@ public class ResourceBag {
    * @return Result of subtraction.
    */
   public ResourceBag subtract(ResourceBag other) {
-    return binaryOp(other, (l, r) -> l - r);
+    return new Accumulator(this).subtract(other).build();
   }
 
   /**
@@ -141,7 +227,14 @@ public class ResourceBag {
    * @return Result of division.
    */
   public ResourceBag divide(ResourceBag other) {
-    return binaryOp(other, (l, r) -> l / r);
+    int resultTypes = types | other.types;
+    double[] result = new double[TYPES.length];
+    for (int i = 0; i < TYPES.length; i++) {
+      if (isPresent(resultTypes, i)) {
+        result[i] = values[i] / other.values[i];
+      }
+    }
+    return new ResourceBag(result, resultTypes);
   }
 
   /**
@@ -151,7 +244,7 @@ public class ResourceBag {
    * @return A new bag with max resource vectors.
    */
   public ResourceBag max(ResourceBag other) {
-    return binaryOp(other, (l, r) -> Math.max(l, r));
+    return new Accumulator(this).max(other).build();
   }
 
   /**
@@ -161,8 +254,13 @@ public class ResourceBag {
    * @return Result of scale operation.
    */
   public ResourceBag scale(int m) {
-    return new ResourceBag(resourceVectors.entrySet().stream()
-        .collect(toMap(Map.Entry::getKey, v -> v.getValue() * m)));
+    double[] result = new double[TYPES.length];
+    for (int i = 0; i < TYPES.length; i++) {
+      if (isPresent(types, i)) {
+        result[i] = values[i] * m;
+      }
+    }
+    return new ResourceBag(result, types);
   }
 
   /**
@@ -172,30 +270,105 @@ public class ResourceBag {
    * @return A new bag with resources filtered by {@code predicate}.
    */
   public ResourceBag filter(Predicate<Map.Entry<ResourceType, Double>> predicate) {
-    return new ResourceBag(resourceVectors.entrySet().stream()
-        .filter(predicate)
-        .collect(toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    double[] result = new double[TYPES.length];
+    int resultTypes = 0;
+    for (int i = 0; i < TYPES.length; i++) {
+      if (isPresent(types, i) && predicate.test(Maps.immutableEntry(TYPES[i], values[i]))) {
+        result[i] = values[i];
+        resultTypes |= 1 << i;
+      }
+    }
+    return new ResourceBag(result, resultTypes);
   }
 
   /**
-   * Applies {@code operator} to this and {@code other} resource values. Any missing resource type
-   * values on either side will get substituted with 0.0 before applying the operator.
+   * Sums up {@code bags}.
    *
-   * @param other Other ResourceBag.
-   * @param operator Operator to apply.
-   * @return Operation result.
-   */
-  private ResourceBag binaryOp(ResourceBag other, BinaryOperator<Double> operator) {
-    ImmutableMap.Builder<ResourceType, Double> builder = ImmutableMap.builder();
-    Set<ResourceType> resourceTypes =
-        Sets.union(resourceVectors.keySet(), other.getResourceVectors().keySet());
-    for (ResourceType type : resourceTypes) {
-      Double left = resourceVectors.getOrDefault(type, 0.0);
-      Double right = other.getResourceVectors().getOrDefault(type, 0.0);
-      builder.put(type, operator.apply(left, right));
+   * @param bags Bags to sum up.
+   * @return The sum of all bags, or {@link #EMPTY} if there are no bags.
+   */
+  public static ResourceBag sum(Iterable<ResourceBag> bags) {
+    Iterator<ResourceBag> iterator = bags.iterator();
+    if (!iterator.hasNext()) {
+      return EMPTY;
+    }
+
+    Accumulator sum = new Accumulator(iterator.next());
+    while (iterator.hasNext()) {
+      sum.add(iterator.next());
+    }
+    return sum.build();
+  }
+
+  /**
+   * A mutable counterpart of {@link ResourceBag} that applies arithmetic in place, to aggregate
+   * many bags without creating an intermediate bag per operation.  As with {@link ResourceBag},
+   * missing resource values on either side are substituted with 0.0.
+   */
+  public static final class Accumulator {
+    private final double[] values;
+    private int types;
+
+    /**
+     * Creates an accumulator holding the contents of {@code initial}.
+     *
+     * @param initial Initial bag contents.
+     */
+    public Accumulator(ResourceBag initial) {
+      this.values = initial.values.clone();
+      this.types = initial.types;
     }
 
-    return new ResourceBag(builder.build());
+    /**
+     * Adds {@code other} bag contents to this accumulator.
+     *
+     * @param other Other bag to add.
+     * @return This accumulator.
+     */
+    public Accumulator add(ResourceBag other) {
+      for (int i = 0; i < TYPES.length; i++) {
+        values[i] += other.values[i];
+      }
+      types |= other.types;
+      return this;
+    }
+
+    /**
+     * Subtracts {@code other} bag contents from this accumulator.
+     *
+     * @param other Other bag to subtract.
+     * @return This accumulator.
+     */
+    public Accumulator subtract(ResourceBag other) {
+      for (int i = 0; i < TYPES.length; i++) {
+        values[i] -= other.values[i];
+      }
+      types |= other.types;
+      return this;
+    }
+
+    /**
+     * Applies {@code Math.max()} for each resource vector of this accumulator and {@code other}.
+     *
+     * @param other Other bag to compare with.
+     * @return This accumulator.
+     */
+    public Accumulator max(ResourceBag other) {
+      for (int i = 0; i < TYPES.length; i++) {
+        values[i] = Math.max(values[i], other.values[i]);
+      }
+      types |= other.types;
+      return this;
+    }
+
+    /**
+     * Creates a bag with the current contents of this accumulator.
+     *
+     * @return A new bag.
+     */
+    public ResourceBag build() {
+      return new ResourceBag(values.clone(), types);
+    }
   }
 
   @Override
@@ -205,16 +378,18 @@ public class ResourceBag {
     }
 
     ResourceBag other = (ResourceBag) o;
-    return Objects.equals(resourceVectors, other.resourceVectors);
+    return types == other.types && Arrays.equals(values, other.values);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(resourceVectors);
+    return 31 * types + Arrays.hashCode(values);
   }
 
   @Override
   public String toString() {
-    return MoreObjects.toStringHelper(this).add("resourceVectors", resourceVectors).toString();
+    return MoreObjects.toStringHelper(this)
+        .add("resourceVectors", getResourceVectors())
+        .toString();
   }
 }
@@ -28,6 +28,7 @@ import org.apache.aurora.common.quantity.Time;
 import org.apache.aurora.common.util.TruncatedBinaryBackoff;
 import org.apache.aurora.scheduler.base.TaskGroupKey;
 import org.apache.aurora.scheduler.events.PubsubEventModule;
+import org.apache.aurora.scheduler.filter.AttributeAggregateCache;
 import org.apache.aurora.scheduler.preemptor.BiCache;
 import org.apache.aurora.scheduler.scheduling.RescheduleCalculator.RescheduleCalculatorImpl;
 
@@ -78,11 +79,33 @@ public class SchedulingModule extends AbstractModule {
   private static final Arg<Amount<Long, Time>> MAX_SCHEDULE_PENALTY =
       Arg.create(Amount.of(1L, Time.MINUTES));
 
+  @Positive
+  @CmdLine(name = "max_tasks_per_schedule_attempt",
+      help = "The maximum number of tasks to pick in a single scheduling attempt.")
+  private static final Arg<Integer> MAX_TASKS_PER_SCHEDULE_ATTEMPT = Arg.create(5);
+
+  @Positive
+  @CmdLine(name = "scheduling_worker_threads",
+      help = "The number of threads evaluating pending task groups.")
+  private static final Arg<Integer> SCHEDULING_WORKER_THREADS = Arg.create(2);
+
   @CmdLine(name = "offer_reservation_duration", help = "Time to reserve a agent's offers while "
       + "trying to satisfy a task preempting another.")
   private static final Arg<Amount<Long, Time>> RESERVATION_DURATION =
       Arg.create(Amount.of(3L, Time.MINUTES));
 
+  @CmdLine(name = "wake_task_groups_on_capacity",
+      help = "If true, task groups that failed to schedule due to insufficient resources are "
+          + "evaluated again as soon as an offer arrives or a task frees resources, rather than "
+          + "only after their schedule penalty.")
+  private static final Arg<Boolean> WAKE_TASK_GROUPS_ON_CAPACITY = Arg.create(false);
+
+  @Positive
+  @CmdLine(name = "attribute_aggregate_cache_max_jobs",
+      help = "The maximum number of jobs to cache the host attribute aggregates of active tasks "
+          + "for.")
+  private static final Arg<Integer> ATTRIBUTE_AGGREGATE_CACHE_MAX_JOBS = Arg.create(10000);
+
   @Override
   protected void configure() {
     install(new PrivateModule() {
@@ -93,7 +116,15 @@ public class SchedulingModule extends AbstractModule {
             new TruncatedBinaryBackoff(
                 INITIAL_SCHEDULE_PENALTY.get(),
                 MAX_SCHEDULE_PENALTY.get()),
-            RateLimiter.create(MAX_SCHEDULE_ATTEMPTS_PER_SEC.get())));
+            RateLimiter.create(MAX_SCHEDULE_ATTEMPTS_PER_SEC.get()),
+            MAX_TASKS_PER_SCHEDULE_ATTEMPT.get(),
+            WAKE_TASK_GROUPS_ON_CAPACITY.get()));
+
+        bind(SchedulingQueue.SchedulingQueueSettings.class)
+            .toInstance(new SchedulingQueue.SchedulingQueueSettings(
+                SCHEDULING_WORKER_THREADS.get(),
+                MAX_TASKS_PER_SCHEDULE_ATTEMPT.get()));
+        bind(SchedulingQueue.class).in(Singleton.class);
 
         bind(RescheduleCalculatorImpl.RescheduleCalculatorSettings.class)
             .toInstance(new RescheduleCalculatorImpl.RescheduleCalculatorSettings(
@@ -109,6 +140,12 @@ public class SchedulingModule extends AbstractModule {
     });
     PubsubEventModule.bindSubscriber(binder(), TaskGroups.class);
 
+    bind(Integer.class)
+        .annotatedWith(AttributeAggregateCache.MaxCachedJobs.class)
+        .toInstance(ATTRIBUTE_AGGREGATE_CACHE_MAX_JOBS.get());
+    bind(AttributeAggregateCache.class).in(Singleton.class);
+    PubsubEventModule.bindSubscriber(binder(), AttributeAggregateCache.class);
+
     install(new PrivateModule() {
       @Override
       protected void configure() {
@@ -0,0 +1,249 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.scheduling;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+import org.apache.aurora.common.stats.StatsProvider;
+import org.apache.aurora.common.util.Clock;
+import org.apache.aurora.scheduler.base.AsyncUtil;
+import org.apache.aurora.scheduler.base.TaskGroupKey;
+import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Orders the evaluations of task groups that are due, so that the pending tasks of one role can
+ * not starve those of other roles.
+ * <p>
+ * Evaluations are served by deficit round-robin across roles, where the cost of an evaluation is
+ * the number of tasks it attempts to schedule.  Within a role, evaluations of production tasks are
+ * served first, followed by those of higher priority tasks.  Evaluations are run by a dedicated
+ * pool of workers, and each evaluation added to the queue hands the next evaluation in the queue
+ * to a worker.
+ * <p>
+ * A task group has at most one evaluation in the queue.  An evaluation added for a group that is
+ * already queued supersedes the queued evaluation and takes its place, so that the role is only
+ * charged for the evaluation that runs.
+ */
+public class SchedulingQueue {
+  private static final Logger LOG = LoggerFactory.getLogger(SchedulingQueue.class);
+
+  @VisibleForTesting
+  static final String QUEUE_SIZE_STAT = "scheduling_queue_size";
+
+  @VisibleForTesting
+  static final String SUPERSEDED_STAT = "scheduling_queue_superseded_evaluations";
+
+  @VisibleForTesting
+  static String evaluationsStatName(String role) {
+    return "scheduling_queue_evaluations_" + role;
+  }
+
+  @VisibleForTesting
+  static String tasksStatName(String role) {
+    return "scheduling_queue_tasks_" + role;
+  }
+
+  @VisibleForTesting
+  static String waitStatName(String role) {
+    return "scheduling_queue_wait_ms_" + role;
+  }
+
+  public static class SchedulingQueueSettings {
+    private final int workerThreads;
+    private final int quantum;
+
+    /**
+     * Creates settings for the scheduling queue.
+     *
+     * @param workerThreads Number of threads evaluating task groups.
+     * @param quantum Number of tasks each role may attempt to schedule in turn.
+     */
+    public SchedulingQueueSettings(int workerThreads, int quantum) {
+      Preconditions.checkArgument(workerThreads > 0);
+      Preconditions.checkArgument(quantum > 0);
+      this.workerThreads = workerThreads;
+      this.quantum = quantum;
+    }
+  }
+
+  private static final Comparator<Entry> ENTRY_ORDER =
+      Comparator.<Entry>comparingInt(entry -> entry.task.isProduction() ? 0 : 1)
+          .thenComparing(Comparator.<Entry>comparingInt(entry -> entry.task.getPriority())
+              .reversed())
+          .thenComparingLong(entry -> entry.sequence);
+
+  private final Executor workers;
+  private final int quantum;
+  private final Clock clock;
+  private final StatsProvider statsProvider;
+  private final AtomicLong superseded;
+
+  // Roles are retained once seen, to keep their stats.
+  private final Map<String, RoleQueue> roles = Maps.newHashMap();
+  private final Map<TaskGroupKey, Entry> queuedGroups = Maps.newHashMap();
+  private final Deque<RoleQueue> activeRoles = new ArrayDeque<>();
+  private long sequence;
+  private int size;
+
+  @Inject
+  SchedulingQueue(SchedulingQueueSettings settings, Clock clock, StatsProvider statsProvider) {
+    this(
+        AsyncUtil.loggingExecutor(
+            settings.workerThreads,
+            settings.workerThreads,
+            new LinkedBlockingQueue<>(),
+            "TaskGroupEvaluator-%d",
+            LOG),
+        settings.quantum,
+        clock,
+        statsProvider);
+  }
+
+  @VisibleForTesting
+  SchedulingQueue(Executor workers, int quantum, Clock clock, StatsProvider statsProvider) {
+    Preconditions.checkArgument(quantum > 0);
+    this.workers = requireNonNull(workers);
+    this.quantum = quantum;
+    this.clock = requireNonNull(clock);
+    this.statsProvider = requireNonNull(statsProvider);
+    statsProvider.makeGauge(QUEUE_SIZE_STAT, this::size);
+    this.superseded = statsProvider.makeCounter(SUPERSEDED_STAT);
+  }
+
+  private synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Adds an evaluation of a task group to the queue, superseding any queued evaluation of the
+   * group.
+   *
+   * @param groupKey Key of the group to evaluate.
+   * @param tasks Number of tasks the evaluation will attempt to schedule.
+   * @param evaluation Evaluation to run.
+   */
+  void add(TaskGroupKey groupKey, int tasks, Runnable evaluation) {
+    int cost = Math.max(tasks, 1);
+    synchronized (this) {
+      Entry queued = queuedGroups.get(groupKey);
+      if (queued != null) {
+        // The queued entry keeps its place, and a run was already handed to the workers for it.
+        queued.supersede(cost, evaluation);
+        superseded.incrementAndGet();
+        return;
+      }
+
+      String role = groupKey.getTask().getJob().getRole();
+      RoleQueue roleQueue = roles.computeIfAbsent(role, RoleQueue::new);
+      if (roleQueue.entries.isEmpty()) {
+        activeRoles.addLast(roleQueue);
+      }
+      Entry entry = new Entry(groupKey, cost, evaluation, clock.nowMillis(), sequence++);
+      roleQueue.entries.add(entry);
+      queuedGroups.put(groupKey, entry);
+      size++;
+    }
+    workers.execute(this::runNext);
+  }
+
+  private void runNext() {
+    RoleQueue roleQueue;
+    Entry entry;
+    synchronized (this) {
+      // Every evaluation added hands exactly one run to the workers, so the queue is never empty.
+      roleQueue = requireNonNull(activeRoles.peekFirst());
+      while (roleQueue.deficit < roleQueue.entries.peek().cost) {
+        roleQueue.deficit += quantum;
+        activeRoles.addLast(activeRoles.removeFirst());
+        roleQueue = activeRoles.peekFirst();
+      }
+      entry = roleQueue.entries.remove();
+      queuedGroups.remove(entry.groupKey);
+      roleQueue.deficit -= entry.cost;
+      if (roleQueue.entries.isEmpty()) {
+        // An idle role does not accumulate credit.
+        roleQueue.deficit = 0;
+        activeRoles.removeFirst();
+      }
+      size--;
+    }
+
+    roleQueue.evaluations.incrementAndGet();
+    roleQueue.tasks.addAndGet(entry.cost);
+    roleQueue.waitMs.addAndGet(clock.nowMillis() - entry.enqueuedMs);
+    entry.evaluation.run();
+  }
+
+  private final class RoleQueue {
+    private final Queue<Entry> entries = new PriorityQueue<>(ENTRY_ORDER);
+    private final AtomicLong evaluations;
+    private final AtomicLong tasks;
+    private final AtomicLong waitMs;
+    private long deficit;
+
+    RoleQueue(String role) {
+      evaluations = statsProvider.makeCounter(evaluationsStatName(role));
+      tasks = statsProvider.makeCounter(tasksStatName(role));
+      waitMs = statsProvider.makeCounter(waitStatName(role));
+    }
+  }
+
+  private static final class Entry {
+    private final TaskGroupKey groupKey;
+    private final ITaskConfig task;
+    private final long enqueuedMs;
+    private final long sequence;
+    // Not used for ordering, so these may change while the entry is queued.
+    private int cost;
+    private Runnable evaluation;
+
+    Entry(
+        TaskGroupKey groupKey,
+        int cost,
+        Runnable evaluation,
+        long enqueuedMs,
+        long sequence) {
+
+      this.groupKey = groupKey;
+      this.task = groupKey.getTask();
+      this.cost = cost;
+      this.evaluation = evaluation;
+      this.enqueuedMs = enqueuedMs;
+      this.sequence = sequence;
+    }
+
+    void supersede(int newCost, Runnable newEvaluation) {
+      cost = newCost;
+      evaluation = newEvaluation;
+    }
+  }
+}
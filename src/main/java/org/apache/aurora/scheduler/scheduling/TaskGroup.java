@@ -13,36 +13,65 @@
  */
 package org.apache.aurora.scheduler.scheduling;
 
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Queue;
 import java.util.Set;
 
-import com.google.common.base.Optional;
+import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import org.apache.aurora.scheduler.base.TaskGroupKey;
+import org.apache.aurora.scheduler.resources.ResourceBag;
+import org.apache.aurora.scheduler.resources.ResourceManager;
 
 /**
  * A group of task IDs that are eligible for scheduling, but may be waiting for a backoff to expire.
  */
 class TaskGroup {
   private final TaskGroupKey key;
+  private final ResourceBag resourceRequest;
   private long penaltyMs;
   private final Queue<String> tasks;
+  private final Map<String, Long> pendingSinceMs = Maps.newHashMap();
 
-  TaskGroup(TaskGroupKey key, String initialTaskId) {
+  // Identifies the most recently scheduled evaluation of the group.  An evaluation that was
+  // superseded by a later one (when the group is woken up) does nothing.
+  private long evaluation;
+
+  // Whether the group failed to schedule for lack of capacity, and is waiting to be woken up.
+  private boolean awaitingCapacity;
+
+  // Incremented whenever capacity that fits the group is added, to detect capacity that arrived
+  // while the group was being evaluated.
+  private long capacityChanges;
+
+  TaskGroup(TaskGroupKey key, String initialTaskId, long nowMs) {
     this.key = key;
+    this.resourceRequest = ResourceManager.bagFromResources(key.getTask().getResources());
     this.penaltyMs = 0;
     this.tasks = Lists.newLinkedList();
-    this.tasks.add(initialTaskId);
+    offer(initialTaskId, nowMs);
   }
 
   synchronized TaskGroupKey getKey() {
     return key;
   }
 
-  synchronized Optional<String> peek() {
-    return Optional.fromNullable(tasks.peek());
+  /**
+   * Gets the resources requested by each task in the group.
+   *
+   * @return Resources requested by a task.
+   */
+  ResourceBag getResourceRequest() {
+    return resourceRequest;
+  }
+
+  synchronized Set<String> peek(int maxTasks) {
+    return FluentIterable.from(tasks).limit(maxTasks).toSet();
   }
 
   synchronized boolean hasMore() {
@@ -51,10 +80,79 @@ class TaskGroup {
 
   synchronized void remove(String taskId) {
     tasks.remove(taskId);
+    pendingSinceMs.remove(taskId);
   }
 
-  synchronized void offer(String taskId) {
+  synchronized void remove(Set<String> taskIds) {
+    tasks.removeAll(taskIds);
+    pendingSinceMs.keySet().removeAll(taskIds);
+  }
+
+  synchronized void offer(String taskId, long nowMs) {
     tasks.offer(taskId);
+    pendingSinceMs.putIfAbsent(taskId, nowMs);
+  }
+
+  synchronized Optional<Long> getPendingSinceMs(String taskId) {
+    return Optional.ofNullable(pendingSinceMs.get(taskId));
+  }
+
+  /**
+   * Records that an evaluation of the group is being scheduled, superseding any other evaluation.
+   *
+   * @param waitForCapacity Whether the group may be woken up before the evaluation is due.
+   * @return The identifier of the new evaluation.
+   */
+  synchronized long scheduleEvaluation(boolean waitForCapacity) {
+    awaitingCapacity = waitForCapacity;
+    return ++evaluation;
+  }
+
+  /**
+   * Checks whether an evaluation is the most recently scheduled evaluation of the group.
+   *
+   * @param evaluationId Identifier of the evaluation.
+   * @return Whether the evaluation was not superseded.
+   */
+  synchronized boolean isCurrentEvaluation(long evaluationId) {
+    return evaluationId == evaluation;
+  }
+
+  /**
+   * Starts an evaluation, unless it was superseded.
+   *
+   * @param evaluationId Identifier of the evaluation.
+   * @return Whether the evaluation should proceed.
+   */
+  synchronized boolean startEvaluation(long evaluationId) {
+    if (evaluationId != evaluation) {
+      return false;
+    }
+    awaitingCapacity = false;
+    return true;
+  }
+
+  /**
+   * Gets the number of times capacity that fits the group was added.
+   *
+   * @return Capacity changes observed by the group.
+   */
+  synchronized long getCapacityChanges() {
+    return capacityChanges;
+  }
+
+  /**
+   * Records that capacity that fits the group was added, and schedules an immediate evaluation if
+   * the group is waiting for capacity.
+   *
+   * @return The identifier of the new evaluation, or absent if the group was not waiting.
+   */
+  synchronized OptionalLong capacityAdded() {
+    capacityChanges++;
+    if (!awaitingCapacity) {
+      return OptionalLong.empty();
+    }
+    return OptionalLong.of(scheduleEvaluation(false));
   }
 
   synchronized void setPenaltyMs(long penaltyMs) {
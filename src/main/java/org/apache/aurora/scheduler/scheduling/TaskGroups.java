@@ -13,11 +13,13 @@
  */
 package org.apache.aurora.scheduler.scheduling;
 
+import java.util.OptionalLong;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -27,15 +29,23 @@ import com.google.common.util.concurrent.RateLimiter;
 
 import org.apache.aurora.common.quantity.Amount;
 import org.apache.aurora.common.quantity.Time;
+import org.apache.aurora.common.stats.Percentile;
 import org.apache.aurora.common.stats.SlidingStats;
+import org.apache.aurora.common.stats.Stats;
 import org.apache.aurora.common.util.BackoffStrategy;
-import org.apache.aurora.scheduler.async.AsyncModule.AsyncExecutor;
+import org.apache.aurora.common.util.Clock;
+import org.apache.aurora.scheduler.async.AsyncModule.SchedulingExecutor;
 import org.apache.aurora.scheduler.async.DelayExecutor;
 import org.apache.aurora.scheduler.base.TaskGroupKey;
 import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.events.PubsubEvent.EventSubscriber;
+import org.apache.aurora.scheduler.events.PubsubEvent.OfferAdded;
 import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
 import org.apache.aurora.scheduler.events.PubsubEvent.TasksDeleted;
+import org.apache.aurora.scheduler.filter.SchedulingFilter.VetoType;
+import org.apache.aurora.scheduler.metadata.NearestFit;
+import org.apache.aurora.scheduler.resources.ResourceBag;
+import org.apache.aurora.scheduler.resources.ResourceManager;
 import org.apache.aurora.scheduler.storage.entities.IAssignedTask;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 
@@ -51,7 +61,8 @@ import static org.apache.aurora.gen.ScheduleStatus.PENDING;
  * <p>
  * This is used to prevent redundant work in trying to schedule tasks as well as to provide
  * nearly-equal responsiveness when scheduling across jobs.  In other words, a 1000 instance job
- * cannot starve a 1 instance job.
+ * cannot starve a 1 instance job.  Likewise, groups that are due for evaluation are ordered by a
+ * {@link SchedulingQueue} so that a role with many pending tasks cannot starve other roles.
  */
 public class TaskGroups implements EventSubscriber {
 
@@ -59,93 +70,195 @@ public class TaskGroups implements EventSubscriber {
   private final DelayExecutor executor;
   private final TaskScheduler taskScheduler;
   private final long firstScheduleDelay;
+  private final int batchSize;
   private final BackoffStrategy backoff;
   private final RescheduleCalculator rescheduleCalculator;
+  private final NearestFit nearestFit;
+  private final Clock clock;
+  private final SchedulingQueue schedulingQueue;
+  private final boolean wakeOnCapacity;
+
+  private final AtomicLong capacityWakeups = Stats.exportLong("task_group_capacity_wakeups");
 
   // Track the penalties of tasks at the time they were scheduled. This is to provide data that
   // may influence the selection of a different backoff strategy.
   private final SlidingStats scheduledTaskPenalties =
       new SlidingStats("scheduled_task_penalty", "ms");
 
+  // Time from a task joining its group until it was scheduled.
+  private final Percentile<Long> schedulingLatency =
+      new Percentile<>("task_scheduling_latency_ms", 1, null, 50, 90, 99);
+
   public static class TaskGroupsSettings {
     private final Amount<Long, Time> firstScheduleDelay;
     private final BackoffStrategy taskGroupBackoff;
     private final RateLimiter rateLimiter;
+    private final int maxTasksPerSchedule;
+    private final boolean wakeOnCapacity;
 
     public TaskGroupsSettings(
         Amount<Long, Time> firstScheduleDelay,
         BackoffStrategy taskGroupBackoff,
-        RateLimiter rateLimiter) {
+        RateLimiter rateLimiter,
+        int maxTasksPerSchedule) {
+
+      this(firstScheduleDelay, taskGroupBackoff, rateLimiter, maxTasksPerSchedule, false);
+    }
+
+    public TaskGroupsSettings(
+        Amount<Long, Time> firstScheduleDelay,
+        BackoffStrategy taskGroupBackoff,
+        RateLimiter rateLimiter,
+        int maxTasksPerSchedule,
+        boolean wakeOnCapacity) {
 
       this.firstScheduleDelay = requireNonNull(firstScheduleDelay);
       this.taskGroupBackoff = requireNonNull(taskGroupBackoff);
       this.rateLimiter = requireNonNull(rateLimiter);
+      this.maxTasksPerSchedule = maxTasksPerSchedule;
+      this.wakeOnCapacity = wakeOnCapacity;
     }
   }
 
   @Inject
   TaskGroups(
-      @AsyncExecutor DelayExecutor executor,
+      @SchedulingExecutor DelayExecutor executor,
       TaskGroupsSettings settings,
       TaskScheduler taskScheduler,
-      RescheduleCalculator rescheduleCalculator) {
+      RescheduleCalculator rescheduleCalculator,
+      NearestFit nearestFit,
+      Clock clock,
+      SchedulingQueue schedulingQueue) {
 
     requireNonNull(settings.firstScheduleDelay);
     Preconditions.checkArgument(settings.firstScheduleDelay.getValue() > 0);
+    Preconditions.checkArgument(settings.maxTasksPerSchedule > 0);
 
     this.executor = requireNonNull(executor);
     requireNonNull(settings.rateLimiter);
     requireNonNull(taskScheduler);
     this.firstScheduleDelay = settings.firstScheduleDelay.as(Time.MILLISECONDS);
+    this.batchSize = settings.maxTasksPerSchedule;
     this.backoff = requireNonNull(settings.taskGroupBackoff);
     this.rescheduleCalculator = requireNonNull(rescheduleCalculator);
+    this.nearestFit = requireNonNull(nearestFit);
+    this.clock = requireNonNull(clock);
+    this.schedulingQueue = requireNonNull(schedulingQueue);
+    this.wakeOnCapacity = settings.wakeOnCapacity;
 
-    this.taskScheduler = taskId -> {
+    this.taskScheduler = taskIds -> {
       settings.rateLimiter.acquire();
-      return taskScheduler.schedule(taskId);
+      return taskScheduler.schedule(taskIds);
     };
   }
 
-  private synchronized void evaluateGroupLater(Runnable evaluate, TaskGroup group) {
+  private synchronized void evaluateGroupLater(TaskGroup group, boolean waitForCapacity) {
     // Avoid check-then-act by holding the intrinsic lock.  If not done atomically, we could
     // remove a group while a task is being added to it.
     if (group.hasMore()) {
-      executor.execute(evaluate, Amount.of(group.getPenaltyMs(), Time.MILLISECONDS));
+      long evaluation = group.scheduleEvaluation(waitForCapacity);
+      executor.execute(
+          () -> enqueue(group, evaluation),
+          Amount.of(group.getPenaltyMs(), Time.MILLISECONDS));
     } else {
       groups.remove(group.getKey());
     }
   }
 
-  private void startGroup(final TaskGroup group) {
-    Runnable monitor = new Runnable() {
-      @Override
-      public void run() {
-        Optional<String> taskId = group.peek();
-        long penaltyMs = 0;
-        if (taskId.isPresent()) {
-          if (taskScheduler.schedule(taskId.get())) {
-            scheduledTaskPenalties.accumulate(group.getPenaltyMs());
-            group.remove(taskId.get());
-            if (group.hasMore()) {
-              penaltyMs = firstScheduleDelay;
-            }
-          } else {
-            penaltyMs = backoff.calculateBackoffMs(group.getPenaltyMs());
-          }
+  private void enqueue(TaskGroup group, long evaluation) {
+    // The scheduling queue replaces a queued evaluation of the group with the one added last, so
+    // the group is locked to keep a superseded evaluation from being added after a newer one.
+    synchronized (group) {
+      if (group.isCurrentEvaluation(evaluation)) {
+        schedulingQueue.add(
+            group.getKey(),
+            group.peek(batchSize).size(),
+            () -> evaluate(group, evaluation));
+      }
+    }
+  }
+
+  private void evaluate(TaskGroup group, long evaluation) {
+    if (!group.startEvaluation(evaluation)) {
+      // The group was woken up, and this evaluation was superseded.
+      return;
+    }
+
+    long capacityChanges = group.getCapacityChanges();
+    Set<String> taskIds = group.peek(batchSize);
+    long penaltyMs = 0;
+    boolean waitForCapacity = false;
+    if (!taskIds.isEmpty()) {
+      Set<String> scheduled = taskScheduler.schedule(taskIds);
+      if (!scheduled.isEmpty()) {
+        scheduledTaskPenalties.accumulate(group.getPenaltyMs());
+        long nowMs = clock.nowMillis();
+        for (String taskId : scheduled) {
+          group.getPendingSinceMs(taskId)
+              .ifPresent(sinceMs -> schedulingLatency.record(nowMs - sinceMs));
         }
+        group.remove(scheduled);
+        if (group.hasMore()) {
+          penaltyMs = firstScheduleDelay;
+        }
+      } else {
+        // The backoff still applies to groups waiting for capacity, since preemption is only
+        // attempted when a group is evaluated.
+        penaltyMs = backoff.calculateBackoffMs(group.getPenaltyMs());
+        waitForCapacity = wakeOnCapacity && couldUseCapacity(group.getKey());
+      }
+    }
+
+    group.setPenaltyMs(penaltyMs);
+    evaluateGroupLater(group, waitForCapacity);
+    if (waitForCapacity && group.getCapacityChanges() != capacityChanges) {
+      wake(group);
+    }
+  }
 
-        group.setPenaltyMs(penaltyMs);
-        evaluateGroupLater(this, group);
+  /**
+   * Determines whether new capacity could allow a group to be scheduled, which is the case when
+   * the closest fit for the group was only vetoed for insufficient resources, or no fit was
+   * recorded at all.
+   */
+  private boolean couldUseCapacity(TaskGroupKey groupKey) {
+    return nearestFit.getNearestFit(groupKey).stream()
+        .allMatch(veto -> veto.getVetoType() == VetoType.INSUFFICIENT_RESOURCES);
+  }
+
+  private void wake(TaskGroup group) {
+    OptionalLong evaluation = group.capacityAdded();
+    if (evaluation.isPresent()) {
+      capacityWakeups.incrementAndGet();
+      enqueue(group, evaluation.getAsLong());
+    }
+  }
+
+  /**
+   * Wakes up the groups waiting for capacity whose tasks would fit in the added resources.  Groups
+   * requesting more than was added could not be scheduled any sooner, so they keep their backoff.
+   *
+   * @param capacity Resources that were added.
+   */
+  private void capacityAdded(ResourceBag capacity) {
+    if (wakeOnCapacity) {
+      for (TaskGroup group : groups.values()) {
+        if (capacity.covers(group.getResourceRequest())) {
+          wake(group);
+        }
       }
-    };
-    evaluateGroupLater(monitor, group);
+    }
+  }
+
+  private void startGroup(TaskGroup group) {
+    evaluateGroupLater(group, false);
   }
 
   /**
    * Informs the task groups of a task state change.
    * <p>
    * This is used to observe {@link org.apache.aurora.gen.ScheduleStatus#PENDING} tasks and begin
-   * attempting to schedule them.
+   * attempting to schedule them, and to observe terminated tasks that free up capacity.
    *
    * @param stateChange State change notification.
    */
@@ -154,7 +267,7 @@ public class TaskGroups implements EventSubscriber {
     if (stateChange.getNewState() == PENDING) {
       IScheduledTask task = stateChange.getTask();
       TaskGroupKey key = TaskGroupKey.from(task.getAssignedTask().getTask());
-      TaskGroup newGroup = new TaskGroup(key, Tasks.id(task));
+      TaskGroup newGroup = new TaskGroup(key, Tasks.id(task), clock.nowMillis());
       TaskGroup existing = groups.putIfAbsent(key, newGroup);
       if (existing == null) {
         long penaltyMs;
@@ -166,11 +279,29 @@ public class TaskGroups implements EventSubscriber {
         newGroup.setPenaltyMs(penaltyMs);
         startGroup(newGroup);
       } else {
-        existing.offer(Tasks.id(task));
+        existing.offer(Tasks.id(task), clock.nowMillis());
       }
+    } else if (stateChange.isTransition()
+        && Tasks.SLAVE_ASSIGNED_STATES.contains(stateChange.getOldState().get())
+        && Tasks.isTerminated(stateChange.getNewState())) {
+
+      // The resources of the terminated task will be offered again.
+      capacityAdded(ResourceManager.bagFromResources(
+          stateChange.getTask().getAssignedTask().getTask().getResources()));
     }
   }
 
+  /**
+   * Wakes up the groups waiting for capacity that fits in an added offer.
+   *
+   * @param event Offer added event.
+   */
+  @Subscribe
+  public void offerAdded(OfferAdded event) {
+    capacityAdded(ResourceManager.bagFromMesosResources(
+        event.getOffer().getOffer().getResourcesList()));
+  }
+
   /**
    * Signals the scheduler that tasks have been deleted.
    *
@@ -15,6 +15,8 @@ package org.apache.aurora.scheduler.scheduling;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
@@ -22,7 +24,10 @@ import javax.inject.Qualifier;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.eventbus.Subscribe;
 
 import org.apache.aurora.common.inject.TimedInterceptor.Timed;
@@ -33,6 +38,7 @@ import org.apache.aurora.scheduler.configuration.executor.ExecutorSettings;
 import org.apache.aurora.scheduler.events.PubsubEvent.EventSubscriber;
 import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
 import org.apache.aurora.scheduler.filter.AttributeAggregate;
+import org.apache.aurora.scheduler.filter.AttributeAggregateCache;
 import org.apache.aurora.scheduler.filter.SchedulingFilter.ResourceRequest;
 import org.apache.aurora.scheduler.preemptor.BiCache;
 import org.apache.aurora.scheduler.preemptor.Preemptor;
@@ -60,13 +66,16 @@ import static org.apache.aurora.scheduler.resources.ResourceManager.bagFromResou
 public interface TaskScheduler extends EventSubscriber {
 
   /**
-   * Attempts to schedule a task, possibly performing irreversible actions.
+   * Attempts to schedule a batch of tasks, possibly performing irreversible actions.  All tasks
+   * are matched against offers within a single storage transaction.
    *
-   * @param taskId The task to attempt to schedule.
-   * @return {@code true} if the task was scheduled, {@code false} otherwise. The caller should
-   *         call schedule again if {@code false} is returned.
+   * @param taskIds The tasks to attempt to schedule.  All tasks must belong to the same
+   *                {@link TaskGroupKey}.
+   * @return IDs of the tasks that no longer need to be scheduled, either because they were
+   *         scheduled or because they are no longer {@code PENDING}.  The caller should call
+   *         schedule again for any task ID absent from the result.
    */
-  boolean schedule(String taskId);
+  Set<String> schedule(Set<String> taskIds);
 
   /**
    * An asynchronous task scheduler.  Scheduling of tasks is performed on a delay, where each task
@@ -90,6 +99,7 @@ public interface TaskScheduler extends EventSubscriber {
     private final Preemptor preemptor;
     private final ExecutorSettings executorSettings;
     private final BiCache<String, TaskGroupKey> reservations;
+    private final AttributeAggregateCache aggregateCache;
 
     private final AtomicLong attemptsFired = Stats.exportLong("schedule_attempts_fired");
     private final AtomicLong attemptsFailed = Stats.exportLong("schedule_attempts_failed");
@@ -101,67 +111,82 @@ public interface TaskScheduler extends EventSubscriber {
         TaskAssigner assigner,
         Preemptor preemptor,
         ExecutorSettings executorSettings,
-        BiCache<String, TaskGroupKey> reservations) {
+        BiCache<String, TaskGroupKey> reservations,
+        AttributeAggregateCache aggregateCache) {
 
       this.storage = requireNonNull(storage);
       this.assigner = requireNonNull(assigner);
       this.preemptor = requireNonNull(preemptor);
       this.executorSettings = requireNonNull(executorSettings);
       this.reservations = requireNonNull(reservations);
+      this.aggregateCache = requireNonNull(aggregateCache);
     }
 
     @Timed("task_schedule_attempt")
     @Override
-    public boolean schedule(final String taskId) {
-      attemptsFired.incrementAndGet();
+    public Set<String> schedule(final Set<String> taskIds) {
+      attemptsFired.addAndGet(taskIds.size());
       try {
-        return storage.write(store -> scheduleTask(store, taskId));
+        return storage.write(store -> scheduleTasks(store, taskIds));
       } catch (RuntimeException e) {
         // We catch the generic unchecked exception here to ensure tasks are not abandoned
         // if there is a transient issue resulting in an unchecked exception.
         LOG.warn("Task scheduling unexpectedly failed, will be retried", e);
-        attemptsFailed.incrementAndGet();
-        return false;
+        attemptsFailed.addAndGet(taskIds.size());
+        return ImmutableSet.of();
       }
     }
 
     @Timed("task_schedule_attempt_locked")
-    protected boolean scheduleTask(MutableStoreProvider store, String taskId) {
-      LOG.debug("Attempting to schedule task " + taskId);
-      IAssignedTask assignedTask = Iterables.getOnlyElement(
+    protected Set<String> scheduleTasks(MutableStoreProvider store, Set<String> taskIds) {
+      LOG.debug("Attempting to schedule tasks " + taskIds);
+      Map<String, IAssignedTask> pendingTasks = Maps.uniqueIndex(
           Iterables.transform(
-              store.getTaskStore().fetchTasks(Query.taskScoped(taskId).byStatus(PENDING)),
+              store.getTaskStore().fetchTasks(Query.taskScoped(taskIds).byStatus(PENDING)),
               IScheduledTask::getAssignedTask),
-          null);
-
-      if (assignedTask == null) {
-        LOG.warn("Failed to look up task " + taskId + ", it may have been deleted.");
-      } else {
-        ITaskConfig task = assignedTask.getTask();
-        AttributeAggregate aggregate = AttributeAggregate.getJobActiveState(store, task.getJob());
-
-        boolean launched = assigner.maybeAssign(
-            store,
-            new ResourceRequest(
-                task,
-                bagFromResources(task.getResources()).add(executorSettings.getExecutorOverhead()),
-                aggregate),
-            TaskGroupKey.from(task),
-            taskId,
-            reservations.asMap());
-
-        if (!launched) {
-          // Task could not be scheduled.
-          // TODO(maxim): Now that preemption slots are searched asynchronously, consider
-          // retrying a launch attempt within the current scheduling round IFF a reservation is
-          // available.
-          maybePreemptFor(assignedTask, aggregate, store);
-          attemptsNoMatch.incrementAndGet();
-          return false;
-        }
+          IAssignedTask::getTaskId);
+
+      // Tasks that are no longer PENDING require no further scheduling attempts.
+      Set<String> missing = ImmutableSet.copyOf(Sets.difference(taskIds, pendingTasks.keySet()));
+      if (!missing.isEmpty()) {
+        LOG.warn("Failed to look up tasks " + missing + ", they may have been deleted.");
+      }
+      if (pendingTasks.isEmpty()) {
+        return missing;
+      }
+
+      // Preserve the order requested by the caller, since it reflects queueing order.
+      Set<String> pendingIds = ImmutableSet.copyOf(
+          Iterables.filter(taskIds, pendingTasks::containsKey));
+      ITaskConfig task = pendingTasks.get(Iterables.getFirst(pendingIds, null)).getTask();
+      AttributeAggregate aggregate = aggregateCache.getAggregate(store, task.getJob());
+
+      Set<String> launched = assigner.maybeAssign(
+          store,
+          new ResourceRequest(
+              task,
+              bagFromResources(task.getResources()).add(executorSettings.getExecutorOverhead()),
+              aggregate),
+          TaskGroupKey.from(task),
+          pendingIds,
+          reservations.asMap());
+
+      if (launched.size() < pendingIds.size()) {
+        // Some tasks could not be scheduled.
+        // TODO(maxim): Now that preemption slots are searched asynchronously, consider
+        // retrying a launch attempt within the current scheduling round IFF a reservation is
+        // available.
+        String unscheduled = Iterables.find(pendingIds, taskId -> !launched.contains(taskId));
+        maybePreemptFor(pendingTasks.get(unscheduled), aggregate, store);
+        attemptsNoMatch.addAndGet(pendingIds.size() - launched.size());
+      }
+      if (!launched.isEmpty()) {
+        // Make the placements visible to subsequent attempts before the corresponding task state
+        // changes are delivered to the cache.
+        aggregateCache.update(store, launched);
       }
 
-      return true;
+      return ImmutableSet.copyOf(Sets.union(launched, missing));
     }
 
     private void maybePreemptFor(
@@ -13,6 +13,7 @@
  */
 package org.apache.aurora.scheduler.state;
 
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
@@ -21,6 +22,7 @@ import javax.inject.Inject;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
 
 import org.apache.aurora.common.inject.TimedInterceptor.Timed;
 import org.apache.aurora.common.stats.Stats;
@@ -54,21 +56,23 @@ import static org.apache.mesos.Protos.Offer;
  */
 public interface TaskAssigner {
   /**
-   * Tries to match a task against an offer.  If a match is found, the assigner makes the
-   * appropriate changes to the task and requests task launch.
+   * Tries to match a batch of tasks from the same task group against offers.  For each match
+   * found, the assigner makes the appropriate changes to the task and requests task launch.
+   * Each offer is used for at most one task, and the job state of the {@code resourceRequest}
+   * is updated after every assignment so that subsequent matches observe the launched tasks.
    *
    * @param storeProvider Storage provider.
    * @param resourceRequest The request for resources being scheduled.
    * @param groupKey Task group key.
-   * @param taskId Task id to assign.
+   * @param taskIds Task ids to assign, in the order they should be attempted.
    * @param slaveReservations Slave reservations.
-   * @return Assignment result.
+   * @return IDs of the tasks that were assigned and launched.
    */
-  boolean maybeAssign(
+  Set<String> maybeAssign(
       MutableStoreProvider storeProvider,
       ResourceRequest resourceRequest,
       TaskGroupKey groupKey,
-      String taskId,
+      Iterable<String> taskIds,
       Map<String, TaskGroupKey> slaveReservations);
 
   class TaskAssignerImpl implements TaskAssigner {
@@ -132,14 +136,22 @@ public interface TaskAssigner {
 
     @Timed("assigner_maybe_assign")
     @Override
-    public boolean maybeAssign(
+    public Set<String> maybeAssign(
         MutableStoreProvider storeProvider,
         ResourceRequest resourceRequest,
         TaskGroupKey groupKey,
-        String taskId,
+        Iterable<String> taskIds,
         Map<String, TaskGroupKey> slaveReservations) {
 
-      for (HostOffer offer : offerManager.getOffers(groupKey)) {
+      ImmutableSet.Builder<String> assigned = ImmutableSet.builder();
+      Iterator<String> remainingTasks = taskIds.iterator();
+      if (!remainingTasks.hasNext()) {
+        return assigned.build();
+      }
+
+      String taskId = remainingTasks.next();
+      TierInfo tierInfo = tierManager.getTier(groupKey.getTask());
+      for (HostOffer offer : offerManager.getOffers(groupKey, resourceRequest.getResourceBag())) {
         Optional<TaskGroupKey> reservedGroup = Optional.fromNullable(
             slaveReservations.get(offer.getOffer().getSlaveId().getValue()));
 
@@ -148,7 +160,6 @@ public interface TaskAssigner {
           continue;
         }
 
-        TierInfo tierInfo = tierManager.getTier(groupKey.getTask());
         Set<Veto> vetoes = filter.filter(
             new UnusedResource(offer.getResourceBag(tierInfo), offer.getAttributes()),
             resourceRequest);
@@ -161,7 +172,7 @@ public interface TaskAssigner {
 
           try {
             offerManager.launchTask(offer.getOffer().getId(), taskInfo);
-            return true;
+            assigned.add(taskId);
           } catch (OfferManager.LaunchException e) {
             LOG.warn("Failed to launch task.", e);
             launchFailures.incrementAndGet();
@@ -177,8 +188,19 @@ public interface TaskAssigner {
                 Optional.of(PENDING),
                 LOST,
                 LAUNCH_FAILED_MSG);
-            return false;
+
+            // Abandon the rest of the batch, it will be retried after backing off.
+            break;
           }
+
+          if (!remainingTasks.hasNext()) {
+            break;
+          }
+
+          // Account for the launched task before matching the next one against limit
+          // constraints.
+          resourceRequest.getJobState().updateAttributeAggregate(offer.getAttributes());
+          taskId = remainingTasks.next();
         } else {
           if (Veto.identifyGroup(vetoes) == VetoGroup.STATIC) {
             // Never attempt to match this offer/groupKey pair again.
@@ -189,7 +211,7 @@ public interface TaskAssigner {
               + " vetoed task " + taskId + ": " + vetoes);
         }
       }
-      return false;
+      return assigned.build();
     }
   }
 }
@@ -17,6 +17,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 import javax.inject.Inject;
 
@@ -28,7 +29,6 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.FluentIterable;
-import com.google.common.collect.Iterables;
 
 import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.Tasks;
@@ -55,10 +55,13 @@ public class ResourceCounter {
     this.storage = Objects.requireNonNull(storage);
   }
 
-  private Iterable<ITaskConfig> getTasks(Query.Builder query) throws StorageException {
-    return Iterables.transform(
-        Storage.Util.fetchTasks(storage, query),
-        Tasks::getConfig);
+  private void visitTasks(Query.Builder query, Consumer<ITaskConfig> consumer)
+      throws StorageException {
+
+    Storage.Util.visitTasks(storage, query, task -> {
+      consumer.accept(Tasks.getConfig(task));
+      return true;
+    });
   }
 
   private static final Function<MetricType, Metric> TO_METRIC = Metric::new;
@@ -74,11 +77,11 @@ public class ResourceCounter {
         .transform(TO_METRIC)
         .toList();
 
-    for (ITaskConfig task : getTasks(Query.unscoped().active())) {
+    visitTasks(Query.unscoped().active(), task -> {
       for (Metric count : counts) {
         count.accumulate(task);
       }
-    }
+    });
     return counts;
   }
 
@@ -118,9 +121,11 @@ public class ResourceCounter {
             return new Metric();
           }
         });
-    for (ITaskConfig task : Iterables.filter(getTasks(query), filter)) {
-      metrics.getUnchecked(keyFunction.apply(task)).accumulate(task);
-    }
+    visitTasks(query, task -> {
+      if (filter.apply(task)) {
+        metrics.getUnchecked(keyFunction.apply(task)).accumulate(task);
+      }
+    });
     return metrics.asMap();
   }
 
@@ -139,7 +144,7 @@ public class ResourceCounter {
 
   public static class Metric {
     public final MetricType type;
-    private ResourceBag bag;
+    private final ResourceBag.Accumulator bag;
 
     public Metric() {
       this(MetricType.TOTAL_CONSUMED);
@@ -150,27 +155,27 @@ public class ResourceCounter {
     }
 
     public Metric(Metric copy) {
-      this(copy.type, copy.bag);
+      this(copy.type, copy.getBag());
     }
 
     @VisibleForTesting
     Metric(MetricType type, ResourceBag bag) {
       this.type = type;
-      this.bag = bag;
+      this.bag = new ResourceBag.Accumulator(bag);
     }
 
     void accumulate(ITaskConfig task) {
       if (type.filter.apply(task)) {
-        bag = bag.add(QUOTA_RESOURCES.apply(task));
+        bag.add(QUOTA_RESOURCES.apply(task));
       }
     }
 
     void accumulate(IResourceAggregate aggregate) {
-      bag = bag.add(ResourceManager.bagFromAggregate(aggregate));
+      bag.add(ResourceManager.bagFromAggregate(aggregate));
     }
 
     public ResourceBag getBag() {
-      return bag;
+      return bag.build();
     }
 
     @Override
@@ -181,12 +186,12 @@ public class ResourceCounter {
 
       Metric other = (Metric) o;
       return Objects.equals(other.type, this.type)
-          && Objects.equals(other.bag, this.bag);
+          && Objects.equals(other.getBag(), this.getBag());
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(type, bag);
+      return Objects.hash(type, getBag());
     }
   }
 }
@@ -299,6 +299,26 @@ public interface Storage {
       return storage.read(storeProvider -> storeProvider.getTaskStore().fetchTasks(query));
     }
 
+    /**
+     * Visits tasks matching the query returned by {@code query} from {@code storage} in a
+     * read operation, without collecting them first.
+     *
+     * @see TaskStore#visitTasks
+     * @param storage Storage instance to query from.
+     * @param query Builder of the query to perform.
+     * @param visitor Visitor to receive matching tasks.
+     */
+    public static void visitTasks(
+        Storage storage,
+        Builder query,
+        TaskStore.TaskVisitor visitor) {
+
+      storage.read(storeProvider -> {
+        storeProvider.getTaskStore().visitTasks(query, visitor);
+        return null;
+      });
+    }
+
     public static Optional<IScheduledTask> fetchTask(Storage storage, String taskId) {
       return storage.read(storeProvider -> storeProvider.getTaskStore().fetchTask(taskId));
     }
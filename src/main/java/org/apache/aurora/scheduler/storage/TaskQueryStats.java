@@ -0,0 +1,210 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import org.apache.aurora.common.stats.StatsProvider;
+import org.apache.aurora.scheduler.base.JobKeys;
+import org.apache.aurora.scheduler.base.Query;
+import org.apache.aurora.scheduler.storage.entities.ITaskQuery;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tracks task store queries by their shape, to tell which callers issue queries that examine many
+ * more tasks than they return, and would benefit from an index.
+ * <p>
+ * For each shape, the number of queries, their total latency and the total numbers of tasks
+ * examined and returned are exported as stats.  Latencies and result sizes are also exported as
+ * cumulative histograms, whose bucket counts are not tracked as time series.
+ */
+public class TaskQueryStats {
+
+  /**
+   * The shape of a task query, determined by its most selective populated field.
+   */
+  public enum Shape {
+    BY_ID,
+    BY_JOB,
+    BY_HOST,
+    BY_ROLE,
+    BY_STATUS,
+    FULL_SCAN;
+
+    /**
+     * Classifies a query.
+     *
+     * @param query Query to classify.
+     * @return The shape of {@code query}.
+     */
+    public static Shape of(Query.Builder query) {
+      ITaskQuery taskQuery = query.get();
+      if (!taskQuery.getTaskIds().isEmpty()) {
+        return BY_ID;
+      } else if (JobKeys.from(query).isPresent()) {
+        return BY_JOB;
+      } else if (!taskQuery.getSlaveHosts().isEmpty()) {
+        return BY_HOST;
+      } else if (taskQuery.getRole() != null
+          && !CharMatcher.WHITESPACE.matchesAllOf(taskQuery.getRole())) {
+        // Blank roles do not restrict queries, see TaskStore.Util#queryFilter.
+        return BY_ROLE;
+      } else if (!taskQuery.getStatuses().isEmpty()) {
+        return BY_STATUS;
+      } else {
+        return FULL_SCAN;
+      }
+    }
+
+    String statName() {
+      return name().toLowerCase(Locale.ENGLISH);
+    }
+  }
+
+  private static final long[] LATENCY_BUCKETS_MICROS = {10, 100, 1000, 10000, 100000, 1000000};
+  private static final long[] RESULT_SIZE_BUCKETS = {0, 1, 10, 100, 1000, 10000, 100000};
+
+  private final Map<Shape, ShapeStats> stats;
+
+  @Inject
+  public TaskQueryStats(StatsProvider statsProvider) {
+    requireNonNull(statsProvider);
+    Map<Shape, ShapeStats> byShape = new EnumMap<>(Shape.class);
+    for (Shape shape : Shape.values()) {
+      byShape.put(shape, new ShapeStats(shape, statsProvider));
+    }
+    stats = Maps.immutableEnumMap(byShape);
+  }
+
+  @VisibleForTesting
+  static String statName(Shape shape, String stat) {
+    return "task_store_query_" + shape.statName() + "_" + stat;
+  }
+
+  /**
+   * Records a completed query.
+   *
+   * @param query Query that was executed.
+   * @param latencyNanos Time taken to execute the query.
+   * @param examined Number of stored tasks that were examined to find the result.
+   * @param returned Number of tasks in the result.
+   */
+  public void record(Query.Builder query, long latencyNanos, long examined, long returned) {
+    stats.get(Shape.of(query)).record(latencyNanos, examined, returned);
+  }
+
+  /**
+   * Gets a point-in-time view of the stats of all query shapes, suitable for serialization.
+   *
+   * @return Stats, keyed by query shape.
+   */
+  public Map<Shape, Map<String, Object>> snapshot() {
+    ImmutableMap.Builder<Shape, Map<String, Object>> snapshot = ImmutableMap.builder();
+    for (Map.Entry<Shape, ShapeStats> entry : stats.entrySet()) {
+      snapshot.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return snapshot.build();
+  }
+
+  private static final class ShapeStats {
+    private final AtomicLong queries;
+    private final AtomicLong latencyNanos;
+    private final AtomicLong examined;
+    private final AtomicLong returned;
+    private final Histogram latencyMicros;
+    private final Histogram resultSize;
+
+    ShapeStats(Shape shape, StatsProvider statsProvider) {
+      queries = statsProvider.makeCounter(statName(shape, "queries"));
+      latencyNanos = statsProvider.makeCounter(statName(shape, "latency_nanos"));
+      examined = statsProvider.makeCounter(statName(shape, "tasks_examined"));
+      returned = statsProvider.makeCounter(statName(shape, "tasks_returned"));
+      latencyMicros = new Histogram(
+          statName(shape, "latency_micros"),
+          LATENCY_BUCKETS_MICROS,
+          statsProvider.untracked());
+      resultSize = new Histogram(
+          statName(shape, "result_size"),
+          RESULT_SIZE_BUCKETS,
+          statsProvider.untracked());
+    }
+
+    void record(long latency, long examinedTasks, long returnedTasks) {
+      queries.incrementAndGet();
+      latencyNanos.addAndGet(latency);
+      examined.addAndGet(examinedTasks);
+      returned.addAndGet(returnedTasks);
+      latencyMicros.record(latency / 1000);
+      resultSize.record(returnedTasks);
+    }
+
+    Map<String, Object> snapshot() {
+      return ImmutableMap.<String, Object>builder()
+          .put("queries", queries.get())
+          .put("latency_nanos", latencyNanos.get())
+          .put("tasks_examined", examined.get())
+          .put("tasks_returned", returned.get())
+          .put("latency_micros", latencyMicros.snapshot())
+          .put("result_size", resultSize.snapshot())
+          .build();
+    }
+  }
+
+  /**
+   * A cumulative histogram with fixed bucket bounds, where each bucket counts the recorded values
+   * less than or equal to its bound.
+   */
+  private static final class Histogram {
+    private final long[] bounds;
+    private final AtomicLong[] buckets;
+
+    Histogram(String name, long[] bounds, StatsProvider statsProvider) {
+      this.bounds = bounds;
+      buckets = new AtomicLong[bounds.length + 1];
+      for (int i = 0; i < bounds.length; i++) {
+        buckets[i] = statsProvider.makeCounter(name + "_le_" + bounds[i]);
+      }
+      buckets[bounds.length] = statsProvider.makeCounter(name + "_le_inf");
+    }
+
+    void record(long value) {
+      for (int i = 0; i < bounds.length; i++) {
+        if (value <= bounds[i]) {
+          buckets[i].incrementAndGet();
+        }
+      }
+      buckets[bounds.length].incrementAndGet();
+    }
+
+    Map<String, Long> snapshot() {
+      ImmutableMap.Builder<String, Long> snapshot = ImmutableMap.builder();
+      for (int i = 0; i < bounds.length; i++) {
+        snapshot.put("le_" + bounds[i], buckets[i].get());
+      }
+      snapshot.put("le_inf", buckets[bounds.length].get());
+      return snapshot.build();
+    }
+  }
+}
@@ -18,6 +18,7 @@ import java.util.Set;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
+import com.google.common.collect.FluentIterable;
 
 import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.Tasks;
@@ -44,12 +45,33 @@ public interface TaskStore {
   /**
    * Fetches a read-only view of tasks matching a query and filters. Intended for use with a
    * {@link Query.Builder}.
+   * <p>
+   * If the query is {@link Util#isPaginated(ITaskQuery) paginated}, matching tasks are ordered by
+   * task ID, start after the query's continuation token, and are restricted to the page described
+   * by the query's offset and limit.
    *
    * @param query Builder of the query to identify tasks with.
    * @return A read-only view of matching tasks.
    */
   Iterable<IScheduledTask> fetchTasks(Query.Builder query);
 
+  /**
+   * Passes tasks matching a query to a visitor, one at a time, until either all matching tasks
+   * have been visited or the visitor asks to stop.  Unlike {@link #fetchTasks(Query.Builder)},
+   * matching tasks are not collected before they are handed out, so this is preferable for
+   * read-only consumers that only need a single pass over a potentially large result.
+   * <p>
+   * The visitor is invoked within the calling storage operation, and should not retain references
+   * to the store or perform storage operations of its own.
+   * <p>
+   * Paginated queries are applied as described for {@link #fetchTasks(Query.Builder)}, and
+   * visiting stops once the requested page has been visited.
+   *
+   * @param query Builder of the query to identify tasks with.
+   * @param visitor Visitor to receive matching tasks.
+   */
+  void visitTasks(Query.Builder query, TaskVisitor visitor);
+
   /**
    * Fetches all job keys represented in the task store.
    *
@@ -57,6 +79,21 @@ public interface TaskStore {
    */
   Set<IJobKey> getJobKeys();
 
+  /**
+   * Receives tasks matched by {@link #visitTasks(Query.Builder, TaskVisitor)}.
+   */
+  @FunctionalInterface
+  interface TaskVisitor {
+
+    /**
+     * Visits a matching task.
+     *
+     * @param task A task matching the query.
+     * @return {@code true} to continue visiting tasks, {@code false} to stop.
+     */
+    boolean visit(IScheduledTask task);
+  }
+
   interface Mutable extends TaskStore {
 
     /**
@@ -146,6 +183,10 @@ public interface TaskStore {
         if (!query.getTaskIds().isEmpty() && !query.getTaskIds().contains(Tasks.id(task))) {
           return false;
         }
+        if (query.isSetContinuationToken()
+            && Tasks.id(task).compareTo(query.getContinuationToken()) <= 0) {
+          return false;
+        }
 
         if (!query.getStatuses().isEmpty() && !query.getStatuses().contains(task.getStatus())) {
           return false;
@@ -162,5 +203,48 @@ public interface TaskStore {
         return true;
       };
     }
+
+    /**
+     * Checks whether a query requests a page of tasks, which requires matching tasks to be ordered.
+     *
+     * @param query Query to test.
+     * @return {@code true} if the query has an offset, limit or continuation token.
+     */
+    public static boolean isPaginated(ITaskQuery query) {
+      return query.getOffset() > 0 || query.getLimit() > 0 || query.isSetContinuationToken();
+    }
+
+    /**
+     * Creates a continuation token that resumes a paginated query after a task.
+     *
+     * @param lastTask Last task of a page.
+     * @return A token to resume the query with.
+     */
+    public static String continuationToken(IScheduledTask lastTask) {
+      // Paginated queries are ordered by task ID, so the ID alone identifies where to resume.
+      return Tasks.id(lastTask);
+    }
+
+    /**
+     * Restricts tasks to the page described by a query's offset and limit.
+     *
+     * @param query Query describing the page.
+     * @param orderedTasks Matching tasks, ordered by task ID and starting after the query's
+     *                     continuation token.
+     * @return The tasks within the requested page.
+     */
+    public static FluentIterable<IScheduledTask> paginate(
+        ITaskQuery query,
+        FluentIterable<IScheduledTask> orderedTasks) {
+
+      FluentIterable<IScheduledTask> page = orderedTasks;
+      if (query.getOffset() > 0) {
+        page = page.skip(query.getOffset());
+      }
+      if (query.getLimit() > 0) {
+        page = page.limit(query.getLimit());
+      }
+      return page;
+    }
   }
 }
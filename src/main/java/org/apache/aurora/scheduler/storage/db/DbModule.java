@@ -48,9 +48,11 @@ import org.apache.aurora.scheduler.storage.LockStore;
 import org.apache.aurora.scheduler.storage.QuotaStore;
 import org.apache.aurora.scheduler.storage.SchedulerStore;
 import org.apache.aurora.scheduler.storage.Storage;
+import org.apache.aurora.scheduler.storage.TaskQueryStats;
 import org.apache.aurora.scheduler.storage.TaskStore;
 import org.apache.aurora.scheduler.storage.db.typehandlers.TypeHandlers;
 import org.apache.aurora.scheduler.storage.mem.InMemStoresModule;
+import org.apache.aurora.scheduler.storage.mem.MemJobUpdateStore;
 import org.apache.ibatis.migration.JavaMigrationLoader;
 import org.apache.ibatis.migration.MigrationLoader;
 import org.apache.ibatis.session.AutoMappingBehavior;
@@ -73,6 +75,10 @@ public final class DbModule extends PrivateModule {
       help = "Whether to use the experimental database-backed task store.")
   public static final Arg<Boolean> USE_DB_TASK_STORE = Arg.create(false);
 
+  @CmdLine(name = "use_mem_job_update_store",
+      help = "Whether to keep job updates in an in-memory store rather than in the database.")
+  public static final Arg<Boolean> USE_MEM_JOB_UPDATE_STORE = Arg.create(false);
+
   @CmdLine(name = "slow_query_log_threshold",
       help = "Log all queries that take at least this long to execute.")
   private static final Arg<Amount<Long, Time>> SLOW_QUERY_LOG_THRESHOLD =
@@ -117,16 +123,19 @@ public final class DbModule extends PrivateModule {
 
   private final KeyFactory keyFactory;
   private final Module taskStoresModule;
+  private final boolean memJobUpdateStore;
   private final String jdbcSchema;
 
   private DbModule(
       KeyFactory keyFactory,
       Module taskStoresModule,
+      boolean memJobUpdateStore,
       String dbName,
       Map<String, String> jdbcUriArgs) {
 
     this.keyFactory = requireNonNull(keyFactory);
     this.taskStoresModule = requireNonNull(taskStoresModule);
+    this.memJobUpdateStore = memJobUpdateStore;
 
     Map<String, String> args = ImmutableMap.<String, String>builder()
         .putAll(jdbcUriArgs)
@@ -155,15 +164,25 @@ public final class DbModule extends PrivateModule {
     return new DbModule(
         keyFactory,
         getTaskStoreModule(keyFactory),
+        USE_MEM_JOB_UPDATE_STORE.get(),
         "aurora",
         ImmutableMap.of("DB_CLOSE_DELAY", "-1"));
   }
 
   @VisibleForTesting
   public static Module testModule(KeyFactory keyFactory, Optional<Module> taskStoreModule) {
+    return testModule(keyFactory, taskStoreModule, false);
+  }
+
+  private static Module testModule(
+      KeyFactory keyFactory,
+      Optional<Module> taskStoreModule,
+      boolean memJobUpdateStore) {
+
     return new DbModule(
         keyFactory,
         taskStoreModule.isPresent() ? taskStoreModule.get() : getTaskStoreModule(keyFactory),
+        memJobUpdateStore,
         "testdb-" + UUID.randomUUID().toString(),
         // A non-zero close delay is used here to avoid eager database cleanup in tests that
         // make use of multiple threads.  Since all test databases are separately scoped by the
@@ -196,23 +215,7 @@ public final class DbModule extends PrivateModule {
       KeyFactory keyFactory,
       Optional<Module> taskStoreModule) {
 
-    return Modules.combine(
-        new AbstractModule() {
-          @Override
-          protected void configure() {
-            bind(GatedWorkQueue.class).annotatedWith(AsyncExecutor.class).toInstance(
-                new GatedWorkQueue() {
-                  @Override
-                  public <T, E extends Exception> T closeDuring(
-                      GatedOperation<T, E> operation) throws E {
-
-                    return operation.doWithGateClosed();
-                  }
-                });
-          }
-        },
-        testModule(keyFactory, taskStoreModule)
-    );
+    return Modules.combine(workQueueModule(), testModule(keyFactory, taskStoreModule));
   }
 
   /**
@@ -228,6 +231,38 @@ public final class DbModule extends PrivateModule {
         Optional.of(new TaskStoreModule(KeyFactory.PLAIN)));
   }
 
+  /**
+   * Same as {@link #testModuleWithWorkQueue()} but with the in-memory job update store.
+   *
+   * @return A new database module for testing.
+   */
+  @VisibleForTesting
+  public static Module testModuleWithMemJobUpdateStore() {
+    return Modules.combine(
+        workQueueModule(),
+        testModule(
+            KeyFactory.PLAIN,
+            Optional.of(new TaskStoreModule(KeyFactory.PLAIN)),
+            true));
+  }
+
+  private static Module workQueueModule() {
+    return new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(GatedWorkQueue.class).annotatedWith(AsyncExecutor.class).toInstance(
+            new GatedWorkQueue() {
+              @Override
+              public <T, E extends Exception> T closeDuring(
+                  GatedOperation<T, E> operation) throws E {
+
+                return operation.doWithGateClosed();
+              }
+            });
+      }
+    };
+  }
+
   private static Module getTaskStoreModule(KeyFactory keyFactory) {
     return USE_DB_TASK_STORE.get()
         ? new TaskStoreModule(keyFactory)
@@ -292,6 +327,9 @@ public final class DbModule extends PrivateModule {
         expose(JobKeyMapper.class);
       }
     });
+    // Shared by whichever task store is installed, and exposed for the /storage/queries endpoint.
+    bind(TaskQueryStats.class).in(Singleton.class);
+    expose(TaskQueryStats.class);
     install(taskStoresModule);
     expose(keyFactory.create(CronJobStore.Mutable.class));
     expose(keyFactory.create(TaskStore.Mutable.class));
@@ -300,7 +338,11 @@ public final class DbModule extends PrivateModule {
     bindStore(LockStore.Mutable.class, DbLockStore.class);
     bindStore(QuotaStore.Mutable.class, DbQuotaStore.class);
     bindStore(SchedulerStore.Mutable.class, DbSchedulerStore.class);
-    bindStore(JobUpdateStore.Mutable.class, DbJobUpdateStore.class);
+    if (memJobUpdateStore) {
+      bindStore(JobUpdateStore.Mutable.class, MemJobUpdateStore.class);
+    } else {
+      bindStore(JobUpdateStore.Mutable.class, DbJobUpdateStore.class);
+    }
 
     Key<Storage> storageKey = keyFactory.create(Storage.class);
     bind(storageKey).to(DbStorage.class);
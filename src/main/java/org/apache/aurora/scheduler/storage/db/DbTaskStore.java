@@ -13,16 +13,17 @@
  */
 package org.apache.aurora.scheduler.storage.db;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -36,6 +37,7 @@ import org.apache.aurora.gen.ScheduledTask;
 import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.Query.Builder;
 import org.apache.aurora.scheduler.base.Tasks;
+import org.apache.aurora.scheduler.storage.TaskQueryStats;
 import org.apache.aurora.scheduler.storage.TaskStore;
 import org.apache.aurora.scheduler.storage.db.views.DbScheduledTask;
 import org.apache.aurora.scheduler.storage.entities.IJobKey;
@@ -59,23 +61,29 @@ class DbTaskStore implements TaskStore.Mutable {
 
   private static final Logger LOG = LoggerFactory.getLogger(DbTaskStore.class);
 
+  @VisibleForTesting
+  static final int BATCH_SIZE = 500;
+
   private final TaskMapper taskMapper;
   private final TaskConfigManager configManager;
   private final Clock clock;
   private final long slowQueryThresholdNanos;
+  private final TaskQueryStats queryStats;
 
   @Inject
   DbTaskStore(
       TaskMapper taskMapper,
       TaskConfigManager configManager,
       Clock clock,
-      Amount<Long, Time> slowQueryThreshold) {
+      Amount<Long, Time> slowQueryThreshold,
+      TaskQueryStats queryStats) {
 
     LOG.warn("DbTaskStore is experimental, and should not be used in production clusters!");
     this.taskMapper = requireNonNull(taskMapper);
     this.configManager = requireNonNull(configManager);
     this.clock = requireNonNull(clock);
     this.slowQueryThresholdNanos =  slowQueryThreshold.as(Time.NANOSECONDS);
+    this.queryStats = requireNonNull(queryStats);
   }
 
   @Timed("db_storage_fetch_task")
@@ -91,21 +99,48 @@ class DbTaskStore implements TaskStore.Mutable {
   public Iterable<IScheduledTask> fetchTasks(Builder query) {
     requireNonNull(query);
 
-    // TODO(wfarner): Consider making slow query logging more reusable, or pushing it down into the
-    //                database.
     long start = clock.nowNanos();
-    Iterable<IScheduledTask> result = matches(query);
-    long durationNanos = clock.nowNanos() - start;
+    AtomicLong examined = new AtomicLong();
+    List<IScheduledTask> result = matches(query, examined).toList();
+    recordQuery(query, clock.nowNanos() - start, examined.get(), result.size());
+
+    return result;
+  }
+
+  @Timed("db_storage_visit_tasks")
+  @Override
+  public void visitTasks(Builder query, TaskVisitor visitor) {
+    requireNonNull(query);
+    requireNonNull(visitor);
+
+    // Rows are still fetched as a list, but tasks are only converted to their immutable form as
+    // they are visited, which avoids that work entirely for tasks past an early stop.
+    long start = clock.nowNanos();
+    AtomicLong examined = new AtomicLong();
+    long visited = 0;
+    for (IScheduledTask task : matches(query, examined)) {
+      visited++;
+      if (!visitor.visit(task)) {
+        break;
+      }
+    }
+    recordQuery(query, clock.nowNanos() - start, examined.get(), visited);
+  }
+
+  // TODO(wfarner): Consider making slow query logging more reusable, or pushing it down into the
+  //                database.
+  private void recordQuery(Builder query, long durationNanos, long examined, long returned) {
+    queryStats.record(query, durationNanos, examined, returned);
+
     boolean infoLevel = durationNanos >= slowQueryThresholdNanos;
     long time = Amount.of(durationNanos, Time.NANOSECONDS).as(Time.MILLISECONDS);
-    String message = "Query took {} ms: {}";
+    String message = "Query took {} ms, returning {} of {} fetched tasks ({}): {}";
+    Object[] args = {time, returned, examined, TaskQueryStats.Shape.of(query), query.get()};
     if (infoLevel) {
-      LOG.info(message, time, query.get());
+      LOG.info(message, args);
     } else {
-      LOG.debug(message, time, query.get());
+      LOG.debug(message, args);
     }
-
-    return result;
   }
 
   @Timed("db_storage_get_job_keys")
@@ -126,27 +161,28 @@ class DbTaskStore implements TaskStore.Mutable {
 
     deleteTasks(Tasks.ids(tasks));
 
-    // Maintain a cache of all task configs that exist for a job key so that identical entities
-    LoadingCache<ITaskConfig, Long> configCache = CacheBuilder.newBuilder()
-        .build(new CacheLoader<ITaskConfig, Long>() {
-          @Override
-          public Long load(ITaskConfig config) {
-            return configManager.insert(config);
-          }
-        });
-
-    for (IScheduledTask task : tasks) {
-      InsertResult result = new InsertResult();
-      taskMapper.insertScheduledTask(
-          task,
-          configCache.getUnchecked(task.getAssignedTask().getTask()),
-          result);
-
-      if (!task.getTaskEvents().isEmpty()) {
-        taskMapper.insertTaskEvents(result.getId(), task.getTaskEvents());
+    // Insert each distinct config once, fetching the stored configs of each job only once.
+    Map<ITaskConfig, Long> configIds =
+        configManager.insert(FluentIterable.from(tasks).transform(Tasks::getConfig).toSet());
+
+    // Tasks and their associations are inserted with one multi-row statement per batch, rather than
+    // statements per task.  The batch size bounds the size of the generated statements.
+    for (List<IScheduledTask> batch : Iterables.partition(tasks, BATCH_SIZE)) {
+      taskMapper.insertScheduledTasks(FluentIterable.from(batch)
+          .transform(task -> new TaskInsert(task, configIds.get(Tasks.getConfig(task))))
+          .toList());
+
+      List<IScheduledTask> withEvents = FluentIterable.from(batch)
+          .filter(task -> !task.getTaskEvents().isEmpty())
+          .toList();
+      if (!withEvents.isEmpty()) {
+        taskMapper.insertTaskEvents(withEvents);
       }
-      if (!task.getAssignedTask().getAssignedPorts().isEmpty()) {
-        taskMapper.insertPorts(result.getId(), task.getAssignedTask().getAssignedPorts());
+      List<IScheduledTask> withPorts = FluentIterable.from(batch)
+          .filter(task -> !task.getAssignedTask().getAssignedPorts().isEmpty())
+          .toList();
+      if (!withPorts.isEmpty()) {
+        taskMapper.insertPorts(withPorts);
       }
     }
   }
@@ -160,8 +196,8 @@ class DbTaskStore implements TaskStore.Mutable {
   @Timed("db_storage_delete_tasks")
   @Override
   public void deleteTasks(Set<String> taskIds) {
-    if (!taskIds.isEmpty()) {
-      taskMapper.deleteTasks(taskIds);
+    for (List<String> batch : Iterables.partition(taskIds, BATCH_SIZE)) {
+      taskMapper.deleteTasks(ImmutableSet.copyOf(batch));
     }
   }
 
@@ -203,7 +239,9 @@ class DbTaskStore implements TaskStore.Mutable {
     return false;
   }
 
-  private FluentIterable<IScheduledTask> matches(Query.Builder query) {
+  // Tasks are counted as examined when their rows are fetched, as the database does not report
+  // the number of rows it scanned.
+  private FluentIterable<IScheduledTask> matches(Query.Builder query, AtomicLong examined) {
     Iterable<DbScheduledTask> results;
     Predicate<IScheduledTask> filter;
     if (query.get().getTaskIds().size() == 1) {
@@ -219,8 +257,14 @@ class DbTaskStore implements TaskStore.Mutable {
       filter = Predicates.alwaysTrue();
     }
 
-    return FluentIterable.from(results)
-        .transform(DbScheduledTask::toImmutable)
+    FluentIterable<IScheduledTask> matches = FluentIterable.from(results)
+        .transform(row -> {
+          examined.incrementAndGet();
+          return row.toImmutable();
+        })
         .filter(filter);
+    // The select orders paginated queries, but the offset and limit are applied here since rows
+    // of the joined one-to-many relations do not correspond to tasks.
+    return Util.isPaginated(query.get()) ? Util.paginate(query.get(), matches) : matches;
   }
 }
@@ -13,12 +13,15 @@
  */
 package org.apache.aurora.scheduler.storage.db;
 
+import java.util.Collection;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 
 import javax.inject.Inject;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimaps;
 
 import org.apache.aurora.scheduler.storage.db.views.DBResourceAggregate;
 import org.apache.aurora.scheduler.storage.db.views.DbTaskConfig;
@@ -27,6 +30,7 @@ import org.apache.aurora.scheduler.storage.entities.IConstraint;
 import org.apache.aurora.scheduler.storage.entities.IDockerContainer;
 import org.apache.aurora.scheduler.storage.entities.IDockerImage;
 import org.apache.aurora.scheduler.storage.entities.IImage;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
 import org.apache.aurora.scheduler.storage.entities.IValueConstraint;
 
@@ -42,31 +46,55 @@ class TaskConfigManager {
     this.jobKeyMapper = requireNonNull(jobKeyMapper);
   }
 
-  private Optional<Long> getConfigRow(ITaskConfig config) {
-    // NOTE: The 'config' object passed in MUST have all version-relevant fields populated in order
-    // to correctly compare with objects loaded from DB. This may not hold true if a 'config' is
-    // passed from storage recovery routine during version downgrade and fields are not properly
-    // backfilled. See AURORA-1603 for more details.
+  private Map<ITaskConfig, Long> getConfigRows(IJobKey job) {
+    // NOTE: The configs looked up in the returned map MUST have all version-relevant fields
+    // populated in order to correctly compare with objects loaded from DB. This may not hold true
+    // if a config is passed from storage recovery routine during version downgrade and fields are
+    // not properly backfilled. See AURORA-1603 for more details.
 
     // We could optimize this slightly by first comparing the un-hydrated row and breaking early.
-    Map<ITaskConfig, DbTaskConfig> rowsByConfig =
-        Maps.uniqueIndex(
-            configMapper.selectConfigsByJob(config.getJob()),
-            DbTaskConfig::toImmutable);
-
-    return Optional.ofNullable(rowsByConfig.get(config)).map(DbTaskConfig::getRowId);
+    return Maps.transformValues(
+        Maps.uniqueIndex(configMapper.selectConfigsByJob(job), DbTaskConfig::toImmutable),
+        DbTaskConfig::getRowId);
   }
 
   long insert(ITaskConfig config) {
-    InsertResult configInsert = new InsertResult();
+    return insert(ImmutableSet.of(config)).get(config);
+  }
 
-    // Determine whether this config is already stored.
-    Optional<Long> existingRow = getConfigRow(config);
-    if (existingRow.isPresent()) {
-      return existingRow.get();
+  /**
+   * Inserts task configs that are not already stored.  The stored configs of each job are only
+   * fetched once, so that inserting configs of many tasks of the same job does not repeatedly
+   * fetch and compare them.
+   *
+   * @param configs Configs to insert.
+   * @return The row IDs of all {@code configs}, whether they were inserted or already stored.
+   */
+  Map<ITaskConfig, Long> insert(Set<ITaskConfig> configs) {
+    Map<ITaskConfig, Long> rowIds = Maps.newHashMapWithExpectedSize(configs.size());
+    for (Map.Entry<IJobKey, Collection<ITaskConfig>> job
+        : Multimaps.index(configs, ITaskConfig::getJob).asMap().entrySet()) {
+
+      Map<ITaskConfig, Long> existingRows = getConfigRows(job.getKey());
+      boolean jobKeyMerged = false;
+      for (ITaskConfig config : job.getValue()) {
+        Long existingRow = existingRows.get(config);
+        if (existingRow == null) {
+          if (!jobKeyMerged) {
+            jobKeyMapper.merge(job.getKey());
+            jobKeyMerged = true;
+          }
+          rowIds.put(config, insertNew(config));
+        } else {
+          rowIds.put(config, existingRow);
+        }
+      }
     }
+    return rowIds;
+  }
 
-    jobKeyMapper.merge(config.getJob());
+  private long insertNew(ITaskConfig config) {
+    InsertResult configInsert = new InsertResult();
     configMapper.insert(config, configInsert);
     for (IConstraint constraint : config.getConstraints()) {
       InsertResult constraintResult = new InsertResult();
@@ -0,0 +1,39 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.db;
+
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A task to insert, along with the row ID of its already-stored task config.
+ */
+public class TaskInsert {
+  private final IScheduledTask task;
+  private final long configId;
+
+  TaskInsert(IScheduledTask task, long configId) {
+    this.task = requireNonNull(task);
+    this.configId = configId;
+  }
+
+  public IScheduledTask getTask() {
+    return task;
+  }
+
+  public long getConfigId() {
+    return configId;
+  }
+}
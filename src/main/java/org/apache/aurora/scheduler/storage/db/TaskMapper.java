@@ -14,7 +14,6 @@
 package org.apache.aurora.scheduler.storage.db;
 
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nullable;
@@ -22,7 +21,6 @@ import javax.annotation.Nullable;
 import org.apache.aurora.gen.JobKey;
 import org.apache.aurora.scheduler.storage.db.views.DbScheduledTask;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
-import org.apache.aurora.scheduler.storage.entities.ITaskEvent;
 import org.apache.aurora.scheduler.storage.entities.ITaskQuery;
 import org.apache.ibatis.annotations.Param;
 
@@ -32,17 +30,16 @@ import org.apache.ibatis.annotations.Param;
 interface TaskMapper {
 
   /**
-   * Inserts a scheduled task.
+   * Inserts scheduled tasks with a single statement.  The row IDs of the inserted tasks are not
+   * returned.
    *
-   * @param task Task to insert.
+   * @param rows Tasks to insert, along with the row IDs of their task configs.
    */
-  void insertScheduledTask(
-      @Param("task") IScheduledTask task,
-      @Param("configId") long configId,
-      @Param("result") InsertResult result);
+  void insertScheduledTasks(@Param("rows") List<TaskInsert> rows);
 
   /**
-   * Gets tasks based on a query.
+   * Gets tasks based on a query.  Tasks of a paginated query are ordered by task ID and start after
+   * the query's continuation token, but the query's offset and limit are not applied.
    *
    * @param query Query to use as a filter for tasks.
    * @return Tasks matching the query.
@@ -66,24 +63,20 @@ interface TaskMapper {
   Set<JobKey> selectJobKeys();
 
   /**
-   * Inserts the task events association within an
-   * {@link org.apache.aurora.scheduler.storage.entities.IScheduledTask}.
+   * Inserts the task events associations of previously-inserted tasks.  Every task must have at
+   * least one event.
    *
-   * @param taskRowId Task row ID.
-   * @param events Events to insert.
+   * @param tasks Tasks whose events should be inserted.
    */
-  void insertTaskEvents(
-      @Param("taskRowId") long taskRowId,
-      @Param("events") List<ITaskEvent> events);
+  void insertTaskEvents(@Param("tasks") List<IScheduledTask> tasks);
 
   /**
-   * Inserts the assigned ports association within an
-   * {@link org.apache.aurora.scheduler.storage.entities.IScheduledTask}.
+   * Inserts the assigned ports associations of previously-inserted tasks.  Every task must have at
+   * least one assigned port.
    *
-   * @param taskRowId Task row ID.
-   * @param ports Assigned ports to insert.
+   * @param tasks Tasks whose assigned ports should be inserted.
    */
-  void insertPorts(@Param("taskRowId") long taskRowId, @Param("ports") Map<String, Integer> ports);
+  void insertPorts(@Param("tasks") List<IScheduledTask> tasks);
 
   /**
    * Deletes all task rows.
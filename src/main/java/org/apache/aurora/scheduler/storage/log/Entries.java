@@ -13,12 +13,28 @@
  */
 package org.apache.aurora.scheduler.storage.log;
 
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.Executor;
+
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
 
 import org.apache.aurora.codec.ThriftBinaryCodec;
 import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
+import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Data;
+import org.apache.aurora.gen.storage.CompressedEntry;
+import org.apache.aurora.gen.storage.CompressionCodec;
 import org.apache.aurora.gen.storage.LogEntry;
 import org.apache.aurora.gen.storage.LogEntry._Fields;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TIOStreamTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -79,6 +95,139 @@ public final class Entries {
     return ThriftBinaryCodec.encodeNonNull(entry);
   }
 
+  /**
+   * Encodes a log entry into compressed blocks, compressing blocks concurrently.
+   *
+   * @param entry Entry to compress.
+   * @param codec Codec to compress the entry with.
+   * @param executor Executor to compress blocks on.
+   * @param blockSize Size of the blocks of encoded data to compress independently.
+   * @param maxPendingBlocks Maximum number of blocks awaiting compression.
+   * @return Blocks of the compressed entry, to be serialized with
+   *         {@link #thriftBinaryEncodeCompressed(CompressionCodec, List)}.
+   * @throws CodingException If the entry could not be encoded or compressed.
+   */
+  static List<byte[]> compress(
+      LogEntry entry,
+      CompressionCodec codec,
+      Executor executor,
+      Amount<Integer, Data> blockSize,
+      int maxPendingBlocks) throws CodingException {
+
+    switch (codec) {
+      case DEFLATE:
+        return ThriftBinaryCodec.deflateNonNull(entry, executor, blockSize, maxPendingBlocks);
+      case LZ4:
+        return ThriftBinaryCodec.lz4CompressNonNull(entry, executor, blockSize, maxPendingBlocks);
+      default:
+        throw new IllegalArgumentException("Unsupported compression codec " + codec);
+    }
+  }
+
+  /**
+   * Decompresses and deserializes a compressed log entry.
+   * <p>
+   * This requires that the {@code compressedEntry} field is set on the provided {@code entry}.
+   *
+   * @param entry Entry to decompress, which must be a compressed entry.
+   * @return The decompressed entry.
+   * @throws CodingException If the codec is not known, or the value could not be decompressed or
+   *                         decoded.
+   */
+  static LogEntry decompress(LogEntry entry) throws CodingException {
+    Preconditions.checkArgument(entry.isSet(_Fields.COMPRESSED_ENTRY));
+
+    CompressedEntry compressed = entry.getCompressedEntry();
+    // Codecs added by newer schedulers decode to null.
+    if (compressed.getCodec() == null) {
+      throw new CodingException("Log entry was compressed with an unknown codec.");
+    }
+    switch (compressed.getCodec()) {
+      case DEFLATE:
+        return ThriftBinaryCodec.inflateNonNull(LogEntry.class, compressed.getData());
+      case LZ4:
+        return ThriftBinaryCodec.lz4DecompressNonNull(LogEntry.class, compressed.getData());
+      default:
+        throw new CodingException("Unsupported compression codec " + compressed.getCodec());
+    }
+  }
+
+  /**
+   * Thrift binary-encodes a compressed log entry, with the value set to the concatenation of
+   * compressed blocks, without copying the blocks.
+   * <p>
+   * Entries compressed with {@link CompressionCodec#DEFLATE} are encoded with the
+   * {@code deflatedEntry} field set, so that they can be read by schedulers predating other codecs.
+   * Other entries are encoded with the {@code compressedEntry} field set.  Concatenating the
+   * returned segments yields the same encoding as {@link #thriftBinaryEncode(LogEntry)} of the
+   * equivalent entry.
+   *
+   * @param codec Codec the entry was compressed with.
+   * @param compressedBlocks Blocks of the compressed entry.
+   * @return The serialized entry, as a sequence of segments.
+   * @throws CodingException If the entry could not be encoded.
+   */
+  static List<byte[]> thriftBinaryEncodeCompressed(
+      CompressionCodec codec,
+      List<byte[]> compressedBlocks) throws CodingException {
+
+    long length = 0;
+    for (byte[] block : compressedBlocks) {
+      length += block.length;
+    }
+
+    // Mirrors the encoding of a union, with the binary field value written in place.
+    ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+    ByteArrayOutputStream suffix = new ByteArrayOutputStream();
+    try {
+      TProtocol prefixProtocol =
+          ThriftBinaryCodec.PROTOCOL_FACTORY.getProtocol(new TIOStreamTransport(prefix));
+      TProtocol suffixProtocol =
+          ThriftBinaryCodec.PROTOCOL_FACTORY.getProtocol(new TIOStreamTransport(suffix));
+      prefixProtocol.writeStructBegin(new TStruct(LogEntry.class.getSimpleName()));
+      if (codec == CompressionCodec.DEFLATE) {
+        prefixProtocol.writeFieldBegin(new TField(
+            _Fields.DEFLATED_ENTRY.getFieldName(),
+            TType.STRING,
+            _Fields.DEFLATED_ENTRY.getThriftFieldId()));
+        prefixProtocol.writeI32(Ints.checkedCast(length));
+      } else {
+        prefixProtocol.writeFieldBegin(new TField(
+            _Fields.COMPRESSED_ENTRY.getFieldName(),
+            TType.STRUCT,
+            _Fields.COMPRESSED_ENTRY.getThriftFieldId()));
+        prefixProtocol.writeStructBegin(new TStruct(CompressedEntry.class.getSimpleName()));
+        prefixProtocol.writeFieldBegin(new TField(
+            CompressedEntry._Fields.CODEC.getFieldName(),
+            TType.I32,
+            CompressedEntry._Fields.CODEC.getThriftFieldId()));
+        prefixProtocol.writeI32(codec.getValue());
+        prefixProtocol.writeFieldEnd();
+        prefixProtocol.writeFieldBegin(new TField(
+            CompressedEntry._Fields.DATA.getFieldName(),
+            TType.STRING,
+            CompressedEntry._Fields.DATA.getThriftFieldId()));
+        prefixProtocol.writeI32(Ints.checkedCast(length));
+
+        suffixProtocol.writeFieldEnd();
+        suffixProtocol.writeFieldStop();
+        suffixProtocol.writeStructEnd();
+      }
+
+      suffixProtocol.writeFieldEnd();
+      suffixProtocol.writeFieldStop();
+      suffixProtocol.writeStructEnd();
+    } catch (TException | IllegalArgumentException e) {
+      throw new CodingException("Failed to encode compressed entry.", e);
+    }
+
+    return ImmutableList.<byte[]>builder()
+        .add(prefix.toByteArray())
+        .addAll(compressedBlocks)
+        .add(suffix.toByteArray())
+        .build();
+  }
+
   /**
    * Decodes a byte array containing thrift binary-encoded data.
    *
@@ -15,6 +15,7 @@ package org.apache.aurora.scheduler.storage.log;
 
 import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.List;
 
 import javax.inject.Inject;
 
@@ -23,10 +24,14 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
 
 import org.apache.aurora.common.inject.TimedInterceptor.Timed;
 import org.apache.aurora.common.quantity.Amount;
 import org.apache.aurora.common.quantity.Data;
+import org.apache.aurora.gen.storage.CompressionCodec;
 import org.apache.aurora.gen.storage.Frame;
 import org.apache.aurora.gen.storage.FrameChunk;
 import org.apache.aurora.gen.storage.FrameHeader;
@@ -52,6 +57,22 @@ public interface EntrySerializer {
    */
   Iterable<byte[]> serialize(LogEntry logEntry) throws CodingException;
 
+  /**
+   * Serializes a compressed log entry and splits it into chunks no larger than
+   * {@code maxEntrySizeBytes}.  This is equivalent to serializing a log entry with the compressed
+   * entry field for the codec set to the concatenated blocks, without copying the blocks into a
+   * single buffer.  The returned iterable's iterator is not thread-safe.
+   *
+   * @param codec Codec the entry was compressed with.
+   * @param compressedBlocks Blocks of the compressed entry, as produced by
+   *     {@link Entries#compress(LogEntry, CompressionCodec, java.util.concurrent.Executor, Amount,
+   *     int)}.
+   * @return Serialized and chunked log entry.
+   * @throws CodingException If the entry could not be serialized.
+   */
+  Iterable<byte[]> serializeCompressed(CompressionCodec codec, List<byte[]> compressedBlocks)
+      throws CodingException;
+
   @VisibleForTesting
   class EntrySerializerImpl implements EntrySerializer {
     private final HashFunction hashFunction;
@@ -80,12 +101,48 @@ public interface EntrySerializer {
       final byte[] header = encode(
           Frame.header(new FrameHeader(chunks, ByteBuffer.wrap(checksum(entry)))));
 
-      return () -> streamFrames(header, chunks, entry);
+      return () -> streamFrames(header, chunks, ImmutableList.of(entry));
+    }
+
+    @Override
+    @Timed("log_entry_serialize_compressed")
+    public Iterable<byte[]> serializeCompressed(
+        CompressionCodec codec,
+        List<byte[]> compressedBlocks) throws CodingException {
+
+      final List<byte[]> segments = Entries.thriftBinaryEncodeCompressed(codec, compressedBlocks);
+      long length = 0;
+      for (byte[] segment : segments) {
+        length += segment.length;
+      }
+      if (length <= maxEntrySizeBytes) {
+        return ImmutableList.of(Bytes.concat(segments.toArray(new byte[segments.size()][])));
+      }
+
+      final int chunks = Ints.checkedCast((length + maxEntrySizeBytes - 1) / maxEntrySizeBytes);
+
+      final byte[] header = encode(
+          Frame.header(new FrameHeader(chunks, ByteBuffer.wrap(checksum(segments)))));
+
+      return () -> streamFrames(header, chunks, segments);
     }
 
-    Iterator<byte[]> streamFrames(final byte[] header, final int chunks, final byte[] entry) {
+    Iterator<byte[]> streamFrames(
+        final byte[] header,
+        final int chunks,
+        final List<byte[]> segments) {
+
+      long length = 0;
+      for (byte[] segment : segments) {
+        length += segment.length;
+      }
+      final long totalLength = length;
+
       return new AbstractIterator<byte[]>() {
         private int i = -1;
+        private int segment = 0;
+        private int segmentOffset = 0;
+        private long remaining = totalLength;
 
         @Override
         protected byte[] computeNext() {
@@ -93,11 +150,8 @@ public interface EntrySerializer {
           if (i == -1) {
             result = header;
           } else if (i < chunks) {
-            int offset = i * maxEntrySizeBytes;
-            ByteBuffer chunk =
-                ByteBuffer.wrap(entry, offset, Math.min(maxEntrySizeBytes, entry.length - offset));
             try {
-              result = encode(Frame.chunk(new FrameChunk(chunk)));
+              result = encode(Frame.chunk(new FrameChunk(nextChunk())));
             } catch (CodingException e) {
               throw Throwables.propagate(e);
             }
@@ -107,7 +161,39 @@ public interface EntrySerializer {
 
           i++;
           return result;
-        };
+        }
+
+        private ByteBuffer nextChunk() {
+          advance(0);
+          int length = (int) Math.min(maxEntrySizeBytes, remaining);
+          byte[] current = segments.get(segment);
+          if (current.length - segmentOffset >= length) {
+            // The chunk is contained in a single segment and need not be copied.
+            ByteBuffer chunk = ByteBuffer.wrap(current, segmentOffset, length);
+            advance(length);
+            return chunk;
+          }
+
+          ByteBuffer chunk = ByteBuffer.allocate(length);
+          while (chunk.hasRemaining()) {
+            current = segments.get(segment);
+            int copied = Math.min(chunk.remaining(), current.length - segmentOffset);
+            chunk.put(current, segmentOffset, copied);
+            advance(copied);
+          }
+          chunk.flip();
+          return chunk;
+        }
+
+        private void advance(int length) {
+          segmentOffset += length;
+          remaining -= length;
+          // Skip exhausted segments, some (e.g. prefixes) may be empty.
+          while (segment < segments.size() - 1 && segmentOffset == segments.get(segment).length) {
+            segment++;
+            segmentOffset = 0;
+          }
+        }
       };
     }
 
@@ -117,6 +203,15 @@ public interface EntrySerializer {
       return hashFunction.hashBytes(data).asBytes();
     }
 
+    @Timed("log_entry_checksum")
+    protected byte[] checksum(List<byte[]> segments) {
+      Hasher hasher = hashFunction.newHasher();
+      for (byte[] segment : segments) {
+        hasher.putBytes(segment);
+      }
+      return hasher.hash().asBytes();
+    }
+
     @Timed("log_entry_encode")
     protected byte[] encode(Frame frame) throws CodingException {
       return Entries.thriftBinaryEncode(LogEntry.frame(frame));
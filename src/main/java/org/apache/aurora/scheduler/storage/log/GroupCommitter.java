@@ -0,0 +1,273 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Time;
+import org.apache.aurora.common.stats.SlidingStats;
+import org.apache.aurora.gen.storage.Transaction;
+import org.apache.aurora.scheduler.log.Log;
+import org.apache.aurora.scheduler.log.Log.Stream.StreamAccessException;
+import org.apache.aurora.scheduler.storage.log.StreamTransaction.PendingCommit;
+
+import static java.util.Objects.requireNonNull;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import static org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
+
+/**
+ * Coalesces transactions submitted within a short window into a single log entry, so that the
+ * cost of a log append is shared by concurrent writers.
+ * <p>
+ * There is no dedicated flushing thread.  The first waiter to find no append in progress becomes
+ * the leader: it waits for the batch window to elapse (or the batch to fill up), appends every
+ * queued transaction as one entry, and wakes up the other waiters.  Batches are appended one at a
+ * time and in submission order.
+ * <p>
+ * Once an append fails, all subsequent commits fail as well, since transactions submitted after
+ * the failed batch may depend on it.
+ */
+class GroupCommitter {
+
+  /**
+   * Settings for group commits.
+   */
+  static class Settings {
+    static final Settings DISABLED = new Settings(Amount.of(0L, Time.MILLISECONDS), 1);
+
+    private final Amount<Long, Time> window;
+    private final int maxBatchSize;
+
+    Settings(Amount<Long, Time> window, int maxBatchSize) {
+      checkArgument(window.getValue() >= 0);
+      checkArgument(maxBatchSize > 0);
+      this.window = requireNonNull(window);
+      this.maxBatchSize = maxBatchSize;
+    }
+
+    boolean isEnabled() {
+      return window.getValue() > 0 && maxBatchSize > 1;
+    }
+  }
+
+  /**
+   * Appends a batch of transactions to the log as a single entry.
+   */
+  interface Appender {
+    Log.Position append(List<Transaction> batch) throws CodingException;
+  }
+
+  /**
+   * A transaction submitted for a group commit.
+   */
+  private final class Pending implements PendingCommit {
+    private final Transaction transaction;
+    private final long submittedNanos;
+    private boolean done;
+    private Log.Position position;
+    private Exception failure;
+
+    Pending(Transaction transaction, long submittedNanos) {
+      this.transaction = transaction;
+      this.submittedNanos = submittedNanos;
+    }
+
+    @Override
+    public Log.Position await() throws CodingException {
+      awaitCommitted(this);
+      if (failure instanceof CodingException) {
+        throw (CodingException) failure;
+      } else if (failure instanceof StreamAccessException) {
+        throw (StreamAccessException) failure;
+      } else if (failure != null) {
+        throw new StreamAccessException("Failed to append transaction to the log.", failure);
+      }
+      return position;
+    }
+  }
+
+  private final Settings settings;
+  private final Appender appender;
+  private final SlidingStats batchSizes =
+      new SlidingStats("scheduler_log_group_commit_batch_size", "transactions");
+  private final SlidingStats batchWaits =
+      new SlidingStats("scheduler_log_group_commit_wait", "ns");
+  private final SlidingStats commitLatencies =
+      new SlidingStats("scheduler_log_group_commit_latency", "ns");
+
+  // Guarded by 'this'.
+  private List<Pending> queue = Lists.newArrayList();
+  private boolean appending;
+  private boolean flushRequested;
+  private Exception priorFailure;
+
+  GroupCommitter(Settings settings, Appender appender) {
+    this.settings = requireNonNull(settings);
+    this.appender = requireNonNull(appender);
+  }
+
+  /**
+   * Queues a transaction to be appended along with other transactions submitted around the same
+   * time.
+   *
+   * @param transaction Transaction to append.
+   * @return The pending commit, to wait for the transaction to be durably written.
+   */
+  synchronized PendingCommit submit(Transaction transaction) {
+    if (priorFailure != null) {
+      throw new StreamAccessException("A prior group commit to the log failed.", priorFailure);
+    }
+
+    Pending commit = new Pending(transaction, System.nanoTime());
+    queue.add(commit);
+    if (queue.size() >= settings.maxBatchSize) {
+      notifyAll();
+    }
+    return commit;
+  }
+
+  /**
+   * Appends all queued transactions without waiting for the batch window, and waits for any
+   * append in progress to complete.
+   *
+   * @throws CodingException If there was a problem encoding the log entry.
+   */
+  void flush() throws CodingException {
+    Pending last;
+    synchronized (this) {
+      if (queue.isEmpty()) {
+        boolean interrupted = false;
+        while (appending) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+        return;
+      }
+      last = queue.get(queue.size() - 1);
+      // Wake up a leader waiting out the batch window.
+      flushRequested = true;
+      notifyAll();
+    }
+    last.await();
+  }
+
+  private void awaitCommitted(Pending commit) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        List<Pending> batch;
+        synchronized (this) {
+          while (!commit.done && appending) {
+            try {
+              wait();
+            } catch (InterruptedException e) {
+              interrupted = true;
+            }
+          }
+          if (commit.done) {
+            return;
+          }
+
+          // No append is in progress and this commit is still queued, lead the next batch.
+          appending = true;
+          long waitStart = System.nanoTime();
+          long deadline = queue.get(0).submittedNanos + settings.window.as(Time.NANOSECONDS);
+          long remaining = deadline - waitStart;
+          while (queue.size() < settings.maxBatchSize && remaining > 0 && !flushRequested) {
+            try {
+              TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+              interrupted = true;
+            }
+            remaining = deadline - System.nanoTime();
+          }
+          batchWaits.accumulate(System.nanoTime() - waitStart);
+
+          batch = ImmutableList.copyOf(
+              queue.subList(0, Math.min(queue.size(), settings.maxBatchSize)));
+          queue = Lists.newArrayList(queue.subList(batch.size(), queue.size()));
+          if (queue.isEmpty()) {
+            flushRequested = false;
+          }
+          if (priorFailure != null) {
+            // Transactions queued behind a failed batch must not be appended.
+            complete(batch, null, priorFailure);
+            continue;
+          }
+        }
+
+        appendBatch(batch);
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void appendBatch(List<Pending> batch) {
+    Log.Position position = null;
+    Exception appendFailure = null;
+    try {
+      position = appender.append(Lists.transform(batch, pending -> pending.transaction));
+    } catch (CodingException | RuntimeException e) {
+      appendFailure = e;
+    }
+
+    synchronized (this) {
+      if (appendFailure != null && priorFailure == null) {
+        priorFailure = appendFailure;
+      }
+      batchSizes.accumulate(batch.size());
+      complete(batch, position, appendFailure);
+    }
+  }
+
+  private synchronized void complete(
+      List<Pending> batch,
+      @Nullable Log.Position position,
+      @Nullable Exception failure) {
+
+    long now = System.nanoTime();
+    for (Pending pending : batch) {
+      pending.done = true;
+      pending.position = position;
+      pending.failure = failure;
+      commitLatencies.accumulate(now - pending.submittedNanos);
+    }
+    appending = false;
+    notifyAll();
+  }
+
+  @VisibleForTesting
+  synchronized int getQueueSize() {
+    return queue.size();
+  }
+}
@@ -46,6 +46,30 @@ public class LogManager {
   @Qualifier
   public @interface LogEntryHashFunction { }
 
+  /**
+   * Identifies the number of threads to compress snapshots with.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.METHOD, ElementType.PARAMETER})
+  @Qualifier
+  public @interface SnapshotCompressionThreads { }
+
+  /**
+   * Identifies the codec to compress snapshots with.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.METHOD, ElementType.PARAMETER})
+  @Qualifier
+  public @interface SnapshotCodec { }
+
+  /**
+   * Identifies the number of threads to decode log entries with while recovering.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.METHOD, ElementType.PARAMETER})
+  @Qualifier
+  public @interface RecoveryThreads { }
+
   private final Log log;
   private final StreamManagerFactory streamManagerFactory;
 
@@ -68,6 +68,7 @@ import org.apache.aurora.scheduler.storage.entities.IJobUpdateKey;
 import org.apache.aurora.scheduler.storage.entities.ILock;
 import org.apache.aurora.scheduler.storage.entities.ILockKey;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
+import org.apache.aurora.scheduler.storage.log.StreamTransaction.PendingCommit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -108,6 +109,12 @@ import static java.util.Objects.requireNonNull;
  *
  * <p>If the op fails to apply to local storage we will never write the op to the log and if the op
  * fails to apply to the log, it'll throw and abort the local storage transaction as well.
+ *
+ * <p>When group commits are enabled, the op is instead queued for writing to the log along with
+ * ops of other concurrent transactions, and the local transaction is committed right away.  The
+ * writer waits for the log entry to be durably written only after releasing the write lock.  Local
+ * changes may therefore be visible before they are durable, and a failure to write to the log
+ * fails all subsequent writes, rather than aborting the local transaction.
  */
 public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore {
 
@@ -196,6 +203,7 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
   // avoid a call to Storage.write() when we replay a Snapshot.
   private boolean recovered = false;
   private StreamTransaction transaction = null;
+  private PendingCommit pendingCommit = null;
 
   private final SlidingStats writerWaitStats =
       new SlidingStats("log_storage_write_lock_wait", "ns");
@@ -521,7 +529,7 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
       return writeBehindStorage.write(unused -> {
         T result = work.apply(writeAheadStorage);
         try {
-          transaction.commit();
+          pendingCommit = transaction.submit();
         } catch (CodingException e) {
           throw new IllegalStateException(
               "Problem encoding transaction operations to the log stream", e);
@@ -536,9 +544,23 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
     }
   }
 
+  private static void awaitCommit(PendingCommit commit) throws StorageException {
+    try {
+      commit.await();
+    } catch (CodingException e) {
+      throw new IllegalStateException(
+          "Problem encoding transaction operations to the log stream", e);
+    } catch (StreamAccessException e) {
+      throw new StorageException(
+          "There was a problem committing the transaction to the log.", e);
+    }
+  }
+
   @Override
   public <T, E extends Exception> T write(final MutateWork<T, E> work) throws StorageException, E {
     long waitStart = System.nanoTime();
+    PendingCommit commit;
+    T result;
     writeLock.lock();
     try {
       writerWaitStats.accumulate(System.nanoTime() - waitStart);
@@ -548,10 +570,19 @@ public class LogStorage implements NonVolatileStorage, DistributedSnapshotStore
         return writeBehindStorage.write(work);
       }
 
-      return doInTransaction(work);
+      result = doInTransaction(work);
+      commit = pendingCommit;
+      pendingCommit = null;
     } finally {
       writeLock.unlock();
     }
+
+    // With group commits, the transaction is applied locally before it is durably written to the
+    // log.  Waiting outside of the write lock allows other writers to join the same log entry.
+    if (commit != null) {
+      awaitCommit(commit);
+    }
+    return result;
   }
 
   @Override
@@ -27,6 +27,7 @@ import org.apache.aurora.common.args.CmdLine;
 import org.apache.aurora.common.quantity.Amount;
 import org.apache.aurora.common.quantity.Data;
 import org.apache.aurora.common.quantity.Time;
+import org.apache.aurora.gen.storage.CompressionCodec;
 import org.apache.aurora.scheduler.storage.CallOrderEnforcingStorage;
 import org.apache.aurora.scheduler.storage.DistributedSnapshotStore;
 import org.apache.aurora.scheduler.storage.Storage;
@@ -35,9 +36,13 @@ import org.apache.aurora.scheduler.storage.db.DbModule;
 import org.apache.aurora.scheduler.storage.log.LogManager.MaxEntrySize;
 import org.apache.aurora.scheduler.storage.log.LogStorage.Settings;
 import org.apache.aurora.scheduler.storage.log.SnapshotStoreImpl.ExperimentalTaskStore;
+import org.apache.aurora.scheduler.storage.log.SnapshotStoreImpl.InMemoryJobUpdateStore;
 
 import static org.apache.aurora.scheduler.storage.log.EntrySerializer.EntrySerializerImpl;
 import static org.apache.aurora.scheduler.storage.log.LogManager.LogEntryHashFunction;
+import static org.apache.aurora.scheduler.storage.log.LogManager.RecoveryThreads;
+import static org.apache.aurora.scheduler.storage.log.LogManager.SnapshotCodec;
+import static org.apache.aurora.scheduler.storage.log.LogManager.SnapshotCompressionThreads;
 import static org.apache.aurora.scheduler.storage.log.SnapshotDeduplicator.SnapshotDeduplicatorImpl;
 
 /**
@@ -64,6 +69,33 @@ public class LogStorageModule extends PrivateModule {
   public static final Arg<Amount<Integer, Data>> MAX_LOG_ENTRY_SIZE =
       Arg.create(Amount.of(512, Data.KB));
 
+  @CmdLine(name = "dlog_group_commit_window",
+           help = "Maximum time to wait for concurrent storage transactions to be appended to the "
+                  + "log in a single entry. A value of zero disables group commits.")
+  private static final Arg<Amount<Long, Time>> GROUP_COMMIT_WINDOW =
+      Arg.create(Amount.of(0L, Time.MILLISECONDS));
+
+  @CmdLine(name = "dlog_group_commit_max_batch",
+           help = "Maximum number of storage transactions appended to the log in a single entry "
+                  + "when group commits are enabled.")
+  private static final Arg<Integer> GROUP_COMMIT_MAX_BATCH = Arg.create(100);
+
+  @CmdLine(name = "dlog_snapshot_compression_threads",
+           help = "Number of threads to compress snapshots with.")
+  private static final Arg<Integer> SNAPSHOT_COMPRESSION_THREADS = Arg.create(4);
+
+  @CmdLine(name = "dlog_snapshot_codec",
+           help = "Codec to compress snapshots with. LZ4 is several times faster than DEFLATE, at "
+                  + "the cost of larger snapshots. Entries written with any codec can be read "
+                  + "regardless of this setting.")
+  private static final Arg<CompressionCodec> SNAPSHOT_CODEC = Arg.create(CompressionCodec.DEFLATE);
+
+  @CmdLine(name = "dlog_recovery_threads",
+           help = "Number of threads to decode log entries with when recovering from the log. "
+                  + "With more than one thread, entries are read, decoded and applied "
+                  + "concurrently.")
+  private static final Arg<Integer> RECOVERY_THREADS = Arg.create(4);
+
   @Override
   protected void configure() {
     bind(Settings.class)
@@ -71,6 +103,8 @@ public class LogStorageModule extends PrivateModule {
 
     bind(new TypeLiteral<Boolean>() { }).annotatedWith(ExperimentalTaskStore.class)
         .toInstance(DbModule.USE_DB_TASK_STORE.get());
+    bind(new TypeLiteral<Boolean>() { }).annotatedWith(InMemoryJobUpdateStore.class)
+        .toInstance(DbModule.USE_MEM_JOB_UPDATE_STORE.get());
 
     bind(new TypeLiteral<Amount<Integer, Data>>() { }).annotatedWith(MaxEntrySize.class)
         .toInstance(MAX_LOG_ENTRY_SIZE.get());
@@ -83,6 +117,7 @@ public class LogStorageModule extends PrivateModule {
     expose(NonVolatileStorage.class);
     expose(DistributedSnapshotStore.class);
     expose(new TypeLiteral<Boolean>() { }).annotatedWith(ExperimentalTaskStore.class);
+    expose(new TypeLiteral<Boolean>() { }).annotatedWith(InMemoryJobUpdateStore.class);
 
     bind(EntrySerializer.class).to(EntrySerializerImpl.class);
     // TODO(ksweeney): We don't need a cryptographic checksum here - assess performance of MD5
@@ -90,6 +125,13 @@ public class LogStorageModule extends PrivateModule {
     bind(HashFunction.class).annotatedWith(LogEntryHashFunction.class).toInstance(Hashing.md5());
 
     bind(SnapshotDeduplicator.class).to(SnapshotDeduplicatorImpl.class);
+    bind(Integer.class).annotatedWith(SnapshotCompressionThreads.class)
+        .toInstance(SNAPSHOT_COMPRESSION_THREADS.get());
+    bind(CompressionCodec.class).annotatedWith(SnapshotCodec.class)
+        .toInstance(SNAPSHOT_CODEC.get());
+    bind(Integer.class).annotatedWith(RecoveryThreads.class).toInstance(RECOVERY_THREADS.get());
+    bind(GroupCommitter.Settings.class).toInstance(
+        new GroupCommitter.Settings(GROUP_COMMIT_WINDOW.get(), GROUP_COMMIT_MAX_BATCH.get()));
 
     install(new FactoryModuleBuilder()
         .implement(StreamManager.class, StreamManagerImpl.class)
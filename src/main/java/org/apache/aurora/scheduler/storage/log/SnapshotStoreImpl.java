@@ -93,6 +93,14 @@ public class SnapshotStoreImpl implements SnapshotStore<Snapshot> {
         && snapshot.isExperimentalTaskStore();
   }
 
+  // Job updates are only in the DB snapshot if the DB job update store was used when the snapshot
+  // was cut, and they are only restored from it if the DB job update store is in use now.
+  private boolean hasDbJobUpdateStore(Snapshot snapshot) {
+    return !useMemJobUpdateStore
+        && hasDbSnapshot(snapshot)
+        && !snapshot.isInMemoryJobUpdateStore();
+  }
+
   private final Iterable<SnapshotField> snapshotFields = Arrays.asList(
       // Order is critical here. The DB snapshot should always be tried first to ensure
       // graceful migration to DBTaskStore. Otherwise, there is a direct risk of losing the cluster.
@@ -311,11 +319,12 @@ public class SnapshotStoreImpl implements SnapshotStore<Snapshot> {
         @Override
         public void saveToSnapshot(MutableStoreProvider store, Snapshot snapshot) {
           snapshot.setJobUpdateDetails(store.getJobUpdateStore().fetchAllJobUpdateDetails());
+          snapshot.setInMemoryJobUpdateStore(useMemJobUpdateStore);
         }
 
         @Override
         public void restoreFromSnapshot(MutableStoreProvider store, Snapshot snapshot) {
-          if (hasDbSnapshot(snapshot)) {
+          if (hasDbJobUpdateStore(snapshot)) {
             LOG.info("Deferring job update restore to dbsnapshot");
             return;
           }
@@ -355,6 +364,7 @@ public class SnapshotStoreImpl implements SnapshotStore<Snapshot> {
   private final Clock clock;
   private final Storage storage;
   private final boolean useDbSnapshotForTaskStore;
+  private final boolean useMemJobUpdateStore;
   private final MigrationManager migrationManager;
   private final ThriftBackfill thriftBackfill;
 
@@ -366,12 +376,21 @@ public class SnapshotStoreImpl implements SnapshotStore<Snapshot> {
   @Qualifier
   public @interface ExperimentalTaskStore { }
 
+  /**
+   * Identifies if the in-memory job update store is in use.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ ElementType.PARAMETER, ElementType.METHOD })
+  @Qualifier
+  public @interface InMemoryJobUpdateStore { }
+
   @Inject
   public SnapshotStoreImpl(
       BuildInfo buildInfo,
       Clock clock,
       @Volatile Storage storage,
       @ExperimentalTaskStore boolean useDbSnapshotForTaskStore,
+      @InMemoryJobUpdateStore boolean useMemJobUpdateStore,
       MigrationManager migrationManager,
       ThriftBackfill thriftBackfill) {
 
@@ -379,6 +398,7 @@ public class SnapshotStoreImpl implements SnapshotStore<Snapshot> {
     this.clock = requireNonNull(clock);
     this.storage = requireNonNull(storage);
     this.useDbSnapshotForTaskStore = useDbSnapshotForTaskStore;
+    this.useMemJobUpdateStore = useMemJobUpdateStore;
     this.migrationManager = requireNonNull(migrationManager);
     this.thriftBackfill = requireNonNull(thriftBackfill);
   }
@@ -15,7 +15,14 @@ package org.apache.aurora.scheduler.storage.log;
 
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -25,16 +32,22 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
 import com.google.common.primitives.Bytes;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.assistedinject.Assisted;
 
+import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Data;
 import org.apache.aurora.common.stats.Stats;
 import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.storage.CompressionCodec;
 import org.apache.aurora.gen.storage.Frame;
 import org.apache.aurora.gen.storage.FrameHeader;
 import org.apache.aurora.gen.storage.LogEntry;
@@ -47,6 +60,7 @@ import org.apache.aurora.gen.storage.Transaction;
 import org.apache.aurora.gen.storage.storageConstants;
 import org.apache.aurora.scheduler.log.Log;
 import org.apache.aurora.scheduler.log.Log.Stream;
+import org.apache.thrift.protocol.TType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,10 +71,18 @@ import static org.apache.aurora.common.inject.TimedInterceptor.Timed;
 import static org.apache.aurora.scheduler.log.Log.Stream.InvalidPositionException;
 import static org.apache.aurora.scheduler.log.Log.Stream.StreamAccessException;
 import static org.apache.aurora.scheduler.storage.log.LogManager.LogEntryHashFunction;
+import static org.apache.aurora.scheduler.storage.log.LogManager.RecoveryThreads;
+import static org.apache.aurora.scheduler.storage.log.LogManager.SnapshotCodec;
+import static org.apache.aurora.scheduler.storage.log.LogManager.SnapshotCompressionThreads;
 
 class StreamManagerImpl implements StreamManager {
   private static final Logger LOG = LoggerFactory.getLogger(StreamManagerImpl.class);
 
+  // Large enough for the compression ratio to be close to that of compressing in one go.
+  private static final Amount<Integer, Data> SNAPSHOT_BLOCK_SIZE = Amount.of(1, Data.MB);
+
+  private static final short FRAME_FIELD_ID = LogEntry._Fields.FRAME.getThriftFieldId();
+
   private static class Vars {
     private final AtomicInteger unSnapshottedTransactions =
         Stats.exportInt("scheduler_log_un_snapshotted_transactions");
@@ -71,7 +93,15 @@ class StreamManagerImpl implements StreamManager {
     private final AtomicLong entriesRead = Stats.exportLong("scheduler_log_entries_read");
     private final AtomicLong deflatedEntriesRead =
         Stats.exportLong("scheduler_log_deflated_entries_read");
+    private final AtomicLong compressedEntriesRead =
+        Stats.exportLong("scheduler_log_compressed_entries_read");
     private final AtomicLong snapshots = Stats.exportLong("scheduler_log_snapshots");
+    private final AtomicLong recoveryReadNanos =
+        Stats.exportLong("scheduler_log_recovery_read_nanos");
+    private final AtomicLong recoveryDecodeNanos =
+        Stats.exportLong("scheduler_log_recovery_decode_nanos");
+    private final AtomicLong recoveryApplyNanos =
+        Stats.exportLong("scheduler_log_recovery_apply_nanos");
   }
   private final Vars vars = new Vars();
 
@@ -80,85 +110,262 @@ class StreamManagerImpl implements StreamManager {
   private final EntrySerializer entrySerializer;
   private final HashFunction hashFunction;
   private final SnapshotDeduplicator snapshotDeduplicator;
+  private final boolean groupCommitEnabled;
+  private final GroupCommitter groupCommitter;
+  private final CompressionCodec snapshotCodec;
+  private final int snapshotCompressionThreads;
+  private final int recoveryThreads;
 
   @Inject
   StreamManagerImpl(
       @Assisted Stream stream,
       EntrySerializer entrySerializer,
       @LogEntryHashFunction HashFunction hashFunction,
-      SnapshotDeduplicator snapshotDeduplicator) {
+      SnapshotDeduplicator snapshotDeduplicator,
+      GroupCommitter.Settings groupCommitSettings,
+      @SnapshotCodec CompressionCodec snapshotCodec,
+      @SnapshotCompressionThreads int snapshotCompressionThreads,
+      @RecoveryThreads int recoveryThreads) {
 
     this.stream = requireNonNull(stream);
     this.entrySerializer = requireNonNull(entrySerializer);
     this.hashFunction = requireNonNull(hashFunction);
     this.snapshotDeduplicator = requireNonNull(snapshotDeduplicator);
+    this.groupCommitEnabled = groupCommitSettings.isEnabled();
+    this.groupCommitter = new GroupCommitter(groupCommitSettings, this::appendBatch);
+    this.snapshotCodec = requireNonNull(snapshotCodec);
+    Preconditions.checkArgument(snapshotCompressionThreads > 0);
+    this.snapshotCompressionThreads = snapshotCompressionThreads;
+    Preconditions.checkArgument(recoveryThreads > 0);
+    this.recoveryThreads = recoveryThreads;
   }
 
   @Override
   public void readFromBeginning(Consumer<LogEntry> reader)
       throws CodingException, InvalidPositionException, StreamAccessException {
 
-    Iterator<Log.Entry> entries = stream.readAll();
-
-    while (entries.hasNext()) {
-      LogEntry logEntry = decodeLogEntry(entries.next());
-      while (logEntry != null && isFrame(logEntry)) {
-        logEntry = tryDecodeFrame(logEntry.getFrame(), entries);
-      }
-      if (logEntry != null) {
-        if (logEntry.isSet(LogEntry._Fields.DEFLATED_ENTRY)) {
-          logEntry = Entries.inflate(logEntry);
-          vars.deflatedEntriesRead.incrementAndGet();
+    EntryReader entryReader = new EntryReader(stream.readAll());
+    if (recoveryThreads == 1) {
+      while (true) {
+        long readStart = System.nanoTime();
+        EntryDecoder decoder = entryReader.next();
+        vars.recoveryReadNanos.addAndGet(System.nanoTime() - readStart);
+        if (decoder == null) {
+          break;
         }
+        apply(decode(decoder), reader);
+      }
+    } else {
+      readPipelined(entryReader, reader);
+    }
+  }
 
-        if (logEntry.isSetDeduplicatedSnapshot()) {
-          logEntry = LogEntry.snapshot(
-              snapshotDeduplicator.reduplicate(logEntry.getDeduplicatedSnapshot()));
-        }
+  @Nullable
+  private LogEntry decode(EntryDecoder decoder) throws CodingException {
+    long decodeStart = System.nanoTime();
+    LogEntry logEntry = decoder.decode();
+    vars.recoveryDecodeNanos.addAndGet(System.nanoTime() - decodeStart);
+    return logEntry;
+  }
+
+  private void apply(@Nullable LogEntry logEntry, Consumer<LogEntry> reader) {
+    if (logEntry != null) {
+      long applyStart = System.nanoTime();
+      reader.accept(logEntry);
+      vars.recoveryApplyNanos.addAndGet(System.nanoTime() - applyStart);
+      vars.entriesRead.incrementAndGet();
+    }
+  }
 
-        reader.accept(logEntry);
-        vars.entriesRead.incrementAndGet();
+  /**
+   * Reads entries on a dedicated thread, decodes them on a pool of threads, and hands them to the
+   * reader on the calling thread in log order.  Readers are typically not thread-safe, and apply
+   * entries to storage within a transaction owned by the calling thread.
+   */
+  private void readPipelined(EntryReader entryReader, Consumer<LogEntry> reader)
+      throws CodingException {
+
+    ExecutorService decoders = Executors.newFixedThreadPool(
+        recoveryThreads,
+        new ThreadFactoryBuilder().setNameFormat("LogRecoveryDecoder-%d").setDaemon(true).build());
+    // Bounds the number of decoded entries held in memory ahead of the reader.
+    BlockingQueue<Future<LogEntry>> decoded = new ArrayBlockingQueue<>(4 * recoveryThreads);
+    Future<LogEntry> endOfLog = Futures.immediateFuture(null);
+
+    Thread entryReaderThread = new ThreadFactoryBuilder()
+        .setNameFormat("LogRecoveryReader")
+        .setDaemon(true)
+        .build()
+        .newThread(() -> {
+          try {
+            boolean done = false;
+            while (!done) {
+              long readStart = System.nanoTime();
+              Future<LogEntry> next;
+              try {
+                EntryDecoder decoder = entryReader.next();
+                done = decoder == null;
+                next = done ? endOfLog : decoders.submit(() -> decode(decoder));
+              } catch (CodingException | RuntimeException e) {
+                done = true;
+                next = Futures.immediateFailedFuture(e);
+              }
+              vars.recoveryReadNanos.addAndGet(System.nanoTime() - readStart);
+              decoded.put(next);
+            }
+          } catch (InterruptedException e) {
+            // The log is no longer being read.
+            Thread.currentThread().interrupt();
+          }
+        });
+    entryReaderThread.start();
+
+    try {
+      while (true) {
+        Future<LogEntry> next = decoded.take();
+        if (next == endOfLog) {
+          break;
+        }
+        apply(next.get(), reader);
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StreamAccessException("Interrupted while reading the log.", e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), CodingException.class);
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      entryReaderThread.interrupt();
+      decoders.shutdownNow();
     }
   }
 
-  @Nullable
-  private LogEntry tryDecodeFrame(Frame frame, Iterator<Log.Entry> entries) throws CodingException {
-    if (!isHeader(frame)) {
-      LOG.warn("Found a frame with no preceding header, skipping.");
-      return null;
+  /**
+   * Decodes a single log entry from one or more raw entries read from the stream.
+   */
+  @FunctionalInterface
+  private interface EntryDecoder {
+    @Nullable
+    LogEntry decode() throws CodingException;
+  }
+
+  /**
+   * Groups raw entries read from the stream into units that decode to a single log entry,
+   * reassembling framed entries.  Only frames are decoded while reading, so that decoding the
+   * bulk of the log can be deferred to {@link EntryDecoder}s.
+   */
+  private final class EntryReader {
+    private final Iterator<Log.Entry> entries;
+    @Nullable
+    private byte[] readAhead;
+
+    EntryReader(Iterator<Log.Entry> entries) {
+      this.entries = entries;
     }
-    FrameHeader header = frame.getHeader();
-    byte[][] chunks = new byte[header.getChunkCount()][];
 
-    Hasher hasher = hashFunction.newHasher();
-    for (int i = 0; i < header.getChunkCount(); i++) {
+    @Nullable
+    private byte[] nextContents() {
+      if (readAhead != null) {
+        byte[] contents = readAhead;
+        readAhead = null;
+        return contents;
+      }
       if (!entries.hasNext()) {
-        logBadFrame(header, i);
         return null;
       }
-      LogEntry logEntry = decodeLogEntry(entries.next());
-      if (!isFrame(logEntry)) {
-        logBadFrame(header, i);
-        return logEntry;
+      byte[] contents = entries.next().contents();
+      vars.bytesRead.addAndGet(contents.length);
+      return contents;
+    }
+
+    /**
+     * Reads the next unit of raw entries.
+     *
+     * @return A decoder for the next log entry, or {@code null} if the end of the log is reached.
+     * @throws CodingException If a frame could not be decoded.
+     */
+    @Nullable
+    EntryDecoder next() throws CodingException {
+      while (true) {
+        byte[] contents = nextContents();
+        if (contents == null) {
+          return null;
+        }
+        if (!isFrame(contents)) {
+          return () -> postProcess(Entries.thriftBinaryDecode(contents));
+        }
+
+        EntryDecoder framed = readFrame(Entries.thriftBinaryDecode(contents).getFrame());
+        if (framed != null) {
+          return framed;
+        }
+      }
+    }
+
+    @Nullable
+    private EntryDecoder readFrame(Frame frame) throws CodingException {
+      if (!isHeader(frame)) {
+        LOG.warn("Found a frame with no preceding header, skipping.");
+        return null;
       }
-      Frame chunkFrame = logEntry.getFrame();
-      if (!isChunk(chunkFrame)) {
-        logBadFrame(header, i);
-        return logEntry;
+      FrameHeader header = frame.getHeader();
+      byte[][] chunks = new byte[header.getChunkCount()][];
+
+      for (int i = 0; i < header.getChunkCount(); i++) {
+        byte[] contents = nextContents();
+        if (contents == null) {
+          logBadFrame(header, i);
+          return null;
+        }
+        if (!isFrame(contents)) {
+          logBadFrame(header, i);
+          readAhead = contents;
+          return null;
+        }
+        Frame chunkFrame = Entries.thriftBinaryDecode(contents).getFrame();
+        if (!isChunk(chunkFrame)) {
+          logBadFrame(header, i);
+          readAhead = contents;
+          return null;
+        }
+        chunks[i] = chunkFrame.getChunk().getData();
       }
-      byte[] chunkData = chunkFrame.getChunk().getData();
-      hasher.putBytes(chunkData);
-      chunks[i] = chunkData;
+
+      return () -> {
+        Hasher hasher = hashFunction.newHasher();
+        for (byte[] chunk : chunks) {
+          hasher.putBytes(chunk);
+        }
+        if (!Arrays.equals(header.getChecksum(), hasher.hash().asBytes())) {
+          throw new CodingException("Read back a framed log entry that failed its checksum");
+        }
+        return postProcess(Entries.thriftBinaryDecode(Bytes.concat(chunks)));
+      };
+    }
+  }
+
+  private LogEntry postProcess(LogEntry logEntry) throws CodingException {
+    if (logEntry.isSet(LogEntry._Fields.DEFLATED_ENTRY)) {
+      logEntry = Entries.inflate(logEntry);
+      vars.deflatedEntriesRead.incrementAndGet();
+    } else if (logEntry.isSet(LogEntry._Fields.COMPRESSED_ENTRY)) {
+      logEntry = Entries.decompress(logEntry);
+      vars.compressedEntriesRead.incrementAndGet();
     }
-    if (!Arrays.equals(header.getChecksum(), hasher.hash().asBytes())) {
-      throw new CodingException("Read back a framed log entry that failed its checksum");
+
+    if (logEntry.isSetDeduplicatedSnapshot()) {
+      logEntry = LogEntry.snapshot(
+          snapshotDeduplicator.reduplicate(logEntry.getDeduplicatedSnapshot()));
     }
-    return Entries.thriftBinaryDecode(Bytes.concat(chunks));
+    return logEntry;
   }
 
-  private static boolean isFrame(LogEntry logEntry) {
-    return logEntry.getSetField() == LogEntry._Fields.FRAME;
+  // A binary-encoded union starts with the header of its set field, a type byte followed by a
+  // 16 bit field ID.  This allows frames to be told apart without decoding the entire entry.
+  private static boolean isFrame(byte[] contents) {
+    return contents.length >= 3
+        && contents[0] == TType.STRUCT
+        && (short) (((contents[1] & 0xFF) << 8) | (contents[2] & 0xFF)) == FRAME_FIELD_ID;
   }
 
   private static boolean isChunk(Frame frame) {
@@ -175,12 +382,6 @@ class StreamManagerImpl implements StreamManager {
     vars.badFramesRead.incrementAndGet();
   }
 
-  private LogEntry decodeLogEntry(Log.Entry entry) throws CodingException {
-    byte[] contents = entry.contents();
-    vars.bytesRead.addAndGet(contents.length);
-    return Entries.thriftBinaryDecode(contents);
-  }
-
   @Override
   public void truncateBefore(Log.Position position) {
     stream.truncateBefore(position);
@@ -196,9 +397,12 @@ class StreamManagerImpl implements StreamManager {
   public void snapshot(Snapshot snapshot)
       throws CodingException, InvalidPositionException, StreamAccessException {
 
-    LogEntry entry =
-        deflate(LogEntry.deduplicatedSnapshot(snapshotDeduplicator.deduplicate(snapshot)));
-    Log.Position position = appendAndGetPosition(entry);
+    // The snapshot reflects all transactions submitted so far, which must be appended before it.
+    groupCommitter.flush();
+
+    List<byte[]> compressed =
+        compress(LogEntry.deduplicatedSnapshot(snapshotDeduplicator.deduplicate(snapshot)));
+    Log.Position position = append(entrySerializer.serializeCompressed(snapshotCodec, compressed));
     vars.snapshots.incrementAndGet();
     vars.unSnapshottedTransactions.set(0);
     stream.truncateBefore(position);
@@ -206,17 +410,33 @@ class StreamManagerImpl implements StreamManager {
 
   // Not meant to be subclassed, but timed methods must be non-private.
   // See https://github.com/google/guice/wiki/AOP#limitations
-  @Timed("log_manager_deflate")
-  protected LogEntry deflate(LogEntry entry) throws CodingException {
-    return Entries.deflate(entry);
+  @Timed("log_manager_compress")
+  protected List<byte[]> compress(LogEntry entry) throws CodingException {
+    // Snapshots are infrequent, so compression threads are only kept around while compressing.
+    ExecutorService executor = Executors.newFixedThreadPool(
+        snapshotCompressionThreads,
+        new ThreadFactoryBuilder().setNameFormat("SnapshotCompressor-%d").setDaemon(true).build());
+    try {
+      return Entries.compress(
+          entry,
+          snapshotCodec,
+          executor,
+          SNAPSHOT_BLOCK_SIZE,
+          2 * snapshotCompressionThreads);
+    } finally {
+      executor.shutdownNow();
+    }
   }
 
   // Not meant to be subclassed, but timed methods must be non-private.
   // See https://github.com/google/guice/wiki/AOP#limitations
   @Timed("log_manager_append")
   protected Log.Position appendAndGetPosition(LogEntry logEntry) throws CodingException {
+    return append(entrySerializer.serialize(logEntry));
+  }
+
+  private Log.Position append(Iterable<byte[]> entries) {
     Log.Position firstPosition = null;
-    Iterable<byte[]> entries = entrySerializer.serialize(logEntry);
     synchronized (writeMutex) { // ensure all sub-entries are written as a unit
       for (byte[] entry : entries) {
         Log.Position position = stream.append(entry);
@@ -230,6 +450,18 @@ class StreamManagerImpl implements StreamManager {
     return firstPosition;
   }
 
+  private Log.Position appendBatch(List<Transaction> batch) throws CodingException {
+    StreamTransactionImpl coalesced = new StreamTransactionImpl();
+    for (Transaction transaction : batch) {
+      for (Op op : transaction.getOps()) {
+        coalesced.add(op);
+      }
+    }
+    Log.Position position = appendAndGetPosition(LogEntry.transaction(coalesced.transaction));
+    vars.unSnapshottedTransactions.addAndGet(batch.size());
+    return position;
+  }
+
   final class StreamTransactionImpl implements StreamTransaction {
     private final Transaction transaction =
         new Transaction().setSchemaVersion(storageConstants.CURRENT_SCHEMA_VERSION);
@@ -253,6 +485,22 @@ class StreamManagerImpl implements StreamManager {
       return position;
     }
 
+    @Override
+    public PendingCommit submit() throws CodingException {
+      if (!groupCommitEnabled) {
+        Log.Position position = commit();
+        return () -> position;
+      }
+
+      Preconditions.checkState(!committed.getAndSet(true),
+          "Can only call commit once per transaction.");
+
+      if (!transaction.isSetOps()) {
+        return () -> null;
+      }
+      return groupCommitter.submit(transaction);
+    }
+
     @Override
     public void add(Op op) {
       Preconditions.checkState(!committed.get());
@@ -22,6 +22,20 @@ import org.apache.aurora.scheduler.log.Log;
  * transaction and then later committed as an atomic unit.
  */
 interface StreamTransaction {
+  /**
+   * A committed transaction that may not yet be durably written to the log stream.
+   */
+  interface PendingCommit {
+    /**
+     * Waits until the transaction is durably written to the log stream.
+     *
+     * @return The position of the log entry containing the transaction, if any.
+     * @throws CodingException If there was a problem encoding a log entry for commit.
+     * @throws Log.Stream.StreamAccessException If there was a problem appending to the log.
+     */
+    Log.Position await() throws ThriftBinaryCodec.CodingException;
+  }
+
   /**
    * Appends any ops that have been added to this transaction to the log stream in a single
    * atomic record.
@@ -31,6 +45,17 @@ interface StreamTransaction {
    */
   Log.Position commit() throws ThriftBinaryCodec.CodingException;
 
+  /**
+   * Commits the ops that have been added to this transaction without waiting for them to be
+   * written to the log stream.  When group commits are enabled, the ops may be appended in a
+   * single record along with those of other transactions submitted around the same time,
+   * otherwise this is equivalent to {@link #commit()}.
+   *
+   * @return The pending commit, to wait for the ops to be durably written.
+   * @throws CodingException If there was a problem encoding a log entry for commit.
+   */
+  PendingCommit submit() throws ThriftBinaryCodec.CodingException;
+
   /**
    * Adds a local storage operation to this transaction.
    *
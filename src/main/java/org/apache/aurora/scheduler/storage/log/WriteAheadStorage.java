@@ -165,9 +165,14 @@ class WriteAheadStorage extends WriteAheadStorageForwarder implements
     requireNonNull(taskId);
     requireNonNull(taskConfiguration);
 
+    Optional<IScheduledTask> original = taskStore.fetchTask(taskId);
     boolean mutated = taskStore.unsafeModifyInPlace(taskId, taskConfiguration);
     if (mutated) {
       write(Op.rewriteTask(new RewriteTask(taskId, taskConfiguration.newBuilder())));
+      eventSink.post(new PubsubEvent.TaskConfigRewritten(
+          taskId,
+          original.get().getAssignedTask().getTask(),
+          taskConfiguration));
     }
     return mutated;
   }
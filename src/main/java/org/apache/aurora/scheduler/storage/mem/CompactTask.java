@@ -0,0 +1,168 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.mem;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.apache.aurora.gen.AssignedTask;
+import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.TaskConfig;
+import org.apache.aurora.gen.TaskEvent;
+import org.apache.aurora.scheduler.storage.entities.IAssignedTask;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.entities.ITaskEvent;
+
+/**
+ * A compact form of a stored task, which is decoded into an {@link IScheduledTask} on every read.
+ * <p>
+ * Most of the heap used by an {@link IScheduledTask} goes to small objects: the builder and
+ * immutable wrapper of every task event and assigned port, and repeated copies of the same host
+ * names, slave IDs and event messages.  This form keeps task events and ports in parallel arrays
+ * of primitives and strings, and deduplicates strings through the {@link InternPools}, which act
+ * as a string dictionary.  The task config is kept in its canonical form, shared with all other
+ * compact tasks with an equal config.
+ * <p>
+ * Decoding copies the task config, so this is intended for tasks that are rarely read, such as
+ * tasks in a terminal state.
+ */
+final class CompactTask {
+
+  private static final ScheduleStatus[] STATUSES = ScheduleStatus.values();
+  private static final byte NO_STATUS = -1;
+
+  private static final String[] NO_STRINGS = new String[0];
+  private static final int[] NO_INTS = new int[0];
+  private static final long[] NO_LONGS = new long[0];
+  private static final byte[] NO_BYTES = new byte[0];
+
+  private final TaskConfig config;
+  private final String taskId;
+  private final String slaveId;
+  private final String slaveHost;
+  private final int instanceId;
+  private final String[] portNames;
+  private final int[] ports;
+  private final byte status;
+  private final int failureCount;
+  private final String ancestorId;
+  private final long[] eventTimestamps;
+  private final byte[] eventStatuses;
+  private final String[] eventMessages;
+  private final String[] eventSchedulers;
+
+  /**
+   * Encodes a task.
+   *
+   * @param task Task to encode.
+   * @param internPools Pools to get the canonical task config and strings from.
+   */
+  CompactTask(IScheduledTask task, InternPools internPools) {
+    IAssignedTask assignedTask = task.getAssignedTask();
+    config = internPools.intern(assignedTask.getTask().newBuilder());
+    taskId = assignedTask.getTaskId();
+    slaveId = internPools.intern(assignedTask.getSlaveId());
+    slaveHost = internPools.intern(assignedTask.getSlaveHost());
+    instanceId = assignedTask.getInstanceId();
+
+    Map<String, Integer> assignedPorts = assignedTask.getAssignedPorts();
+    if (assignedPorts.isEmpty()) {
+      portNames = NO_STRINGS;
+      ports = NO_INTS;
+    } else {
+      portNames = new String[assignedPorts.size()];
+      ports = new int[assignedPorts.size()];
+      int i = 0;
+      for (Map.Entry<String, Integer> port : assignedPorts.entrySet()) {
+        portNames[i] = internPools.intern(port.getKey());
+        ports[i] = port.getValue();
+        i++;
+      }
+    }
+
+    status = encodeStatus(task.getStatus());
+    failureCount = task.getFailureCount();
+    ancestorId = task.getAncestorId();
+
+    List<ITaskEvent> events = task.getTaskEvents();
+    if (events.isEmpty()) {
+      eventTimestamps = NO_LONGS;
+      eventStatuses = NO_BYTES;
+      eventMessages = NO_STRINGS;
+      eventSchedulers = NO_STRINGS;
+    } else {
+      eventTimestamps = new long[events.size()];
+      eventStatuses = new byte[events.size()];
+      eventMessages = new String[events.size()];
+      eventSchedulers = new String[events.size()];
+      for (int i = 0; i < events.size(); i++) {
+        ITaskEvent event = events.get(i);
+        eventTimestamps[i] = event.getTimestamp();
+        eventStatuses[i] = encodeStatus(event.getStatus());
+        eventMessages[i] = internPools.intern(event.getMessage());
+        eventSchedulers[i] = internPools.intern(event.getScheduler());
+      }
+    }
+  }
+
+  private static byte encodeStatus(@Nullable ScheduleStatus value) {
+    return value == null ? NO_STATUS : (byte) value.ordinal();
+  }
+
+  @Nullable
+  private static ScheduleStatus decodeStatus(byte value) {
+    return value == NO_STATUS ? null : STATUSES[value];
+  }
+
+  /**
+   * Decodes the task.
+   *
+   * @return A task equal to the encoded task.
+   */
+  IScheduledTask decode() {
+    Map<String, Integer> assignedPorts = Maps.newHashMapWithExpectedSize(ports.length);
+    for (int i = 0; i < ports.length; i++) {
+      assignedPorts.put(portNames[i], ports[i]);
+    }
+
+    List<TaskEvent> events = Lists.newArrayListWithCapacity(eventTimestamps.length);
+    for (int i = 0; i < eventTimestamps.length; i++) {
+      events.add(new TaskEvent()
+          .setTimestamp(eventTimestamps[i])
+          .setStatus(decodeStatus(eventStatuses[i]))
+          .setMessage(eventMessages[i])
+          .setScheduler(eventSchedulers[i]));
+    }
+
+    // The canonical config is not copied here, as building the immutable task copies it.
+    return IScheduledTask.build(new ScheduledTask()
+        .setAssignedTask(new AssignedTask()
+            .setTaskId(taskId)
+            .setSlaveId(slaveId)
+            .setSlaveHost(slaveHost)
+            .setTask(config)
+            .setAssignedPorts(assignedPorts)
+            .setInstanceId(instanceId))
+        .setStatus(decodeStatus(status))
+        .setFailureCount(failureCount)
+        .setTaskEvents(events)
+        .setAncestorId(ancestorId));
+  }
+}
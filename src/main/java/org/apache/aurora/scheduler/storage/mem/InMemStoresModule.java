@@ -15,6 +15,7 @@ package org.apache.aurora.scheduler.storage.mem;
 
 import javax.inject.Singleton;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Key;
 import com.google.inject.PrivateModule;
 import com.google.inject.TypeLiteral;
@@ -26,6 +27,8 @@ import org.apache.aurora.common.quantity.Amount;
 import org.apache.aurora.common.quantity.Time;
 import org.apache.aurora.scheduler.storage.CronJobStore;
 import org.apache.aurora.scheduler.storage.TaskStore;
+import org.apache.aurora.scheduler.storage.mem.InternPools.InternTtl;
+import org.apache.aurora.scheduler.storage.mem.MemTaskStore.CompactTerminalTasks;
 import org.apache.aurora.scheduler.storage.mem.MemTaskStore.SlowQueryThreshold;
 
 import static java.util.Objects.requireNonNull;
@@ -41,10 +44,29 @@ public final class InMemStoresModule extends PrivateModule {
   private static final Arg<Amount<Long, Time>> SLOW_QUERY_LOG_THRESHOLD =
       Arg.create(Amount.of(25L, Time.MILLISECONDS));
 
+  @CmdLine(name = "compact_terminal_task_storage",
+      help = "Store tasks in a terminal state in a compact form that is decoded on every read. "
+          + "Reduces the heap used by retained terminal tasks, at the cost of slower reads of "
+          + "those tasks.")
+  private static final Arg<Boolean> COMPACT_TERMINAL_TASK_STORAGE = Arg.create(false);
+
+  @CmdLine(name = "mem_storage_intern_ttl",
+      help = "Time after which a canonical task config, job key or string that was not interned "
+          + "again is evicted from the in-memory stores' interning pools.")
+  private static final Arg<Amount<Long, Time>> MEM_STORAGE_INTERN_TTL =
+      Arg.create(Amount.of(1L, Time.HOURS));
+
   private final KeyFactory keyFactory;
+  private final boolean compactTerminalTasks;
 
   public InMemStoresModule(KeyFactory keyFactory) {
+    this(keyFactory, COMPACT_TERMINAL_TASK_STORAGE.get());
+  }
+
+  @VisibleForTesting
+  public InMemStoresModule(KeyFactory keyFactory, boolean compactTerminalTasks) {
     this.keyFactory = requireNonNull(keyFactory);
+    this.compactTerminalTasks = compactTerminalTasks;
   }
 
   private <T> void bindStore(Class<T> binding, Class<? extends T> impl) {
@@ -59,6 +81,11 @@ public final class InMemStoresModule extends PrivateModule {
   protected void configure() {
     bind(new TypeLiteral<Amount<Long, Time>>() { }).annotatedWith(SlowQueryThreshold.class)
         .toInstance(SLOW_QUERY_LOG_THRESHOLD.get());
+    bind(Boolean.class).annotatedWith(CompactTerminalTasks.class)
+        .toInstance(compactTerminalTasks);
+    bind(new TypeLiteral<Amount<Long, Time>>() { }).annotatedWith(InternTtl.class)
+        .toInstance(MEM_STORAGE_INTERN_TTL.get());
+    bind(InternPools.class).in(Singleton.class);
     bindStore(TaskStore.Mutable.class, MemTaskStore.class);
     expose(TaskStore.Mutable.class);
     bindStore(CronJobStore.Mutable.class, MemCronJobStore.class);
@@ -0,0 +1,215 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.mem;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Qualifier;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Maps;
+
+import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Time;
+import org.apache.aurora.common.stats.StatsProvider;
+import org.apache.aurora.gen.AssignedTask;
+import org.apache.aurora.gen.Constraint;
+import org.apache.aurora.gen.JobConfiguration;
+import org.apache.aurora.gen.JobKey;
+import org.apache.aurora.gen.Metadata;
+import org.apache.aurora.gen.Resource;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.TaskConfig;
+import org.apache.aurora.gen.TaskEvent;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The interning pools shared by the in-memory stores, for values that repeat across many stored
+ * objects: task configs and their job keys, resources, constraints and metadata, and strings such
+ * as host names.
+ * <p>
+ * The immutable entity wrappers copy their nested structs when built, but reference the strings
+ * of the struct they are built from.  Interning the strings of a stored object therefore saves
+ * heap for every copy, while interned structs are only shared by objects that hold them in their
+ * thrift form, such as {@link CompactTask}.
+ */
+class InternPools {
+
+  /**
+   * Time after which a canonical value that was not interned again is evicted.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.METHOD, ElementType.PARAMETER})
+  @Qualifier
+  public @interface InternTtl { }
+
+  private final Interner<String> strings;
+  private final Interner<JobKey> jobKeys;
+  private final Interner<Set<Resource>> resources;
+  private final Interner<Set<Constraint>> constraints;
+  private final Interner<Set<Metadata>> metadata;
+  private final Interner<TaskConfig> taskConfigs;
+
+  @Inject
+  InternPools(StatsProvider statsProvider, @InternTtl Amount<Long, Time> ttl) {
+    this(statsProvider, ttl, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  InternPools(StatsProvider statsProvider, Amount<Long, Time> ttl, Ticker ticker) {
+    requireNonNull(statsProvider);
+    requireNonNull(ttl);
+    strings = new Interner<>("strings", ttl, statsProvider, s -> s, ticker);
+    jobKeys = new Interner<>(
+        "job_keys",
+        ttl,
+        statsProvider,
+        key -> key
+            .setRole(intern(key.getRole()))
+            .setEnvironment(intern(key.getEnvironment()))
+            .setName(intern(key.getName())),
+        ticker);
+    resources = new Interner<>("resources", ttl, statsProvider, s -> s, ticker);
+    constraints = new Interner<>("constraints", ttl, statsProvider, s -> s, ticker);
+    metadata = new Interner<>("metadata", ttl, statsProvider, s -> s, ticker);
+    taskConfigs = new Interner<>("task_configs", ttl, statsProvider, this::internParts, ticker);
+  }
+
+  /**
+   * Gets the canonical instance of a string.
+   *
+   * @param value String to intern.
+   * @return The canonical instance of {@code value}, or {@code null} if it is {@code null}.
+   */
+  @Nullable
+  String intern(@Nullable String value) {
+    return value == null ? null : strings.intern(value);
+  }
+
+  /**
+   * Gets the canonical instance of a job key.
+   *
+   * @param key Job key to intern, which must not be modified afterwards.
+   * @return The canonical instance of {@code key}, or {@code null} if it is {@code null}.
+   */
+  @Nullable
+  JobKey intern(@Nullable JobKey key) {
+    return key == null ? null : jobKeys.intern(key);
+  }
+
+  /**
+   * Gets the canonical instance of a task config.  When the config was not yet interned, its job
+   * key, resources, constraints, metadata and strings are interned first.
+   *
+   * @param config Task config to intern, which must not be modified afterwards.
+   * @return The canonical instance of {@code config}.
+   */
+  TaskConfig intern(TaskConfig config) {
+    return taskConfigs.intern(config);
+  }
+
+  /**
+   * Interns, in place, the task config and the repeated strings of a task.
+   *
+   * @param task Task to intern the parts of, whose task config must not be modified afterwards.
+   * @return {@code task}, for chaining.
+   */
+  ScheduledTask internParts(ScheduledTask task) {
+    AssignedTask assignedTask = task.getAssignedTask();
+    if (assignedTask != null) {
+      assignedTask
+          .setSlaveId(intern(assignedTask.getSlaveId()))
+          .setSlaveHost(intern(assignedTask.getSlaveHost()));
+      if (assignedTask.isSetTask()) {
+        assignedTask.setTask(intern(assignedTask.getTask()));
+      }
+      if (assignedTask.isSetAssignedPorts()) {
+        Map<String, Integer> ports = Maps.newHashMap();
+        for (Map.Entry<String, Integer> port : assignedTask.getAssignedPorts().entrySet()) {
+          ports.put(intern(port.getKey()), port.getValue());
+        }
+        assignedTask.setAssignedPorts(ports);
+      }
+    }
+    if (task.isSetTaskEvents()) {
+      for (TaskEvent event : task.getTaskEvents()) {
+        event.setMessage(intern(event.getMessage())).setScheduler(intern(event.getScheduler()));
+      }
+    }
+    return task;
+  }
+
+  /**
+   * Interns, in place, the job key, owner and task config of a job configuration.
+   *
+   * @param job Job configuration to intern the parts of, whose task config must not be modified
+   *     afterwards.
+   * @return {@code job}, for chaining.
+   */
+  JobConfiguration internParts(JobConfiguration job) {
+    job.setKey(intern(job.getKey()));
+    if (job.isSetOwner()) {
+      job.getOwner().setUser(intern(job.getOwner().getUser()));
+    }
+    if (job.isSetTaskConfig()) {
+      job.setTaskConfig(intern(job.getTaskConfig()));
+    }
+    return job;
+  }
+
+  private TaskConfig internParts(TaskConfig config) {
+    config.setJob(intern(config.getJob()));
+    if (config.isSetOwner()) {
+      config.getOwner().setUser(intern(config.getOwner().getUser()));
+    }
+    config.setTier(intern(config.getTier()));
+    config.setContactEmail(intern(config.getContactEmail()));
+    if (config.isSetResources()) {
+      config.setResources(resources.intern(config.getResources()));
+    }
+    if (config.isSetConstraints()) {
+      config.setConstraints(constraints.intern(config.getConstraints()));
+    }
+    if (config.isSetMetadata()) {
+      config.setMetadata(metadata.intern(config.getMetadata()));
+    }
+    return config;
+  }
+
+  /**
+   * Removes all interned values.
+   */
+  void clear() {
+    strings.clear();
+    jobKeys.clear();
+    resources.clear();
+    constraints.clear();
+    metadata.clear();
+    taskConfigs.clear();
+  }
+
+  @VisibleForTesting
+  boolean isInterned(TaskConfig config) {
+    return taskConfigs.isInterned(config);
+  }
+}
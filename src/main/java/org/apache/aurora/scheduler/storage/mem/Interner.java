@@ -13,84 +13,108 @@
  */
 package org.apache.aurora.scheduler.storage.mem;
 
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Time;
+import org.apache.aurora.common.stats.StatsProvider;
+
+import static java.util.Objects.requireNonNull;
 
 /**
- * An interning pool that can be used to retrieve the canonical instances of objects, while
- * maintaining a reference count to the canonical instances.
+ * A concurrent interning pool that can be used to retrieve the canonical instances of objects.
+ * <p>
+ * A canonical instance is evicted once it has not been interned for a time to live, which
+ * releases values that are no longer in use without any explicit reference counting.  An evicted
+ * instance remains valid for the objects that still reference it, and an equal object interned
+ * later becomes the new canonical instance.
+ * <p>
+ * The number of canonical instances and the ratio of interned objects that were already present
+ * are exported as stats.
  *
- * @param <T> The interned object type.
- * @param <A> The type used for maintaining associations.
+ * @param <T> The interned object type.  Objects must not be modified once interned.
  */
-class Interner<T, A> {
+class Interner<T> {
 
-  private final Map<T, InternEntry<A, T>> pool = Maps.newHashMap();
+  private final LoadingCache<T, T> pool;
 
   /**
-   * Retrieves the canonical instance of {@code t} and maintains {@code association} with the
-   * interned value.  If {@code t} was not previously interned, the provided instance is stored.
+   * Creates an interning pool.
    *
-   * @param t The object to intern, or get the previously-interned value for.
-   * @param association A value to associate with {@code t}.
-   * @return The interned value, which may be reference-equivalent to {@code t}.
+   * @param name Name to use in stats keys.
+   * @param ttl Time after which a canonical instance that was not interned again is evicted.
+   * @param statsProvider Stats system to export metrics to.
    */
-  synchronized T addAssociation(T t, A association) {
-    InternEntry<A, T> entry = pool.get(t);
-    if (entry == null) {
-      entry = new InternEntry<>(t, association);
-      pool.put(t, entry);
-    } else {
-      entry.associations.add(association);
-    }
-    return entry.interned;
+  Interner(String name, Amount<Long, Time> ttl, StatsProvider statsProvider) {
+    this(name, ttl, statsProvider, Functions.identity(), Ticker.systemTicker());
   }
 
   /**
-   * Removes an association with an interned value, effectively decrementing the reference count.
+   * Creates an interning pool that prepares objects before they become canonical.
    *
-   * @param t The interned value that {@code association} was associated with.
-   * @param association The association to remove.
+   * @param name Name to use in stats keys.
+   * @param ttl Time after which a canonical instance that was not interned again is evicted.
+   * @param statsProvider Stats system to export metrics to.
+   * @param canonicalizer Applied to an object that is not yet interned, for example to intern its
+   *     parts.  Must return the provided object, or an equal object.
+   * @param ticker Time source for evictions.
    */
-  synchronized void removeAssociation(T t, A association) {
-    InternEntry<A, T> entry = pool.get(t);
-    if (entry != null) {
-      entry.associations.remove(association);
-      if (entry.associations.isEmpty()) {
-        pool.remove(t);
-      }
-    }
-  }
+  Interner(
+      String name,
+      Amount<Long, Time> ttl,
+      StatsProvider statsProvider,
+      Function<T, T> canonicalizer,
+      Ticker ticker) {
 
-  /**
-   * Removes all interned values and associations.
-   */
-  synchronized void clear() {
-    pool.clear();
+    pool = CacheBuilder.newBuilder()
+        .expireAfterAccess(ttl.as(Time.MILLISECONDS), TimeUnit.MILLISECONDS)
+        .ticker(ticker)
+        .recordStats()
+        .build(CacheLoader.from(canonicalizer));
+    statsProvider.makeGauge(valuesStatName(name), pool::size);
+    statsProvider.makeGauge(hitRatioStatName(name), () -> pool.stats().hitRate());
   }
 
   @VisibleForTesting
-  synchronized boolean isInterned(T t) {
-    return pool.containsKey(t);
+  static String valuesStatName(String name) {
+    return "mem_storage_interner_" + name + "_values";
   }
 
   @VisibleForTesting
-  synchronized Set<A> getAssociations(T t) {
-    return ImmutableSet.copyOf(pool.get(t).associations);
+  static String hitRatioStatName(String name) {
+    return "mem_storage_interner_" + name + "_hit_ratio";
+  }
+
+  /**
+   * Retrieves the canonical instance of {@code t}.  If {@code t} was not previously interned, the
+   * provided instance is stored.
+   *
+   * @param t The object to intern, or get the previously-interned value for.
+   * @return The interned value, which may be reference-equivalent to {@code t}.
+   */
+  T intern(T t) {
+    return pool.getUnchecked(requireNonNull(t));
   }
 
-  private static class InternEntry<A, T> {
-    private final T interned;
-    private final Set<A> associations = Sets.newHashSet();
+  /**
+   * Removes all interned values.
+   */
+  void clear() {
+    pool.invalidateAll();
+  }
 
-    InternEntry(T interned, A initialAssociation) {
-      this.interned = interned;
-      associations.add(initialAssociation);
-    }
+  @VisibleForTesting
+  boolean isInterned(T t) {
+    // Unlike a lookup through the cache, this neither counts towards the hit ratio nor extends
+    // the lifetime of the entry.
+    return pool.asMap().containsKey(t);
   }
 }
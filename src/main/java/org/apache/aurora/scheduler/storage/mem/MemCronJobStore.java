@@ -15,27 +15,39 @@ package org.apache.aurora.scheduler.storage.mem;
 
 import java.util.Map;
 
+import javax.inject.Inject;
+
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 
 import org.apache.aurora.common.inject.TimedInterceptor.Timed;
+import org.apache.aurora.gen.JobConfiguration;
 import org.apache.aurora.scheduler.base.JobKeys;
 import org.apache.aurora.scheduler.storage.CronJobStore;
 import org.apache.aurora.scheduler.storage.entities.IJobConfiguration;
 import org.apache.aurora.scheduler.storage.entities.IJobKey;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * An in-memory cron job store.
  */
 class MemCronJobStore implements CronJobStore.Mutable {
   private final Map<IJobKey, IJobConfiguration> jobs = Maps.newConcurrentMap();
+  private final InternPools internPools;
+
+  @Inject
+  MemCronJobStore(InternPools internPools) {
+    this.internPools = requireNonNull(internPools);
+  }
 
   @Timed("mem_storage_cron_save_accepted_job")
   @Override
   public void saveAcceptedJob(IJobConfiguration jobConfig) {
     IJobKey key = JobKeys.assertValid(jobConfig.getKey());
-    jobs.put(key, jobConfig);
+    JobConfiguration builder = internPools.internParts(jobConfig.newBuilder());
+    jobs.put(key, IJobConfiguration.build(builder));
   }
 
   @Timed("mem_storage_cron_remove_job")
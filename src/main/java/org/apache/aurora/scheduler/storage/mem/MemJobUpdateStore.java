@@ -0,0 +1,531 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.mem;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.SetMultimap;
+
+import org.apache.aurora.common.base.MorePreconditions;
+import org.apache.aurora.common.inject.TimedInterceptor.Timed;
+import org.apache.aurora.gen.JobUpdate;
+import org.apache.aurora.gen.JobUpdateDetails;
+import org.apache.aurora.gen.JobUpdateState;
+import org.apache.aurora.gen.JobUpdateStatus;
+import org.apache.aurora.gen.JobUpdateSummary;
+import org.apache.aurora.gen.storage.StoredJobUpdateDetails;
+import org.apache.aurora.scheduler.stats.CachedCounters;
+import org.apache.aurora.scheduler.storage.JobUpdateStore;
+import org.apache.aurora.scheduler.storage.LockStore;
+import org.apache.aurora.scheduler.storage.Storage.StorageException;
+import org.apache.aurora.scheduler.storage.entities.IInstanceTaskConfig;
+import org.apache.aurora.scheduler.storage.entities.IJobInstanceUpdateEvent;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
+import org.apache.aurora.scheduler.storage.entities.IJobUpdate;
+import org.apache.aurora.scheduler.storage.entities.IJobUpdateDetails;
+import org.apache.aurora.scheduler.storage.entities.IJobUpdateEvent;
+import org.apache.aurora.scheduler.storage.entities.IJobUpdateInstructions;
+import org.apache.aurora.scheduler.storage.entities.IJobUpdateKey;
+import org.apache.aurora.scheduler.storage.entities.IJobUpdateQuery;
+import org.apache.aurora.scheduler.storage.entities.IJobUpdateSummary;
+import org.apache.aurora.scheduler.storage.entities.ILock;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An in-memory job update store, with secondary indices by job, role, user and status.
+ * <p>
+ * The status and timestamps of an update are derived from its events in the same way as
+ * {@link org.apache.aurora.scheduler.storage.db.DbJobUpdateStore} does, and an update is only
+ * visible to queries once it has at least one job update event.  Lock tokens are only reported
+ * while a lock with that token exists in the lock store, mirroring the cascading delete of the
+ * database store.
+ * <p>
+ * Unlike the database store, this store is not rolled back when a storage transaction fails, so
+ * all arguments are validated before any state is modified.
+ */
+public class MemJobUpdateStore implements JobUpdateStore.Mutable {
+
+  // As in MemTaskStore, the data structures here are individually thread-safe but we don't lock
+  // across them, relying on the storage write lock to serialize writers.
+  private final Map<IJobUpdateKey, Update> updates = Maps.newConcurrentMap();
+  private final Map<String, IJobUpdateKey> updatesByLockToken = Maps.newConcurrentMap();
+  private final SecondaryIndex<IJobKey> jobIndex = new SecondaryIndex<>();
+  private final SecondaryIndex<String> roleIndex = new SecondaryIndex<>();
+  private final SecondaryIndex<String> userIndex = new SecondaryIndex<>();
+  private final SecondaryIndex<JobUpdateStatus> statusIndex = new SecondaryIndex<>();
+
+  private final LockStore lockStore;
+  private final CachedCounters stats;
+
+  @Inject
+  MemJobUpdateStore(LockStore.Mutable lockStore, CachedCounters stats) {
+    this.lockStore = requireNonNull(lockStore);
+    this.stats = requireNonNull(stats);
+  }
+
+  private static String statName(JobUpdateStatus status) {
+    return "update_transition_" + status;
+  }
+
+  @Timed("mem_storage_job_update_save_update")
+  @Override
+  public void saveJobUpdate(IJobUpdate update, Optional<String> lockToken) {
+    requireNonNull(update);
+    IJobUpdateInstructions instructions = update.getInstructions();
+    if (!instructions.isSetDesiredState() && instructions.getInitialState().isEmpty()) {
+      throw new IllegalArgumentException(
+          "Missing both initial and desired states. At least one is required.");
+    }
+    if (instructions.isSetDesiredState()) {
+      requireNonNull(instructions.getDesiredState().getTask());
+      MorePreconditions.checkNotBlank(instructions.getDesiredState().getInstances());
+    }
+    for (IInstanceTaskConfig config : instructions.getInitialState()) {
+      requireNonNull(config.getTask());
+      MorePreconditions.checkNotBlank(config.getInstances());
+    }
+
+    IJobUpdateKey key = update.getSummary().getKey();
+    if (updates.containsKey(key)) {
+      throw new StorageException("An update already exists with key " + key);
+    }
+    if (lockToken.isPresent()) {
+      if (!liveLockTokens().contains(lockToken.get())) {
+        throw new StorageException("No lock exists with token " + lockToken.get());
+      }
+      IJobUpdateKey lockHolder = updatesByLockToken.get(lockToken.get());
+      if (lockHolder != null) {
+        throw new StorageException("Lock token " + lockToken.get() + " is in use by " + lockHolder);
+      }
+    }
+
+    // The update state is derived from the update events.
+    JobUpdate builder = update.newBuilder();
+    builder.getSummary().unsetState();
+    Update stored = new Update(IJobUpdate.build(builder), lockToken);
+
+    updates.put(key, stored);
+    if (lockToken.isPresent()) {
+      updatesByLockToken.put(lockToken.get(), key);
+    }
+    jobIndex.insert(key.getJob(), key);
+    roleIndex.insert(key.getJob().getRole(), key);
+    userIndex.insert(stored.update.getSummary().getUser(), key);
+  }
+
+  @Timed("mem_storage_job_update_save_event")
+  @Override
+  public void saveJobUpdateEvent(IJobUpdateKey key, IJobUpdateEvent event) {
+    requireNonNull(event);
+    Update update = getExisting(key);
+    stats.get(statName(event.getStatus())).incrementAndGet();
+
+    synchronized (update) {
+      JobUpdateStatus oldStatus = update.status;
+      update.addJobEvent(event);
+      if (oldStatus != update.status) {
+        statusIndex.replace(oldStatus, update.status, key);
+      }
+    }
+  }
+
+  @Timed("mem_storage_job_update_save_instance_event")
+  @Override
+  public void saveJobInstanceUpdateEvent(IJobUpdateKey key, IJobInstanceUpdateEvent event) {
+    requireNonNull(event);
+    getExisting(key).addInstanceEvent(event);
+  }
+
+  @Timed("mem_storage_job_update_delete_all")
+  @Override
+  public void deleteAllUpdatesAndEvents() {
+    updates.clear();
+    updatesByLockToken.clear();
+    jobIndex.clear();
+    roleIndex.clear();
+    userIndex.clear();
+    statusIndex.clear();
+  }
+
+  @Timed("mem_storage_job_update_prune_history")
+  @Override
+  public Set<IJobUpdateKey> pruneHistory(int perJobRetainCount, long historyPruneThresholdMs) {
+    Set<String> liveTokens = liveLockTokens();
+    ImmutableSet.Builder<IJobUpdateKey> pruned = ImmutableSet.builder();
+
+    for (IJobKey job : jobIndex.keys()) {
+      // Only completed updates are pruned.  As in the database store, an update is considered
+      // completed once it has at least one event and its lock has been released.
+      List<Update> completed = Lists.newArrayList();
+      for (Update update : fromKeys(jobIndex.get(ImmutableSet.of(job)))) {
+        if (update.getCreatedTimestampMs().isPresent() && !update.isLocked(liveTokens)) {
+          completed.add(update);
+        }
+      }
+
+      boolean hasExpired = completed.stream().anyMatch(
+          update -> update.getCreatedTimestampMs().get() < historyPruneThresholdMs);
+      if (completed.size() <= perJobRetainCount && !hasExpired) {
+        continue;
+      }
+
+      completed.sort(Comparator.comparingLong(
+          (Update update) -> update.getCreatedTimestampMs().get()).reversed());
+      for (int i = 0; i < completed.size(); i++) {
+        Update update = completed.get(i);
+        if (i >= perJobRetainCount
+            || update.getCreatedTimestampMs().get() <= historyPruneThresholdMs) {
+
+          remove(update);
+          pruned.add(update.key);
+        }
+      }
+    }
+
+    return pruned.build();
+  }
+
+  @Timed("mem_storage_job_update_fetch_summaries")
+  @Override
+  public List<IJobUpdateSummary> fetchJobUpdateSummaries(IJobUpdateQuery query) {
+    return FluentIterable.from(query(query)).transform(match -> match.summary).toList();
+  }
+
+  @Timed("mem_storage_job_update_fetch_details_list")
+  @Override
+  public List<IJobUpdateDetails> fetchJobUpdateDetails(IJobUpdateQuery query) {
+    return FluentIterable.from(query(query))
+        .transform(match -> match.update.getDetails())
+        .filter(Optional::isPresent)
+        .transform(Optional::get)
+        .toList();
+  }
+
+  @Timed("mem_storage_job_update_fetch_details")
+  @Override
+  public Optional<IJobUpdateDetails> fetchJobUpdateDetails(IJobUpdateKey key) {
+    Update update = updates.get(key);
+    return update == null ? Optional.absent() : update.getDetails();
+  }
+
+  @Timed("mem_storage_job_update_fetch_update")
+  @Override
+  public Optional<IJobUpdate> fetchJobUpdate(IJobUpdateKey key) {
+    Update update = updates.get(key);
+    return update == null ? Optional.absent() : update.getUpdate();
+  }
+
+  @Timed("mem_storage_job_update_fetch_instructions")
+  @Override
+  public Optional<IJobUpdateInstructions> fetchJobUpdateInstructions(IJobUpdateKey key) {
+    return Optional.fromNullable(updates.get(key)).transform(update -> update.instructions);
+  }
+
+  @Timed("mem_storage_job_update_fetch_all_details")
+  @Override
+  public Set<StoredJobUpdateDetails> fetchAllJobUpdateDetails() {
+    Set<String> liveTokens = liveLockTokens();
+    ImmutableSet.Builder<StoredJobUpdateDetails> result = ImmutableSet.builder();
+    for (Update update : updates.values()) {
+      Optional<IJobUpdateDetails> details = update.getDetails();
+      if (details.isPresent()) {
+        result.add(new StoredJobUpdateDetails(
+            details.get().newBuilder(),
+            update.isLocked(liveTokens) ? update.lockToken.get() : null));
+      }
+    }
+    return result.build();
+  }
+
+  @Timed("mem_storage_job_update_get_lock_token")
+  @Override
+  public Optional<String> getLockToken(IJobUpdateKey key) {
+    Update update = updates.get(key);
+    if (update == null || !update.isLocked(liveLockTokens())) {
+      return Optional.absent();
+    }
+    return update.lockToken;
+  }
+
+  @Timed("mem_storage_job_update_fetch_instance_events")
+  @Override
+  public List<IJobInstanceUpdateEvent> fetchInstanceEvents(IJobUpdateKey key, int instanceId) {
+    Update update = updates.get(key);
+    return update == null ? ImmutableList.of() : update.getInstanceEvents(instanceId);
+  }
+
+  private Update getExisting(IJobUpdateKey key) {
+    Update update = updates.get(requireNonNull(key));
+    if (update == null) {
+      throw new StorageException("No update exists with key " + key);
+    }
+    return update;
+  }
+
+  private Set<String> liveLockTokens() {
+    return FluentIterable.from(lockStore.fetchLocks()).transform(ILock::getToken).toSet();
+  }
+
+  private void remove(Update update) {
+    updates.remove(update.key);
+    if (update.lockToken.isPresent()) {
+      updatesByLockToken.remove(update.lockToken.get(), update.key);
+    }
+    jobIndex.remove(update.key.getJob(), update.key);
+    roleIndex.remove(update.key.getJob().getRole(), update.key);
+    userIndex.remove(update.update.getSummary().getUser(), update.key);
+    synchronized (update) {
+      statusIndex.remove(update.status, update.key);
+    }
+  }
+
+  private Iterable<Update> fromKeys(Iterable<IJobUpdateKey> keys) {
+    return FluentIterable.from(keys).transform(updates::get).filter(update -> update != null);
+  }
+
+  private static final ToLongFunction<Match> LAST_MODIFIED =
+      match -> match.summary.getState().getLastModifiedTimestampMs();
+
+  private List<Match> query(IJobUpdateQuery query) {
+    // Start from the smallest of the matching indices, then apply the full query to each match.
+    Iterable<Update> candidates;
+    if (query.isSetKey()) {
+      candidates = Optional.fromNullable(updates.get(query.getKey())).asSet();
+    } else {
+      List<Set<IJobUpdateKey>> indexMatches = Lists.newArrayList();
+      if (query.isSetJobKey()) {
+        indexMatches.add(jobIndex.get(ImmutableSet.of(query.getJobKey())));
+      }
+      if (query.isSetRole()) {
+        indexMatches.add(roleIndex.get(ImmutableSet.of(query.getRole())));
+      }
+      if (query.isSetUser()) {
+        indexMatches.add(userIndex.get(ImmutableSet.of(query.getUser())));
+      }
+      if (!query.getUpdateStatuses().isEmpty()) {
+        indexMatches.add(statusIndex.get(query.getUpdateStatuses()));
+      }
+      candidates = indexMatches.isEmpty()
+          ? updates.values()
+          : fromKeys(Collections.min(indexMatches, Comparator.comparingInt(Set::size)));
+    }
+
+    // Summaries are captured before sorting, so that concurrent writes can't reorder matches.
+    List<Match> matches = Lists.newArrayList();
+    for (Update update : candidates) {
+      Optional<IJobUpdateSummary> summary = update.getSummary();
+      if (summary.isPresent() && matches(query, summary.get())) {
+        matches.add(new Match(update, summary.get()));
+      }
+    }
+    matches.sort(Comparator.comparingLong(LAST_MODIFIED).reversed());
+
+    int offset = Math.min(query.getOffset(), matches.size());
+    int end = query.getLimit() == 0
+        ? matches.size()
+        : (int) Math.min((long) offset + query.getLimit(), matches.size());
+    return matches.subList(offset, end);
+  }
+
+  private static boolean matches(IJobUpdateQuery query, IJobUpdateSummary summary) {
+    IJobKey job = summary.getKey().getJob();
+    return (!query.isSetKey() || query.getKey().equals(summary.getKey()))
+        && (!query.isSetUser() || query.getUser().equals(summary.getUser()))
+        && (!query.isSetRole() || query.getRole().equals(job.getRole()))
+        && (!query.isSetJobKey() || query.getJobKey().equals(job))
+        && (query.getUpdateStatuses().isEmpty()
+            || query.getUpdateStatuses().contains(summary.getState().getStatus()));
+  }
+
+  /**
+   * An update matching a query, along with the summary it was matched on.
+   */
+  private static final class Match {
+    private final Update update;
+    private final IJobUpdateSummary summary;
+
+    Match(Update update, IJobUpdateSummary summary) {
+      this.update = update;
+      this.summary = summary;
+    }
+  }
+
+  /**
+   * A stored update and its events.  The update state is maintained as events are added.
+   */
+  private static final class Update {
+    private final IJobUpdateKey key;
+    // The update with an unset state.
+    private final IJobUpdate update;
+    private final IJobUpdateInstructions instructions;
+    private final Optional<String> lockToken;
+
+    // Events are kept in timestamp order, with events of equal timestamps in insertion order.
+    private final List<IJobUpdateEvent> jobEvents = Lists.newArrayList();
+    private final List<IJobInstanceUpdateEvent> instanceEvents = Lists.newArrayList();
+
+    // The status is absent until there is at least one job update event, and the update is not
+    // visible to queries until then.
+    @Nullable
+    private JobUpdateStatus status;
+    private long statusTimestampMs;
+    private long createdTimestampMs = Long.MAX_VALUE;
+    private long lastModifiedTimestampMs = Long.MIN_VALUE;
+    @Nullable
+    private IJobUpdateSummary summary;
+
+    Update(IJobUpdate update, Optional<String> lockToken) {
+      this.key = update.getSummary().getKey();
+      this.update = update;
+      this.instructions = update.getInstructions();
+      this.lockToken = lockToken;
+    }
+
+    boolean isLocked(Set<String> liveTokens) {
+      return lockToken.isPresent() && liveTokens.contains(lockToken.get());
+    }
+
+    synchronized void addJobEvent(IJobUpdateEvent event) {
+      long timestampMs = event.getTimestampMs();
+      // The status is that of the latest event, preferring the last saved one on a tie.
+      if (status == null || timestampMs >= statusTimestampMs) {
+        status = event.getStatus();
+        statusTimestampMs = timestampMs;
+      }
+      createdTimestampMs = Math.min(createdTimestampMs, timestampMs);
+      lastModifiedTimestampMs = Math.max(lastModifiedTimestampMs, timestampMs);
+      insertSorted(jobEvents, event, IJobUpdateEvent::getTimestampMs);
+      summary = null;
+    }
+
+    synchronized void addInstanceEvent(IJobInstanceUpdateEvent event) {
+      lastModifiedTimestampMs = Math.max(lastModifiedTimestampMs, event.getTimestampMs());
+      insertSorted(instanceEvents, event, IJobInstanceUpdateEvent::getTimestampMs);
+      summary = null;
+    }
+
+    synchronized Optional<Long> getCreatedTimestampMs() {
+      return status == null ? Optional.absent() : Optional.of(createdTimestampMs);
+    }
+
+    synchronized Optional<IJobUpdateSummary> getSummary() {
+      if (status == null) {
+        return Optional.absent();
+      }
+      if (summary == null) {
+        JobUpdateSummary builder = update.getSummary().newBuilder().setState(new JobUpdateState()
+            .setStatus(status)
+            .setCreatedTimestampMs(createdTimestampMs)
+            .setLastModifiedTimestampMs(lastModifiedTimestampMs));
+        summary = IJobUpdateSummary.build(builder);
+      }
+      return Optional.of(summary);
+    }
+
+    synchronized Optional<IJobUpdate> getUpdate() {
+      return getSummary().transform(current -> IJobUpdate.build(new JobUpdate()
+          .setSummary(current.newBuilder())
+          .setInstructions(instructions.newBuilder())));
+    }
+
+    synchronized Optional<IJobUpdateDetails> getDetails() {
+      return getUpdate().transform(populated -> IJobUpdateDetails.build(new JobUpdateDetails()
+          .setUpdate(populated.newBuilder())
+          .setUpdateEvents(IJobUpdateEvent.toBuildersList(jobEvents))
+          .setInstanceEvents(IJobInstanceUpdateEvent.toBuildersList(instanceEvents))));
+    }
+
+    synchronized List<IJobInstanceUpdateEvent> getInstanceEvents(int instanceId) {
+      return FluentIterable.from(instanceEvents)
+          .filter(event -> event.getInstanceId() == instanceId)
+          .toList();
+    }
+
+    private static <T> void insertSorted(List<T> events, T event, ToLongFunction<T> timestamp) {
+      // Events are almost always saved in timestamp order, so search from the end.
+      long timestampMs = timestamp.applyAsLong(event);
+      int index = events.size();
+      while (index > 0 && timestamp.applyAsLong(events.get(index - 1)) > timestampMs) {
+        index--;
+      }
+      events.add(index, event);
+    }
+  }
+
+  /**
+   * A non-unique secondary index, mapping a custom key type to a set of update keys.
+   *
+   * @param <K> Key type.
+   */
+  private static final class SecondaryIndex<K> {
+    private final SetMultimap<K, IJobUpdateKey> index =
+        Multimaps.synchronizedSetMultimap(HashMultimap.create());
+
+    void insert(@Nullable K key, IJobUpdateKey updateKey) {
+      if (key != null) {
+        index.put(key, updateKey);
+      }
+    }
+
+    void remove(@Nullable K key, IJobUpdateKey updateKey) {
+      if (key != null) {
+        index.remove(key, updateKey);
+      }
+    }
+
+    void replace(@Nullable K oldKey, @Nullable K newKey, IJobUpdateKey updateKey) {
+      synchronized (index) {
+        remove(oldKey, updateKey);
+        insert(newKey, updateKey);
+      }
+    }
+
+    void clear() {
+      index.clear();
+    }
+
+    Set<K> keys() {
+      synchronized (index) {
+        return ImmutableSet.copyOf(index.keySet());
+      }
+    }
+
+    Set<IJobUpdateKey> get(Set<K> keys) {
+      ImmutableSet.Builder<IJobUpdateKey> builder = ImmutableSet.builder();
+      synchronized (index) {
+        for (K key : keys) {
+          builder.addAll(index.get(key));
+        }
+      }
+      return builder.build();
+    }
+  }
+}
@@ -17,15 +17,21 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Qualifier;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Optional;
@@ -38,24 +44,29 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
+import com.google.common.collect.Ordering;
 
 import org.apache.aurora.common.base.MorePreconditions;
+import org.apache.aurora.common.collections.Pair;
 import org.apache.aurora.common.inject.TimedInterceptor.Timed;
 import org.apache.aurora.common.quantity.Amount;
 import org.apache.aurora.common.quantity.Time;
 import org.apache.aurora.common.stats.StatsProvider;
+import org.apache.aurora.gen.ScheduleStatus;
 import org.apache.aurora.gen.ScheduledTask;
-import org.apache.aurora.gen.TaskConfig;
 import org.apache.aurora.scheduler.base.JobKeys;
 import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.Tasks;
+import org.apache.aurora.scheduler.storage.TaskQueryStats;
 import org.apache.aurora.scheduler.storage.TaskStore;
 import org.apache.aurora.scheduler.storage.entities.IJobKey;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
+import org.apache.aurora.scheduler.storage.entities.ITaskQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -76,7 +87,16 @@ class MemTaskStore implements TaskStore.Mutable {
   @Qualifier
   public @interface SlowQueryThreshold { }
 
+  /**
+   * When true, tasks in a terminal state are stored in a compact form.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.METHOD, ElementType.PARAMETER})
+  @Qualifier
+  public @interface CompactTerminalTasks { }
+
   private final long slowQueryThresholdNanos;
+  private final boolean compactTerminalTasks;
 
   private static final Function<Query.Builder, Optional<Set<IJobKey>>> QUERY_TO_JOB_KEY =
       JobKeys::from;
@@ -84,6 +104,27 @@ class MemTaskStore implements TaskStore.Mutable {
       query -> query.get().getSlaveHosts().isEmpty()
           ? Optional.absent()
           : Optional.of(query.get().getSlaveHosts());
+  private static final Function<Query.Builder, Optional<Set<ScheduleStatus>>> QUERY_TO_STATUS =
+      query -> query.get().getStatuses().isEmpty()
+          ? Optional.absent()
+          : Optional.of(query.get().getStatuses());
+  // Queries with an environment are better served by the role and environment index.
+  private static final Function<Query.Builder, Optional<Set<String>>> QUERY_TO_ROLE =
+      query -> hasRole(query) && query.get().getEnvironment() == null
+          ? Optional.of(ImmutableSet.of(query.get().getRole()))
+          : Optional.absent();
+  private static final Function<Query.Builder, Optional<Set<Pair<String, String>>>>
+      QUERY_TO_ROLE_AND_ENV =
+          query -> hasRole(query) && query.get().getEnvironment() != null
+              ? Optional.of(ImmutableSet.of(
+                  Pair.of(query.get().getRole(), query.get().getEnvironment())))
+              : Optional.absent();
+
+  // Blank roles do not restrict queries, see TaskStore.Util#queryFilter.
+  private static boolean hasRole(Query.Builder query) {
+    return query.get().getRole() != null
+        && !CharMatcher.WHITESPACE.matchesAllOf(query.get().getRole());
+  }
 
   // Since this class operates under the API and umbrella of {@link Storage}, it is expected to be
   // thread-safe but not necessarily strongly-consistent unless the externally-controlled storage
@@ -95,20 +136,27 @@ class MemTaskStore implements TaskStore.Mutable {
   // slave host.  This is deemed acceptable due to the fact that secondary key values are rarely
   // mutated in practice, and mutated in ways that are not impacted by this behavior.
   private final Map<String, Task> tasks = Maps.newConcurrentMap();
+  // Task IDs in the order used for paginated queries, allowing a paginated full scan to start at
+  // its continuation token and stop once its page is full.
+  private final NavigableSet<String> orderedTaskIds = new ConcurrentSkipListSet<>();
   private final List<SecondaryIndex<?>> secondaryIndices;
 
-  // An interner is used here to collapse equivalent TaskConfig instances into canonical instances.
+  // Interning is used here to collapse equivalent TaskConfig instances into canonical instances.
   // Ideally this would fall out of the object hierarchy (TaskConfig being associated with the job
   // rather than the task), but we intuit this detail here for performance reasons.
-  private final Interner<TaskConfig, String> configInterner = new Interner<>();
+  private final InternPools internPools;
 
   private final AtomicLong taskQueriesById;
   private final AtomicLong taskQueriesAll;
+  private final TaskQueryStats queryStats;
 
   @Inject
   MemTaskStore(
       StatsProvider statsProvider,
-      @SlowQueryThreshold Amount<Long, Time> slowQueryThreshold) {
+      @SlowQueryThreshold Amount<Long, Time> slowQueryThreshold,
+      @CompactTerminalTasks boolean compactTerminalTasks,
+      InternPools internPools,
+      TaskQueryStats queryStats) {
 
     secondaryIndices = ImmutableList.of(
         new SecondaryIndex<>(
@@ -120,8 +168,26 @@ class MemTaskStore implements TaskStore.Mutable {
             Tasks::scheduledToSlaveHost,
             QUERY_TO_SLAVE_HOST,
             statsProvider,
-            "host"));
+            "host"),
+        new SecondaryIndex<>(
+            IScheduledTask::getStatus,
+            QUERY_TO_STATUS,
+            statsProvider,
+            "status"),
+        new SecondaryIndex<>(
+            task -> Tasks.getJob(task).getRole(),
+            QUERY_TO_ROLE,
+            statsProvider,
+            "role"),
+        new SecondaryIndex<>(
+            task -> Pair.of(Tasks.getJob(task).getRole(), Tasks.getJob(task).getEnvironment()),
+            QUERY_TO_ROLE_AND_ENV,
+            statsProvider,
+            "role_env"));
     slowQueryThresholdNanos = slowQueryThreshold.as(Time.NANOSECONDS);
+    this.compactTerminalTasks = compactTerminalTasks;
+    this.internPools = requireNonNull(internPools);
+    this.queryStats = requireNonNull(queryStats);
     taskQueriesById = statsProvider.makeCounter("task_queries_by_id");
     taskQueriesAll = statsProvider.makeCounter("task_queries_all");
   }
@@ -130,7 +196,7 @@ class MemTaskStore implements TaskStore.Mutable {
   @Override
   public Optional<IScheduledTask> fetchTask(String taskId) {
     requireNonNull(taskId);
-    return Optional.fromNullable(tasks.get(taskId)).transform(t -> t.storedTask);
+    return Optional.fromNullable(tasks.get(taskId)).transform(Task::get);
   }
 
   @Timed("mem_storage_fetch_tasks")
@@ -139,29 +205,57 @@ class MemTaskStore implements TaskStore.Mutable {
     requireNonNull(query);
 
     long start = System.nanoTime();
-    ImmutableSet<IScheduledTask> result = matches(query).toSet();
-    long durationNanos = System.nanoTime() - start;
+    AtomicLong examined = new AtomicLong();
+    ImmutableSet<IScheduledTask> result = matches(query, examined).toSet();
+    recordQuery(query, System.nanoTime() - start, examined.get(), result.size());
+
+    return result;
+  }
+
+  @Timed("mem_storage_visit_tasks")
+  @Override
+  public void visitTasks(Query.Builder query, TaskVisitor visitor) {
+    requireNonNull(query);
+    requireNonNull(visitor);
+
+    long start = System.nanoTime();
+    AtomicLong examined = new AtomicLong();
+    long visited = 0;
+    for (IScheduledTask task : matches(query, examined)) {
+      visited++;
+      if (!visitor.visit(task)) {
+        break;
+      }
+    }
+    recordQuery(query, System.nanoTime() - start, examined.get(), visited);
+  }
+
+  private void recordQuery(Query.Builder query, long durationNanos, long examined, long returned) {
+    queryStats.record(query, durationNanos, examined, returned);
+
     boolean infoLevel = durationNanos >= slowQueryThresholdNanos;
     long time = Amount.of(durationNanos, Time.NANOSECONDS).as(Time.MILLISECONDS);
-    String message = "Query took {} ms: {}";
+    String message = "Query took {} ms, returning {} of {} examined tasks ({}): {}";
+    Object[] args = {time, returned, examined, TaskQueryStats.Shape.of(query), query.get()};
     if (infoLevel) {
-      LOG.info(message, time, query.get());
+      LOG.info(message, args);
     } else {
-      LOG.debug(message, time, query.get());
+      LOG.debug(message, args);
     }
-
-    return result;
   }
 
   @Timed("mem_storage_get_job_keys")
   @Override
   public Set<IJobKey> getJobKeys() {
-    return FluentIterable.from(fetchTasks(Query.unscoped()))
+    return matches(Query.unscoped(), new AtomicLong())
         .transform(Tasks::getJob)
         .toSet();
   }
 
-  private final Function<IScheduledTask, Task> toTask = task -> new Task(task, configInterner);
+  private final Function<IScheduledTask, Task> toTask = task -> new Task(
+      task,
+      internPools,
+      compactTerminalTasks && Tasks.TERMINAL_STATES.contains(task.getStatus()));
 
   @Timed("mem_storage_save_tasks")
   @Override
@@ -170,10 +264,21 @@ class MemTaskStore implements TaskStore.Mutable {
     Preconditions.checkState(Tasks.ids(newTasks).size() == newTasks.size(),
         "Proposed new tasks would create task ID collision.");
 
-    Iterable<Task> canonicalized = Iterables.transform(newTasks, toTask);
-    tasks.putAll(Maps.uniqueIndex(canonicalized, TO_ID));
-    for (SecondaryIndex<?> index : secondaryIndices) {
-      index.insert(Iterables.transform(canonicalized, TO_SCHEDULED));
+    for (IScheduledTask task : newTasks) {
+      String id = Tasks.id(task);
+      Task previous = tasks.put(id, toTask.apply(task));
+      orderedTaskIds.add(id);
+      // Index the provided task, which is equal to the stored task but need not be decoded.  A
+      // task that was already stored (e.g. when replaying the log) is re-keyed, so that the keys
+      // of its previous state are not left behind.
+      IScheduledTask previousTask = previous == null ? null : previous.get();
+      for (SecondaryIndex<?> index : secondaryIndices) {
+        if (previousTask == null) {
+          index.insert(task);
+        } else {
+          index.replace(previousTask, task);
+        }
+      }
     }
   }
 
@@ -181,10 +286,11 @@ class MemTaskStore implements TaskStore.Mutable {
   @Override
   public void deleteAllTasks() {
     tasks.clear();
+    orderedTaskIds.clear();
     for (SecondaryIndex<?> index : secondaryIndices) {
       index.clear();
     }
-    configInterner.clear();
+    internPools.clear();
   }
 
   @Timed("mem_storage_delete_tasks")
@@ -195,12 +301,11 @@ class MemTaskStore implements TaskStore.Mutable {
     for (String id : taskIds) {
       Task removed = tasks.remove(id);
       if (removed != null) {
+        IScheduledTask removedTask = removed.get();
+        orderedTaskIds.remove(id);
         for (SecondaryIndex<?> index : secondaryIndices) {
-          index.remove(removed.storedTask);
+          index.remove(removedTask);
         }
-        configInterner.removeAssociation(
-            removed.storedTask.getAssignedTask().getTask().newBuilder(),
-            id);
       }
     }
   }
@@ -237,24 +342,13 @@ class MemTaskStore implements TaskStore.Mutable {
     if (stored == null) {
       return false;
     } else {
-      ScheduledTask updated = stored.storedTask.newBuilder();
+      ScheduledTask updated = stored.get().newBuilder();
       updated.getAssignedTask().setTask(taskConfiguration.newBuilder());
       tasks.put(taskId, toTask.apply(IScheduledTask.build(updated)));
       return true;
     }
   }
 
-  private static Predicate<Task> queryFilter(Query.Builder query) {
-    return Predicates.compose(
-        Util.queryFilter(query),
-        new Function<Task, IScheduledTask>() {
-          @Override
-          public IScheduledTask apply(Task canonicalTask) {
-            return canonicalTask.storedTask;
-          }
-        });
-  }
-
   private Iterable<Task> fromIdIndex(Iterable<String> taskIds) {
     return FluentIterable.from(taskIds)
         .transform(Functions.forMap(tasks, null))
@@ -262,54 +356,102 @@ class MemTaskStore implements TaskStore.Mutable {
         .toList();
   }
 
-  private FluentIterable<IScheduledTask> matches(Query.Builder query) {
+  private Iterable<Task> fromIdIndexLazily(Iterable<String> taskIds) {
+    return FluentIterable.from(taskIds)
+        .transform(Functions.forMap(tasks, null))
+        .filter(Predicates.notNull());
+  }
+
+  // Orders the candidate tasks of a paginated query, skipping those up to its continuation token.
+  private static Iterable<String> inPageOrder(Iterable<String> taskIds, ITaskQuery query) {
+    Iterable<String> remaining = taskIds;
+    if (query.isSetContinuationToken()) {
+      String token = query.getContinuationToken();
+      remaining = Iterables.filter(taskIds, id -> id.compareTo(token) > 0);
+    }
+    return Ordering.natural().sortedCopy(remaining);
+  }
+
+  private FluentIterable<IScheduledTask> matches(Query.Builder query, AtomicLong examined) {
+    ITaskQuery taskQuery = query.get();
+    boolean paginated = Util.isPaginated(taskQuery);
+
     // Apply the query against the working set.
     Optional<? extends Iterable<Task>> from = Optional.absent();
-    if (query.get().getTaskIds().isEmpty()) {
+    if (taskQuery.getTaskIds().isEmpty()) {
+      List<SecondaryIndex<?>.Match> indexMatches = Lists.newArrayList();
       for (SecondaryIndex<?> index : secondaryIndices) {
-        Optional<Iterable<String>> indexMatch = index.getMatches(query);
+        Optional<? extends SecondaryIndex<?>.Match> indexMatch = index.getMatch(query);
         if (indexMatch.isPresent()) {
-          // Note: we could leverage multiple indexes here if the query applies to them, by
-          // choosing to intersect the results.  Given current indexes and query profile, this is
-          // unlikely to offer much improvement, though.
-          from = Optional.of(fromIdIndex(indexMatch.get()));
-          break;
+          indexMatches.add(indexMatch.get());
         }
       }
 
-      // No indices match, fall back to a full scan.
-      if (!from.isPresent()) {
+      if (!indexMatches.isEmpty()) {
+        // Start from the index with the fewest matches, and intersect with the other indices by
+        // probing them rather than materializing their (likely much larger) matches.
+        SecondaryIndex<?>.Match smallest = Collections.min(
+            indexMatches,
+            Comparator.comparingInt((SecondaryIndex<?>.Match match) -> match.size()));
+        Iterable<String> taskIds = smallest.getTaskIds();
+        for (SecondaryIndex<?>.Match other : indexMatches) {
+          if (other != smallest) {
+            taskIds = Iterables.filter(taskIds, other::contains);
+          }
+        }
+        from = Optional.of(paginated
+            ? fromIdIndexLazily(inPageOrder(taskIds, taskQuery))
+            : fromIdIndex(taskIds));
+      } else {
+        // No indices match, fall back to a full scan.
         taskQueriesAll.incrementAndGet();
-        from = Optional.of(tasks.values());
+        if (paginated) {
+          from = Optional.of(fromIdIndexLazily(taskQuery.isSetContinuationToken()
+              ? orderedTaskIds.tailSet(taskQuery.getContinuationToken(), false)
+              : orderedTaskIds));
+        } else {
+          from = Optional.of(tasks.values());
+        }
       }
     } else {
       taskQueriesById.incrementAndGet();
-      from = Optional.of(fromIdIndex(query.get().getTaskIds()));
+      from = Optional.of(paginated
+          ? fromIdIndexLazily(inPageOrder(taskQuery.getTaskIds(), taskQuery))
+          : fromIdIndex(taskQuery.getTaskIds()));
     }
 
-    return FluentIterable.from(from.get())
-        .filter(queryFilter(query))
-        .transform(TO_SCHEDULED);
+    // Tasks are decoded once, before filtering, since compact tasks are costly to decode.
+    Predicate<IScheduledTask> filter = Util.queryFilter(query);
+    FluentIterable<IScheduledTask> matches = FluentIterable.from(from.get())
+        .transform(TO_SCHEDULED)
+        .filter(task -> {
+          examined.incrementAndGet();
+          return filter.apply(task);
+        });
+    return paginated ? Util.paginate(taskQuery, matches) : matches;
   }
 
-  private static final Function<Task, IScheduledTask> TO_SCHEDULED = task -> task.storedTask;
-
-  private static final Function<Task, String> TO_ID =
-      Functions.compose(Tasks::id, TO_SCHEDULED);
+  private static final Function<Task, IScheduledTask> TO_SCHEDULED = Task::get;
 
   private static class Task {
+    // Exactly one of the full and compact forms of the task is held.
+    @Nullable
     private final IScheduledTask storedTask;
+    @Nullable
+    private final CompactTask compactTask;
+
+    Task(IScheduledTask task, InternPools internPools, boolean compact) {
+      if (compact) {
+        this.storedTask = null;
+        this.compactTask = new CompactTask(task, internPools);
+      } else {
+        this.storedTask = IScheduledTask.build(internPools.internParts(task.newBuilder()));
+        this.compactTask = null;
+      }
+    }
 
-    Task(IScheduledTask storedTask, Interner<TaskConfig, String> interner) {
-      interner.removeAssociation(
-          storedTask.getAssignedTask().getTask().newBuilder(),
-          Tasks.id(storedTask));
-      TaskConfig canonical = interner.addAssociation(
-          storedTask.getAssignedTask().getTask().newBuilder(),
-          Tasks.id(storedTask));
-      ScheduledTask builder = storedTask.newBuilder();
-      builder.getAssignedTask().setTask(canonical);
-      this.storedTask = IScheduledTask.build(builder);
+    IScheduledTask get() {
+      return storedTask == null ? compactTask.decode() : storedTask;
     }
 
     @Override
@@ -319,12 +461,12 @@ class MemTaskStore implements TaskStore.Mutable {
       }
 
       Task other = (Task) o;
-      return storedTask.equals(other.storedTask);
+      return get().equals(other.get());
     }
 
     @Override
     public int hashCode() {
-      return storedTask.hashCode();
+      return get().hashCode();
     }
   }
 
@@ -372,12 +514,6 @@ class MemTaskStore implements TaskStore.Mutable {
           });
     }
 
-    void insert(Iterable<IScheduledTask> tasks) {
-      for (IScheduledTask task : tasks) {
-        insert(task);
-      }
-    }
-
     void insert(IScheduledTask task) {
       K key = indexer.apply(task);
       if (key != null) {
@@ -403,23 +539,53 @@ class MemTaskStore implements TaskStore.Mutable {
       }
     }
 
-    private final Function<Set<K>, Iterable<String>> lookup =
-        new Function<Set<K>, Iterable<String>>() {
-          @Override
-          public Iterable<String> apply(Set<K> keys) {
-            hitCount.incrementAndGet();
-            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
-            synchronized (index) {
-              for (K key : keys) {
-                builder.addAll(index.get(key));
-              }
-            }
-            return builder.build();
+    Optional<Match> getMatch(Query.Builder query) {
+      return queryExtractor.apply(query).transform(keys -> {
+        hitCount.incrementAndGet();
+        return new Match(keys);
+      });
+    }
+
+    /**
+     * The tasks in the index associated with a set of keys.
+     */
+    class Match {
+      private final Set<K> keys;
+
+      Match(Set<K> keys) {
+        this.keys = keys;
+      }
+
+      int size() {
+        int size = 0;
+        synchronized (index) {
+          for (K key : keys) {
+            size += index.get(key).size();
+          }
+        }
+        return size;
+      }
+
+      Iterable<String> getTaskIds() {
+        ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+        synchronized (index) {
+          for (K key : keys) {
+            builder.addAll(index.get(key));
           }
-    };
+        }
+        return builder.build();
+      }
 
-    Optional<Iterable<String>> getMatches(Query.Builder query) {
-      return queryExtractor.apply(query).transform(lookup);
+      boolean contains(String taskId) {
+        synchronized (index) {
+          for (K key : keys) {
+            if (index.containsEntry(key, taskId)) {
+              return true;
+            }
+          }
+        }
+        return false;
+      }
     }
   }
 }
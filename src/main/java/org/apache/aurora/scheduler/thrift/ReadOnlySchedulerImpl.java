@@ -32,6 +32,8 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -68,7 +70,6 @@ import org.apache.aurora.gen.RoleSummary;
 import org.apache.aurora.gen.RoleSummaryResult;
 import org.apache.aurora.gen.ScheduleStatus;
 import org.apache.aurora.gen.ScheduleStatusResult;
-import org.apache.aurora.gen.ScheduledTask;
 import org.apache.aurora.gen.TaskConfig;
 import org.apache.aurora.gen.TaskQuery;
 import org.apache.aurora.gen.TierConfig;
@@ -88,9 +89,12 @@ import org.apache.aurora.scheduler.metadata.NearestFit;
 import org.apache.aurora.scheduler.quota.QuotaInfo;
 import org.apache.aurora.scheduler.quota.QuotaManager;
 import org.apache.aurora.scheduler.storage.Storage;
+import org.apache.aurora.scheduler.storage.TaskStore;
 import org.apache.aurora.scheduler.storage.entities.IAssignedTask;
+import org.apache.aurora.scheduler.storage.entities.IConfigGroup;
 import org.apache.aurora.scheduler.storage.entities.IJobConfiguration;
 import org.apache.aurora.scheduler.storage.entities.IJobKey;
+import org.apache.aurora.scheduler.storage.entities.IJobSummary;
 import org.apache.aurora.scheduler.storage.entities.IJobUpdateDetails;
 import org.apache.aurora.scheduler.storage.entities.IJobUpdateKey;
 import org.apache.aurora.scheduler.storage.entities.IJobUpdateQuery;
@@ -124,6 +128,7 @@ class ReadOnlySchedulerImpl implements ReadOnlyScheduler.Iface {
   private final CronPredictor cronPredictor;
   private final QuotaManager quotaManager;
   private final TierManager tierManager;
+  private final SummaryCache summaryCache;
 
   @Inject
   ReadOnlySchedulerImpl(
@@ -132,7 +137,8 @@ class ReadOnlySchedulerImpl implements ReadOnlyScheduler.Iface {
       NearestFit nearestFit,
       CronPredictor cronPredictor,
       QuotaManager quotaManager,
-      TierManager tierManager) {
+      TierManager tierManager,
+      SummaryCache summaryCache) {
 
     this.configurationManager = requireNonNull(configurationManager);
     this.storage = requireNonNull(storage);
@@ -140,6 +146,7 @@ class ReadOnlySchedulerImpl implements ReadOnlyScheduler.Iface {
     this.cronPredictor = requireNonNull(cronPredictor);
     this.quotaManager = requireNonNull(quotaManager);
     this.tierManager = requireNonNull(tierManager);
+    this.summaryCache = requireNonNull(summaryCache);
   }
 
   @Override
@@ -161,19 +168,27 @@ class ReadOnlySchedulerImpl implements ReadOnlyScheduler.Iface {
   @Override
   public Response getTasksStatus(TaskQuery query) {
     return ok(Result.scheduleStatusResult(
-        new ScheduleStatusResult().setTasks(getTasks(query))));
+        getScheduleStatus(query, TaskResponseConverter.fullTasks())));
   }
 
   @Override
   public Response getTasksWithoutConfigs(TaskQuery query) {
-    List<ScheduledTask> tasks = Lists.transform(
-        getTasks(query),
-        task -> {
-          task.getAssignedTask().getTask().unsetExecutorConfig();
-          return task;
-        });
-
-    return ok(Result.scheduleStatusResult(new ScheduleStatusResult().setTasks(tasks)));
+    return ok(Result.scheduleStatusResult(
+        getScheduleStatus(query, TaskResponseConverter.withoutExecutorConfig())));
+  }
+
+  private ScheduleStatusResult getScheduleStatus(
+      TaskQuery query,
+      TaskResponseConverter converter) {
+
+    List<IScheduledTask> tasks = getTasks(query, Functions.identity());
+    ScheduleStatusResult result = new ScheduleStatusResult()
+        .setTasks(Lists.newArrayList(Lists.transform(tasks, converter::convert)));
+    // A full page suggests that more tasks may follow.
+    if (query.getLimit() > 0 && tasks.size() == query.getLimit()) {
+      result.setContinuationToken(TaskStore.Util.continuationToken(Iterables.getLast(tasks)));
+    }
+    return result;
   }
 
   @Override
@@ -192,19 +207,17 @@ class ReadOnlySchedulerImpl implements ReadOnlyScheduler.Iface {
     // Only PENDING tasks should be considered.
     query.setStatuses(ImmutableSet.of(ScheduleStatus.PENDING));
 
-    Set<PendingReason> reasons = FluentIterable.from(getTasks(query))
-        .transform(scheduledTask -> {
-          TaskGroupKey groupKey = TaskGroupKey.from(
-              ITaskConfig.build(scheduledTask.getAssignedTask().getTask()));
+    Set<PendingReason> reasons = ImmutableSet.copyOf(getTasks(query, scheduledTask -> {
+      TaskGroupKey groupKey = TaskGroupKey.from(scheduledTask.getAssignedTask().getTask());
 
-          String reason = Joiner.on(',').join(Iterables.transform(
-              nearestFit.getNearestFit(groupKey),
-              Veto::getReason));
+      String reason = Joiner.on(',').join(Iterables.transform(
+          nearestFit.getNearestFit(groupKey),
+          Veto::getReason));
 
-          return new PendingReason()
-              .setTaskId(scheduledTask.getAssignedTask().getTaskId())
-              .setReason(reason);
-        }).toSet();
+      return new PendingReason()
+          .setTaskId(scheduledTask.getAssignedTask().getTaskId())
+          .setReason(reason);
+    }));
 
     return ok(Result.getPendingReasonResult(new GetPendingReasonResult(reasons)));
   }
@@ -213,23 +226,25 @@ class ReadOnlySchedulerImpl implements ReadOnlyScheduler.Iface {
   public Response getConfigSummary(JobKey job) throws TException {
     IJobKey jobKey = JobKeys.assertValid(IJobKey.build(job));
 
-    Iterable<IAssignedTask> assignedTasks = Iterables.transform(
-        Storage.Util.fetchTasks(storage, Query.jobScoped(jobKey).active()),
-        IScheduledTask::getAssignedTask);
-    Map<Integer, ITaskConfig> tasksByInstance = Maps.transformValues(
-        Maps.uniqueIndex(assignedTasks, IAssignedTask::getInstanceId),
-        IAssignedTask::getTask);
-    Set<ConfigGroup> groups = instancesToConfigGroups(tasksByInstance);
+    Set<IConfigGroup> groups = summaryCache.getConfigSummary(jobKey, () -> {
+      Iterable<IAssignedTask> assignedTasks = Iterables.transform(
+          Storage.Util.fetchTasks(storage, Query.jobScoped(jobKey).active()),
+          IScheduledTask::getAssignedTask);
+      Map<Integer, ITaskConfig> tasksByInstance = Maps.transformValues(
+          Maps.uniqueIndex(assignedTasks, IAssignedTask::getInstanceId),
+          IAssignedTask::getTask);
+      return IConfigGroup.setFromBuilders(instancesToConfigGroups(tasksByInstance));
+    });
 
-    return ok(Result.configSummaryResult(
-        new ConfigSummaryResult().setSummary(new ConfigSummary(job, groups))));
+    return ok(Result.configSummaryResult(new ConfigSummaryResult()
+        .setSummary(new ConfigSummary(job, IConfigGroup.toBuildersSet(groups)))));
   }
 
   @Override
   public Response getRoleSummary() {
-    Multimap<String, IJobKey> jobsByRole = storage.read(
+    Multimap<String, IJobKey> jobsByRole = summaryCache.getJobsByRole(() -> storage.read(
         storeProvider ->
-            Multimaps.index(storeProvider.getTaskStore().getJobKeys(), IJobKey::getRole));
+            Multimaps.index(storeProvider.getTaskStore().getJobKeys(), IJobKey::getRole)));
 
     Multimap<String, IJobKey> cronJobsByRole = Multimaps.index(
         Iterables.transform(Storage.Util.fetchCronJobs(storage), IJobConfiguration::getKey),
@@ -250,38 +265,55 @@ class ReadOnlySchedulerImpl implements ReadOnlyScheduler.Iface {
   public Response getJobSummary(@Nullable String maybeNullRole) {
     Optional<String> ownerRole = Optional.fromNullable(maybeNullRole);
 
-    Multimap<IJobKey, IScheduledTask> tasks = getTasks(maybeRoleScoped(ownerRole));
-    Map<IJobKey, IJobConfiguration> jobs = getJobs(ownerRole, tasks);
+    Map<IJobKey, IJobSummary> taskJobs = summaryCache.getJobSummaries(ownerRole, () -> {
+      Multimap<IJobKey, IScheduledTask> tasks = getTasks(maybeRoleScoped(ownerRole));
+      return ImmutableMap.copyOf(Maps.transformEntries(
+          synthesizeJobs(tasks),
+          (jobKey, job) -> IJobSummary.build(new JobSummary()
+              .setJob(job.newBuilder())
+              .setStats(Jobs.getJobStats(tasks.get(jobKey)).newBuilder()))));
+    });
+    Map<IJobKey, IJobConfiguration> cronJobs = getCronJobs(ownerRole);
 
-    Function<IJobKey, JobSummary> makeJobSummary = jobKey -> {
-      IJobConfiguration job = jobs.get(jobKey);
+    ImmutableSet.Builder<JobSummary> jobSummaries = ImmutableSet.builder();
+    for (IJobSummary taskJob : taskJobs.values()) {
+      if (!cronJobs.containsKey(taskJob.getJob().getKey())) {
+        jobSummaries.add(taskJob.newBuilder());
+      }
+    }
+    for (IJobConfiguration job : cronJobs.values()) {
+      // The real template of a cron job takes precedence over the one synthesized from its tasks.
+      IJobSummary taskJob = taskJobs.get(job.getKey());
       JobSummary summary = new JobSummary()
           .setJob(job.newBuilder())
-          .setStats(Jobs.getJobStats(tasks.get(jobKey)).newBuilder());
+          .setStats(taskJob == null
+              ? Jobs.getJobStats(ImmutableList.of()).newBuilder()
+              : taskJob.getStats().newBuilder());
 
       if (job.isSetCronSchedule()) {
         CrontabEntry crontabEntry = CrontabEntry.parse(job.getCronSchedule());
         Optional<Date> nextRun = cronPredictor.predictNextRun(crontabEntry);
-        return nextRun.transform(date -> summary.setNextCronRunMs(date.getTime())).or(summary);
-      } else {
-        return summary;
+        if (nextRun.isPresent()) {
+          summary.setNextCronRunMs(nextRun.get().getTime());
+        }
       }
-    };
-
-    ImmutableSet<JobSummary> jobSummaries =
-        FluentIterable.from(jobs.keySet()).transform(makeJobSummary).toSet();
+      jobSummaries.add(summary);
+    }
 
-    return ok(Result.jobSummaryResult(new JobSummaryResult().setSummaries(jobSummaries)));
+    return ok(Result.jobSummaryResult(new JobSummaryResult().setSummaries(jobSummaries.build())));
   }
 
   @Override
   public Response getJobs(@Nullable String maybeNullRole) {
     Optional<String> ownerRole = Optional.fromNullable(maybeNullRole);
 
+    Map<IJobKey, IJobConfiguration> jobs = Maps.newHashMap(summaryCache.getActiveJobs(
+        ownerRole,
+        () -> synthesizeJobs(getTasks(maybeRoleScoped(ownerRole).active()))));
+    jobs.putAll(getCronJobs(ownerRole));
+
     return ok(Result.getJobsResult(
-        new GetJobsResult()
-            .setConfigs(IJobConfiguration.toBuildersSet(
-                getJobs(ownerRole, getTasks(maybeRoleScoped(ownerRole).active())).values()))));
+        new GetJobsResult().setConfigs(IJobConfiguration.toBuildersSet(jobs.values()))));
   }
 
   @Override
@@ -395,18 +427,17 @@ class ReadOnlySchedulerImpl implements ReadOnlyScheduler.Iface {
         Iterables.transform(instancesByDetails.asMap().entrySet(), TO_GROUP));
   }
 
-  private List<ScheduledTask> getTasks(TaskQuery query) {
+  private <T> List<T> getTasks(TaskQuery query, Function<IScheduledTask, T> converter) {
     requireNonNull(query);
 
-    Iterable<IScheduledTask> tasks = Storage.Util.fetchTasks(storage, Query.arbitrary(query));
-    if (query.getOffset() > 0) {
-      tasks = Iterables.skip(tasks, query.getOffset());
-    }
-    if (query.getLimit() > 0) {
-      tasks = Iterables.limit(tasks, query.getLimit());
-    }
-
-    return IScheduledTask.toBuildersList(tasks);
+    // Tasks are converted while visiting, and the store stops visiting once the requested page is
+    // full, avoiding a copy of every matching task for paginated queries.
+    List<T> tasks = Lists.newArrayList();
+    Storage.Util.visitTasks(storage, Query.arbitrary(query), task -> {
+      tasks.add(converter.apply(task));
+      return true;
+    });
+    return tasks;
   }
 
   private Query.Builder maybeRoleScoped(Optional<String> ownerRole) {
@@ -415,16 +446,13 @@ class ReadOnlySchedulerImpl implements ReadOnlyScheduler.Iface {
         : Query.unscoped();
   }
 
-  private Map<IJobKey, IJobConfiguration> getJobs(
-      Optional<String> ownerRole,
+  private static ImmutableMap<IJobKey, IJobConfiguration> synthesizeJobs(
       Multimap<IJobKey, IScheduledTask> tasks) {
 
     // We need to synthesize the JobConfiguration from the the current tasks because the
     // ImmediateJobManager doesn't store jobs directly and ImmediateJobManager#getJobs always
     // returns an empty Collection.
-    Map<IJobKey, IJobConfiguration> jobs = Maps.newHashMap();
-
-    jobs.putAll(Maps.transformEntries(tasks.asMap(),
+    return ImmutableMap.copyOf(Maps.transformEntries(tasks.asMap(),
         (jobKey, tasks1) -> {
 
           // Pick the latest transitioned task for each immediate job since the job can be in the
@@ -438,18 +466,17 @@ class ReadOnlySchedulerImpl implements ReadOnlyScheduler.Iface {
               .setTaskConfig(mostRecentTaskConfig)
               .setInstanceCount(tasks1.size()));
         }));
+  }
 
-    // Get cron jobs directly from the manager. Do this after querying the task store so the real
-    // template JobConfiguration for a cron job will overwrite the synthesized one that could have
-    // been created above.
+  private Map<IJobKey, IJobConfiguration> getCronJobs(Optional<String> ownerRole) {
+    // Cron jobs are fetched directly from the store on every call, since the cron store is small
+    // and its templates take precedence over job configurations synthesized from tasks.
     Predicate<IJobConfiguration> configFilter = ownerRole.isPresent()
         ? Predicates.compose(Predicates.equalTo(ownerRole.get()), JobKeys::getRole)
         : Predicates.alwaysTrue();
-    jobs.putAll(Maps.uniqueIndex(
+    return Maps.uniqueIndex(
         FluentIterable.from(Storage.Util.fetchCronJobs(storage)).filter(configFilter),
-        IJobConfiguration::getKey));
-
-    return jobs;
+        IJobConfiguration::getKey);
   }
 
   private Multimap<IJobKey, IScheduledTask> getTasks(Query.Builder query) {
@@ -0,0 +1,237 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.thrift;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.eventbus.Subscribe;
+
+import org.apache.aurora.common.stats.StatsProvider;
+import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.scheduler.base.Tasks;
+import org.apache.aurora.scheduler.events.PubsubEvent.EventSubscriber;
+import org.apache.aurora.scheduler.events.PubsubEvent.TaskConfigRewritten;
+import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
+import org.apache.aurora.scheduler.events.PubsubEvent.TasksDeleted;
+import org.apache.aurora.scheduler.storage.entities.IConfigGroup;
+import org.apache.aurora.scheduler.storage.entities.IJobConfiguration;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
+import org.apache.aurora.scheduler.storage.entities.IJobSummary;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Caches the task-derived parts of the role, job and config summaries served by the read-only
+ * API, so that repeated summary calls do not rescan and regroup the task store.
+ * <p>
+ * Entries are keyed by role (or {@link Optional#absent()} for all roles) or by job, and are
+ * invalidated by the {@link TaskStateChange}, {@link TasksDeleted} and
+ * {@link TaskConfigRewritten} events for tasks of that role or job.  Since events are delivered
+ * asynchronously, a cached summary may briefly lag behind the task store after a write.  Cron jobs
+ * are cheap to fetch and are not cached here.
+ */
+class SummaryCache implements EventSubscriber {
+
+  private static final Object ALL_ROLES = new Object();
+
+  private final Region<Object, ImmutableMultimap<String, IJobKey>> jobsByRole;
+  private final Region<Optional<String>, ImmutableMap<IJobKey, IJobSummary>> jobSummaries;
+  private final Region<Optional<String>, ImmutableMap<IJobKey, IJobConfiguration>> activeJobs;
+  private final Region<IJobKey, ImmutableSet<IConfigGroup>> configSummaries;
+
+  @Inject
+  SummaryCache(StatsProvider statsProvider) {
+    requireNonNull(statsProvider);
+    jobsByRole = new Region<>("role_summary", statsProvider);
+    jobSummaries = new Region<>("job_summary", statsProvider);
+    activeJobs = new Region<>("jobs", statsProvider);
+    configSummaries = new Region<>("config_summary", statsProvider);
+  }
+
+  @VisibleForTesting
+  static String hitsStatName(String region) {
+    return "api_summary_cache_" + region + "_hits";
+  }
+
+  @VisibleForTesting
+  static String missesStatName(String region) {
+    return "api_summary_cache_" + region + "_misses";
+  }
+
+  /**
+   * Gets the keys of jobs with tasks, grouped by role.
+   *
+   * @param loader Computes the value when it is not cached.
+   * @return Job keys of all jobs with tasks, indexed by role.
+   */
+  ImmutableMultimap<String, IJobKey> getJobsByRole(
+      Supplier<ImmutableMultimap<String, IJobKey>> loader) {
+
+    return jobsByRole.get(ALL_ROLES, loader);
+  }
+
+  /**
+   * Gets summaries of the jobs with tasks in a role, synthesized from all of their tasks.
+   *
+   * @param role Role to get summaries for, or absent for all roles.
+   * @param loader Computes the value when it is not cached.
+   * @return Job summaries, without any cron job details.
+   */
+  ImmutableMap<IJobKey, IJobSummary> getJobSummaries(
+      Optional<String> role,
+      Supplier<ImmutableMap<IJobKey, IJobSummary>> loader) {
+
+    return jobSummaries.get(role, loader);
+  }
+
+  /**
+   * Gets job configurations synthesized from the active tasks of jobs in a role.
+   *
+   * @param role Role to get jobs for, or absent for all roles.
+   * @param loader Computes the value when it is not cached.
+   * @return Synthesized job configurations.
+   */
+  ImmutableMap<IJobKey, IJobConfiguration> getActiveJobs(
+      Optional<String> role,
+      Supplier<ImmutableMap<IJobKey, IJobConfiguration>> loader) {
+
+    return activeJobs.get(role, loader);
+  }
+
+  /**
+   * Gets the configurations of the active instances of a job.
+   *
+   * @param job Job to get configurations for.
+   * @param loader Computes the value when it is not cached.
+   * @return Groups of instances sharing a configuration.
+   */
+  ImmutableSet<IConfigGroup> getConfigSummary(
+      IJobKey job,
+      Supplier<ImmutableSet<IConfigGroup>> loader) {
+
+    return configSummaries.get(job, loader);
+  }
+
+  /**
+   * Invalidates summaries that include the changed task.
+   *
+   * @param event Task state change.
+   */
+  @Subscribe
+  public void stateChanged(TaskStateChange event) {
+    // A task that is new to the store may belong to a job that was not previously known.
+    boolean newTask = !event.isTransition() || event.getOldState().get() == ScheduleStatus.INIT;
+    invalidate(event.getTask(), newTask);
+  }
+
+  /**
+   * Invalidates summaries that included the deleted tasks.
+   *
+   * @param event Task deletion event.
+   */
+  @Subscribe
+  public void tasksDeleted(TasksDeleted event) {
+    for (IScheduledTask task : event.getTasks()) {
+      invalidate(task, true);
+    }
+  }
+
+  /**
+   * Invalidates summaries that include the rewritten task.
+   *
+   * @param event Task config rewrite event.
+   */
+  @Subscribe
+  public void configRewritten(TaskConfigRewritten event) {
+    // A rewrite may move the task from its job to one that was not previously known.
+    invalidate(event.getPreviousConfig().getJob(), true);
+    if (!event.getConfig().getJob().equals(event.getPreviousConfig().getJob())) {
+      invalidate(event.getConfig().getJob(), true);
+    }
+  }
+
+  private void invalidate(IScheduledTask task, boolean jobsChanged) {
+    invalidate(Tasks.getJob(task), jobsChanged);
+  }
+
+  private void invalidate(IJobKey job, boolean jobsChanged) {
+    Optional<String> role = Optional.of(job.getRole());
+    ImmutableSet<Optional<String>> roles = ImmutableSet.of(role, Optional.absent());
+    jobSummaries.invalidate(roles);
+    activeJobs.invalidate(roles);
+    configSummaries.invalidate(ImmutableSet.of(job));
+    if (jobsChanged) {
+      jobsByRole.invalidate(ImmutableSet.of(ALL_ROLES));
+    }
+  }
+
+  /**
+   * A group of cache entries of the same kind.
+   * <p>
+   * Loading happens outside of any lock, so an invalidation may race with a load that read the
+   * store before the invalidating change.  To avoid caching such a stale value, every invalidation
+   * advances the region's generation, and a loaded value is only stored if no invalidation
+   * happened while it was being computed.
+   */
+  private static final class Region<K, V> {
+    private final Map<K, V> entries = Maps.newConcurrentMap();
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private long generation;
+
+    Region(String name, StatsProvider statsProvider) {
+      hits = statsProvider.makeCounter(hitsStatName(name));
+      misses = statsProvider.makeCounter(missesStatName(name));
+    }
+
+    V get(K key, Supplier<V> loader) {
+      V value = entries.get(key);
+      if (value != null) {
+        hits.incrementAndGet();
+        return value;
+      }
+
+      misses.incrementAndGet();
+      long loadGeneration;
+      synchronized (this) {
+        loadGeneration = generation;
+      }
+      value = requireNonNull(loader.get());
+      synchronized (this) {
+        if (generation == loadGeneration) {
+          entries.put(key, value);
+        }
+      }
+      return value;
+    }
+
+    synchronized void invalidate(Iterable<K> keys) {
+      generation++;
+      for (K key : keys) {
+        entries.remove(key);
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.thrift;
+
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+import org.apache.aurora.gen.AssignedTask;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.TaskConfig;
+import org.apache.aurora.scheduler.storage.entities.IAssignedTask;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
+import org.apache.aurora.scheduler.storage.entities.ITaskEvent;
+
+/**
+ * Converts stored tasks into their thrift representation for inclusion in an API response.
+ * <p>
+ * {@link IScheduledTask#newBuilder()} deep-copies every task, including its task config, which is
+ * by far the largest part of a task.  Tasks of the same job generally have equal task configs, so
+ * this converter copies each distinct config once and shares the copy among all tasks in the
+ * response with an equal config.  Configs are compared by value, as every stored task wraps its own
+ * {@link ITaskConfig} instance, whose hash code is cached.  The task configs may optionally be
+ * projected to omit the executor config.
+ * <p>
+ * As the returned objects share state, a converter must only be used to build a single response,
+ * and the returned objects must not be modified.  Instances are not thread-safe.
+ */
+final class TaskResponseConverter {
+
+  private final boolean includeExecutorConfig;
+  private final Map<ITaskConfig, TaskConfig> configs = Maps.newHashMap();
+
+  private TaskResponseConverter(boolean includeExecutorConfig) {
+    this.includeExecutorConfig = includeExecutorConfig;
+  }
+
+  /**
+   * Creates a converter that produces complete tasks.
+   *
+   * @return A new converter.
+   */
+  static TaskResponseConverter fullTasks() {
+    return new TaskResponseConverter(true);
+  }
+
+  /**
+   * Creates a converter that produces tasks whose task config lacks an executor config.
+   *
+   * @return A new converter.
+   */
+  static TaskResponseConverter withoutExecutorConfig() {
+    return new TaskResponseConverter(false);
+  }
+
+  /**
+   * Converts a task, reusing the converted task config of any previously-converted task with an
+   * equal config.
+   *
+   * @param task Task to convert.
+   * @return A thrift representation of {@code task}.
+   */
+  ScheduledTask convert(IScheduledTask task) {
+    // This mirrors the generated IScheduledTask.newBuilder() and IAssignedTask.newBuilder(), with
+    // the exception of the task config.
+    IAssignedTask assignedTask = task.getAssignedTask();
+    return new ScheduledTask()
+        .setAssignedTask(assignedTask == null ? null : new AssignedTask()
+            .setTaskId(assignedTask.getTaskId())
+            .setSlaveId(assignedTask.getSlaveId())
+            .setSlaveHost(assignedTask.getSlaveHost())
+            .setTask(convertConfig(assignedTask.getTask()))
+            .setAssignedPorts(assignedTask.getAssignedPorts())
+            .setInstanceId(assignedTask.getInstanceId()))
+        .setStatus(task.getStatus())
+        .setFailureCount(task.getFailureCount())
+        .setTaskEvents(ITaskEvent.toBuildersList(task.getTaskEvents()))
+        .setAncestorId(task.getAncestorId());
+  }
+
+  private TaskConfig convertConfig(ITaskConfig config) {
+    if (config == null) {
+      return null;
+    }
+
+    return configs.computeIfAbsent(config, key -> {
+      TaskConfig builder = key.newBuilder();
+      if (!includeExecutorConfig) {
+        builder.unsetExecutorConfig();
+      }
+      return builder;
+    });
+  }
+}
@@ -13,10 +13,13 @@
  */
 package org.apache.aurora.scheduler.thrift;
 
+import javax.inject.Singleton;
+
 import com.google.inject.AbstractModule;
 
 import org.apache.aurora.gen.AuroraAdmin;
 import org.apache.aurora.gen.ReadOnlyScheduler;
+import org.apache.aurora.scheduler.events.PubsubEventModule;
 import org.apache.aurora.scheduler.thrift.aop.AnnotatedAuroraAdmin;
 import org.apache.aurora.scheduler.thrift.aop.AopModule;
 
@@ -46,4 +49,17 @@ public class ThriftModule extends AbstractModule {
       bind(ReadOnlyScheduler.Iface.class).to(ReadOnlySchedulerImpl.class);
     }
   }
+
+  /**
+   * Binding module for the cache of summaries served by the read-only scheduler interface.  The
+   * thrift interfaces are created in a child injector, so this must be installed in the parent
+   * injector for the cache to receive events.
+   */
+  public static class SummaryCacheModule extends AbstractModule {
+    @Override
+    protected void configure() {
+      bind(SummaryCache.class).in(Singleton.class);
+      PubsubEventModule.bindSubscriber(binder(), SummaryCache.class);
+    }
+  }
 }
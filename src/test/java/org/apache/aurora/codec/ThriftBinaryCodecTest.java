@@ -13,13 +13,27 @@
  */
 package org.apache.aurora.codec;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.primitives.Bytes;
+import com.google.common.util.concurrent.MoreExecutors;
+
 import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
+import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Data;
+import org.apache.aurora.gen.ScheduleStatus;
 import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.TaskEvent;
 import org.apache.aurora.scheduler.base.TaskTestUtil;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class ThriftBinaryCodecTest {
 
@@ -64,4 +78,79 @@ public class ThriftBinaryCodecTest {
 
     assertEquals(original, inflated);
   }
+
+  private static byte[] concat(List<byte[]> blocks) {
+    return Bytes.concat(blocks.toArray(new byte[blocks.size()][]));
+  }
+
+  @Test
+  public void testParallelDeflateMatchesDeflate() throws CodingException {
+    ScheduledTask original = TaskTestUtil.makeTask("id", TaskTestUtil.JOB).newBuilder();
+
+    // Data that fits in a single block is compressed exactly like a single stream.
+    assertArrayEquals(
+        ThriftBinaryCodec.deflateNonNull(original),
+        concat(ThriftBinaryCodec.deflateNonNull(
+            original,
+            MoreExecutors.directExecutor(),
+            Amount.of(1, Data.MB),
+            1)));
+  }
+
+  @Test
+  public void testParallelDeflateRoundTrip() throws CodingException {
+    ScheduledTask original = TaskTestUtil.makeTask("id", TaskTestUtil.JOB).newBuilder();
+    for (int i = 0; i < 10000; i++) {
+      original.addToTaskEvents(new TaskEvent(i, ScheduleStatus.RUNNING).setMessage("event " + i));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<byte[]> blocks =
+          ThriftBinaryCodec.deflateNonNull(original, executor, Amount.of(32, Data.KB), 2);
+      // Header, checksum and more than one compressed block.
+      assertTrue(blocks.size() > 4);
+      assertEquals(
+          original,
+          ThriftBinaryCodec.inflateNonNull(ScheduledTask.class, concat(blocks)));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testLz4RoundTrip() throws CodingException {
+    ScheduledTask original = TaskTestUtil.makeTask("id", TaskTestUtil.JOB).newBuilder();
+    for (int i = 0; i < 10000; i++) {
+      original.addToTaskEvents(new TaskEvent(i, ScheduleStatus.RUNNING).setMessage("event " + i));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<byte[]> blocks =
+          ThriftBinaryCodec.lz4CompressNonNull(original, executor, Amount.of(32, Data.KB), 2);
+      assertTrue(blocks.size() > 1);
+      byte[] compressed = concat(blocks);
+      assertTrue(compressed.length < ThriftBinaryCodec.encodeNonNull(original).length);
+      assertEquals(
+          original,
+          ThriftBinaryCodec.lz4DecompressNonNull(ScheduledTask.class, compressed));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(expected = CodingException.class)
+  public void testLz4Truncated() throws CodingException {
+    ScheduledTask original = TaskTestUtil.makeTask("id", TaskTestUtil.JOB).newBuilder();
+    byte[] compressed = concat(ThriftBinaryCodec.lz4CompressNonNull(
+        original,
+        MoreExecutors.directExecutor(),
+        Amount.of(1, Data.MB),
+        1));
+
+    ThriftBinaryCodec.lz4DecompressNonNull(
+        ScheduledTask.class,
+        Arrays.copyOf(compressed, compressed.length - 1));
+  }
 }
@@ -14,7 +14,10 @@
 package org.apache.aurora.scheduler.async;
 
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.Service;
 import com.google.inject.AbstractModule;
@@ -29,6 +32,8 @@ import org.apache.aurora.common.testing.easymock.EasyMockTest;
 import org.apache.aurora.common.util.Clock;
 import org.apache.aurora.scheduler.AppStartup;
 import org.apache.aurora.scheduler.app.LifecycleModule;
+import org.apache.aurora.scheduler.async.AsyncModule.AsyncExecutor;
+import org.apache.aurora.scheduler.async.AsyncModule.OfferExecutor;
 import org.apache.aurora.scheduler.async.AsyncModule.RegisterGauges;
 import org.apache.aurora.scheduler.storage.testing.StorageTestUtil;
 import org.apache.aurora.scheduler.testing.FakeStatsProvider;
@@ -84,12 +89,42 @@ public class AsyncModuleTest extends EasyMockTest {
 
     injector.getBindings();
 
-    assertEquals(
-        ImmutableMap.of(
-            RegisterGauges.TIMEOUT_QUEUE_GAUGE, 0,
-            RegisterGauges.ASYNC_TASKS_GAUGE, 0L,
-            RegisterGauges.DELAY_QUEUE_GAUGE, 0),
-        statsProvider.getAllValues()
-    );
+    ImmutableMap.Builder<String, Number> expected = ImmutableMap.<String, Number>builder()
+        .put(RegisterGauges.TIMEOUT_QUEUE_GAUGE, 0)
+        .put(RegisterGauges.ASYNC_TASKS_GAUGE, 0L)
+        .put(RegisterGauges.DELAY_QUEUE_GAUGE, 0);
+    for (String lane : ImmutableList.of(
+        AsyncModule.GENERAL_LANE,
+        AsyncModule.OFFER_LANE,
+        AsyncModule.SCHEDULING_LANE,
+        AsyncModule.RECONCILIATION_LANE)) {
+
+      expected
+          .put(ExecutorLane.statName(lane, RegisterGauges.QUEUE_SIZE), 0)
+          .put(ExecutorLane.statName(lane, RegisterGauges.GATED_QUEUE_SIZE), 0)
+          .put(ExecutorLane.statName(lane, RegisterGauges.TASKS_COMPLETED), 0L)
+          .put(ExecutorLane.statName(lane, RegisterGauges.ACTIVE_THREADS), 0)
+          .put(ExecutorLane.statName(lane, RegisterGauges.SATURATION_PERCENT), 0);
+    }
+    assertEquals(expected.build(), statsProvider.getAllValues());
+  }
+
+  @Test
+  public void testGateClosesAllLanes() throws Exception {
+    Injector injector = createInjector(new AsyncModule());
+
+    control.replay();
+
+    GatedWorkQueue gatedWorkQueue =
+        injector.getInstance(Key.get(GatedWorkQueue.class, AsyncExecutor.class));
+    Executor offerExecutor = injector.getInstance(Key.get(Executor.class, OfferExecutor.class));
+    CountDownLatch ran = new CountDownLatch(1);
+    gatedWorkQueue.closeDuring(() -> {
+      offerExecutor.execute(ran::countDown);
+      // Work submitted to any lane is held until the gate opens.
+      assertEquals(1, ((GatingDelayExecutor) offerExecutor).getQueueSize());
+      return null;
+    });
+    ran.await();
   }
 }
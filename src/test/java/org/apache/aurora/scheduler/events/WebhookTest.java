@@ -13,36 +13,76 @@
  */
 package org.apache.aurora.scheduler.events;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.ImmutableList;
 import com.google.common.eventbus.EventBus;
 
+import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Time;
 import org.apache.aurora.common.testing.easymock.EasyMockTest;
-
+import org.apache.aurora.common.util.BackoffStrategy;
+import org.apache.aurora.common.util.testing.FakeClock;
 import org.apache.aurora.scheduler.base.TaskTestUtil;
 import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
+import org.apache.aurora.scheduler.events.Webhook.QueueFullPolicy;
+import org.apache.aurora.scheduler.events.Webhook.WebhookSettings;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.apache.aurora.gen.ScheduleStatus.PENDING;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class WebhookTest extends EasyMockTest {
   private static final IScheduledTask TASK = TaskTestUtil.makeTask("id", TaskTestUtil.JOB);
+  private static final IScheduledTask OTHER_TASK =
+      TaskTestUtil.makeTask("other", TaskTestUtil.JOB);
+  private static final int QUEUE_CAPACITY = 2;
   private Webhook realWebhook;
   private Webhook webhook;
   private EventBus eventBus;
+  private WebhookInfo webhookInfo;
+  private FakeClock clock;
 
   @Before
   public void setUp() {
     webhook = createMock(Webhook.class);
     eventBus = new EventBus();
     eventBus.register(webhook);
-    WebhookInfo webhookInfo = WebhookModule.parseWebhookConfig(
+    webhookInfo = WebhookModule.parseWebhookConfig(
         "{\"headers\": {\"Producer-Type\": \"reliable\","
             + " \"Content-Type\": \"application/vnd.kafka.json.v1+json\"},"
             + " \"timeoutMsec\": 1,"
             + " \"targetURL\": \"http://localhost:5000/\"}"
     );
-    realWebhook = new Webhook(webhookInfo);
+    clock = new FakeClock();
+    realWebhook = new Webhook(webhookInfo, settings(1, QueueFullPolicy.DROP_NEWEST), clock);
+  }
+
+  private static WebhookSettings settings(int maxBatchSize, QueueFullPolicy policy) {
+    return new WebhookSettings(
+        QUEUE_CAPACITY,
+        1,
+        maxBatchSize,
+        Amount.of(0L, Time.MILLISECONDS),
+        2,
+        new BackoffStrategy() {
+          @Override
+          public long calculateBackoffMs(long lastBackoffMs) {
+            return lastBackoffMs + 10;
+          }
+
+          @Override
+          public boolean shouldContinue(long lastBackoffMs) {
+            return true;
+          }
+        },
+        policy);
   }
 
   private final TaskStateChange change = TaskStateChange.initialized(TASK);
@@ -64,9 +104,135 @@ public class WebhookTest extends EasyMockTest {
     realWebhook.callEndpoint(changeJson);
   }
 
+  @Test
+  public void testQueueFullDropNewest() throws Exception {
+    control.replay();
+
+    realWebhook.taskChangedState(TaskStateChange.initialized(TASK));
+    realWebhook.taskChangedState(TaskStateChange.initialized(OTHER_TASK));
+    realWebhook.taskChangedState(TaskStateChange.transition(TASK, PENDING));
+
+    assertEquals(QUEUE_CAPACITY, realWebhook.getQueueSize());
+    assertEquals(
+        ImmutableList.of(TaskStateChange.initialized(TASK)),
+        realWebhook.nextBatch());
+    assertEquals(
+        ImmutableList.of(TaskStateChange.initialized(OTHER_TASK)),
+        realWebhook.nextBatch());
+  }
+
+  @Test
+  public void testQueueFullDropOldest() throws Exception {
+    control.replay();
+
+    Webhook dropOldest =
+        new Webhook(webhookInfo, settings(QUEUE_CAPACITY, QueueFullPolicy.DROP_OLDEST), clock);
+    dropOldest.taskChangedState(TaskStateChange.initialized(TASK));
+    dropOldest.taskChangedState(TaskStateChange.initialized(OTHER_TASK));
+    dropOldest.taskChangedState(TaskStateChange.transition(TASK, PENDING));
+
+    assertEquals(
+        ImmutableList.of(
+            TaskStateChange.initialized(OTHER_TASK),
+            TaskStateChange.transition(TASK, PENDING)),
+        dropOldest.nextBatch());
+  }
+
+  @Test
+  public void testQueueFullCoalesce() throws Exception {
+    control.replay();
+
+    Webhook coalescing =
+        new Webhook(webhookInfo, settings(QUEUE_CAPACITY, QueueFullPolicy.COALESCE), clock);
+    coalescing.taskChangedState(TaskStateChange.initialized(TASK));
+    coalescing.taskChangedState(TaskStateChange.initialized(OTHER_TASK));
+    coalescing.taskChangedState(TaskStateChange.transition(TASK, PENDING));
+    // There is no queued event for this task, so the event is dropped.
+    coalescing.taskChangedState(
+        TaskStateChange.transition(TaskTestUtil.makeTask("third", TaskTestUtil.JOB), PENDING));
+
+    assertEquals(
+        ImmutableList.of(
+            TaskStateChange.initialized(OTHER_TASK),
+            TaskStateChange.transition(TASK, PENDING)),
+        coalescing.nextBatch());
+  }
+
+  @Test
+  public void testDeliverRetries() throws Exception {
+    control.replay();
+
+    AtomicInteger calls = new AtomicInteger();
+    Webhook failing = new Webhook(
+        webhookInfo,
+        settings(QUEUE_CAPACITY, QueueFullPolicy.DROP_NEWEST),
+        clock) {
+
+      @Override
+      public boolean callEndpoint(String eventJson) {
+        assertEquals(
+            "[" + TaskStateChange.initialized(TASK).toJson()
+                + "," + TaskStateChange.initialized(OTHER_TASK).toJson() + "]",
+            eventJson);
+        return calls.incrementAndGet() == 3;
+      }
+    };
+
+    assertTrue(failing.deliver(ImmutableList.of(
+        TaskStateChange.initialized(TASK),
+        TaskStateChange.initialized(OTHER_TASK))));
+    assertEquals(3, calls.get());
+    // Backoff of 10ms then 20ms between the three attempts.
+    assertEquals(30L, clock.nowMillis());
+  }
+
+  @Test
+  public void testDeliverGivesUp() throws Exception {
+    control.replay();
+
+    AtomicInteger calls = new AtomicInteger();
+    Webhook failing = new Webhook(webhookInfo, settings(1, QueueFullPolicy.DROP_NEWEST), clock) {
+      @Override
+      public boolean callEndpoint(String eventJson) {
+        assertEquals(TaskStateChange.initialized(TASK).toJson(), eventJson);
+        calls.incrementAndGet();
+        return false;
+      }
+    };
+
+    assertFalse(failing.deliver(ImmutableList.of(TaskStateChange.initialized(TASK))));
+    assertEquals(3, calls.get());
+  }
+
+  @Test
+  public void testDeliveryContinuesAfterRuntimeException() throws Exception {
+    control.replay();
+
+    CountDownLatch delivered = new CountDownLatch(1);
+    Webhook throwing = new Webhook(webhookInfo, settings(1, QueueFullPolicy.DROP_NEWEST), clock) {
+      @Override
+      public boolean callEndpoint(String eventJson) {
+        if (eventJson.equals(TaskStateChange.initialized(TASK).toJson())) {
+          throw new IllegalStateException("Injected failure.");
+        }
+        delivered.countDown();
+        return true;
+      }
+    };
+
+    throwing.startAsync().awaitRunning();
+    try {
+      throwing.taskChangedState(TaskStateChange.initialized(TASK));
+      throwing.taskChangedState(TaskStateChange.initialized(OTHER_TASK));
+      assertTrue(delivered.await(10, TimeUnit.SECONDS));
+    } finally {
+      throwing.stopAsync().awaitTerminated();
+    }
+  }
+
   @Test
   public void testWebhookInfo() {
-    WebhookInfo webhookInfo = WebhookModule.parseWebhookConfig(WebhookModule.readWebhookFile());
+    webhookInfo = WebhookModule.parseWebhookConfig(WebhookModule.readWebhookFile());
     assertEquals(webhookInfo.toString(),
         "WebhookInfo{headers={"
             + "Content-Type=application/vnd.kafka.json.v1+json, "
@@ -0,0 +1,256 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.filter;
+
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSet;
+
+import org.apache.aurora.common.collections.Pair;
+import org.apache.aurora.gen.Attribute;
+import org.apache.aurora.gen.HostAttributes;
+import org.apache.aurora.gen.MaintenanceMode;
+import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.scheduler.base.JobKeys;
+import org.apache.aurora.scheduler.base.TaskTestUtil;
+import org.apache.aurora.scheduler.base.Tasks;
+import org.apache.aurora.scheduler.events.PubsubEvent.HostAttributesChanged;
+import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
+import org.apache.aurora.scheduler.events.PubsubEvent.TasksDeleted;
+import org.apache.aurora.scheduler.storage.Storage;
+import org.apache.aurora.scheduler.storage.Storage.MutateWork.NoResult.Quiet;
+import org.apache.aurora.scheduler.storage.db.DbUtil;
+import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.apache.aurora.gen.ScheduleStatus.ASSIGNED;
+import static org.apache.aurora.gen.ScheduleStatus.FINISHED;
+import static org.apache.aurora.gen.ScheduleStatus.PENDING;
+import static org.apache.aurora.gen.ScheduleStatus.RUNNING;
+import static org.apache.aurora.gen.ScheduleStatus.THROTTLED;
+import static org.junit.Assert.assertEquals;
+
+public class AttributeAggregateCacheTest {
+
+  private static final IJobKey JOB = TaskTestUtil.JOB;
+  private static final IJobKey OTHER_JOB = JobKeys.from("role", "dev", "other");
+  private static final IJobKey THIRD_JOB = JobKeys.from("role", "dev", "third");
+  private static final int MAX_CACHED_JOBS = 2;
+
+  private Storage storage;
+  private AttributeAggregateCache cache;
+
+  @Before
+  public void setUp() {
+    storage = DbUtil.createStorage();
+    cache = new AttributeAggregateCache(storage, MAX_CACHED_JOBS, true);
+    saveAttributes(hostAttributes("a", "rack", "1"));
+    saveAttributes(hostAttributes("b", "rack", "2"));
+  }
+
+  private static IHostAttributes hostAttributes(String host, String name, String value) {
+    return IHostAttributes.build(new HostAttributes()
+        .setHost(host)
+        .setSlaveId(host)
+        .setMode(MaintenanceMode.NONE)
+        .setAttributes(ImmutableSet.of(
+            new Attribute().setName("host").setValues(ImmutableSet.of(host)),
+            new Attribute().setName(name).setValues(ImmutableSet.of(value)))));
+  }
+
+  private static IScheduledTask task(
+      String id,
+      IJobKey job,
+      int instance,
+      String host,
+      ScheduleStatus status) {
+
+    ScheduledTask builder = TaskTestUtil.makeTask(id, job).newBuilder().setStatus(status);
+    builder.getAssignedTask()
+        .setInstanceId(instance)
+        .setSlaveHost(host)
+        .setSlaveId(host);
+    return IScheduledTask.build(builder);
+  }
+
+  private static IScheduledTask transition(IScheduledTask task, ScheduleStatus status) {
+    return TaskTestUtil.addStateTransition(task, status, 200L);
+  }
+
+  private void saveAttributes(IHostAttributes attributes) {
+    storage.write((Quiet) store -> store.getAttributeStore().saveHostAttributes(attributes));
+  }
+
+  private void saveTasks(IScheduledTask... tasks) {
+    storage.write(
+        (Quiet) store -> store.getUnsafeTaskStore().saveTasks(ImmutableSet.copyOf(tasks)));
+  }
+
+  private void saveAndNotify(IScheduledTask task, ScheduleStatus oldState) {
+    saveTasks(task);
+    cache.taskChangedState(TaskStateChange.transition(task, oldState));
+  }
+
+  private void deleteTasks(IScheduledTask... tasks) {
+    ImmutableSet<IScheduledTask> deleted = ImmutableSet.copyOf(tasks);
+    storage.write((Quiet) store -> store.getUnsafeTaskStore().deleteTasks(Tasks.ids(deleted)));
+    cache.tasksDeleted(new TasksDeleted(deleted));
+  }
+
+  private AttributeAggregate getAggregate(IJobKey job) {
+    return storage.read(store -> cache.getAggregate(store, job));
+  }
+
+  private static ImmutableMultiset<Pair<String, String>> attributes(String... keyValues) {
+    ImmutableMultiset.Builder<Pair<String, String>> builder = ImmutableMultiset.builder();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      builder.add(Pair.of(keyValues[i], keyValues[i + 1]));
+    }
+    return builder.build();
+  }
+
+  @Test
+  public void testLoadIgnoresInactiveTasks() {
+    saveTasks(
+        task("1", JOB, 0, "a", RUNNING),
+        task("2", JOB, 1, "b", ASSIGNED),
+        task("3", JOB, 2, "a", PENDING),
+        task("4", JOB, 3, "a", THROTTLED),
+        task("5", JOB, 4, "b", FINISHED),
+        task("6", OTHER_JOB, 0, "a", RUNNING));
+
+    assertEquals(
+        attributes("host", "a", "rack", "1", "host", "b", "rack", "2"),
+        getAggregate(JOB).getAggregates());
+  }
+
+  @Test
+  public void testTaskStateChanges() {
+    IScheduledTask pending = task("1", JOB, 0, "a", PENDING);
+    saveTasks(pending);
+    AttributeAggregate aggregate = getAggregate(JOB);
+    assertEquals(attributes(), aggregate.getAggregates());
+
+    IScheduledTask assigned = transition(pending, ASSIGNED);
+    saveAndNotify(assigned, PENDING);
+    assertEquals(attributes("host", "a", "rack", "1"), getAggregate(JOB).getAggregates());
+    // Previously returned aggregates are not modified by later placements.
+    assertEquals(0, aggregate.getNumTasksWithAttribute("rack", "1"));
+
+    IScheduledTask finished = transition(assigned, FINISHED);
+    saveAndNotify(finished, ASSIGNED);
+    assertEquals(attributes(), getAggregate(JOB).getAggregates());
+  }
+
+  @Test
+  public void testStaleNotificationIgnored() {
+    IScheduledTask pending = task("1", JOB, 0, "a", PENDING);
+    IScheduledTask assigned = transition(pending, ASSIGNED);
+    IScheduledTask finished = transition(assigned, FINISHED);
+    saveTasks(assigned);
+    getAggregate(JOB);
+
+    saveAndNotify(finished, ASSIGNED);
+    cache.taskChangedState(TaskStateChange.transition(assigned, PENDING));
+    assertEquals(attributes(), getAggregate(JOB).getAggregates());
+  }
+
+  @Test
+  public void testSynchronousUpdate() {
+    IScheduledTask pending = task("1", JOB, 0, "a", PENDING);
+    saveTasks(pending);
+    getAggregate(JOB);
+
+    IScheduledTask assigned = transition(pending, ASSIGNED);
+    saveTasks(assigned);
+    storage.read(store -> {
+      cache.update(store, ImmutableSet.of("1"));
+      return null;
+    });
+    assertEquals(attributes("host", "a", "rack", "1"), getAggregate(JOB).getAggregates());
+
+    // The notification arriving later does not count the task twice.
+    cache.taskChangedState(TaskStateChange.transition(assigned, PENDING));
+    assertEquals(attributes("host", "a", "rack", "1"), getAggregate(JOB).getAggregates());
+  }
+
+  @Test
+  public void testHostAttributesChanged() {
+    saveTasks(task("1", JOB, 0, "a", RUNNING), task("2", JOB, 1, "b", RUNNING));
+    getAggregate(JOB);
+
+    IHostAttributes changed = hostAttributes("a", "rack", "3");
+    saveAttributes(changed);
+    cache.hostAttributesChanged(new HostAttributesChanged(changed));
+    assertEquals(
+        attributes("host", "a", "rack", "3", "host", "b", "rack", "2"),
+        getAggregate(JOB).getAggregates());
+  }
+
+  @Test
+  public void testUncachedJobIgnored() {
+    saveTasks(task("1", JOB, 0, "a", RUNNING));
+    getAggregate(JOB);
+
+    saveAndNotify(task("2", OTHER_JOB, 0, "b", RUNNING), ASSIGNED);
+    assertEquals(attributes("host", "a", "rack", "1"), getAggregate(JOB).getAggregates());
+    assertEquals(attributes("host", "b", "rack", "2"), getAggregate(OTHER_JOB).getAggregates());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testVerifyConsistency() {
+    saveTasks(task("1", JOB, 0, "a", RUNNING));
+    getAggregate(JOB);
+
+    // A change without a notification or update leaves the cache out of date.
+    saveTasks(task("2", JOB, 1, "b", RUNNING));
+    getAggregate(JOB);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedJobEvicted() {
+    saveTasks(
+        task("1", JOB, 0, "a", RUNNING),
+        task("2", OTHER_JOB, 0, "a", RUNNING),
+        task("3", THIRD_JOB, 0, "a", RUNNING));
+    getAggregate(JOB);
+    getAggregate(OTHER_JOB);
+    getAggregate(JOB);
+    getAggregate(THIRD_JOB);
+
+    // The evicted job is loaded again, so a change without a notification is not a consistency
+    // failure.
+    saveTasks(task("4", OTHER_JOB, 1, "b", RUNNING));
+    assertEquals(
+        attributes("host", "a", "rack", "1", "host", "b", "rack", "2"),
+        getAggregate(OTHER_JOB).getAggregates());
+  }
+
+  @Test
+  public void testTasksDeleted() {
+    IScheduledTask a = task("1", JOB, 0, "a", RUNNING);
+    IScheduledTask b = task("2", JOB, 1, "b", RUNNING);
+    saveTasks(a, b);
+    getAggregate(JOB);
+
+    deleteTasks(a);
+    assertEquals(attributes("host", "b", "rack", "2"), getAggregate(JOB).getAggregates());
+
+    deleteTasks(b);
+    assertEquals(attributes(), getAggregate(JOB).getAggregates());
+  }
+}
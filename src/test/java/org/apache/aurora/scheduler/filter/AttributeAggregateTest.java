@@ -133,6 +133,35 @@ public class AttributeAggregateTest extends EasyMockTest {
     assertAggregate(aggregate, "hostc", "2", 0L);
   }
 
+  @Test
+  public void testUpdateAttributeAggregate() {
+    expectGetAttributes("a1", attribute("host", "a1"), attribute("rack", "a"));
+
+    control.replay();
+
+    AttributeAggregate aggregate = aggregate(task("1", "a1"));
+    aggregate.updateAttributeAggregate(IHostAttributes.build(new HostAttributes()
+        .setHost("a2")
+        .setAttributes(ImmutableSet.of(attribute("host", "a2"), attribute("rack", "a")))));
+
+    Multiset<Pair<String, String>> expected = ImmutableMultiset.<Pair<String, String>>builder()
+        .add(Pair.of("host", "a1"))
+        .add(Pair.of("host", "a2"))
+        .addCopies(Pair.of("rack", "a"), 2)
+        .build();
+    assertEquals(expected, aggregate.getAggregates());
+    assertAggregate(aggregate, "host", "a2", 1L);
+    assertAggregate(aggregate, "rack", "a", 2L);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUpdateEmptyAggregateRejected() {
+    control.replay();
+
+    AttributeAggregate.EMPTY.updateAttributeAggregate(
+        IHostAttributes.build(new HostAttributes().setHost("a1")));
+  }
+
   private AttributeAggregate aggregate(IScheduledTask... activeTasks) {
     return AttributeAggregate.create(
         Suppliers.ofInstance(ImmutableSet.copyOf(activeTasks)),
@@ -154,6 +154,61 @@ public class ApiBetaTest extends AbstractJettyTest {
         .setStatuses(ImmutableSet.of(RUNNING))
         .setTaskIds(ImmutableSet.of("a"));
 
+    expect(thrift.getTasksStatus(query.deepCopy().setLimit(ApiBeta.TASK_PAGE_SIZE)))
+        .andReturn(response);
+
+    replayAndStart();
+
+    Response actualResponse = getRequestBuilder("/apibeta/getTasksStatus")
+        .entity(ImmutableMap.of("query", query), MediaType.APPLICATION_JSON)
+        .post(Response.class);
+    assertEquals(IResponse.build(response), IResponse.build(actualResponse));
+  }
+
+  @Test
+  public void testGetTasksStreamed() throws Exception {
+    ScheduledTask taskA = new ScheduledTask()
+        .setStatus(RUNNING)
+        .setAssignedTask(new AssignedTask().setTaskId("a").setTask(TASK_CONFIG.newBuilder()));
+    ScheduledTask taskB = taskA.deepCopy();
+    taskB.getAssignedTask().setTaskId("b");
+    ScheduledTask taskC = taskA.deepCopy();
+    taskC.getAssignedTask().setTaskId("c");
+
+    TaskQuery query = new TaskQuery().setStatuses(ImmutableSet.of(RUNNING)).setOffset(1);
+    TaskQuery firstPage = query.deepCopy().setLimit(ApiBeta.TASK_PAGE_SIZE);
+    TaskQuery secondPage = firstPage.deepCopy().setOffset(0).setContinuationToken("b");
+    expect(thrift.getTasksWithoutConfigs(firstPage)).andReturn(new Response()
+        .setResponseCode(OK)
+        .setResult(Result.scheduleStatusResult(new ScheduleStatusResult()
+            .setTasks(ImmutableList.of(taskA, taskB))
+            .setContinuationToken("b"))));
+    expect(thrift.getTasksWithoutConfigs(secondPage)).andReturn(new Response()
+        .setResponseCode(OK)
+        .setResult(Result.scheduleStatusResult(new ScheduleStatusResult()
+            .setTasks(ImmutableList.of(taskC)))));
+
+    replayAndStart();
+
+    Response actualResponse = getRequestBuilder("/apibeta/getTasksWithoutConfigs")
+        .entity(ImmutableMap.of("query", query), MediaType.APPLICATION_JSON)
+        .post(Response.class);
+    Response expected = new Response()
+        .setResponseCode(OK)
+        .setResult(Result.scheduleStatusResult(new ScheduleStatusResult()
+            .setTasks(ImmutableList.of(taskA, taskB, taskC))));
+    assertEquals(IResponse.build(expected), IResponse.build(actualResponse));
+  }
+
+  @Test
+  public void testGetTasksPaginatedByClient() throws Exception {
+    Response response = new Response()
+        .setResponseCode(OK)
+        .setResult(Result.scheduleStatusResult(new ScheduleStatusResult()
+            .setTasks(ImmutableList.of())
+            .setContinuationToken("a")));
+
+    TaskQuery query = new TaskQuery().setLimit(10);
     expect(thrift.getTasksStatus(query)).andReturn(response);
 
     replayAndStart();
@@ -13,9 +13,13 @@
  */
 package org.apache.aurora.scheduler.offers;
 
+import java.util.List;
+
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 
 import org.apache.aurora.common.quantity.Amount;
 import org.apache.aurora.common.quantity.Time;
@@ -27,10 +31,13 @@ import org.apache.aurora.gen.TaskConfig;
 import org.apache.aurora.scheduler.HostOffer;
 import org.apache.aurora.scheduler.async.DelayExecutor;
 import org.apache.aurora.scheduler.base.TaskGroupKey;
+import org.apache.aurora.scheduler.events.PubsubEvent;
 import org.apache.aurora.scheduler.events.PubsubEvent.DriverDisconnected;
 import org.apache.aurora.scheduler.events.PubsubEvent.HostAttributesChanged;
+import org.apache.aurora.scheduler.events.PubsubEvent.OfferAdded;
 import org.apache.aurora.scheduler.mesos.Driver;
 import org.apache.aurora.scheduler.offers.OfferManager.OfferManagerImpl;
+import org.apache.aurora.scheduler.resources.ResourceBag;
 import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
 import org.apache.aurora.scheduler.testing.FakeScheduledExecutor;
@@ -42,6 +49,10 @@ import org.junit.Test;
 
 import static org.apache.aurora.gen.MaintenanceMode.DRAINING;
 import static org.apache.aurora.gen.MaintenanceMode.NONE;
+import static org.apache.aurora.gen.MaintenanceMode.SCHEDULED;
+import static org.apache.aurora.scheduler.resources.ResourceTestUtil.bag;
+import static org.apache.aurora.scheduler.resources.ResourceTestUtil.mesosScalar;
+import static org.apache.aurora.scheduler.resources.ResourceType.RAM_MB;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -75,6 +86,7 @@ public class OfferManagerImplTest extends EasyMockTest {
   private Driver driver;
   private FakeScheduledExecutor clock;
   private OfferManagerImpl offerManager;
+  private List<PubsubEvent> events;
 
   @Before
   public void setUp() {
@@ -85,7 +97,8 @@ public class OfferManagerImplTest extends EasyMockTest {
     OfferSettings offerSettings = new OfferSettings(
         Amount.of(OFFER_FILTER_SECONDS, Time.SECONDS),
         () -> RETURN_DELAY);
-    offerManager = new OfferManagerImpl(driver, offerSettings, executorMock);
+    events = Lists.newArrayList();
+    offerManager = new OfferManagerImpl(driver, offerSettings, executorMock, events::add);
   }
 
   @Test
@@ -147,6 +160,8 @@ public class OfferManagerImplTest extends EasyMockTest {
 
     offerManager.addOffer(OFFER_A);
     offerManager.addOffer(OFFER_A);
+    // Offers returned for compaction are not announced.
+    assertEquals(ImmutableList.of(new OfferAdded(OFFER_A)), events);
 
     clock.advance(RETURN_DELAY);
   }
@@ -173,14 +188,73 @@ public class OfferManagerImplTest extends EasyMockTest {
     // Static ban ignored when now offers.
     offerManager.banOffer(OFFER_A_ID, GROUP_KEY);
     offerManager.addOffer(OFFER_A);
-    assertEquals(OFFER_A, Iterables.getOnlyElement(offerManager.getOffers(GROUP_KEY)));
+    assertEquals(
+        OFFER_A,
+        Iterables.getOnlyElement(offerManager.getOffers(GROUP_KEY, ResourceBag.EMPTY)));
 
     assertEquals(OFFER_A, Iterables.getOnlyElement(offerManager.getOffers()));
 
     // Add static ban.
     offerManager.banOffer(OFFER_A_ID, GROUP_KEY);
     assertEquals(OFFER_A, Iterables.getOnlyElement(offerManager.getOffers()));
-    assertTrue(Iterables.isEmpty(offerManager.getOffers(GROUP_KEY)));
+    assertTrue(Iterables.isEmpty(offerManager.getOffers(GROUP_KEY, ResourceBag.EMPTY)));
+
+    clock.advance(RETURN_DELAY);
+  }
+
+  @Test
+  public void testStaticBanIsScopedToGroup() throws Exception {
+    TaskGroupKey otherGroup = TaskGroupKey.from(
+        ITaskConfig.build(new TaskConfig().setJob(new JobKey("role", "env", "other"))));
+    driver.declineOffer(OFFER_A_ID, OFFER_FILTER);
+    driver.declineOffer(OFFER_B.getOffer().getId(), OFFER_FILTER);
+
+    control.replay();
+
+    offerManager.addOffer(OFFER_A);
+    offerManager.addOffer(OFFER_B);
+    offerManager.banOffer(OFFER_A_ID, GROUP_KEY);
+    assertEquals(
+        OFFER_B,
+        Iterables.getOnlyElement(offerManager.getOffers(GROUP_KEY, ResourceBag.EMPTY)));
+    assertEquals(
+        ImmutableSet.of(OFFER_A, OFFER_B),
+        ImmutableSet.copyOf(offerManager.getOffers(otherGroup, ResourceBag.EMPTY)));
+
+    clock.advance(RETURN_DELAY);
+  }
+
+  @Test
+  public void testGetOffersSkipsInsufficientRam() throws Exception {
+    HostOffer small = setMode(setRam(OFFER_B, 512), SCHEDULED);
+    HostOffer large = setMode(setRam(OFFER_C, 4096), DRAINING);
+    HostOffer largest = setRam(OFFER_A, 16384);
+    driver.declineOffer(OFFER_A_ID, OFFER_FILTER);
+    driver.declineOffer(OFFER_B.getOffer().getId(), OFFER_FILTER);
+    driver.declineOffer(OFFER_C.getOffer().getId(), OFFER_FILTER);
+
+    control.replay();
+
+    offerManager.addOffer(small);
+    offerManager.addOffer(large);
+    offerManager.addOffer(largest);
+    assertEquals(
+        ImmutableList.of(largest, small, large),
+        ImmutableList.copyOf(offerManager.getOffers(GROUP_KEY, ResourceBag.EMPTY)));
+    assertEquals(
+        ImmutableList.of(largest, small, large),
+        ImmutableList.copyOf(offerManager.getOffers(GROUP_KEY, bag(1, 300, 0))));
+    // Offers from different RAM buckets are still returned in preference order.
+    assertEquals(
+        ImmutableList.of(largest, large),
+        ImmutableList.copyOf(offerManager.getOffers(GROUP_KEY, bag(1, 2048, 0))));
+    assertTrue(Iterables.isEmpty(offerManager.getOffers(GROUP_KEY, bag(1, 65536, 0))));
+
+    // The RAM index is kept up to date as offers are removed.
+    offerManager.cancelOffer(OFFER_A_ID);
+    assertEquals(
+        ImmutableList.of(large),
+        ImmutableList.copyOf(offerManager.getOffers(GROUP_KEY, bag(1, 2048, 0))));
 
     clock.advance(RETURN_DELAY);
   }
@@ -195,12 +269,14 @@ public class OfferManagerImplTest extends EasyMockTest {
     offerManager.addOffer(OFFER_A);
     offerManager.banOffer(OFFER_A_ID, GROUP_KEY);
     assertEquals(OFFER_A, Iterables.getOnlyElement(offerManager.getOffers()));
-    assertTrue(Iterables.isEmpty(offerManager.getOffers(GROUP_KEY)));
+    assertTrue(Iterables.isEmpty(offerManager.getOffers(GROUP_KEY, ResourceBag.EMPTY)));
 
     // Make sure the static ban is cleared when the offers are returned.
     clock.advance(RETURN_DELAY);
     offerManager.addOffer(OFFER_A);
-    assertEquals(OFFER_A, Iterables.getOnlyElement(offerManager.getOffers(GROUP_KEY)));
+    assertEquals(
+        OFFER_A,
+        Iterables.getOnlyElement(offerManager.getOffers(GROUP_KEY, ResourceBag.EMPTY)));
 
     clock.advance(RETURN_DELAY);
   }
@@ -214,12 +290,14 @@ public class OfferManagerImplTest extends EasyMockTest {
     offerManager.addOffer(OFFER_A);
     offerManager.banOffer(OFFER_A_ID, GROUP_KEY);
     assertEquals(OFFER_A, Iterables.getOnlyElement(offerManager.getOffers()));
-    assertTrue(Iterables.isEmpty(offerManager.getOffers(GROUP_KEY)));
+    assertTrue(Iterables.isEmpty(offerManager.getOffers(GROUP_KEY, ResourceBag.EMPTY)));
 
     // Make sure the static ban is cleared when driver is disconnected.
     offerManager.driverDisconnected(new DriverDisconnected());
     offerManager.addOffer(OFFER_A);
-    assertEquals(OFFER_A, Iterables.getOnlyElement(offerManager.getOffers(GROUP_KEY)));
+    assertEquals(
+        OFFER_A,
+        Iterables.getOnlyElement(offerManager.getOffers(GROUP_KEY, ResourceBag.EMPTY)));
 
     clock.advance(RETURN_DELAY);
   }
@@ -277,6 +355,12 @@ public class OfferManagerImplTest extends EasyMockTest {
     clock.advance(RETURN_DELAY);
   }
 
+  private static HostOffer setRam(HostOffer offer, double ramMb) {
+    return new HostOffer(
+        offer.getOffer().toBuilder().addResources(mesosScalar(RAM_MB, ramMb)).build(),
+        offer.getAttributes());
+  }
+
   private static HostOffer setMode(HostOffer offer, MaintenanceMode mode) {
     return new HostOffer(
         offer.getOffer(),
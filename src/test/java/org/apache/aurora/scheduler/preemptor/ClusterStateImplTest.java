@@ -13,7 +13,9 @@
  */
 package org.apache.aurora.scheduler.preemptor;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 
 import org.apache.aurora.gen.AssignedTask;
@@ -22,11 +24,16 @@ import org.apache.aurora.gen.ScheduleStatus;
 import org.apache.aurora.gen.ScheduledTask;
 import org.apache.aurora.gen.TaskConfig;
 import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
+import org.apache.aurora.scheduler.resources.ResourceBag;
 import org.apache.aurora.scheduler.storage.entities.IAssignedTask;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.apache.aurora.gen.Resource.diskMb;
+import static org.apache.aurora.gen.Resource.numCpus;
+import static org.apache.aurora.gen.Resource.ramMb;
 import static org.apache.aurora.gen.ScheduleStatus.ASSIGNED;
 import static org.apache.aurora.gen.ScheduleStatus.FAILED;
 import static org.apache.aurora.gen.ScheduleStatus.FINISHED;
@@ -35,6 +42,10 @@ import static org.apache.aurora.gen.ScheduleStatus.KILLING;
 import static org.apache.aurora.gen.ScheduleStatus.PENDING;
 import static org.apache.aurora.gen.ScheduleStatus.RUNNING;
 import static org.apache.aurora.gen.ScheduleStatus.THROTTLED;
+import static org.apache.aurora.scheduler.base.TaskTestUtil.DEV_TIER_NAME;
+import static org.apache.aurora.scheduler.base.TaskTestUtil.PROD_TIER_NAME;
+import static org.apache.aurora.scheduler.base.TaskTestUtil.TIER_MANAGER;
+import static org.apache.aurora.scheduler.mesos.TestExecutorSettings.THERMOS_EXECUTOR;
 import static org.junit.Assert.assertEquals;
 
 public class ClusterStateImplTest {
@@ -43,7 +54,7 @@ public class ClusterStateImplTest {
 
   @Before
   public void setUp() {
-    state = new ClusterStateImpl();
+    state = new ClusterStateImpl(TIER_MANAGER, THERMOS_EXECUTOR);
   }
 
   @Test(expected = UnsupportedOperationException.class)
@@ -108,6 +119,44 @@ public class ClusterStateImplTest {
     assertVictims(b, d, f);
   }
 
+  @Test
+  public void testPreemptibleResources() {
+    IAssignedTask devLow = makeTask("a", "s1", "role", DEV_TIER_NAME, 0);
+    IAssignedTask prodLow = makeTask("b", "s1", "role", PROD_TIER_NAME, 1);
+    IAssignedTask otherRole = makeTask("c", "s1", "other", PROD_TIER_NAME, 0);
+    IAssignedTask prodHigh = makeTask("d", "s2", "role", PROD_TIER_NAME, 5);
+    changeState(devLow, RUNNING);
+    changeState(prodLow, RUNNING);
+    changeState(otherRole, RUNNING);
+    changeState(prodHigh, RUNNING);
+
+    // A production task may preempt tasks in preemptible tiers, and lower priority tasks in its
+    // own role.
+    ITaskConfig prodPending = makeTask("p", null, "role", PROD_TIER_NAME, 2).getTask();
+    assertEquals(
+        ImmutableMap.of("s1", resources(devLow).add(resources(prodLow))),
+        state.getPreemptibleResources(prodPending));
+
+    // A task in a preemptible tier may only preempt lower priority tasks of its own role in
+    // preemptible tiers.
+    ITaskConfig devPending = makeTask("q", null, "role", DEV_TIER_NAME, 1).getTask();
+    assertEquals(
+        ImmutableMap.of("s1", resources(devLow)),
+        state.getPreemptibleResources(devPending));
+
+    changeState(devLow, FINISHED);
+    changeState(prodHigh, FINISHED);
+    assertEquals(
+        ImmutableMap.of("s1", resources(prodLow)),
+        state.getPreemptibleResources(prodPending));
+    assertEquals(ImmutableMap.of(), state.getPreemptibleResources(devPending));
+  }
+
+  private static ResourceBag resources(IAssignedTask task) {
+    return PreemptionVictim.fromTask(task).getResourceBag()
+        .add(THERMOS_EXECUTOR.getExecutorOverhead());
+  }
+
   private void assertVictims(IAssignedTask... tasks) {
     ImmutableMultimap.Builder<String, PreemptionVictim> victims = ImmutableSetMultimap.builder();
     for (IAssignedTask task : tasks) {
@@ -124,6 +173,21 @@ public class ClusterStateImplTest {
         .setTask(new TaskConfig().setJob(new JobKey("role", "env", "job"))));
   }
 
+  private IAssignedTask makeTask(
+      String taskId,
+      String slaveId,
+      String role,
+      String tier,
+      int priority) {
+
+    return IAssignedTask.build(makeTask(taskId, slaveId).newBuilder()
+        .setTask(new TaskConfig()
+            .setJob(new JobKey(role, "env", "job"))
+            .setTier(tier)
+            .setPriority(priority)
+            .setResources(ImmutableSet.of(numCpus(1.0), ramMb(1024), diskMb(100)))));
+  }
+
   private void changeState(IAssignedTask assignedTask, ScheduleStatus status) {
     IScheduledTask task = IScheduledTask.build(new ScheduledTask()
         .setStatus(status)
@@ -14,11 +14,14 @@
 package org.apache.aurora.scheduler.preemptor;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.annotation.Nullable;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 
@@ -37,7 +40,9 @@ import org.apache.aurora.scheduler.base.JobKeys;
 import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.TaskGroupKey;
 import org.apache.aurora.scheduler.filter.AttributeAggregate;
+import org.apache.aurora.scheduler.filter.AttributeAggregateCache;
 import org.apache.aurora.scheduler.offers.OfferManager;
+import org.apache.aurora.scheduler.resources.ResourceBag;
 import org.apache.aurora.scheduler.stats.CachedCounters;
 import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
 import org.apache.aurora.scheduler.storage.entities.IJobKey;
@@ -50,10 +55,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.apache.aurora.gen.ScheduleStatus.PENDING;
+import static org.apache.aurora.scheduler.mesos.TestExecutorSettings.THERMOS_EXECUTOR;
+import static org.apache.aurora.scheduler.preemptor.PreemptorMetrics.SLOT_SEARCH_CANDIDATES_NAME;
 import static org.apache.aurora.scheduler.preemptor.PreemptorMetrics.TASK_PROCESSOR_RUN_NAME;
 import static org.apache.aurora.scheduler.preemptor.PreemptorMetrics.attemptsStatName;
 import static org.apache.aurora.scheduler.preemptor.PreemptorMetrics.slotSearchStatName;
 import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
@@ -71,6 +79,8 @@ public class PendingTaskProcessorTest extends EasyMockTest {
   private static final PreemptionProposal SLOT_A = createPreemptionProposal(TASK_A, SLAVE_ID_1);
   private static final Amount<Long, Time> PREEMPTION_DELAY = Amount.of(30L, Time.SECONDS);
   private static final Amount<Long, Time> EXPIRATION = Amount.of(10L, Time.MINUTES);
+  private static final IHostAttributes HOST_ATTRIBUTES =
+      IHostAttributes.build(new HostAttributes().setMode(MaintenanceMode.NONE));
 
   private StorageTestUtil storageUtil;
   private OfferManager offerManager;
@@ -79,6 +89,7 @@ public class PendingTaskProcessorTest extends EasyMockTest {
   private PendingTaskProcessor slotFinder;
   private BiCache<PreemptionProposal, TaskGroupKey> slotCache;
   private ClusterState clusterState;
+  private AttributeAggregateCache aggregateCache;
   private FakeClock clock;
 
   @Before
@@ -89,13 +100,24 @@ public class PendingTaskProcessorTest extends EasyMockTest {
     preemptionVictimFilter = createMock(PreemptionVictimFilter.class);
     statsProvider = new FakeStatsProvider();
     clusterState = createMock(ClusterState.class);
+    aggregateCache = createMock(AttributeAggregateCache.class);
+    expect(aggregateCache.getAggregate(eq(storageUtil.storeProvider), anyObject(IJobKey.class)))
+        .andReturn(AttributeAggregate.EMPTY)
+        .anyTimes();
+    expect(storageUtil.attributeStore.getHostAttributes(anyString()))
+        .andReturn(Optional.of(HOST_ATTRIBUTES))
+        .anyTimes();
     clock = new FakeClock();
     slotCache = new BiCache<>(
         statsProvider,
         new BiCache.BiCacheSettings(EXPIRATION, CACHE_STAT),
         clock);
 
-    slotFinder = new PendingTaskProcessor(
+    slotFinder = createSlotFinder(1);
+  }
+
+  private PendingTaskProcessor createSlotFinder(int slotSearchParallelism) {
+    return new PendingTaskProcessor(
         storageUtil.storage,
         offerManager,
         preemptionVictimFilter,
@@ -103,7 +125,10 @@ public class PendingTaskProcessorTest extends EasyMockTest {
         PREEMPTION_DELAY,
         slotCache,
         clusterState,
-        clock);
+        aggregateCache,
+        clock,
+        THERMOS_EXECUTOR,
+        new ForkJoinPool(slotSearchParallelism));
   }
 
   @Test
@@ -204,6 +229,57 @@ public class PendingTaskProcessorTest extends EasyMockTest {
     assertEquals(2L, statsProvider.getLongValue(CACHE_STAT));
   }
 
+  @Test
+  public void testSkipsSlavesWithoutEnoughPreemptibleResources() throws Exception {
+    expectGetPendingTasks(TASK_A);
+    expect(clusterState.getSlavesToActiveTasks()).andReturn(getVictims(TASK_A, TASK_B));
+    expect(clusterState.getPreemptibleResources(TASK_A.getAssignedTask().getTask()))
+        .andReturn(ImmutableMap.of(SLAVE_ID_1, ResourceBag.EMPTY, SLAVE_ID_2, ResourceBag.XLARGE));
+    HostOffer offer1 = makeOffer(SLAVE_ID_1);
+    HostOffer offer2 = makeOffer(SLAVE_ID_2);
+    expectOffers(offer1, offer2);
+    expectSlotSearch(TASK_A.getAssignedTask().getTask());
+
+    control.replay();
+
+    clock.advance(PREEMPTION_DELAY);
+
+    slotFinder.run();
+    assertEquals(1L, statsProvider.getLongValue(attemptsStatName(true)));
+    assertEquals(1L, statsProvider.getLongValue(slotSearchStatName(false, true)));
+    assertEquals(1L, statsProvider.getLongValue(SLOT_SEARCH_CANDIDATES_NAME));
+  }
+
+  @Test
+  public void testParallelSlotSearch() throws Exception {
+    slotFinder = createSlotFinder(2);
+    IScheduledTask task1 = makeTask(JOB_A, "1");
+    IScheduledTask task2 = makeTask(JOB_A, "2");
+
+    expectGetPendingTasks(task1, task2);
+    expectGetClusterState(TASK_A, TASK_B);
+    HostOffer offer1 = makeOffer(SLAVE_ID_1);
+    HostOffer offer2 = makeOffer(SLAVE_ID_2);
+    expectOffers(offer1, offer2);
+    expectSlotSearch(task1.getAssignedTask().getTask(), TASK_A);
+
+    control.replay();
+
+    clock.advance(PREEMPTION_DELAY);
+
+    slotFinder.run();
+    assertEquals(
+        Optional.of(group(task1)),
+        slotCache.get(createPreemptionProposal(TASK_A, SLAVE_ID_1)));
+    assertEquals(
+        Optional.of(group(task1)),
+        slotCache.get(createPreemptionProposal(TASK_A, SLAVE_ID_2)));
+    assertEquals(2L, statsProvider.getLongValue(attemptsStatName(true)));
+    assertEquals(2L, statsProvider.getLongValue(slotSearchStatName(true, true)));
+    assertEquals(0L, statsProvider.getLongValue(slotSearchStatName(false, true)));
+    assertEquals(2L, statsProvider.getLongValue(CACHE_STAT));
+  }
+
   @Test
   public void testNoVictims() throws Exception {
     expectGetClusterState();
@@ -241,7 +317,11 @@ public class PendingTaskProcessorTest extends EasyMockTest {
   }
 
   private void expectGetClusterState(IScheduledTask... returnedTasks) {
-    expect(clusterState.getSlavesToActiveTasks()).andReturn(getVictims(returnedTasks));
+    Multimap<String, PreemptionVictim> victims = getVictims(returnedTasks);
+    expect(clusterState.getSlavesToActiveTasks()).andReturn(victims);
+    expect(clusterState.getPreemptibleResources(anyObject(ITaskConfig.class)))
+        .andReturn(Maps.toMap(victims.keySet(), slaveId -> ResourceBag.XLARGE))
+        .anyTimes();
   }
 
   private void expectSlotSearch(ITaskConfig config, IScheduledTask... victims) {
@@ -250,7 +330,7 @@ public class PendingTaskProcessorTest extends EasyMockTest {
         anyObject(),
         anyObject(AttributeAggregate.class),
         anyObject(),
-        eq(storageUtil.storeProvider)));
+        eq(Optional.of(HOST_ATTRIBUTES))));
     expectLastCall().andReturn(
         victims.length == 0
             ? Optional.absent()
@@ -13,6 +13,7 @@
  */
 package org.apache.aurora.scheduler.resources;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 import org.junit.Test;
@@ -30,6 +31,9 @@ import static org.apache.aurora.scheduler.resources.ResourceType.DISK_MB;
 import static org.apache.aurora.scheduler.resources.ResourceType.PORTS;
 import static org.apache.aurora.scheduler.resources.ResourceType.RAM_MB;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 public class ResourceBagTest {
   @Test
@@ -89,4 +93,66 @@ public class ResourceBagTest {
         new ResourceBag(ImmutableMap.of(CPUS, -1.0)),
         bag(-1.0, 128, 1024).filter(IS_NEGATIVE));
   }
+
+  @Test
+  public void testCovers() {
+    assertTrue(LARGE.covers(MEDIUM));
+    assertTrue(MEDIUM.covers(MEDIUM));
+    assertFalse(MEDIUM.covers(LARGE));
+    assertTrue(SMALL.covers(new ResourceBag(ImmutableMap.of(PORTS, 0.0))));
+    assertFalse(SMALL.covers(new ResourceBag(ImmutableMap.of(PORTS, 1.0))));
+  }
+
+  @Test
+  public void testGetResourceVectors() {
+    assertEquals(
+        ImmutableMap.of(CPUS, 1.0, RAM_MB, 1024.0, DISK_MB, 4096.0),
+        SMALL.getResourceVectors());
+    assertEquals(
+        ImmutableMap.of(CPUS, -1.0),
+        bag(-1.0, 128, 1024).filter(IS_NEGATIVE).getResourceVectors());
+  }
+
+  @Test
+  public void testAccumulator() {
+    ResourceBag.Accumulator accumulator = new ResourceBag.Accumulator(SMALL);
+    assertEquals(bag(2.0, 2048, 8192), accumulator.add(SMALL).build());
+    assertEquals(bag(9.0, 17408, 36864), accumulator.max(LARGE).add(SMALL).build());
+    assertEquals(SMALL, accumulator.subtract(LARGE).build());
+
+    // Building does not expose the accumulator state.
+    ResourceBag built = accumulator.build();
+    accumulator.add(LARGE);
+    assertEquals(SMALL, built);
+
+    // Missing keys are added as with ResourceBag.add().
+    assertEquals(
+        new ResourceBag(ImmutableMap.of(CPUS, 9.0, RAM_MB, 16384.0, DISK_MB, 32768.0)),
+        new ResourceBag.Accumulator(new ResourceBag(ImmutableMap.of(CPUS, 1.0)))
+            .add(LARGE)
+            .build());
+  }
+
+  @Test
+  public void testSum() {
+    assertEquals(ResourceBag.EMPTY, ResourceBag.sum(ImmutableList.of()));
+    assertEquals(SMALL, ResourceBag.sum(ImmutableList.of(SMALL)));
+    assertEquals(LARGE, ResourceBag.sum(ImmutableList.of(MEDIUM, MEDIUM)));
+  }
+
+  @Test
+  public void testEquality() {
+    assertEquals(
+        new ResourceBag(ImmutableMap.of(CPUS, 1.0, RAM_MB, 0.0)),
+        new ResourceBag(ImmutableMap.of(CPUS, 1.0))
+            .add(new ResourceBag(ImmutableMap.of(RAM_MB, 0.0))));
+    assertEquals(
+        new ResourceBag(ImmutableMap.of(RAM_MB, 0.0, CPUS, 1.0)).hashCode(),
+        new ResourceBag(ImmutableMap.of(CPUS, 1.0, RAM_MB, 0.0)).hashCode());
+
+    // An absent resource is not equal to a zero resource.
+    assertNotEquals(
+        new ResourceBag(ImmutableMap.of(CPUS, 1.0)),
+        new ResourceBag(ImmutableMap.of(CPUS, 1.0, RAM_MB, 0.0)));
+  }
 }
@@ -0,0 +1,154 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.scheduling;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Time;
+import org.apache.aurora.common.util.testing.FakeClock;
+import org.apache.aurora.gen.JobKey;
+import org.apache.aurora.gen.TaskConfig;
+import org.apache.aurora.scheduler.base.TaskGroupKey;
+import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
+import org.apache.aurora.scheduler.testing.FakeStatsProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SchedulingQueueTest {
+  private static final int QUANTUM = 2;
+
+  private List<Runnable> workerRuns;
+  private List<String> evaluated;
+  private FakeClock clock;
+  private FakeStatsProvider statsProvider;
+  private SchedulingQueue queue;
+
+  @Before
+  public void setUp() {
+    workerRuns = Lists.newArrayList();
+    evaluated = Lists.newArrayList();
+    clock = new FakeClock();
+    statsProvider = new FakeStatsProvider();
+    queue = new SchedulingQueue(workerRuns::add, QUANTUM, clock, statsProvider);
+  }
+
+  private void add(String name, String role, int tasks) {
+    add(name, role, tasks, false, 0);
+  }
+
+  private void add(String name, String role, int tasks, boolean production, int priority) {
+    add(name, role, tasks, production, priority, name);
+  }
+
+  private void add(
+      String name,
+      String role,
+      int tasks,
+      boolean production,
+      int priority,
+      String evaluation) {
+
+    ITaskConfig task = ITaskConfig.build(new TaskConfig()
+        .setJob(new JobKey(role, "env", name))
+        .setProduction(production)
+        .setPriority(priority));
+    queue.add(TaskGroupKey.from(task), tasks, () -> evaluated.add(evaluation));
+  }
+
+  private void runWorkers() {
+    for (Runnable run : workerRuns) {
+      run.run();
+    }
+    workerRuns.clear();
+  }
+
+  @Test
+  public void testRoundRobinAcrossRoles() {
+    add("a0", "a", QUANTUM);
+    add("a1", "a", QUANTUM);
+    add("a2", "a", QUANTUM);
+    add("b0", "b", QUANTUM);
+    add("c0", "c", QUANTUM);
+    runWorkers();
+
+    assertEquals(ImmutableList.of("a0", "b0", "c0", "a1", "a2"), evaluated);
+  }
+
+  @Test
+  public void testDeficitRoundRobin() {
+    // Role a attempts fewer tasks per evaluation, so it gets more evaluations per turn.
+    add("a0", "a", 1);
+    add("a1", "a", 1);
+    add("a2", "a", 1);
+    add("b0", "b", QUANTUM);
+    add("b1", "b", QUANTUM);
+    runWorkers();
+
+    assertEquals(ImmutableList.of("a0", "a1", "b0", "a2", "b1"), evaluated);
+  }
+
+  @Test
+  public void testOrderWithinRole() {
+    add("low", "a", 1, false, 0);
+    add("high", "a", 1, false, 10);
+    add("prod", "a", 1, true, 0);
+    add("low2", "a", 1, false, 0);
+    runWorkers();
+
+    assertEquals(ImmutableList.of("prod", "high", "low", "low2"), evaluated);
+  }
+
+  @Test
+  public void testSupersededEvaluationReplaced() {
+    add("a0", "a", QUANTUM);
+    add("a1", "a", QUANTUM);
+    add("b0", "b", QUANTUM);
+    // The later evaluation of a0 takes the place of the queued one, and only its cost is charged.
+    add("a0", "a", 1, false, 0, "a0-woken");
+    assertEquals(3, workerRuns.size());
+    assertEquals(3L, statsProvider.getLongValue(SchedulingQueue.QUEUE_SIZE_STAT));
+    runWorkers();
+
+    assertEquals(ImmutableList.of("a0-woken", "b0", "a1"), evaluated);
+    assertEquals(1L, statsProvider.getLongValue(SchedulingQueue.SUPERSEDED_STAT));
+    assertEquals(2L, statsProvider.getLongValue(SchedulingQueue.evaluationsStatName("a")));
+    assertEquals(3L, statsProvider.getLongValue(SchedulingQueue.tasksStatName("a")));
+
+    // Once an evaluation has run, the group may be queued again.
+    add("a0", "a", 1);
+    runWorkers();
+    assertEquals(ImmutableList.of("a0-woken", "b0", "a1", "a0"), evaluated);
+  }
+
+  @Test
+  public void testStats() {
+    add("a0", "a", 1);
+    add("a1", "a", QUANTUM);
+    assertEquals(2L, statsProvider.getLongValue(SchedulingQueue.QUEUE_SIZE_STAT));
+
+    clock.advance(Amount.of(5L, Time.MILLISECONDS));
+    runWorkers();
+
+    assertEquals(0L, statsProvider.getLongValue(SchedulingQueue.QUEUE_SIZE_STAT));
+    assertEquals(2L, statsProvider.getLongValue(SchedulingQueue.evaluationsStatName("a")));
+    assertEquals(3L, statsProvider.getLongValue(SchedulingQueue.tasksStatName("a")));
+    assertEquals(10L, statsProvider.getLongValue(SchedulingQueue.waitStatName("a")));
+  }
+}
@@ -14,6 +14,7 @@
 package org.apache.aurora.scheduler.scheduling;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.RateLimiter;
 
 import org.apache.aurora.common.quantity.Amount;
@@ -21,23 +22,40 @@ import org.apache.aurora.common.quantity.Time;
 import org.apache.aurora.common.testing.easymock.EasyMockTest;
 import org.apache.aurora.common.util.BackoffStrategy;
 import org.apache.aurora.gen.AssignedTask;
+import org.apache.aurora.gen.HostAttributes;
 import org.apache.aurora.gen.JobKey;
 import org.apache.aurora.gen.ScheduleStatus;
 import org.apache.aurora.gen.ScheduledTask;
 import org.apache.aurora.gen.TaskConfig;
+import org.apache.aurora.scheduler.HostOffer;
 import org.apache.aurora.scheduler.async.DelayExecutor;
+import org.apache.aurora.scheduler.base.TaskGroupKey;
 import org.apache.aurora.scheduler.base.Tasks;
+import org.apache.aurora.scheduler.events.PubsubEvent.OfferAdded;
 import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
 import org.apache.aurora.scheduler.events.PubsubEvent.TasksDeleted;
+import org.apache.aurora.scheduler.filter.SchedulingFilter.Veto;
+import org.apache.aurora.scheduler.metadata.NearestFit;
 import org.apache.aurora.scheduler.scheduling.TaskGroups.TaskGroupsSettings;
+import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
 import org.apache.aurora.scheduler.storage.entities.IJobKey;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.testing.FakeScheduledExecutor;
+import org.apache.aurora.scheduler.testing.FakeStatsProvider;
+import org.apache.mesos.Protos.FrameworkID;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.OfferID;
+import org.apache.mesos.Protos.SlaveID;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.apache.aurora.gen.Resource.numCpus;
+import static org.apache.aurora.gen.Resource.ramMb;
 import static org.apache.aurora.gen.ScheduleStatus.ASSIGNED;
 import static org.apache.aurora.gen.ScheduleStatus.INIT;
+import static org.apache.aurora.scheduler.resources.ResourceTestUtil.mesosScalar;
+import static org.apache.aurora.scheduler.resources.ResourceType.CPUS;
+import static org.apache.aurora.scheduler.resources.ResourceType.RAM_MB;
 import static org.easymock.EasyMock.expect;
 
 public class TaskGroupsTest extends EasyMockTest {
@@ -45,33 +63,60 @@ public class TaskGroupsTest extends EasyMockTest {
   private static final Amount<Long, Time> RESCHEDULE_DELAY = FIRST_SCHEDULE_DELAY;
   private static final IJobKey JOB_A = IJobKey.build(new JobKey("role", "test", "jobA"));
   private static final String TASK_A_ID = "a";
+  private static final TaskGroupKey GROUP_A =
+      TaskGroupKey.from(makeTask(TASK_A_ID).getAssignedTask().getTask());
+  private static final int BATCH_SIZE = 2;
+  private static final long WAIT_FOR_CAPACITY_PENALTY_MS = 1000L;
+  private static final double TASK_CPUS = 1.0;
+  private static final long TASK_RAM_MB = 1024L;
+  private static final HostOffer OFFER = makeOffer(TASK_CPUS, TASK_RAM_MB);
 
   private BackoffStrategy backoffStrategy;
   private TaskScheduler taskScheduler;
   private RateLimiter rateLimiter;
   private FakeScheduledExecutor clock;
   private RescheduleCalculator rescheduleCalculator;
+  private NearestFit nearestFit;
+  private DelayExecutor executor;
   private TaskGroups taskGroups;
 
   @Before
   public void setUp() throws Exception {
-    DelayExecutor executor = createMock(DelayExecutor.class);
+    executor = createMock(DelayExecutor.class);
     clock = FakeScheduledExecutor.fromDelayExecutor(executor);
     backoffStrategy = createMock(BackoffStrategy.class);
     taskScheduler = createMock(TaskScheduler.class);
     rateLimiter = createMock(RateLimiter.class);
     rescheduleCalculator = createMock(RescheduleCalculator.class);
-    taskGroups = new TaskGroups(
+    nearestFit = createMock(NearestFit.class);
+    taskGroups = createTaskGroups(false);
+  }
+
+  private TaskGroups createTaskGroups(boolean wakeOnCapacity) {
+    return new TaskGroups(
         executor,
-        new TaskGroupsSettings(FIRST_SCHEDULE_DELAY, backoffStrategy, rateLimiter),
+        new TaskGroupsSettings(
+            FIRST_SCHEDULE_DELAY,
+            backoffStrategy,
+            rateLimiter,
+            BATCH_SIZE,
+            wakeOnCapacity),
         taskScheduler,
-        rescheduleCalculator);
+        rescheduleCalculator,
+        nearestFit,
+        clock,
+        new SchedulingQueue(
+            MoreExecutors.directExecutor(),
+            BATCH_SIZE,
+            clock,
+            new FakeStatsProvider()));
   }
 
   @Test
   public void testEvaluatedAfterFirstSchedulePenalty() {
     expect(rateLimiter.acquire()).andReturn(0D);
-    expect(taskScheduler.schedule(TASK_A_ID)).andReturn(true);
+    expect(taskScheduler.schedule(ImmutableSet.of(TASK_A_ID)))
+        .andReturn(ImmutableSet.of(TASK_A_ID));
 
     control.replay();
 
@@ -83,13 +128,13 @@ public class TaskGroupsTest extends EasyMockTest {
   public void testTaskDeletedBeforeEvaluating() {
     final IScheduledTask task = makeTask(TASK_A_ID);
     expect(rateLimiter.acquire()).andReturn(0D);
-    expect(taskScheduler.schedule(Tasks.id(task))).andAnswer(() -> {
+    expect(taskScheduler.schedule(ImmutableSet.of(Tasks.id(task)))).andAnswer(() -> {
       // Test a corner case where a task is deleted while it is being evaluated by the task
       // scheduler.  If not handled carefully, this could result in the scheduler trying again
       // later to satisfy the deleted task.
       taskGroups.tasksDeleted(new TasksDeleted(ImmutableSet.of(task)));
 
-      return false;
+      return ImmutableSet.of();
     });
     expect(backoffStrategy.calculateBackoffMs(FIRST_SCHEDULE_DELAY.as(Time.MILLISECONDS)))
         .andReturn(0L);
@@ -104,7 +149,8 @@ public class TaskGroupsTest extends EasyMockTest {
   public void testEvaluatedOnStartup() {
     expect(rateLimiter.acquire()).andReturn(0D);
     expect(rescheduleCalculator.getStartupScheduleDelayMs(makeTask(TASK_A_ID))).andReturn(1L);
-    expect(taskScheduler.schedule(TASK_A_ID)).andReturn(true);
+    expect(taskScheduler.schedule(ImmutableSet.of(TASK_A_ID)))
+        .andReturn(ImmutableSet.of(TASK_A_ID));
 
     control.replay();
 
@@ -116,8 +162,9 @@ public class TaskGroupsTest extends EasyMockTest {
   @Test
   public void testResistStarvation() {
     expect(rateLimiter.acquire()).andReturn(0D).times(2);
-    expect(taskScheduler.schedule("a0")).andReturn(true);
-    expect(taskScheduler.schedule("b0")).andReturn(true);
+    expect(taskScheduler.schedule(ImmutableSet.of("a0", "a1")))
+        .andReturn(ImmutableSet.of("a0", "a1"));
+    expect(taskScheduler.schedule(ImmutableSet.of("b0"))).andReturn(ImmutableSet.of("b0"));
 
     control.replay();
 
@@ -130,6 +177,91 @@ public class TaskGroupsTest extends EasyMockTest {
     clock.advance(FIRST_SCHEDULE_DELAY);
   }
 
+  @Test
+  public void testPartiallyScheduledBatch() {
+    expect(rateLimiter.acquire()).andReturn(0D).times(2);
+    expect(taskScheduler.schedule(ImmutableSet.of("a0", "a1")))
+        .andReturn(ImmutableSet.of("a0"));
+    // The remainder of a partially-scheduled batch is not penalized.
+    expect(taskScheduler.schedule(ImmutableSet.of("a1", "a2")))
+        .andReturn(ImmutableSet.of("a1", "a2"));
+
+    control.replay();
+
+    taskGroups.taskChangedState(TaskStateChange.transition(makeTask(JOB_A, "a0", 0), INIT));
+    taskGroups.taskChangedState(TaskStateChange.transition(makeTask(JOB_A, "a1", 1), INIT));
+    taskGroups.taskChangedState(TaskStateChange.transition(makeTask(JOB_A, "a2", 2), INIT));
+
+    clock.advance(FIRST_SCHEDULE_DELAY);
+    clock.advance(FIRST_SCHEDULE_DELAY);
+  }
+
+  @Test
+  public void testWokenUpByOffer() {
+    taskGroups = createTaskGroups(true);
+    expect(rateLimiter.acquire()).andReturn(0D).times(2);
+    expect(taskScheduler.schedule(ImmutableSet.of(TASK_A_ID))).andReturn(ImmutableSet.of());
+    expect(backoffStrategy.calculateBackoffMs(FIRST_SCHEDULE_DELAY.as(Time.MILLISECONDS)))
+        .andReturn(WAIT_FOR_CAPACITY_PENALTY_MS);
+    expect(nearestFit.getNearestFit(GROUP_A))
+        .andReturn(ImmutableSet.of(Veto.insufficientResources("ram", 1)));
+    expect(taskScheduler.schedule(ImmutableSet.of(TASK_A_ID)))
+        .andReturn(ImmutableSet.of(TASK_A_ID));
+
+    control.replay();
+
+    taskGroups.taskChangedState(TaskStateChange.transition(makeTask(TASK_A_ID), INIT));
+    clock.advance(FIRST_SCHEDULE_DELAY);
+    taskGroups.offerAdded(new OfferAdded(OFFER));
+
+    // The superseded evaluation does not schedule the task again.
+    clock.advance(Amount.of(WAIT_FOR_CAPACITY_PENALTY_MS, Time.MILLISECONDS));
+  }
+
+  @Test
+  public void testNotWokenUpWhenVetoedByConstraint() {
+    taskGroups = createTaskGroups(true);
+    expect(rateLimiter.acquire()).andReturn(0D).times(2);
+    expect(taskScheduler.schedule(ImmutableSet.of(TASK_A_ID))).andReturn(ImmutableSet.of());
+    expect(backoffStrategy.calculateBackoffMs(FIRST_SCHEDULE_DELAY.as(Time.MILLISECONDS)))
+        .andReturn(WAIT_FOR_CAPACITY_PENALTY_MS);
+    expect(nearestFit.getNearestFit(GROUP_A))
+        .andReturn(ImmutableSet.of(Veto.constraintMismatch("rack")));
+    expect(taskScheduler.schedule(ImmutableSet.of(TASK_A_ID)))
+        .andReturn(ImmutableSet.of(TASK_A_ID));
+
+    control.replay();
+
+    taskGroups.taskChangedState(TaskStateChange.transition(makeTask(TASK_A_ID), INIT));
+    clock.advance(FIRST_SCHEDULE_DELAY);
+    taskGroups.offerAdded(new OfferAdded(OFFER));
+
+    // The task is only evaluated again after its penalty.
+    clock.advance(Amount.of(WAIT_FOR_CAPACITY_PENALTY_MS, Time.MILLISECONDS));
+  }
+
+  @Test
+  public void testNotWokenUpByTooSmallOffer() {
+    taskGroups = createTaskGroups(true);
+    expect(rateLimiter.acquire()).andReturn(0D).times(2);
+    expect(taskScheduler.schedule(ImmutableSet.of(TASK_A_ID))).andReturn(ImmutableSet.of());
+    expect(backoffStrategy.calculateBackoffMs(FIRST_SCHEDULE_DELAY.as(Time.MILLISECONDS)))
+        .andReturn(WAIT_FOR_CAPACITY_PENALTY_MS);
+    expect(nearestFit.getNearestFit(GROUP_A))
+        .andReturn(ImmutableSet.of(Veto.insufficientResources("ram", 1)));
+    expect(taskScheduler.schedule(ImmutableSet.of(TASK_A_ID)))
+        .andReturn(ImmutableSet.of(TASK_A_ID));
+
+    control.replay();
+
+    taskGroups.taskChangedState(TaskStateChange.transition(makeTask(TASK_A_ID), INIT));
+    clock.advance(FIRST_SCHEDULE_DELAY);
+    taskGroups.offerAdded(new OfferAdded(makeOffer(TASK_CPUS, TASK_RAM_MB - 1)));
+
+    // The task is only evaluated again after its penalty.
+    clock.advance(Amount.of(WAIT_FOR_CAPACITY_PENALTY_MS, Time.MILLISECONDS));
+  }
+
   @Test
   public void testNonPendingIgnored() {
     control.replay();
@@ -150,6 +282,20 @@ public class TaskGroupsTest extends EasyMockTest {
             .setInstanceId(instanceId)
             .setTaskId(id)
             .setTask(new TaskConfig()
-                .setJob(jobKey.newBuilder()))));
+                .setJob(jobKey.newBuilder())
+                .setResources(ImmutableSet.of(numCpus(TASK_CPUS), ramMb(TASK_RAM_MB))))));
+  }
+
+  private static HostOffer makeOffer(double cpus, long ramMb) {
+    return new HostOffer(
+        Offer.newBuilder()
+            .setId(OfferID.newBuilder().setValue("offer"))
+            .setFrameworkId(FrameworkID.newBuilder().setValue("framework"))
+            .setSlaveId(SlaveID.newBuilder().setValue("slave"))
+            .setHostname("host")
+            .addResources(mesosScalar(CPUS, cpus))
+            .addResources(mesosScalar(RAM_MB, ramMb))
+            .build(),
+        IHostAttributes.build(new HostAttributes()));
   }
 }
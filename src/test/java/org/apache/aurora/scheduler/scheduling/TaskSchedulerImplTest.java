@@ -14,9 +14,9 @@
 package org.apache.aurora.scheduler.scheduling;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executor;
 
-import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -40,6 +40,7 @@ import org.apache.aurora.scheduler.configuration.executor.ExecutorSettings;
 import org.apache.aurora.scheduler.events.EventSink;
 import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
 import org.apache.aurora.scheduler.events.PubsubEventModule;
+import org.apache.aurora.scheduler.filter.AttributeAggregateCache;
 import org.apache.aurora.scheduler.filter.SchedulingFilter.ResourceRequest;
 import org.apache.aurora.scheduler.preemptor.BiCache;
 import org.apache.aurora.scheduler.preemptor.Preemptor;
@@ -51,7 +52,6 @@ import org.apache.aurora.scheduler.state.TaskAssigner;
 import org.apache.aurora.scheduler.storage.Storage;
 import org.apache.aurora.scheduler.storage.Storage.MutateWork.NoResult;
 import org.apache.aurora.scheduler.storage.db.DbUtil;
-import org.apache.aurora.scheduler.storage.entities.IJobKey;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.storage.testing.StorageTestUtil;
 import org.apache.aurora.scheduler.testing.FakeStatsProvider;
@@ -67,8 +67,7 @@ import static org.apache.aurora.scheduler.filter.AttributeAggregate.EMPTY;
 import static org.apache.aurora.scheduler.mesos.TestExecutorSettings.THERMOS_EXECUTOR;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
 
 public class TaskSchedulerImplTest extends EasyMockTest {
 
@@ -78,12 +77,15 @@ public class TaskSchedulerImplTest extends EasyMockTest {
       TaskGroupKey.from(TASK_A.getAssignedTask().getTask());
   private static final String SLAVE_ID = "HOST_A";
   private static final Map<String, TaskGroupKey> NO_RESERVATION = ImmutableMap.of();
+  private static final Set<String> NOT_SCHEDULED = ImmutableSet.of();
+  private static final Set<String> SCHEDULED_A = ImmutableSet.of("a");
 
   private StorageTestUtil storageUtil;
   private TaskAssigner assigner;
   private TaskScheduler scheduler;
   private Preemptor preemptor;
   private BiCache<String, TaskGroupKey> reservations;
+  private AttributeAggregateCache aggregateCache;
   private EventSink eventSink;
 
   @Before
@@ -92,6 +94,7 @@ public class TaskSchedulerImplTest extends EasyMockTest {
     assigner = createMock(TaskAssigner.class);
     preemptor = createMock(Preemptor.class);
     reservations = createMock(new Clazz<BiCache<String, TaskGroupKey>>() { });
+    aggregateCache = createMock(AttributeAggregateCache.class);
 
     Injector injector = getInjector(storageUtil.storage);
     scheduler = injector.getInstance(TaskScheduler.class);
@@ -111,6 +114,7 @@ public class TaskSchedulerImplTest extends EasyMockTest {
             bind(TaskScheduler.class).to(TaskSchedulerImpl.class);
             bind(Preemptor.class).toInstance(preemptor);
             bind(TaskAssigner.class).toInstance(assigner);
+            bind(AttributeAggregateCache.class).toInstance(aggregateCache);
             bind(Clock.class).toInstance(createMock(Clock.class));
             bind(StatsProvider.class).toInstance(new FakeStatsProvider());
             bind(Storage.class).toInstance(storageImpl);
@@ -131,7 +135,7 @@ public class TaskSchedulerImplTest extends EasyMockTest {
         .add(THERMOS_EXECUTOR.getExecutorOverhead());
   }
 
-  private IExpectationSetters<Boolean> expectAssigned(
+  private IExpectationSetters<Set<String>> expectAssigned(
       IScheduledTask task,
       Map<String, TaskGroupKey> reservationMap) {
 
@@ -139,7 +143,7 @@ public class TaskSchedulerImplTest extends EasyMockTest {
         storageUtil.mutableStoreProvider,
         new ResourceRequest(task.getAssignedTask().getTask(), bag(task), EMPTY),
         TaskGroupKey.from(task.getAssignedTask().getTask()),
-        Tasks.id(task),
+        ImmutableSet.of(Tasks.id(task)),
         reservationMap));
   }
 
@@ -150,11 +154,12 @@ public class TaskSchedulerImplTest extends EasyMockTest {
     expectAsMap(NO_RESERVATION);
     expectTaskStillPendingQuery(TASK_A);
     expectActiveJobFetch(TASK_A);
-    expectAssigned(TASK_A, NO_RESERVATION).andReturn(true);
+    expectAssigned(TASK_A, NO_RESERVATION).andReturn(SCHEDULED_A);
+    expectAggregateUpdate(SCHEDULED_A);
 
     control.replay();
 
-    assertTrue(scheduler.schedule("a"));
+    assertEquals(SCHEDULED_A, scheduler.schedule(SCHEDULED_A));
   }
 
   @Test
@@ -166,7 +171,36 @@ public class TaskSchedulerImplTest extends EasyMockTest {
 
     control.replay();
 
-    assertTrue(scheduler.schedule("a"));
+    assertEquals(SCHEDULED_A, scheduler.schedule(SCHEDULED_A));
+  }
+
+  @Test
+  public void testScheduleBatch() throws Exception {
+    IScheduledTask taskB = TaskTestUtil.makeTask("b", JobKeys.from("a", "a", "a"));
+    IScheduledTask taskC = TaskTestUtil.makeTask("c", JobKeys.from("a", "a", "a"));
+    storageUtil.expectOperations();
+
+    expectAsMap(NO_RESERVATION);
+    storageUtil.expectTaskFetch(
+        Query.taskScoped(ImmutableSet.of("a", "b", "c")).byStatus(PENDING),
+        ImmutableSet.of(TASK_A, taskB));
+    expectActiveJobFetch(TASK_A);
+    expect(assigner.maybeAssign(
+        storageUtil.mutableStoreProvider,
+        new ResourceRequest(TASK_A.getAssignedTask().getTask(), bag(TASK_A), EMPTY),
+        GROUP_KEY,
+        ImmutableSet.of("a", "b"),
+        NO_RESERVATION)).andReturn(SCHEDULED_A);
+    expectNoReservation(taskB);
+    expectPreemptorCall(taskB, Optional.absent());
+    expectAggregateUpdate(SCHEDULED_A);
+
+    control.replay();
+
+    // Task c is no longer pending, so it is reported as not needing further attempts.
+    assertEquals(
+        ImmutableSet.of("a", Tasks.id(taskC)),
+        scheduler.schedule(ImmutableSet.of("a", "b", "c")));
   }
 
   @Test
@@ -176,7 +210,7 @@ public class TaskSchedulerImplTest extends EasyMockTest {
     // No reservation available in preemptor
     expectTaskStillPendingQuery(TASK_A);
     expectActiveJobFetch(TASK_A);
-    expectAssigned(TASK_A, NO_RESERVATION).andReturn(false);
+    expectAssigned(TASK_A, NO_RESERVATION).andReturn(NOT_SCHEDULED);
     expectAsMap(NO_RESERVATION);
     expectNoReservation(TASK_A);
     expectPreemptorCall(TASK_A, Optional.<String>absent());
@@ -184,7 +218,7 @@ public class TaskSchedulerImplTest extends EasyMockTest {
     // Slave is reserved.
     expectTaskStillPendingQuery(TASK_A);
     expectActiveJobFetch(TASK_A);
-    expectAssigned(TASK_A, NO_RESERVATION).andReturn(false);
+    expectAssigned(TASK_A, NO_RESERVATION).andReturn(NOT_SCHEDULED);
     expectAsMap(NO_RESERVATION);
     expectNoReservation(TASK_A);
     expectPreemptorCall(TASK_A, Optional.of(SLAVE_ID));
@@ -194,13 +228,14 @@ public class TaskSchedulerImplTest extends EasyMockTest {
     expectTaskStillPendingQuery(TASK_A);
     expectActiveJobFetch(TASK_A);
     expectAsMap(ImmutableMap.of(SLAVE_ID, GROUP_KEY));
-    expectAssigned(TASK_A, ImmutableMap.of(SLAVE_ID, GROUP_KEY)).andReturn(true);
+    expectAssigned(TASK_A, ImmutableMap.of(SLAVE_ID, GROUP_KEY)).andReturn(SCHEDULED_A);
+    expectAggregateUpdate(SCHEDULED_A);
 
     control.replay();
 
-    assertFalse(scheduler.schedule("a"));
-    assertFalse(scheduler.schedule("a"));
-    assertTrue(scheduler.schedule("a"));
+    assertEquals(NOT_SCHEDULED, scheduler.schedule(SCHEDULED_A));
+    assertEquals(NOT_SCHEDULED, scheduler.schedule(SCHEDULED_A));
+    assertEquals(SCHEDULED_A, scheduler.schedule(SCHEDULED_A));
   }
 
   @Test
@@ -210,12 +245,12 @@ public class TaskSchedulerImplTest extends EasyMockTest {
     expectTaskStillPendingQuery(TASK_A);
     expectActiveJobFetch(TASK_A);
     expectAsMap(NO_RESERVATION);
-    expectAssigned(TASK_A, NO_RESERVATION).andReturn(false);
+    expectAssigned(TASK_A, NO_RESERVATION).andReturn(NOT_SCHEDULED);
     expectGetReservation(TASK_A, SLAVE_ID);
 
     control.replay();
 
-    assertFalse(scheduler.schedule("a"));
+    assertEquals(NOT_SCHEDULED, scheduler.schedule(SCHEDULED_A));
   }
 
   @Test
@@ -225,12 +260,12 @@ public class TaskSchedulerImplTest extends EasyMockTest {
     expectTaskStillPendingQuery(TASK_A);
     expectActiveJobFetch(TASK_A);
     expectAsMap(NO_RESERVATION);
-    expectAssigned(TASK_A, NO_RESERVATION).andReturn(false);
+    expectAssigned(TASK_A, NO_RESERVATION).andReturn(NOT_SCHEDULED);
     expectGetReservation(TASK_A, SLAVE_ID);
 
     control.replay();
 
-    assertFalse(scheduler.schedule("a"));
+    assertEquals(NOT_SCHEDULED, scheduler.schedule(SCHEDULED_A));
   }
 
   @Test
@@ -255,6 +290,7 @@ public class TaskSchedulerImplTest extends EasyMockTest {
   public void testIgnoresThrottledTasks() throws Exception {
     // Ensures that tasks in THROTTLED state are not considered part of the active job state.
     Storage memStorage = DbUtil.createStorage();
+    aggregateCache = new AttributeAggregateCache(memStorage, 100, true);
 
     Injector injector = getInjector(memStorage);
     scheduler = injector.getInstance(TaskScheduler.class);
@@ -273,12 +309,14 @@ public class TaskSchedulerImplTest extends EasyMockTest {
         EasyMock.anyObject(),
         eq(new ResourceRequest(taskA.getAssignedTask().getTask(), bag(taskA), EMPTY)),
         eq(TaskGroupKey.from(taskA.getAssignedTask().getTask())),
-        eq(Tasks.id(taskA)),
-        eq(NO_RESERVATION))).andReturn(true);
+        eq(ImmutableSet.of(Tasks.id(taskA))),
+        eq(NO_RESERVATION))).andReturn(ImmutableSet.of(Tasks.id(taskA)));
 
     control.replay();
 
-    assertTrue(scheduler.schedule(Tasks.id(taskA)));
+    assertEquals(
+        ImmutableSet.of(Tasks.id(taskA)),
+        scheduler.schedule(ImmutableSet.of(Tasks.id(taskA))));
   }
 
   @Test
@@ -292,7 +330,7 @@ public class TaskSchedulerImplTest extends EasyMockTest {
 
     control.replay();
 
-    assertFalse(scheduler.schedule("a"));
+    assertEquals(NOT_SCHEDULED, scheduler.schedule(SCHEDULED_A));
   }
 
   private void expectPreemptorCall(IScheduledTask task, Optional<String> result) {
@@ -303,10 +341,12 @@ public class TaskSchedulerImplTest extends EasyMockTest {
   }
 
   private void expectActiveJobFetch(IScheduledTask task) {
-    storageUtil.expectTaskFetch(
-        Query.jobScoped(((Function<IScheduledTask, IJobKey>) Tasks::getJob).apply(task))
-            .byStatus(Tasks.SLAVE_ASSIGNED_STATES),
-        ImmutableSet.of());
+    expect(aggregateCache.getAggregate(storageUtil.mutableStoreProvider, Tasks.getJob(task)))
+        .andReturn(EMPTY);
+  }
+
+  private void expectAggregateUpdate(Set<String> launched) {
+    aggregateCache.update(storageUtil.mutableStoreProvider, launched);
   }
 
   private void expectAddReservation(IScheduledTask task, String slaveId) {
@@ -92,7 +92,7 @@ public class MetricCalculatorTest extends EasyMockTest {
     IScheduledTask task4 = makeTask(ImmutableMap.of(clock.nowMillis() - 4000, PENDING), 3, false);
 
     clock.advance(Amount.of(10L, Time.SECONDS));
-    storageUtil.expectTaskFetch(Query.unscoped(), task1, task2, task3, task4);
+    storageUtil.expectTaskVisit(Query.unscoped(), task1, task2, task3, task4);
     storageUtil.expectOperations();
 
     control.replay();
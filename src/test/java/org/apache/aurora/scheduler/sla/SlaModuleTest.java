@@ -108,7 +108,7 @@ public class SlaModuleTest extends EasyMockTest {
           return null;
         }).anyTimes();
 
-    storageUtil.expectTaskFetch(
+    storageUtil.expectTaskVisit(
         Query.unscoped(),
         SlaTestUtil.makeTask(ImmutableMap.of(clock.nowMillis() - 1000, PENDING), 0)).anyTimes();
     storageUtil.expectOperations();
@@ -21,13 +21,16 @@ import com.google.common.collect.ImmutableSet;
 
 import org.apache.aurora.common.testing.easymock.EasyMockTest;
 import org.apache.aurora.gen.AssignedTask;
+import org.apache.aurora.gen.Attribute;
 import org.apache.aurora.gen.HostAttributes;
 import org.apache.aurora.gen.JobKey;
 import org.apache.aurora.gen.TaskConfig;
 import org.apache.aurora.scheduler.HostOffer;
 import org.apache.aurora.scheduler.TierManager;
+import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.TaskGroupKey;
 import org.apache.aurora.scheduler.base.Tasks;
+import org.apache.aurora.scheduler.filter.AttributeAggregate;
 import org.apache.aurora.scheduler.filter.SchedulingFilter;
 import org.apache.aurora.scheduler.filter.SchedulingFilter.ResourceRequest;
 import org.apache.aurora.scheduler.filter.SchedulingFilter.UnusedResource;
@@ -40,6 +43,7 @@ import org.apache.aurora.scheduler.storage.entities.IAssignedTask;
 import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
+import org.apache.aurora.scheduler.storage.testing.StorageTestUtil;
 import org.apache.mesos.Protos.FrameworkID;
 import org.apache.mesos.Protos.OfferID;
 import org.apache.mesos.Protos.Resource;
@@ -70,8 +74,6 @@ import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
 
 public class TaskAssignerImplTest extends EasyMockTest {
 
@@ -117,7 +119,8 @@ public class TaskAssignerImplTest extends EasyMockTest {
 
   @Test
   public void testAssignNoVetoes() throws Exception {
-    expect(offerManager.getOffers(GROUP_KEY)).andReturn(ImmutableSet.of(OFFER));
+    expect(offerManager.getOffers(GROUP_KEY, RESOURCE_REQUEST.getResourceBag()))
+        .andReturn(ImmutableSet.of(OFFER));
     offerManager.launchTask(MESOS_OFFER.getId(), TASK_INFO);
     expect(tierManager.getTier(TASK.getAssignedTask().getTask())).andReturn(DEV_TIER);
     expect(filter.filter(UNUSED, RESOURCE_REQUEST)).andReturn(ImmutableSet.of());
@@ -127,17 +130,18 @@ public class TaskAssignerImplTest extends EasyMockTest {
 
     control.replay();
 
-    assertTrue(assigner.maybeAssign(
+    assertEquals(ImmutableSet.of(Tasks.id(TASK)), assigner.maybeAssign(
         storeProvider,
         new ResourceRequest(TASK.getAssignedTask().getTask(), ResourceBag.EMPTY, EMPTY),
         TaskGroupKey.from(TASK.getAssignedTask().getTask()),
-        Tasks.id(TASK),
+        ImmutableSet.of(Tasks.id(TASK)),
         ImmutableMap.of(SLAVE_ID, GROUP_KEY)));
   }
 
   @Test
   public void testAssignVetoesWithStaticBan() throws Exception {
-    expect(offerManager.getOffers(GROUP_KEY)).andReturn(ImmutableSet.of(OFFER));
+    expect(offerManager.getOffers(GROUP_KEY, RESOURCE_REQUEST.getResourceBag()))
+        .andReturn(ImmutableSet.of(OFFER));
     offerManager.banOffer(MESOS_OFFER.getId(), GROUP_KEY);
     expect(tierManager.getTier(TASK.getAssignedTask().getTask())).andReturn(DEV_TIER);
     expect(filter.filter(UNUSED, RESOURCE_REQUEST))
@@ -145,34 +149,36 @@ public class TaskAssignerImplTest extends EasyMockTest {
 
     control.replay();
 
-    assertFalse(assigner.maybeAssign(
+    assertEquals(ImmutableSet.of(), assigner.maybeAssign(
         storeProvider,
         RESOURCE_REQUEST,
         TaskGroupKey.from(TASK.getAssignedTask().getTask()),
-        Tasks.id(TASK),
+        ImmutableSet.of(Tasks.id(TASK)),
         NO_RESERVATION));
   }
 
   @Test
   public void testAssignVetoesWithNoStaticBan() throws Exception {
-    expect(offerManager.getOffers(GROUP_KEY)).andReturn(ImmutableSet.of(OFFER));
+    expect(offerManager.getOffers(GROUP_KEY, RESOURCE_REQUEST.getResourceBag()))
+        .andReturn(ImmutableSet.of(OFFER));
     expect(tierManager.getTier(TASK.getAssignedTask().getTask())).andReturn(DEV_TIER);
     expect(filter.filter(UNUSED, RESOURCE_REQUEST))
         .andReturn(ImmutableSet.of(Veto.unsatisfiedLimit("limit")));
 
     control.replay();
 
-    assertFalse(assigner.maybeAssign(
+    assertEquals(ImmutableSet.of(), assigner.maybeAssign(
         storeProvider,
         RESOURCE_REQUEST,
         TaskGroupKey.from(TASK.getAssignedTask().getTask()),
-        Tasks.id(TASK),
+        ImmutableSet.of(Tasks.id(TASK)),
         NO_RESERVATION));
   }
 
   @Test
   public void testAssignmentClearedOnError() throws Exception {
-    expect(offerManager.getOffers(GROUP_KEY)).andReturn(ImmutableSet.of(OFFER));
+    expect(offerManager.getOffers(GROUP_KEY, RESOURCE_REQUEST.getResourceBag()))
+        .andReturn(ImmutableSet.of(OFFER));
     offerManager.launchTask(MESOS_OFFER.getId(), TASK_INFO);
     expectLastCall().andThrow(new OfferManager.LaunchException("expected"));
     expect(tierManager.getTier(TASK.getAssignedTask().getTask())).andReturn(DEV_TIER);
@@ -180,7 +186,7 @@ public class TaskAssignerImplTest extends EasyMockTest {
     expectAssignTask(MESOS_OFFER);
     expect(stateManager.changeState(
         storeProvider,
-        Tasks.id(TASK),
+        ImmutableSet.of(Tasks.id(TASK)),
         Optional.of(PENDING),
         LOST,
         LAUNCH_FAILED_MSG))
@@ -190,25 +196,27 @@ public class TaskAssignerImplTest extends EasyMockTest {
 
     control.replay();
 
-    assertFalse(assigner.maybeAssign(
+    assertEquals(ImmutableSet.of(), assigner.maybeAssign(
         storeProvider,
         RESOURCE_REQUEST,
         TaskGroupKey.from(TASK.getAssignedTask().getTask()),
-        Tasks.id(TASK),
+        ImmutableSet.of(Tasks.id(TASK)),
         NO_RESERVATION));
   }
 
   @Test
   public void testAssignmentSkippedForReservedSlave() throws Exception {
-    expect(offerManager.getOffers(GROUP_KEY)).andReturn(ImmutableSet.of(OFFER));
+    expect(offerManager.getOffers(GROUP_KEY, RESOURCE_REQUEST.getResourceBag()))
+        .andReturn(ImmutableSet.of(OFFER));
+    expect(tierManager.getTier(TASK.getAssignedTask().getTask())).andReturn(DEV_TIER);
 
     control.replay();
 
-    assertFalse(assigner.maybeAssign(
+    assertEquals(ImmutableSet.of(), assigner.maybeAssign(
         storeProvider,
         RESOURCE_REQUEST,
         TaskGroupKey.from(TASK.getAssignedTask().getTask()),
-        Tasks.id(TASK),
+        ImmutableSet.of(Tasks.id(TASK)),
         ImmutableMap.of(SLAVE_ID, TaskGroupKey.from(
             ITaskConfig.build(new TaskConfig().setJob(new JobKey("other", "e", "n")))))));
   }
@@ -232,7 +240,8 @@ public class TaskAssignerImplTest extends EasyMockTest {
             .build(),
         IHostAttributes.build(new HostAttributes()));
 
-    expect(offerManager.getOffers(GROUP_KEY)).andReturn(ImmutableSet.of(offer, OFFER));
+    expect(offerManager.getOffers(GROUP_KEY, RESOURCE_REQUEST.getResourceBag()))
+        .andReturn(ImmutableSet.of(offer, OFFER));
     expect(tierManager.getTier(TASK.getAssignedTask().getTask())).andReturn(DEV_TIER);
     expect(filter.filter(UNUSED, RESOURCE_REQUEST)).andReturn(ImmutableSet.of());
     expectAssignTask(offer.getOffer());
@@ -242,11 +251,11 @@ public class TaskAssignerImplTest extends EasyMockTest {
 
     control.replay();
 
-    assertTrue(assigner.maybeAssign(
+    assertEquals(ImmutableSet.of(Tasks.id(TASK)), assigner.maybeAssign(
         storeProvider,
         RESOURCE_REQUEST,
         TaskGroupKey.from(TASK.getAssignedTask().getTask()),
-        Tasks.id(TASK),
+        ImmutableSet.of(Tasks.id(TASK)),
         ImmutableMap.of(SLAVE_ID, GROUP_KEY)));
   }
 
@@ -267,8 +276,9 @@ public class TaskAssignerImplTest extends EasyMockTest {
             .build(),
         IHostAttributes.build(new HostAttributes()));
 
-    expect(offerManager.getOffers(GROUP_KEY)).andReturn(ImmutableSet.of(mismatched, OFFER));
-    expect(tierManager.getTier(TASK.getAssignedTask().getTask())).andReturn(DEV_TIER).times(2);
+    expect(offerManager.getOffers(GROUP_KEY, RESOURCE_REQUEST.getResourceBag()))
+        .andReturn(ImmutableSet.of(mismatched, OFFER));
+    expect(tierManager.getTier(TASK.getAssignedTask().getTask())).andReturn(DEV_TIER);
     expect(filter.filter(
         new UnusedResource(
             bagFromMesosResources(mismatched.getOffer().getResourcesList()),
@@ -289,14 +299,79 @@ public class TaskAssignerImplTest extends EasyMockTest {
 
     control.replay();
 
-    assertTrue(assigner.maybeAssign(
+    assertEquals(ImmutableSet.of(Tasks.id(TASK)), assigner.maybeAssign(
         storeProvider,
         RESOURCE_REQUEST,
         TaskGroupKey.from(TASK.getAssignedTask().getTask()),
-        Tasks.id(TASK),
+        ImmutableSet.of(Tasks.id(TASK)),
         ImmutableMap.of(SLAVE_ID, GROUP_KEY)));
   }
 
+  @Test
+  public void testAssignBatch() throws Exception {
+    StorageTestUtil storageUtil = new StorageTestUtil(this);
+    storageUtil.expectOperations();
+    storageUtil.expectTaskFetch(
+        Query.jobScoped(JOB).byStatus(Tasks.SLAVE_ASSIGNED_STATES),
+        ImmutableSet.of());
+    AttributeAggregate aggregate =
+        AttributeAggregate.getJobActiveState(storageUtil.mutableStoreProvider, JOB);
+    ResourceRequest request =
+        new ResourceRequest(TASK.getAssignedTask().getTask(), ResourceBag.EMPTY, aggregate);
+
+    IHostAttributes attributes = IHostAttributes.build(new HostAttributes()
+        .setHost("hostName0")
+        .setAttributes(ImmutableSet.of(
+            new Attribute().setName("host").setValues(ImmutableSet.of("hostName0")))));
+    HostOffer offer = new HostOffer(
+        Offer.newBuilder()
+            .setId(OfferID.newBuilder().setValue("offerId0"))
+            .setFrameworkId(FrameworkID.newBuilder().setValue("frameworkId"))
+            .setSlaveId(SlaveID.newBuilder().setValue("slaveId0"))
+            .setHostname("hostName0")
+            .addResources(Resource.newBuilder()
+                .setName("ports")
+                .setType(Type.RANGES)
+                .setRanges(
+                    Ranges.newBuilder().addRange(Range.newBuilder().setBegin(PORT).setEnd(PORT))))
+            .build(),
+        attributes);
+    IScheduledTask taskB = makeTask("idB", JOB);
+    TaskInfo taskInfoB = TASK_INFO.toBuilder()
+        .setTaskId(TaskID.newBuilder().setValue(Tasks.id(taskB)))
+        .build();
+
+    expect(offerManager.getOffers(GROUP_KEY, RESOURCE_REQUEST.getResourceBag()))
+        .andReturn(ImmutableSet.of(offer, OFFER));
+    expect(tierManager.getTier(TASK.getAssignedTask().getTask())).andReturn(DEV_TIER);
+    expect(filter.filter(anyObject(), eq(request))).andReturn(ImmutableSet.of()).times(2);
+    expectAssignTask(offer.getOffer());
+    expect(taskFactory.createFrom(TASK.getAssignedTask(), offer.getOffer()))
+        .andReturn(TASK_INFO);
+    offerManager.launchTask(offer.getOffer().getId(), TASK_INFO);
+    expect(stateManager.assignTask(
+        eq(storeProvider),
+        eq(Tasks.id(taskB)),
+        eq(MESOS_OFFER.getHostname()),
+        eq(MESOS_OFFER.getSlaveId()),
+        anyObject())).andReturn(taskB.getAssignedTask());
+    expect(taskFactory.createFrom(taskB.getAssignedTask(), MESOS_OFFER)).andReturn(taskInfoB);
+    offerManager.launchTask(MESOS_OFFER.getId(), taskInfoB);
+
+    control.replay();
+
+    assertEquals(
+        ImmutableSet.of(Tasks.id(TASK), Tasks.id(taskB)),
+        assigner.maybeAssign(
+            storeProvider,
+            request,
+            GROUP_KEY,
+            ImmutableSet.of(Tasks.id(TASK), Tasks.id(taskB)),
+            NO_RESERVATION));
+    // Only placements followed by another assignment in the batch are accounted for.
+    assertEquals(1L, aggregate.getNumTasksWithAttribute("host", "hostName0"));
+  }
+
   @Test
   public void testResourceMapperCallback() {
     AssignedTask builder = TASK.newBuilder().getAssignedTask();
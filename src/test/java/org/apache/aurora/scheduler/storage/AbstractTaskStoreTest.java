@@ -58,6 +58,7 @@ import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.TaskTestUtil;
 import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.storage.Storage.MutateWork.NoResult;
+import org.apache.aurora.scheduler.storage.TaskQueryStats.Shape;
 import org.apache.aurora.scheduler.storage.TaskStore.Mutable.TaskMutation;
 import org.apache.aurora.scheduler.storage.entities.IHostAttributes;
 import org.apache.aurora.scheduler.storage.entities.IJobKey;
@@ -121,6 +122,15 @@ public abstract class AbstractTaskStoreTest extends TearDownTestCase {
     return storage.read(storeProvider -> storeProvider.getTaskStore().fetchTasks(query));
   }
 
+  private List<IScheduledTask> visitTasks(Query.Builder query, int stopAfter) {
+    List<IScheduledTask> visited = Lists.newArrayList();
+    Storage.Util.visitTasks(storage, query, task -> {
+      visited.add(task);
+      return visited.size() < stopAfter;
+    });
+    return visited;
+  }
+
   protected void saveTasks(IScheduledTask... tasks) {
     saveTasks(ImmutableSet.copyOf(tasks));
   }
@@ -336,6 +346,115 @@ public abstract class AbstractTaskStoreTest extends TearDownTestCase {
         TASK_B);
   }
 
+  @Test
+  public void testQueryByMultipleIndices() {
+    IJobKey job = JobKeys.from("role", "env", "job");
+    IScheduledTask a = setHost(makeTask("a", job), HOST_A);
+    IScheduledTask b =
+        IScheduledTask.build(setHost(makeTask("b", job), HOST_B).newBuilder().setStatus(RUNNING));
+    IScheduledTask c = IScheduledTask.build(
+        setHost(makeTask("c", JobKeys.from("role", "other", "job")), HOST_A)
+            .newBuilder()
+            .setStatus(RUNNING));
+    saveTasks(a, b, c);
+
+    assertQueryResults(Query.slaveScoped(HOST_A.getHost()).byStatus(RUNNING), c);
+    assertQueryResults(Query.roleScoped("role").byStatus(RUNNING), b, c);
+    assertQueryResults(Query.envScoped("role", "env").byStatus(RUNNING), b);
+    assertQueryResults(Query.envScoped("role", "env").byStatus(ASSIGNED), a);
+    assertQueryResults(Query.envScoped("role", "other").byStatus(ASSIGNED));
+    assertQueryResults(Query.slaveScoped(HOST_A.getHost()).byStatus(ASSIGNED, RUNNING), a, c);
+
+    mutateTask("a", task -> IScheduledTask.build(task.newBuilder().setStatus(RUNNING)));
+    assertQueryResults(
+        Query.envScoped("role", "env").byStatus(RUNNING),
+        IScheduledTask.build(a.newBuilder().setStatus(RUNNING)),
+        b);
+    assertQueryResults(Query.envScoped("role", "env").byStatus(ASSIGNED));
+
+    deleteTasks("b");
+    assertQueryResults(
+        Query.roleScoped("role").byStatus(RUNNING),
+        IScheduledTask.build(a.newBuilder().setStatus(RUNNING)),
+        c);
+  }
+
+  @Test
+  public void testVisitTasks() {
+    saveTasks(TASK_A, TASK_B, TASK_C, TASK_D);
+
+    List<IScheduledTask> all = visitTasks(Query.unscoped(), Integer.MAX_VALUE);
+    assertEquals(4, all.size());
+    assertEquals(ImmutableSet.copyOf(fetchTasks(Query.unscoped())), ImmutableSet.copyOf(all));
+    assertEquals(
+        ImmutableList.of(TASK_B),
+        visitTasks(Query.taskScoped(Tasks.id(TASK_B)), Integer.MAX_VALUE));
+    assertEquals(ImmutableList.of(), visitTasks(Query.taskScoped("nonexistent"), 1));
+
+    // The visitor is not called again once it has asked to stop.
+    assertEquals(1, visitTasks(Query.unscoped(), 1).size());
+    assertEquals(3, visitTasks(Query.unscoped(), 3).size());
+  }
+
+  @Test
+  public void testQueryStats() {
+    saveTasks(TASK_A, TASK_B, TASK_C, TASK_D);
+
+    fetchTasks(Query.taskScoped(Tasks.id(TASK_A)));
+    fetchTasks(Query.unscoped());
+    visitTasks(Query.unscoped(), 1);
+
+    Map<Shape, Map<String, Object>> stats =
+        injector.getInstance(TaskQueryStats.class).snapshot();
+    assertEquals(1L, stats.get(Shape.BY_ID).get("queries"));
+    assertEquals(1L, stats.get(Shape.BY_ID).get("tasks_examined"));
+    assertEquals(1L, stats.get(Shape.BY_ID).get("tasks_returned"));
+    assertEquals(2L, stats.get(Shape.FULL_SCAN).get("queries"));
+    assertEquals(5L, stats.get(Shape.FULL_SCAN).get("tasks_examined"));
+    assertEquals(5L, stats.get(Shape.FULL_SCAN).get("tasks_returned"));
+  }
+
+  @Test
+  public void testPaginatedQueries() {
+    saveTasks(TASK_D, TASK_B, TASK_A, TASK_C);
+
+    // Full scans.
+    assertPage(new TaskQuery().setLimit(2), TASK_A, TASK_B);
+    assertPage(new TaskQuery().setLimit(2).setContinuationToken("b"), TASK_C, TASK_D);
+    assertPage(new TaskQuery().setOffset(1).setLimit(2), TASK_B, TASK_C);
+    assertPage(new TaskQuery().setOffset(1).setContinuationToken("a"), TASK_C, TASK_D);
+    assertPage(new TaskQuery().setContinuationToken("d"));
+
+    // Queries served by a secondary index.
+    assertPage(
+        new TaskQuery().setStatuses(ImmutableSet.of(ASSIGNED)).setLimit(3),
+        TASK_A, TASK_B, TASK_C);
+    assertPage(
+        new TaskQuery().setStatuses(ImmutableSet.of(ASSIGNED)).setContinuationToken("c"),
+        TASK_D);
+    assertPage(new TaskQuery().setRole("role-b").setContinuationToken("b"));
+
+    // Queries by task ID.
+    assertPage(
+        new TaskQuery().setTaskIds(ImmutableSet.of("d", "a", "c")).setLimit(2),
+        TASK_A, TASK_C);
+    assertPage(
+        new TaskQuery().setTaskIds(ImmutableSet.of("d", "a", "c")).setContinuationToken("a"),
+        TASK_C, TASK_D);
+    assertPage(new TaskQuery().setTaskIds(ImmutableSet.of("b")).setContinuationToken("b"));
+
+    // Visiting stops once the page is full.
+    assertEquals(
+        ImmutableList.of(TASK_B, TASK_C),
+        visitTasks(Query.arbitrary(new TaskQuery().setOffset(1).setLimit(2)), Integer.MAX_VALUE));
+  }
+
+  private void assertPage(TaskQuery query, IScheduledTask... tasks) {
+    assertEquals(
+        ImmutableList.copyOf(tasks),
+        ImmutableList.copyOf(fetchTasks(Query.arbitrary(query))));
+  }
+
   @Test
   public void testMutate() {
     saveTasks(TASK_A, TASK_B, TASK_C, TASK_D);
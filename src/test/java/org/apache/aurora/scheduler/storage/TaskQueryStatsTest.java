@@ -0,0 +1,101 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.scheduler.base.JobKeys;
+import org.apache.aurora.scheduler.base.Query;
+import org.apache.aurora.scheduler.storage.TaskQueryStats.Shape;
+import org.apache.aurora.scheduler.testing.FakeStatsProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.apache.aurora.scheduler.storage.TaskQueryStats.Shape.BY_HOST;
+import static org.apache.aurora.scheduler.storage.TaskQueryStats.Shape.BY_ID;
+import static org.apache.aurora.scheduler.storage.TaskQueryStats.Shape.BY_JOB;
+import static org.apache.aurora.scheduler.storage.TaskQueryStats.Shape.BY_ROLE;
+import static org.apache.aurora.scheduler.storage.TaskQueryStats.Shape.BY_STATUS;
+import static org.apache.aurora.scheduler.storage.TaskQueryStats.Shape.FULL_SCAN;
+import static org.apache.aurora.scheduler.storage.TaskQueryStats.statName;
+import static org.junit.Assert.assertEquals;
+
+public class TaskQueryStatsTest {
+
+  private FakeStatsProvider statsProvider;
+  private TaskQueryStats queryStats;
+
+  @Before
+  public void setUp() {
+    statsProvider = new FakeStatsProvider();
+    queryStats = new TaskQueryStats(statsProvider);
+  }
+
+  @Test
+  public void testShapes() {
+    assertEquals(BY_ID, Shape.of(Query.taskScoped("a").byJob(JobKeys.from("r", "e", "j"))));
+    assertEquals(BY_JOB, Shape.of(Query.jobScoped(JobKeys.from("r", "e", "j")).active()));
+    assertEquals(BY_JOB, Shape.of(Query.instanceScoped(JobKeys.from("r", "e", "j"), 0)));
+    assertEquals(BY_HOST, Shape.of(Query.slaveScoped("host").byRole("r")));
+    assertEquals(BY_ROLE, Shape.of(Query.roleScoped("r").byStatus(ScheduleStatus.RUNNING)));
+    assertEquals(BY_ROLE, Shape.of(Query.envScoped("r", "e")));
+    assertEquals(BY_STATUS, Shape.of(Query.statusScoped(ScheduleStatus.PENDING)));
+    assertEquals(FULL_SCAN, Shape.of(Query.roleScoped(" ")));
+    assertEquals(FULL_SCAN, Shape.of(Query.unscoped()));
+  }
+
+  @Test
+  public void testRecord() {
+    queryStats.record(Query.unscoped(), 5000, 100, 10);
+    queryStats.record(Query.unscoped(), 50000000, 100, 0);
+    queryStats.record(Query.taskScoped("a"), 1000, 1, 1);
+
+    assertEquals(2L, statsProvider.getLongValue(statName(FULL_SCAN, "queries")));
+    assertEquals(50005000L, statsProvider.getLongValue(statName(FULL_SCAN, "latency_nanos")));
+    assertEquals(200L, statsProvider.getLongValue(statName(FULL_SCAN, "tasks_examined")));
+    assertEquals(10L, statsProvider.getLongValue(statName(FULL_SCAN, "tasks_returned")));
+    assertEquals(1L, statsProvider.getLongValue(statName(FULL_SCAN, "latency_micros_le_10")));
+    assertEquals(2L, statsProvider.getLongValue(statName(FULL_SCAN, "latency_micros_le_inf")));
+    assertEquals(1L, statsProvider.getLongValue(statName(FULL_SCAN, "result_size_le_0")));
+    assertEquals(2L, statsProvider.getLongValue(statName(FULL_SCAN, "result_size_le_10")));
+    assertEquals(1L, statsProvider.getLongValue(statName(BY_ID, "queries")));
+    assertEquals(0L, statsProvider.getLongValue(statName(BY_JOB, "queries")));
+  }
+
+  @Test
+  public void testSnapshot() {
+    queryStats.record(Query.taskScoped("a"), 2000, 1, 1);
+
+    Map<String, Object> byId = queryStats.snapshot().get(BY_ID);
+    assertEquals(1L, byId.get("queries"));
+    assertEquals(2000L, byId.get("latency_nanos"));
+    assertEquals(1L, byId.get("tasks_examined"));
+    assertEquals(1L, byId.get("tasks_returned"));
+    assertEquals(
+        ImmutableMap.builder()
+            .put("le_10", 1L)
+            .put("le_100", 1L)
+            .put("le_1000", 1L)
+            .put("le_10000", 1L)
+            .put("le_100000", 1L)
+            .put("le_1000000", 1L)
+            .put("le_inf", 1L)
+            .build(),
+        byId.get("latency_micros"));
+    assertEquals(0L, queryStats.snapshot().get(FULL_SCAN).get("queries"));
+  }
+}
@@ -13,6 +13,9 @@
  */
 package org.apache.aurora.scheduler.storage.db;
 
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.AbstractModule;
 import com.google.inject.Module;
 import com.google.inject.util.Modules;
@@ -20,8 +23,17 @@ import com.google.inject.util.Modules;
 import org.apache.aurora.common.stats.StatsProvider;
 import org.apache.aurora.common.util.Clock;
 import org.apache.aurora.common.util.testing.FakeClock;
+import org.apache.aurora.scheduler.base.JobKeys;
+import org.apache.aurora.scheduler.base.Query;
+import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.storage.AbstractTaskStoreTest;
+import org.apache.aurora.scheduler.storage.entities.IJobKey;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.testing.FakeStatsProvider;
+import org.junit.Test;
+
+import static org.apache.aurora.scheduler.base.TaskTestUtil.makeTask;
+import static org.junit.Assert.assertEquals;
 
 public class DbTaskStoreTest extends AbstractTaskStoreTest {
   @Override
@@ -36,4 +48,25 @@ public class DbTaskStoreTest extends AbstractTaskStoreTest {
           }
         });
   }
+
+  @Test
+  public void testSaveAndDeleteMultipleBatches() {
+    // Tasks are written in batches, and each task's events and ports must be associated with it.
+    ImmutableSet.Builder<IScheduledTask> builder = ImmutableSet.builder();
+    for (int i = 0; i < DbTaskStore.BATCH_SIZE * 2 + 1; i++) {
+      IJobKey job = JobKeys.from("role", "env", "job" + (i % 3));
+      builder.add(makeTask("task" + i, job));
+    }
+    Set<IScheduledTask> tasks = builder.build();
+    saveTasks(tasks.toArray(new IScheduledTask[0]));
+    assertEquals(tasks, fetchAll());
+
+    deleteTasks(Tasks.ids(tasks).toArray(new String[0]));
+    assertEquals(ImmutableSet.of(), fetchAll());
+  }
+
+  private Set<IScheduledTask> fetchAll() {
+    return ImmutableSet.copyOf(
+        storage.read(storeProvider -> storeProvider.getTaskStore().fetchTasks(Query.unscoped())));
+  }
 }
@@ -91,7 +91,7 @@ public class RowGarbageCollectorTest {
     taskConfigMapper.insert(CONFIG_A, new InsertResult());
     InsertResult a2Insert = new InsertResult();
     taskConfigMapper.insert(TASK_A2.getAssignedTask().getTask(), a2Insert);
-    taskMapper.insertScheduledTask(TASK_A2, a2Insert.getId(), new InsertResult());
+    taskMapper.insertScheduledTasks(ImmutableList.of(new TaskInsert(TASK_A2, a2Insert.getId())));
     jobKeyMapper.merge(JOB_B);
     taskConfigMapper.insert(CONFIG_B, new InsertResult());
     rowGc.runOneIteration();
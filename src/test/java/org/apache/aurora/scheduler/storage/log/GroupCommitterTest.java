@@ -0,0 +1,168 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.log;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Time;
+import org.apache.aurora.gen.storage.Op;
+import org.apache.aurora.gen.storage.RemoveTasks;
+import org.apache.aurora.gen.storage.Transaction;
+import org.apache.aurora.scheduler.log.Log.Position;
+import org.apache.aurora.scheduler.log.Log.Stream.StreamAccessException;
+import org.apache.aurora.scheduler.storage.log.StreamTransaction.PendingCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class GroupCommitterTest {
+
+  private static final Amount<Long, Time> LONG_WINDOW = Amount.of(1L, Time.HOURS);
+
+  private List<List<Transaction>> appends;
+  private RuntimeException appendFailure;
+  private Position position;
+
+  @Before
+  public void setUp() {
+    appends = Lists.newArrayList();
+    appendFailure = null;
+    position = new Position() {
+      @Override
+      public int compareTo(Position o) {
+        return 0;
+      }
+    };
+  }
+
+  private GroupCommitter createCommitter(int maxBatchSize) {
+    return new GroupCommitter(
+        new GroupCommitter.Settings(LONG_WINDOW, maxBatchSize),
+        batch -> {
+          if (appendFailure != null) {
+            throw appendFailure;
+          }
+          appends.add(ImmutableList.copyOf(batch));
+          return position;
+        });
+  }
+
+  private static Transaction transaction(String taskId) {
+    return new Transaction()
+        .setOps(ImmutableList.of(Op.removeTasks(new RemoveTasks(ImmutableSet.of(taskId)))));
+  }
+
+  @Test
+  public void testFullBatchAppendedWithoutWaiting() throws Exception {
+    GroupCommitter committer = createCommitter(3);
+    Transaction a = transaction("a");
+    Transaction b = transaction("b");
+    Transaction c = transaction("c");
+    PendingCommit commitA = committer.submit(a);
+    PendingCommit commitB = committer.submit(b);
+    PendingCommit commitC = committer.submit(c);
+
+    assertSame(position, commitB.await());
+    assertSame(position, commitA.await());
+    assertSame(position, commitC.await());
+    assertEquals(ImmutableList.of(ImmutableList.of(a, b, c)), appends);
+    assertEquals(0, committer.getQueueSize());
+  }
+
+  @Test
+  public void testFlush() throws Exception {
+    GroupCommitter committer = createCommitter(2);
+    Transaction a = transaction("a");
+    Transaction b = transaction("b");
+    Transaction c = transaction("c");
+    PendingCommit commitC = null;
+    for (Transaction transaction : ImmutableList.of(a, b, c)) {
+      commitC = committer.submit(transaction);
+    }
+
+    committer.flush();
+    assertEquals(ImmutableList.of(ImmutableList.of(a, b), ImmutableList.of(c)), appends);
+    assertSame(position, commitC.await());
+
+    // Flushing with nothing queued is a no-op.
+    committer.flush();
+    assertEquals(2, appends.size());
+  }
+
+  @Test
+  public void testConcurrentCommits() throws Exception {
+    GroupCommitter committer = new GroupCommitter(
+        new GroupCommitter.Settings(Amount.of(10L, Time.MILLISECONDS), 100),
+        batch -> {
+          synchronized (appends) {
+            appends.add(ImmutableList.copyOf(batch));
+          }
+          return position;
+        });
+
+    List<Thread> threads = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      Transaction transaction = transaction("task-" + i);
+      threads.add(new Thread(() -> {
+        try {
+          assertSame(position, committer.submit(transaction).await());
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    int appended = 0;
+    for (List<Transaction> batch : appends) {
+      appended += batch.size();
+    }
+    assertEquals(10, appended);
+    assertEquals(0, committer.getQueueSize());
+  }
+
+  @Test
+  public void testFailureFailsSubsequentCommits() throws Exception {
+    GroupCommitter committer = createCommitter(1);
+    appendFailure = new StreamAccessException("injected", new RuntimeException());
+
+    PendingCommit commit = committer.submit(transaction("a"));
+    try {
+      commit.await();
+      fail();
+    } catch (StreamAccessException e) {
+      assertSame(appendFailure, e);
+    }
+
+    appendFailure = null;
+    try {
+      committer.submit(transaction("b"));
+      fail();
+    } catch (StreamAccessException e) {
+      // Expected.
+    }
+    assertEquals(ImmutableList.of(), appends);
+  }
+}
@@ -35,11 +35,13 @@ import org.apache.aurora.codec.ThriftBinaryCodec;
 import org.apache.aurora.codec.ThriftBinaryCodec.CodingException;
 import org.apache.aurora.common.quantity.Amount;
 import org.apache.aurora.common.quantity.Data;
+import org.apache.aurora.common.quantity.Time;
 import org.apache.aurora.common.testing.easymock.EasyMockTest;
 import org.apache.aurora.gen.AssignedTask;
 import org.apache.aurora.gen.Attribute;
 import org.apache.aurora.gen.HostAttributes;
 import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.gen.storage.CompressionCodec;
 import org.apache.aurora.gen.storage.DeduplicatedSnapshot;
 import org.apache.aurora.gen.storage.Frame;
 import org.apache.aurora.gen.storage.FrameChunk;
@@ -58,6 +60,7 @@ import org.apache.aurora.scheduler.base.TaskTestUtil;
 import org.apache.aurora.scheduler.log.Log.Entry;
 import org.apache.aurora.scheduler.log.Log.Position;
 import org.apache.aurora.scheduler.log.Log.Stream;
+import org.apache.aurora.scheduler.storage.log.StreamTransaction.PendingCommit;
 import org.easymock.EasyMock;
 import org.easymock.IArgumentMatcher;
 import org.junit.Before;
@@ -70,6 +73,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class LogManagerTest extends EasyMockTest {
 
@@ -100,11 +104,22 @@ public class LogManagerTest extends EasyMockTest {
   }
 
   private StreamManager createStreamManager(final Amount<Integer, Data> maxEntrySize) {
+    return createStreamManager(maxEntrySize, 1);
+  }
+
+  private StreamManager createStreamManager(
+      Amount<Integer, Data> maxEntrySize,
+      int recoveryThreads) {
+
     return new StreamManagerImpl(
         stream,
         new EntrySerializer.EntrySerializerImpl(maxEntrySize, Hashing.md5()),
         Hashing.md5(),
-        new SnapshotDeduplicatorImpl());
+        new SnapshotDeduplicatorImpl(),
+        GroupCommitter.Settings.DISABLED,
+        CompressionCodec.DEFLATE,
+        1,
+        recoveryThreads);
   }
 
   @Test
@@ -285,6 +300,36 @@ public class LogManagerTest extends EasyMockTest {
     assertSame(position1, position);
   }
 
+  @Test
+  public void testGroupCommit() throws CodingException {
+    Op saveFrameworkId = Op.saveFrameworkId(new SaveFrameworkId("jake"));
+    Op saveTasks1 = Op.saveTasks(createSaveTasks("1"));
+    Op saveTasks2 = Op.saveTasks(createSaveTasks("2"));
+    expectTransaction(position1, saveFrameworkId, Op.saveTasks(createSaveTasks("1", "2")));
+
+    StreamManager streamManager = new StreamManagerImpl(
+        stream,
+        new EntrySerializer.EntrySerializerImpl(NO_FRAMES_EVER_SIZE, Hashing.md5()),
+        Hashing.md5(),
+        new SnapshotDeduplicatorImpl(),
+        new GroupCommitter.Settings(Amount.of(1L, Time.HOURS), 2),
+        CompressionCodec.DEFLATE,
+        1,
+        1);
+    control.replay();
+
+    StreamTransaction transaction1 = streamManager.startTransaction();
+    transaction1.add(saveFrameworkId);
+    transaction1.add(saveTasks1);
+    StreamTransaction transaction2 = streamManager.startTransaction();
+    transaction2.add(saveTasks2);
+
+    PendingCommit commit1 = transaction1.submit();
+    PendingCommit commit2 = transaction2.submit();
+    assertSame(position1, commit2.await());
+    assertSame(position1, commit1.await());
+  }
+
   static class Message {
     private final Amount<Integer, Data> chunkSize;
     private final LogEntry header;
@@ -393,7 +438,11 @@ public class LogManagerTest extends EasyMockTest {
         mockStream,
         new EntrySerializer.EntrySerializerImpl(message1.chunkSize, Hashing.md5()),
         Hashing.md5(),
-        new SnapshotDeduplicatorImpl());
+        new SnapshotDeduplicatorImpl(),
+        GroupCommitter.Settings.DISABLED,
+        CompressionCodec.DEFLATE,
+        1,
+        1);
     StreamTransaction tr1 = streamManager.startTransaction();
     tr1.add(op1);
 
@@ -478,6 +527,58 @@ public class LogManagerTest extends EasyMockTest {
     streamManager.readFromBeginning(reader);
   }
 
+  @Test
+  public void testStreamManagerReadPipelined() throws Exception {
+    List<LogEntry> expected = Lists.newArrayList();
+    List<Entry> entries = Lists.newArrayList();
+    for (int i = 0; i < 100; i++) {
+      LogEntry transaction = createLogEntry(
+          Op.removeJob(new RemoveJob(JobKeys.from("role", "env", "job" + i).newBuilder())));
+      expected.add(transaction);
+      if (i % 10 == 0) {
+        Message message = frame(transaction);
+        entries.add(rawEntry(encode(message.header)));
+        for (LogEntry chunk : message.chunks) {
+          entries.add(rawEntry(encode(chunk)));
+        }
+      } else {
+        entries.add(rawEntry(encode(transaction)));
+      }
+    }
+    expect(stream.readAll()).andReturn(entries.iterator());
+
+    StreamManager streamManager = createStreamManager(NO_FRAMES_EVER_SIZE, 4);
+    control.replay();
+
+    List<LogEntry> read = Lists.newArrayList();
+    streamManager.readFromBeginning(read::add);
+    assertEquals(expected, read);
+  }
+
+  @Test(expected = CodingException.class)
+  public void testStreamManagerReadPipelinedFailure() throws Exception {
+    LogEntry transaction = createLogEntry(
+        Op.removeJob(new RemoveJob(JobKeys.from("role", "env", "job").newBuilder())));
+    Message message = frame(transaction);
+    List<Entry> entries = ImmutableList.of(
+        rawEntry(encode(transaction)),
+        rawEntry(encode(message.header)),
+        rawEntry(new byte[] {1, 2, 3}));
+    expect(stream.readAll()).andReturn(entries.iterator());
+
+    Consumer<LogEntry> reader = createMock(new Clazz<Consumer<LogEntry>>() { });
+    reader.accept(transaction);
+
+    StreamManager streamManager = createStreamManager(NO_FRAMES_EVER_SIZE, 4);
+    control.replay();
+
+    streamManager.readFromBeginning(reader);
+  }
+
+  private static Entry rawEntry(byte[] contents) {
+    return () -> contents;
+  }
+
   @Test
   public void testWriteAndReadDeflatedEntry() throws Exception {
     Snapshot snapshot = createSnapshot();
@@ -503,8 +604,76 @@ public class LogManagerTest extends EasyMockTest {
         stream,
         new EntrySerializer.EntrySerializerImpl(NO_FRAMES_EVER_SIZE, md5),
         md5,
-        new SnapshotDeduplicatorImpl());
+        new SnapshotDeduplicatorImpl(),
+        GroupCommitter.Settings.DISABLED,
+        CompressionCodec.DEFLATE,
+        1,
+        1);
+    streamManager.snapshot(snapshot);
+    streamManager.readFromBeginning(reader);
+  }
+
+  @Test
+  public void testWriteAndReadFramedSnapshot() throws Exception {
+    Snapshot snapshot = createSnapshot();
+    for (int i = 0; i < 100; i++) {
+      snapshot.addToTasks(TaskTestUtil.makeTask("task_" + i, TaskTestUtil.JOB).newBuilder());
+    }
+
+    List<byte[]> appends = Lists.newArrayList();
+    expect(stream.append(EasyMock.anyObject())).andAnswer(() -> {
+      appends.add((byte[]) EasyMock.getCurrentArguments()[0]);
+      return appends.size() == 1 ? position1 : position2;
+    }).atLeastOnce();
+    stream.truncateBefore(position1);
+    expect(stream.readAll()).andAnswer(() -> Iterators.transform(
+        appends.iterator(),
+        contents -> (Entry) () -> contents));
+
+    Consumer<LogEntry> reader = createMock(new Clazz<Consumer<LogEntry>>() { });
+    reader.accept(LogEntry.snapshot(snapshot));
+
+    control.replay();
+
+    StreamManager streamManager = createStreamManager(Amount.of(1, Data.KB));
+    streamManager.snapshot(snapshot);
+    // A header followed by several chunks.
+    assertTrue(appends.size() > 2);
+    streamManager.readFromBeginning(reader);
+  }
+
+  @Test
+  public void testWriteAndReadLz4Snapshot() throws Exception {
+    Snapshot snapshot = createSnapshot();
+
+    List<byte[]> appends = Lists.newArrayList();
+    expect(stream.append(EasyMock.anyObject())).andAnswer(() -> {
+      appends.add((byte[]) EasyMock.getCurrentArguments()[0]);
+      return position1;
+    });
+    stream.truncateBefore(position1);
+    expect(stream.readAll()).andAnswer(() -> Iterators.transform(
+        appends.iterator(),
+        contents -> (Entry) () -> contents));
+
+    Consumer<LogEntry> reader = createMock(new Clazz<Consumer<LogEntry>>() { });
+    reader.accept(LogEntry.snapshot(snapshot));
+
+    control.replay();
+
+    HashFunction md5 = Hashing.md5();
+    StreamManagerImpl streamManager = new StreamManagerImpl(
+        stream,
+        new EntrySerializer.EntrySerializerImpl(NO_FRAMES_EVER_SIZE, md5),
+        md5,
+        new SnapshotDeduplicatorImpl(),
+        GroupCommitter.Settings.DISABLED,
+        CompressionCodec.LZ4,
+        1,
+        1);
     streamManager.snapshot(snapshot);
+    LogEntry written = Entries.thriftBinaryDecode(Iterables.getOnlyElement(appends));
+    assertEquals(CompressionCodec.LZ4, written.getCompressedEntry().getCodec());
     streamManager.readFromBeginning(reader);
   }
 
@@ -56,6 +56,7 @@ import org.apache.aurora.gen.ResourceAggregate;
 import org.apache.aurora.gen.ScheduleStatus;
 import org.apache.aurora.gen.ScheduledTask;
 import org.apache.aurora.gen.TaskConfig;
+import org.apache.aurora.gen.storage.CompressionCodec;
 import org.apache.aurora.gen.storage.DeduplicatedSnapshot;
 import org.apache.aurora.gen.storage.LogEntry;
 import org.apache.aurora.gen.storage.Op;
@@ -158,7 +159,11 @@ public class LogStorageTest extends EasyMockTest {
           logStream,
           new EntrySerializer.EntrySerializerImpl(Amount.of(1, Data.GB), md5),
           md5,
-          deduplicator);
+          deduplicator,
+          GroupCommitter.Settings.DISABLED,
+          CompressionCodec.DEFLATE,
+          1,
+          1);
     };
     LogManager logManager = new LogManager(log, streamManagerFactory);
 
@@ -264,7 +269,8 @@ public class LogStorageTest extends EasyMockTest {
         Sets.complementOf(EnumSet.of(
             LogEntry._Fields.FRAME,
             LogEntry._Fields.DEDUPLICATED_SNAPSHOT,
-            LogEntry._Fields.DEFLATED_ENTRY)),
+            LogEntry._Fields.DEFLATED_ENTRY,
+            LogEntry._Fields.COMPRESSED_ENTRY)),
         EnumSet.copyOf(logStorage.buildLogEntryReplayActions().keySet()));
 
     // Assert all Transaction types have handlers defined.
@@ -583,16 +589,24 @@ public class LogStorageTest extends EasyMockTest {
   public void testUnsafeModifyInPlace() throws Exception {
     String taskId = "wilma";
     String taskId2 = "barney";
-    ITaskConfig updatedConfig = task(taskId, ScheduleStatus.RUNNING).getAssignedTask().getTask();
+    IScheduledTask original = task(taskId, ScheduleStatus.RUNNING);
+    ITaskConfig updatedConfig = ITaskConfig.build(
+        original.getAssignedTask().getTask().newBuilder().setPriority(1));
     new AbstractMutationFixture() {
       @Override
       protected void setupExpectations() throws Exception {
         storageUtil.expectWrite();
+        expect(storageUtil.taskStore.fetchTask(taskId2)).andReturn(Optional.absent());
         expect(storageUtil.taskStore.unsafeModifyInPlace(taskId2, updatedConfig)).andReturn(false);
+        expect(storageUtil.taskStore.fetchTask(taskId)).andReturn(Optional.of(original));
         expect(storageUtil.taskStore.unsafeModifyInPlace(taskId, updatedConfig)).andReturn(true);
         streamMatcher.expectTransaction(
             Op.rewriteTask(new RewriteTask(taskId, updatedConfig.newBuilder())))
             .andReturn(position);
+        eventSink.post(new PubsubEvent.TaskConfigRewritten(
+            taskId,
+            original.getAssignedTask().getTask(),
+            updatedConfig));
       }
 
       @Override
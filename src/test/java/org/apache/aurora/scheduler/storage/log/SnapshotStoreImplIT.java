@@ -19,6 +19,7 @@ import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.inject.Module;
 
 import org.apache.aurora.common.util.testing.FakeBuildInfo;
 import org.apache.aurora.common.util.testing.FakeClock;
@@ -71,8 +72,8 @@ import static org.apache.aurora.common.inject.Bindings.KeyFactory.PLAIN;
 import static org.apache.aurora.common.util.testing.FakeBuildInfo.generateBuildInfo;
 import static org.apache.aurora.scheduler.resources.ResourceManager.aggregateFromBag;
 import static org.apache.aurora.scheduler.storage.Storage.MutateWork.NoResult;
+import static org.apache.aurora.scheduler.storage.db.DbModule.testModuleWithMemJobUpdateStore;
 import static org.apache.aurora.scheduler.storage.db.DbModule.testModuleWithWorkQueue;
-import static org.apache.aurora.scheduler.storage.db.DbUtil.createStorage;
 import static org.apache.aurora.scheduler.storage.db.DbUtil.createStorageInjector;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -87,11 +88,16 @@ public class SnapshotStoreImplIT {
   private SnapshotStore<Snapshot> snapshotStore;
 
   private void setUpStore(boolean dbTaskStore) {
-    storage = dbTaskStore
-        ? createStorage()
-        : createStorageInjector(
-        testModuleWithWorkQueue(PLAIN, Optional.of(new InMemStoresModule(PLAIN))))
-        .getInstance(Storage.class);
+    setUpStore(
+        dbTaskStore
+            ? testModuleWithWorkQueue()
+            : testModuleWithWorkQueue(PLAIN, Optional.of(new InMemStoresModule(PLAIN))),
+        dbTaskStore,
+        false);
+  }
+
+  private void setUpStore(Module dbModule, boolean dbTaskStore, boolean memJobUpdateStore) {
+    storage = createStorageInjector(dbModule).getInstance(Storage.class);
 
     FakeClock clock = new FakeClock();
     clock.setNowMillis(NOW);
@@ -100,6 +106,7 @@ public class SnapshotStoreImplIT {
         clock,
         storage,
         dbTaskStore,
+        memJobUpdateStore,
         createStorageInjector(testModuleWithWorkQueue()).getInstance(MigrationManager.class),
         TaskTestUtil.THRIFT_BACKFILL);
   }
@@ -109,6 +116,7 @@ public class SnapshotStoreImplIT {
     // Ignore DB snapshot. It will be tested by asserting the DB data.
     copy.unsetDbScript();
     copy.setExperimentalTaskStore(false);
+    copy.setInMemoryJobUpdateStore(false);
     return copy;
   }
 
@@ -176,6 +184,55 @@ public class SnapshotStoreImplIT {
     assertEquals(makeComparable(snapshot1), makeComparable(snapshot2));
   }
 
+  @Test
+  public void testMemJobUpdateStore() {
+    setUpStore(testModuleWithMemJobUpdateStore(), true, true);
+    populateStore();
+
+    Snapshot snapshot1 = snapshotStore.createSnapshot();
+    assertEquals(expected(), makeComparable(snapshot1));
+    assertTrue(snapshot1.isInMemoryJobUpdateStore());
+
+    snapshotStore.applySnapshot(snapshot1);
+    Snapshot snapshot2 = snapshotStore.createSnapshot();
+    assertEquals(expected(), makeComparable(snapshot2));
+    assertEquals(makeComparable(snapshot1), makeComparable(snapshot2));
+  }
+
+  @Test
+  public void testMigrateToMemJobUpdateStore() {
+    setUpStore(true);
+    populateStore();
+
+    Snapshot snapshot1 = snapshotStore.createSnapshot();
+    assertEquals(expected(), makeComparable(snapshot1));
+    assertFalse(snapshot1.isInMemoryJobUpdateStore());
+
+    setUpStore(testModuleWithMemJobUpdateStore(), true, true);
+    snapshotStore.applySnapshot(snapshot1);
+    Snapshot snapshot2 = snapshotStore.createSnapshot();
+    assertTrue(snapshot2.isInMemoryJobUpdateStore());
+    assertEquals(expected(), makeComparable(snapshot2));
+    assertEquals(makeComparable(snapshot1), makeComparable(snapshot2));
+  }
+
+  @Test
+  public void testMigrateFromMemJobUpdateStore() {
+    setUpStore(testModuleWithMemJobUpdateStore(), true, true);
+    populateStore();
+
+    Snapshot snapshot1 = snapshotStore.createSnapshot();
+    assertEquals(expected(), makeComparable(snapshot1));
+    assertTrue(snapshot1.isInMemoryJobUpdateStore());
+
+    setUpStore(true);
+    snapshotStore.applySnapshot(snapshot1);
+    Snapshot snapshot2 = snapshotStore.createSnapshot();
+    assertFalse(snapshot2.isInMemoryJobUpdateStore());
+    assertEquals(expected(), makeComparable(snapshot2));
+    assertEquals(makeComparable(snapshot1), makeComparable(snapshot2));
+  }
+
   @Test
   public void testBackfill() {
     setUpStore(false);
@@ -0,0 +1,81 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.mem;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+import com.google.inject.util.Modules;
+
+import org.apache.aurora.common.stats.StatsProvider;
+import org.apache.aurora.scheduler.base.Query;
+import org.apache.aurora.scheduler.base.TaskTestUtil;
+import org.apache.aurora.scheduler.base.Tasks;
+import org.apache.aurora.scheduler.storage.AbstractTaskStoreTest;
+import org.apache.aurora.scheduler.storage.Storage.MutateWork.NoResult;
+import org.apache.aurora.scheduler.storage.TaskStore;
+import org.apache.aurora.scheduler.storage.db.DbModule;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.testing.FakeStatsProvider;
+import org.junit.Test;
+
+import static org.apache.aurora.common.inject.Bindings.KeyFactory.PLAIN;
+import static org.apache.aurora.gen.ScheduleStatus.FAILED;
+import static org.apache.aurora.gen.ScheduleStatus.FINISHED;
+import static org.apache.aurora.gen.ScheduleStatus.RUNNING;
+import static org.junit.Assert.assertEquals;
+
+public class CompactInMemTaskStoreTest extends AbstractTaskStoreTest {
+
+  private FakeStatsProvider statsProvider;
+
+  @Override
+  protected Module getStorageModule() {
+    statsProvider = new FakeStatsProvider();
+    return Modules.combine(
+        DbModule.testModuleWithWorkQueue(PLAIN, Optional.of(new InMemStoresModule(PLAIN, true))),
+        new AbstractModule() {
+          @Override
+          protected void configure() {
+            bind(StatsProvider.class).toInstance(statsProvider);
+          }
+        });
+  }
+
+  @Test
+  public void testTerminalTasks() {
+    IScheduledTask finished = TaskTestUtil.addStateTransition(TASK_A, FINISHED, 200L);
+    IScheduledTask failed = TaskTestUtil.addStateTransition(TASK_B, FAILED, 200L);
+
+    storage.write((NoResult.Quiet) storeProvider -> {
+      TaskStore.Mutable taskStore = storeProvider.getUnsafeTaskStore();
+      taskStore.saveTasks(ImmutableSet.of(finished, TASK_B));
+      assertEquals(ImmutableSet.of(finished), taskStore.fetchTasks(Query.statusScoped(FINISHED)));
+      assertEquals(Optional.of(finished), taskStore.fetchTask(Tasks.id(finished)));
+
+      taskStore.mutateTask(Tasks.id(TASK_B), task -> failed);
+      assertEquals(ImmutableSet.of(failed), taskStore.fetchTasks(Query.statusScoped(FAILED)));
+
+      // Tasks may leave a terminal state when they are modified in place.
+      IScheduledTask running = TaskTestUtil.addStateTransition(failed, RUNNING, 300L);
+      taskStore.mutateTask(Tasks.id(TASK_B), task -> running);
+      assertEquals(ImmutableSet.of(running), taskStore.fetchTasks(Query.statusScoped(RUNNING)));
+
+      taskStore.deleteTasks(Tasks.ids(finished, running));
+      assertEquals(ImmutableSet.of(), taskStore.fetchTasks(Query.unscoped()));
+      assertEquals(0L, statsProvider.getLongValue(MemTaskStore.getIndexSizeStatName("status")));
+    });
+  }
+}
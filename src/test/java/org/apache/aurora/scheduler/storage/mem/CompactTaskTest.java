@@ -0,0 +1,88 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.storage.mem;
+
+import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Time;
+import org.apache.aurora.gen.AssignedTask;
+import org.apache.aurora.gen.ScheduleStatus;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.scheduler.base.TaskTestUtil;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.testing.FakeStatsProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompactTaskTest {
+
+  private InternPools internPools;
+
+  @Before
+  public void setUp() {
+    internPools = new InternPools(new FakeStatsProvider(), Amount.of(1L, Time.HOURS));
+  }
+
+  private CompactTask encode(IScheduledTask task) {
+    return new CompactTask(task, internPools);
+  }
+
+  @Test
+  public void testRoundTrip() {
+    IScheduledTask task = TaskTestUtil.addStateTransition(
+        TaskTestUtil.makeTask("a", TaskTestUtil.JOB),
+        ScheduleStatus.FINISHED,
+        200L);
+    ScheduledTask builder = task.newBuilder();
+    builder.getAssignedTask().setSlaveId("slave-id").setSlaveHost("slave-host");
+    builder.getAssignedTask().putToAssignedPorts("health", 1001);
+    task = IScheduledTask.build(builder);
+
+    assertEquals(task, encode(task).decode());
+  }
+
+  @Test
+  public void testUnsetFields() {
+    IScheduledTask task = IScheduledTask.build(new ScheduledTask()
+        .setAssignedTask(new AssignedTask()
+            .setTaskId("a")
+            .setTask(TaskTestUtil.makeConfig(TaskTestUtil.JOB).newBuilder())));
+
+    assertEquals(task, encode(task).decode());
+  }
+
+  @Test
+  public void testDeduplicatesStrings() {
+    IScheduledTask decodedA = encode(withDistinctStrings("a")).decode();
+    IScheduledTask decodedB = encode(withDistinctStrings("b")).decode();
+    assertSame(
+        decodedA.getAssignedTask().getSlaveHost(),
+        decodedB.getAssignedTask().getSlaveHost());
+    assertSame(
+        decodedA.getTaskEvents().get(0).getMessage(),
+        decodedB.getTaskEvents().get(0).getMessage());
+    assertTrue(internPools.isInterned(decodedA.getAssignedTask().getTask().newBuilder()));
+  }
+
+  private static IScheduledTask withDistinctStrings(String taskId) {
+    // Equal strings that are not the same instance.
+    ScheduledTask builder = TaskTestUtil.makeTask(taskId, TaskTestUtil.JOB).newBuilder();
+    builder.getAssignedTask().setSlaveHost(new StringBuilder("slave-host").toString());
+    builder.getTaskEvents().get(0).setMessage(new StringBuilder("message").toString());
+    return IScheduledTask.build(builder);
+  }
+}
@@ -20,15 +20,20 @@ import com.google.inject.Module;
 import com.google.inject.util.Modules;
 
 import org.apache.aurora.common.stats.StatsProvider;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.scheduler.base.Query;
 import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.storage.AbstractTaskStoreTest;
 import org.apache.aurora.scheduler.storage.Storage.MutateWork.NoResult;
 import org.apache.aurora.scheduler.storage.TaskStore;
 import org.apache.aurora.scheduler.storage.db.DbModule;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.testing.FakeStatsProvider;
 import org.junit.Test;
 
 import static org.apache.aurora.common.inject.Bindings.KeyFactory.PLAIN;
+import static org.apache.aurora.gen.ScheduleStatus.ASSIGNED;
+import static org.apache.aurora.gen.ScheduleStatus.RUNNING;
 import static org.junit.Assert.assertEquals;
 
 public class InMemTaskStoreTest extends AbstractTaskStoreTest {
@@ -58,4 +63,87 @@ public class InMemTaskStoreTest extends AbstractTaskStoreTest {
       assertEquals(0L, statsProvider.getLongValue(MemTaskStore.getIndexSizeStatName("job")));
     });
   }
+
+  @Test
+  public void testSecondaryIndexConsistentWhenTaskResaved() {
+    // Log replay saves tasks over their previous state, rather than mutating them.
+    IScheduledTask running = IScheduledTask.build(TASK_A.newBuilder().setStatus(RUNNING));
+    storage.write((NoResult.Quiet) storeProvider -> {
+      TaskStore.Mutable taskStore = storeProvider.getUnsafeTaskStore();
+      taskStore.saveTasks(ImmutableSet.of(TASK_A));
+      taskStore.saveTasks(ImmutableSet.of(running));
+      assertEquals(1L, statsProvider.getLongValue(MemTaskStore.getIndexSizeStatName("status")));
+      assertEquals(ImmutableSet.of(), taskStore.fetchTasks(Query.statusScoped(ASSIGNED)));
+      assertEquals(ImmutableSet.of(running), taskStore.fetchTasks(Query.statusScoped(RUNNING)));
+
+      taskStore.deleteTasks(Tasks.ids(running));
+      assertEquals(0L, statsProvider.getLongValue(MemTaskStore.getIndexSizeStatName("status")));
+      assertEquals(0L, statsProvider.getLongValue(MemTaskStore.getIndexSizeStatName("role")));
+      assertEquals(0L, statsProvider.getLongValue(MemTaskStore.getIndexSizeStatName("role_env")));
+    });
+  }
+
+  @Test
+  public void testInterning() {
+    ScheduledTask copy = TASK_A.newBuilder();
+    copy.getAssignedTask().setTaskId("a-copy");
+    storage.write((NoResult.Quiet) storeProvider -> {
+      TaskStore.Mutable taskStore = storeProvider.getUnsafeTaskStore();
+      taskStore.saveTasks(ImmutableSet.of(TASK_A, IScheduledTask.build(copy)));
+      assertEquals(
+          1L,
+          statsProvider.getLongValue(Interner.valuesStatName("task_configs")));
+      assertEquals(
+          0.5,
+          statsProvider.getValue(Interner.hitRatioStatName("task_configs")).doubleValue(),
+          0.0);
+
+      taskStore.deleteAllTasks();
+      assertEquals(
+          0L,
+          statsProvider.getLongValue(Interner.valuesStatName("task_configs")));
+    });
+  }
+
+  private long getQueryCount(String index) {
+    return statsProvider.getLongValue("task_queries_by_" + index);
+  }
+
+  @Test
+  public void testStatusAndRoleIndices() {
+    storage.write((NoResult.Quiet) storeProvider -> {
+      TaskStore.Mutable taskStore = storeProvider.getUnsafeTaskStore();
+      taskStore.saveTasks(ImmutableSet.of(TASK_A, TASK_B));
+      assertEquals(2L, statsProvider.getLongValue(MemTaskStore.getIndexSizeStatName("status")));
+      assertEquals(2L, statsProvider.getLongValue(MemTaskStore.getIndexSizeStatName("role")));
+      assertEquals(2L, statsProvider.getLongValue(MemTaskStore.getIndexSizeStatName("role_env")));
+
+      assertEquals(
+          ImmutableSet.of(TASK_A, TASK_B),
+          taskStore.fetchTasks(Query.statusScoped(ASSIGNED)));
+      assertEquals(1L, getQueryCount("status"));
+
+      assertEquals(ImmutableSet.of(TASK_A), taskStore.fetchTasks(Query.roleScoped("role-a")));
+      assertEquals(1L, getQueryCount("role"));
+
+      assertEquals(
+          ImmutableSet.of(TASK_B),
+          taskStore.fetchTasks(Query.envScoped("role-b", "env-b").byStatus(ASSIGNED)));
+      assertEquals(1L, getQueryCount("role_env"));
+      assertEquals(2L, getQueryCount("status"));
+      // The role index is superseded by the role and environment index.
+      assertEquals(1L, getQueryCount("role"));
+      assertEquals(0L, statsProvider.getLongValue("task_queries_all"));
+
+      taskStore.mutateTask(
+          Tasks.id(TASK_A),
+          task -> IScheduledTask.build(task.newBuilder().setStatus(RUNNING)));
+      assertEquals(ImmutableSet.of(TASK_B), taskStore.fetchTasks(Query.statusScoped(ASSIGNED)));
+
+      taskStore.deleteTasks(Tasks.ids(TASK_A, TASK_B));
+      assertEquals(0L, statsProvider.getLongValue(MemTaskStore.getIndexSizeStatName("status")));
+      assertEquals(0L, statsProvider.getLongValue(MemTaskStore.getIndexSizeStatName("role")));
+      assertEquals(0L, statsProvider.getLongValue(MemTaskStore.getIndexSizeStatName("role_env")));
+    });
+  }
 }
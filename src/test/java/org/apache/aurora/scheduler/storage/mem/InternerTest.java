@@ -13,8 +13,10 @@
  */
 package org.apache.aurora.scheduler.storage.mem;
 
-import com.google.common.collect.ImmutableSet;
-
+import org.apache.aurora.common.quantity.Amount;
+import org.apache.aurora.common.quantity.Time;
+import org.apache.aurora.common.util.testing.FakeTicker;
+import org.apache.aurora.scheduler.testing.FakeStatsProvider;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -29,68 +31,85 @@ public class InternerTest {
   private static final Internable SAME_JOAN = new Internable("joan");
   private static final Internable STEVE = new Internable("steve");
 
-  private static final String BOB = "bob";
-  private static final String BOB2 = "bob2";
-  private static final String BARRY = "barry";
+  private static final String NAME = "test";
+  private static final Amount<Long, Time> TTL = Amount.of(10L, Time.MINUTES);
 
-  private Interner<Internable, String> interner;
+  private FakeStatsProvider statsProvider;
+  private FakeTicker ticker;
+  private Interner<Internable> interner;
 
   @Before
   public void setUp() {
-    interner = new Interner<>();
+    statsProvider = new FakeStatsProvider();
+    ticker = new FakeTicker();
+    interner = new Interner<>(NAME, TTL, statsProvider, t -> t, ticker);
   }
 
   @Test
-  public void testReferenceCounting() {
-    assertSame(JOAN, interner.addAssociation(JOAN, BOB));
-    assertSame(JOAN, interner.addAssociation(SAME_JOAN, BOB2));
-    assertEquals(ImmutableSet.of(BOB2, BOB), interner.getAssociations(JOAN));
+  public void testEqual() {
+    assertSame(JOAN, interner.intern(JOAN));
+    assertSame(JOAN, interner.intern(SAME_JOAN));
     assertTrue(interner.isInterned(JOAN));
     assertTrue(interner.isInterned(SAME_JOAN));
-
-    // Re-associate.
-    assertSame(JOAN, interner.addAssociation(JOAN, BOB));
-    assertEquals(ImmutableSet.of(BOB2, BOB), interner.getAssociations(JOAN));
-
-    // Noop.
-    interner.removeAssociation(JOAN, "bob3");
-    assertEquals(ImmutableSet.of(BOB2, BOB), interner.getAssociations(JOAN));
-
-    interner.removeAssociation(JOAN, BOB);
-    assertEquals(ImmutableSet.of(BOB2), interner.getAssociations(JOAN));
-
-    interner.removeAssociation(JOAN, BOB2);
-    assertFalse(interner.isInterned(JOAN));
   }
 
   @Test
   public void testNonEqual() {
-    assertSame(JOAN, interner.addAssociation(JOAN, BOB));
-    assertSame(STEVE, interner.addAssociation(STEVE, BOB));
-    assertSame(JOAN, interner.addAssociation(JOAN, BOB));
-    assertSame(STEVE, interner.addAssociation(STEVE, BOB));
-    assertSame(STEVE, interner.addAssociation(STEVE, BARRY));
-    assertEquals(ImmutableSet.of(BOB), interner.getAssociations(JOAN));
-    assertEquals(ImmutableSet.of(BARRY, BOB), interner.getAssociations(STEVE));
-
-    interner.removeAssociation(JOAN, BOB);
-    assertFalse(interner.isInterned(JOAN));
+    assertSame(JOAN, interner.intern(JOAN));
+    assertSame(STEVE, interner.intern(STEVE));
+    assertSame(JOAN, interner.intern(SAME_JOAN));
+    assertSame(STEVE, interner.intern(STEVE));
+  }
 
-    interner.removeAssociation(STEVE, BOB);
-    assertEquals(ImmutableSet.of(BARRY), interner.getAssociations(STEVE));
-    interner.removeAssociation(STEVE, BARRY);
-    assertFalse(interner.isInterned(STEVE));
+  @Test
+  public void testStats() {
+    interner.intern(JOAN);
+    interner.intern(SAME_JOAN);
+    interner.intern(JOAN);
+    interner.intern(STEVE);
+
+    assertEquals(2L, statsProvider.getValue(Interner.valuesStatName(NAME)));
+    assertEquals(0.5, statsProvider.getValue(Interner.hitRatioStatName(NAME)).doubleValue(), 0.0);
   }
 
   @Test
-  public void testNoopRemoveAssociation() {
-    interner.removeAssociation(JOAN, BOB);
+  public void testExpiry() {
+    assertSame(JOAN, interner.intern(JOAN));
+    ticker.advance(Amount.of(9L, Time.MINUTES));
+    assertSame(JOAN, interner.intern(SAME_JOAN));
+
+    // Interning restarts the time to live.
+    ticker.advance(Amount.of(9L, Time.MINUTES));
+    assertTrue(interner.isInterned(JOAN));
+
+    ticker.advance(Amount.of(1L, Time.MINUTES));
     assertFalse(interner.isInterned(JOAN));
+    assertSame(SAME_JOAN, interner.intern(SAME_JOAN));
+  }
+
+  @Test
+  public void testCanonicalizer() {
+    interner = new Interner<>(
+        NAME,
+        TTL,
+        new FakeStatsProvider(),
+        t -> {
+          t.canonicalized = true;
+          return t;
+        },
+        ticker);
+    Internable joan = new Internable("joan");
+    Internable sameJoan = new Internable("joan");
+
+    assertSame(joan, interner.intern(joan));
+    assertSame(joan, interner.intern(sameJoan));
+    assertTrue(joan.canonicalized);
+    assertFalse(sameJoan.canonicalized);
   }
 
   @Test
   public void testClear() {
-    assertSame(JOAN, interner.addAssociation(JOAN, BOB));
+    assertSame(JOAN, interner.intern(JOAN));
 
     interner.clear();
     assertFalse(interner.isInterned(JOAN));
@@ -98,6 +117,7 @@ public class InternerTest {
 
   private static class Internable {
     private final String value;
+    private boolean canonicalized;
 
     Internable(String value) {
       this.value = value;
@@ -30,12 +30,15 @@ import org.apache.aurora.scheduler.storage.Storage.NonVolatileStorage;
 import org.apache.aurora.scheduler.storage.Storage.StoreProvider;
 import org.apache.aurora.scheduler.storage.Storage.Work;
 import org.apache.aurora.scheduler.storage.TaskStore;
+import org.apache.aurora.scheduler.storage.TaskStore.TaskVisitor;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.easymock.Capture;
 import org.easymock.IExpectationSetters;
 
 import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
 
 /**
  * Auxiliary class to simplify testing against a mocked storage.  This allows callers to directly
@@ -126,4 +129,24 @@ public class StorageTestUtil {
   public IExpectationSetters<?> expectTaskFetch(Query.Builder query, IScheduledTask... result) {
     return expectTaskFetch(query, ImmutableSet.<IScheduledTask>builder().add(result).build());
   }
+
+  public IExpectationSetters<?> expectTaskVisit(
+      Query.Builder query,
+      ImmutableSet<IScheduledTask> result) {
+
+    Capture<TaskVisitor> visitor = EasyMockTest.createCapture();
+    taskStore.visitTasks(eq(query), capture(visitor));
+    return expectLastCall().andAnswer(() -> {
+      for (IScheduledTask task : result) {
+        if (!visitor.getValue().visit(task)) {
+          break;
+        }
+      }
+      return null;
+    });
+  }
+
+  public IExpectationSetters<?> expectTaskVisit(Query.Builder query, IScheduledTask... result) {
+    return expectTaskVisit(query, ImmutableSet.<IScheduledTask>builder().add(result).build());
+  }
 }
@@ -16,6 +16,7 @@ package org.apache.aurora.scheduler.thrift;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
@@ -72,6 +73,9 @@ import org.apache.aurora.scheduler.base.Tasks;
 import org.apache.aurora.scheduler.configuration.SanitizedConfiguration;
 import org.apache.aurora.scheduler.cron.CronPredictor;
 import org.apache.aurora.scheduler.cron.CrontabEntry;
+import org.apache.aurora.scheduler.events.PubsubEvent.TaskConfigRewritten;
+import org.apache.aurora.scheduler.events.PubsubEvent.TaskStateChange;
+import org.apache.aurora.scheduler.events.PubsubEvent.TasksDeleted;
 import org.apache.aurora.scheduler.filter.SchedulingFilter.Veto;
 import org.apache.aurora.scheduler.metadata.NearestFit;
 import org.apache.aurora.scheduler.quota.QuotaInfo;
@@ -87,6 +91,7 @@ import org.apache.aurora.scheduler.storage.entities.IResponse;
 import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
 import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
 import org.apache.aurora.scheduler.storage.testing.StorageTestUtil;
+import org.apache.aurora.scheduler.testing.FakeStatsProvider;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -125,6 +130,8 @@ public class ReadOnlySchedulerImplTest extends EasyMockTest {
   private CronPredictor cronPredictor;
   private QuotaManager quotaManager;
   private TierManager tierManager;
+  private FakeStatsProvider statsProvider;
+  private SummaryCache summaryCache;
 
   private ReadOnlyScheduler.Iface thrift;
 
@@ -136,6 +143,8 @@ public class ReadOnlySchedulerImplTest extends EasyMockTest {
     cronPredictor = createMock(CronPredictor.class);
     quotaManager = createMock(QuotaManager.class);
     tierManager = createMock(TierManager.class);
+    statsProvider = new FakeStatsProvider();
+    summaryCache = new SummaryCache(statsProvider);
 
     thrift = new ReadOnlySchedulerImpl(
         TaskTestUtil.CONFIGURATION_MANAGER,
@@ -143,7 +152,15 @@ public class ReadOnlySchedulerImplTest extends EasyMockTest {
         nearestFit,
         cronPredictor,
         quotaManager,
-        tierManager);
+        tierManager,
+        summaryCache);
+  }
+
+  private void invalidateSummaries() {
+    // Simulates the task store changes made between calls.
+    summaryCache.tasksDeleted(new TasksDeleted(ImmutableSet.of(IScheduledTask.build(
+        new ScheduledTask().setAssignedTask(
+            new AssignedTask().setTask(nonProductionTask().setJob(JOB_KEY.newBuilder())))))));
   }
 
   @Test
@@ -218,15 +235,19 @@ public class ReadOnlySchedulerImplTest extends EasyMockTest {
     control.replay();
 
     assertEquals(jobSummaryResponse(ownedCronJobSummaryOnly), thrift.getJobSummary(ROLE));
+    invalidateSummaries();
 
     assertEquals(jobSummaryResponse(ownedCronJobSummaryOnly), thrift.getJobSummary(ROLE));
+    invalidateSummaries();
 
     Response jobSummaryResponse = thrift.getJobSummary(ROLE);
     assertEquals(
         jobSummaryResponse(ownedImmediateJobSummaryOnly),
         IResponse.build(jobSummaryResponse).newBuilder());
+    invalidateSummaries();
 
     assertEquals(jobSummaryResponse(ImmutableSet.of()), thrift.getJobSummary(ROLE));
+    invalidateSummaries();
 
     assertEquals(jobSummaryResponse(ownedCronJobSummaryWithRunningTask),
         thrift.getJobSummary(ROLE));
@@ -281,7 +302,7 @@ public class ReadOnlySchedulerImplTest extends EasyMockTest {
             .setTask(taskConfig.newBuilder()))
         .setStatus(ScheduleStatus.PENDING));
 
-    storageUtil.expectTaskFetch(filterQuery, pendingTask1, pendingTask2);
+    storageUtil.expectTaskVisit(filterQuery, pendingTask1, pendingTask2);
     expect(nearestFit.getNearestFit(TaskGroupKey.from(taskConfig))).andReturn(result).times(2);
 
     control.replay();
@@ -342,7 +363,7 @@ public class ReadOnlySchedulerImplTest extends EasyMockTest {
   @Test
   public void testGetTasksWithoutConfigs() throws Exception {
     Builder query = Query.unscoped();
-    storageUtil.expectTaskFetch(query, ImmutableSet.copyOf(makeDefaultScheduledTasks(10)));
+    storageUtil.expectTaskVisit(query, ImmutableSet.copyOf(makeDefaultScheduledTasks(10)));
 
     control.replay();
 
@@ -453,9 +474,11 @@ public class ReadOnlySchedulerImplTest extends EasyMockTest {
 
     assertJobsEqual(ownedCronJob, Iterables.getOnlyElement(thrift.getJobs(ROLE)
         .getResult().getGetJobsResult().getConfigs()));
+    invalidateSummaries();
 
     assertJobsEqual(ownedCronJob, Iterables.getOnlyElement(thrift.getJobs(ROLE)
         .getResult().getGetJobsResult().getConfigs()));
+    invalidateSummaries();
 
     Set<JobConfiguration> queryResult3 =
         thrift.getJobs(ROLE).getResult().getGetJobsResult().getConfigs();
@@ -463,9 +486,11 @@ public class ReadOnlySchedulerImplTest extends EasyMockTest {
     assertEquals(
         ITaskConfig.build(ownedImmediateTaskInfo),
         ITaskConfig.build(Iterables.getOnlyElement(queryResult3).getTaskConfig()));
+    invalidateSummaries();
 
     assertTrue(thrift.getJobs(ROLE)
         .getResult().getGetJobsResult().getConfigs().isEmpty());
+    invalidateSummaries();
 
     assertJobsEqual(ownedCronJob, Iterables.getOnlyElement(thrift.getJobs(ROLE)
         .getResult().getGetJobsResult().getConfigs()));
@@ -477,7 +502,12 @@ public class ReadOnlySchedulerImplTest extends EasyMockTest {
 
   @Test
   public void testGetTasksStatusPagination() throws Exception {
-    Iterable<IScheduledTask> tasks = makeDefaultScheduledTasks(10);
+    List<IScheduledTask> tasks = Lists.newArrayList();
+    for (IScheduledTask task : makeDefaultScheduledTasks(10)) {
+      ScheduledTask builder = task.newBuilder();
+      builder.getAssignedTask().setTaskId("task-" + builder.getAssignedTask().getInstanceId());
+      tasks.add(IScheduledTask.build(builder));
+    }
 
     TaskQuery page1Query = setupPaginatedQuery(tasks, 0, 4);
     TaskQuery page2Query = setupPaginatedQuery(tasks, 4, 4);
@@ -499,12 +529,24 @@ public class ReadOnlySchedulerImplTest extends EasyMockTest {
     assertEquals(Lists.newArrayList(0, 1, 2, 3), page1Ids);
     assertEquals(Lists.newArrayList(4, 5, 6, 7), page2Ids);
     assertEquals(Lists.newArrayList(8, 9), page3Ids);
+
+    // Only full pages may be followed by more tasks.
+    assertEquals(
+        Tasks.id(tasks.get(3)),
+        page1Response.getResult().getScheduleStatusResult().getContinuationToken());
+    assertEquals(
+        Tasks.id(tasks.get(7)),
+        page2Response.getResult().getScheduleStatusResult().getContinuationToken());
+    assertFalse(page3Response.getResult().getScheduleStatusResult().isSetContinuationToken());
   }
 
   private TaskQuery setupPaginatedQuery(Iterable<IScheduledTask> tasks, int offset, int limit) {
     TaskQuery query = new TaskQuery().setOffset(offset).setLimit(limit);
     Builder builder = Query.arbitrary(query);
-    storageUtil.expectTaskFetch(builder, ImmutableSet.copyOf(tasks));
+    // Pagination is applied by the store.
+    storageUtil.expectTaskVisit(
+        builder,
+        ImmutableSet.copyOf(Iterables.limit(Iterables.skip(tasks, offset), limit)));
     return query;
   }
 
@@ -560,7 +602,7 @@ public class ReadOnlySchedulerImplTest extends EasyMockTest {
   public void testGetTasksStatus() throws Exception {
     Builder query = Query.unscoped();
     Iterable<IScheduledTask> tasks = makeDefaultScheduledTasks(10);
-    storageUtil.expectTaskFetch(query, ImmutableSet.copyOf(tasks));
+    storageUtil.expectTaskVisit(query, ImmutableSet.copyOf(tasks));
 
     control.replay();
 
@@ -681,6 +723,148 @@ public class ReadOnlySchedulerImplTest extends EasyMockTest {
     assertEquals(expectedResult, response.getResult().getRoleSummaryResult());
   }
 
+  @Test
+  public void testRoleSummaryCached() throws Exception {
+    IScheduledTask task = IScheduledTask.build(new ScheduledTask()
+        .setAssignedTask(new AssignedTask().setTask(defaultTask(false)))
+        .setStatus(ScheduleStatus.RUNNING));
+    Set<IJobKey> jobKeys = ImmutableSet.of(Tasks.getJob(task));
+
+    expect(storageUtil.taskStore.getJobKeys()).andReturn(jobKeys).times(2);
+    expect(storageUtil.jobStore.fetchJobs()).andReturn(ImmutableSet.of()).times(4);
+
+    RoleSummaryResult expectedResult = new RoleSummaryResult().setSummaries(ImmutableSet.of(
+        new RoleSummary().setRole(ROLE).setCronJobCount(0).setJobCount(1)));
+
+    control.replay();
+
+    assertEquals(
+        expectedResult,
+        assertOkResponse(thrift.getRoleSummary()).getResult().getRoleSummaryResult());
+    assertEquals(
+        expectedResult,
+        assertOkResponse(thrift.getRoleSummary()).getResult().getRoleSummaryResult());
+
+    // A state change of an existing task does not alter the set of jobs.
+    summaryCache.stateChanged(TaskStateChange.transition(task, ScheduleStatus.ASSIGNED));
+    assertEquals(
+        expectedResult,
+        assertOkResponse(thrift.getRoleSummary()).getResult().getRoleSummaryResult());
+
+    summaryCache.stateChanged(TaskStateChange.transition(task, ScheduleStatus.INIT));
+    assertEquals(
+        expectedResult,
+        assertOkResponse(thrift.getRoleSummary()).getResult().getRoleSummaryResult());
+
+    assertEquals(2L, statsProvider.getLongValue(SummaryCache.hitsStatName("role_summary")));
+    assertEquals(2L, statsProvider.getLongValue(SummaryCache.missesStatName("role_summary")));
+  }
+
+  @Test
+  public void testJobSummaryCached() throws Exception {
+    TaskConfig config = defaultTask(false);
+    IScheduledTask task = IScheduledTask.build(new ScheduledTask()
+        .setAssignedTask(new AssignedTask().setTask(config))
+        .setStatus(ScheduleStatus.RUNNING));
+    IScheduledTask otherRoleTask = IScheduledTask.build(new ScheduledTask()
+        .setAssignedTask(new AssignedTask().setTask(defaultTask(false)
+            .setJob(JOB_KEY.newBuilder().setRole("other"))))
+        .setStatus(ScheduleStatus.RUNNING));
+    Builder query = Query.roleScoped(ROLE);
+
+    storageUtil.expectTaskFetch(query, task);
+    storageUtil.expectTaskFetch(query);
+    expect(storageUtil.jobStore.fetchJobs()).andReturn(ImmutableSet.of()).times(4);
+
+    Set<JobSummary> runningSummary = ImmutableSet.of(new JobSummary()
+        .setJob(new JobConfiguration()
+            .setKey(JOB_KEY.newBuilder())
+            .setOwner(IDENTITY)
+            .setInstanceCount(1)
+            .setTaskConfig(config))
+        .setStats(new JobStats().setActiveTaskCount(1)));
+
+    control.replay();
+
+    assertEquals(jobSummaryResponse(runningSummary), thrift.getJobSummary(ROLE));
+    assertEquals(jobSummaryResponse(runningSummary), thrift.getJobSummary(ROLE));
+
+    // Changes to tasks of other roles do not invalidate the summaries of this role.
+    summaryCache.tasksDeleted(new TasksDeleted(ImmutableSet.of(otherRoleTask)));
+    assertEquals(jobSummaryResponse(runningSummary), thrift.getJobSummary(ROLE));
+
+    summaryCache.tasksDeleted(new TasksDeleted(ImmutableSet.of(task)));
+    assertEquals(jobSummaryResponse(ImmutableSet.of()), thrift.getJobSummary(ROLE));
+
+    assertEquals(2L, statsProvider.getLongValue(SummaryCache.hitsStatName("job_summary")));
+    assertEquals(2L, statsProvider.getLongValue(SummaryCache.missesStatName("job_summary")));
+  }
+
+  @Test
+  public void testConfigSummaryInvalidatedByRewrite() throws Exception {
+    IJobKey key = JobKeys.from("test", "test", "test");
+    TaskConfig config = defaultTask(true).setJob(key.newBuilder());
+    TaskConfig rewritten = defaultTask(true).setJob(key.newBuilder()).setNumCpus(2);
+    AssignedTask assignedTask = new AssignedTask().setTaskId("a").setInstanceId(0);
+
+    storageUtil.expectTaskFetch(
+        Query.jobScoped(key).active(),
+        IScheduledTask.build(new ScheduledTask().setAssignedTask(
+            assignedTask.deepCopy().setTask(config))));
+    storageUtil.expectTaskFetch(
+        Query.jobScoped(key).active(),
+        IScheduledTask.build(new ScheduledTask().setAssignedTask(
+            assignedTask.deepCopy().setTask(rewritten))));
+
+    control.replay();
+
+    assertEquals(
+        ImmutableSet.of(config),
+        configs(thrift.getConfigSummary(key.newBuilder())));
+    assertEquals(
+        ImmutableSet.of(config),
+        configs(thrift.getConfigSummary(key.newBuilder())));
+
+    summaryCache.configRewritten(
+        new TaskConfigRewritten("a", ITaskConfig.build(config), ITaskConfig.build(rewritten)));
+    assertEquals(
+        ImmutableSet.of(rewritten),
+        configs(thrift.getConfigSummary(key.newBuilder())));
+  }
+
+  @Test
+  public void testPreviousJobConfigSummaryInvalidatedByRewrite() throws Exception {
+    IJobKey key = JobKeys.from("test", "test", "test");
+    IJobKey otherKey = JobKeys.from("test", "test", "other");
+    TaskConfig config = defaultTask(true).setJob(key.newBuilder());
+    TaskConfig rewritten = defaultTask(true).setJob(otherKey.newBuilder());
+
+    storageUtil.expectTaskFetch(
+        Query.jobScoped(key).active(),
+        IScheduledTask.build(new ScheduledTask().setAssignedTask(
+            new AssignedTask().setTaskId("a").setInstanceId(0).setTask(config))));
+    storageUtil.expectTaskFetch(Query.jobScoped(key).active(), ImmutableSet.of());
+
+    control.replay();
+
+    assertEquals(
+        ImmutableSet.of(config),
+        configs(thrift.getConfigSummary(key.newBuilder())));
+
+    // The task moved to another job, so its previous job no longer has any tasks.
+    summaryCache.configRewritten(
+        new TaskConfigRewritten("a", ITaskConfig.build(config), ITaskConfig.build(rewritten)));
+    assertEquals(
+        ImmutableSet.of(),
+        configs(thrift.getConfigSummary(key.newBuilder())));
+  }
+
+  private static Set<TaskConfig> configs(Response response) {
+    return response.getResult().getConfigSummaryResult().getSummary().getGroups().stream()
+        .map(ConfigGroup::getConfig)
+        .collect(Collectors.toSet());
+  }
+
   @Test
   public void testEmptyConfigSummary() throws Exception {
     IJobKey key = JobKeys.from("test", "test", "test");
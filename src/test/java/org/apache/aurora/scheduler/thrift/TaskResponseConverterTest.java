@@ -0,0 +1,101 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.aurora.scheduler.thrift;
+
+import org.apache.aurora.gen.AssignedTask;
+import org.apache.aurora.gen.ScheduledTask;
+import org.apache.aurora.scheduler.base.JobKeys;
+import org.apache.aurora.scheduler.base.TaskTestUtil;
+import org.apache.aurora.scheduler.storage.entities.IScheduledTask;
+import org.apache.aurora.scheduler.storage.entities.ITaskConfig;
+import org.apache.aurora.scheduler.storage.testing.StorageEntityUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TaskResponseConverterTest {
+
+  private static final ITaskConfig CONFIG = TaskTestUtil.makeConfig(TaskTestUtil.JOB);
+
+  private static IScheduledTask makeTask(String id, ITaskConfig config) {
+    ScheduledTask builder = TaskTestUtil.makeTask(id, config).newBuilder();
+    builder.getAssignedTask().setSlaveHost("host").setSlaveId("slave");
+    IScheduledTask task = IScheduledTask.build(builder);
+    StorageEntityUtil.assertFullyPopulated(task.newBuilder());
+    return task;
+  }
+
+  @Test
+  public void testMatchesNewBuilder() {
+    IScheduledTask task = makeTask("a", CONFIG);
+    ScheduledTask expected = task.newBuilder();
+    ScheduledTask converted = TaskResponseConverter.fullTasks().convert(task);
+
+    // Guards against fields being added to the task structs without updating the converter.
+    for (ScheduledTask._Fields field : ScheduledTask._Fields.values()) {
+      assertTrue(field.getFieldName(), converted.isSet(field));
+      assertEquals(
+          field.getFieldName(),
+          expected.getFieldValue(field),
+          converted.getFieldValue(field));
+    }
+    for (AssignedTask._Fields field : AssignedTask._Fields.values()) {
+      assertTrue(field.getFieldName(), converted.getAssignedTask().isSet(field));
+      assertEquals(
+          field.getFieldName(),
+          expected.getAssignedTask().getFieldValue(field),
+          converted.getAssignedTask().getFieldValue(field));
+    }
+    assertEquals(expected, converted);
+  }
+
+  @Test
+  public void testSharesTaskConfigs() {
+    ITaskConfig otherConfig = TaskTestUtil.makeConfig(JobKeys.from("role", "env", "other"));
+    TaskResponseConverter converter = TaskResponseConverter.fullTasks();
+
+    // As when read from the store, each task wraps its own instance of an equal config.
+    IScheduledTask taskA = makeTask("a", ITaskConfig.build(CONFIG.newBuilder()));
+    IScheduledTask taskB = makeTask("b", ITaskConfig.build(CONFIG.newBuilder()));
+    IScheduledTask taskC = makeTask("c", otherConfig);
+    assertNotSame(taskA.getAssignedTask().getTask(), taskB.getAssignedTask().getTask());
+    ScheduledTask a = converter.convert(taskA);
+    ScheduledTask b = converter.convert(taskB);
+    ScheduledTask c = converter.convert(taskC);
+
+    assertSame(a.getAssignedTask().getTask(), b.getAssignedTask().getTask());
+    assertNotSame(a.getAssignedTask().getTask(), c.getAssignedTask().getTask());
+    assertEquals(taskA.newBuilder(), a);
+    assertEquals(taskB.newBuilder(), b);
+    assertEquals(taskC.newBuilder(), c);
+  }
+
+  @Test
+  public void testWithoutExecutorConfig() {
+    IScheduledTask task = makeTask("a", CONFIG);
+    ScheduledTask expected = task.newBuilder();
+    expected.getAssignedTask().getTask().unsetExecutorConfig();
+
+    ScheduledTask converted = TaskResponseConverter.withoutExecutorConfig().convert(task);
+    assertFalse(converted.getAssignedTask().getTask().isSetExecutorConfig());
+    assertEquals(expected, converted);
+
+    // The stored task must not be affected by the projection.
+    assertEquals(CONFIG.newBuilder(), task.getAssignedTask().getTask().newBuilder());
+  }
+}